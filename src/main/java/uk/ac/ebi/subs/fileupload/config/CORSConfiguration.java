@@ -6,6 +6,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import uk.ac.ebi.subs.fileupload.util.TusProtocol;
 
 
 @Configuration
@@ -18,6 +19,13 @@ public class CORSConfiguration {
         config.addAllowedOrigin("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        config.addExposedHeader("Location");
+        config.addExposedHeader(TusProtocol.TUS_RESUMABLE);
+        config.addExposedHeader(TusProtocol.TUS_VERSION);
+        config.addExposedHeader(TusProtocol.TUS_EXTENSION);
+        config.addExposedHeader(TusProtocol.UPLOAD_OFFSET);
+        config.addExposedHeader(TusProtocol.UPLOAD_LENGTH);
+        config.addExposedHeader(TusProtocol.UPLOAD_CONCAT);
         config.setAllowCredentials(false);
         source.registerCorsConfiguration("/**", config);
         FilterRegistrationBean bean = new FilterRegistrationBean(new CorsFilter(source));
@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
@@ -17,6 +18,7 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 
 @EnableMongoAuditing
+@EnableScheduling
 @Configuration("FileUploadServiceConfiguration")
 public class Config {
 
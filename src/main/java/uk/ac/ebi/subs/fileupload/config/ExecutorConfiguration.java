@@ -0,0 +1,131 @@
+package uk.ac.ebi.subs.fileupload.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * This is a {@link Configuration} class responsible for configuring the thread pools of the service.
+ */
+@Configuration
+public class ExecutorConfiguration {
+
+    public static final String PRE_CREATE_CHECK_EXECUTOR = "preCreateCheckExecutor";
+    public static final String POST_FINISH_EXECUTOR = "postFinishExecutor";
+    public static final String CHECKSUM_EXECUTOR = "checksumExecutor";
+    public static final String RUNNING_CHECKSUM_EXECUTOR = "runningChecksumExecutor";
+    public static final String PIPELINE_CONSUMER_EXECUTOR = "pipelineConsumerExecutor";
+    public static final String INFLATER_POOL = "inflaterPool";
+
+    @Value("${file-upload.preCreateCheck.threads:16}")
+    private int preCreateCheckThreads;
+
+    @Value("${file-upload.postFinish.threads:4}")
+    private int postFinishThreads;
+    @Value("${file-upload.postFinish.queueCapacity:100}")
+    private int postFinishQueueCapacity;
+
+    @Value("${file-upload.checksum.threads:2}")
+    private int checksumThreads;
+
+    @Value("${file-upload.runningChecksum.threads:2}")
+    private int runningChecksumThreads;
+    @Value("${file-upload.runningChecksum.queueCapacity:100}")
+    private int runningChecksumQueueCapacity;
+
+    @Value("${file-upload.inflater.threads:0}")
+    private int inflaterThreads;
+
+    /**
+     * Executes the checks of the 'pre-create' hook events concurrently.
+     * When all threads are busy and the queue is full the checks run on the calling thread,
+     * so an overloaded service gets slower instead of rejecting uploads.
+     */
+    @Bean(name = PRE_CREATE_CHECK_EXECUTOR)
+    public ThreadPoolTaskExecutor preCreateCheckExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(preCreateCheckThreads);
+        executor.setMaxPoolSize(preCreateCheckThreads);
+        executor.setQueueCapacity(preCreateCheckThreads * 4);
+        executor.setThreadNamePrefix("pre-create-check-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        return executor;
+    }
+
+    /**
+     * Moves, validates and dispatches the finished uploads in the background.
+     * The pool and its queue are bounded. Rejected uploads are left in the database
+     * and picked up again by the next scan of the pending finishes.
+     */
+    @Bean(name = POST_FINISH_EXECUTOR)
+    public ThreadPoolTaskExecutor postFinishExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(postFinishThreads);
+        executor.setMaxPoolSize(postFinishThreads);
+        executor.setQueueCapacity(postFinishQueueCapacity);
+        executor.setThreadNamePrefix("post-finish-");
+
+        return executor;
+    }
+
+    /**
+     * Calculates the checksums of the uploaded files.
+     * The number of threads caps the number of files read from the disk at the same time,
+     * the files waiting for a free thread are queued.
+     */
+    @Bean(name = CHECKSUM_EXECUTOR)
+    public ThreadPoolTaskExecutor checksumExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(checksumThreads);
+        executor.setMaxPoolSize(checksumThreads);
+        executor.setThreadNamePrefix("checksum-");
+
+        return executor;
+    }
+
+    /**
+     * Advances the running checksums of the uploads in progress over their newly received bytes.
+     * It is separate from the checksum executor, so the advances are not queued behind the whole file reads.
+     * The pool and its queue are bounded. A rejected advance is dropped, its bytes are read by a later advance
+     * or when the checksums of the finished upload are calculated.
+     */
+    @Bean(name = RUNNING_CHECKSUM_EXECUTOR)
+    public ThreadPoolTaskExecutor runningChecksumExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(runningChecksumThreads);
+        executor.setMaxPoolSize(runningChecksumThreads);
+        executor.setQueueCapacity(runningChecksumQueueCapacity);
+        executor.setThreadNamePrefix("running-checksum-");
+
+        return executor;
+    }
+
+    /**
+     * Runs the consumers of the files read by the processing pipeline.
+     * Every consumer needs its own thread, as the consumers of a file are fed at the same time,
+     * so the pool is not bounded by itself. The number of files read at the same time is bounded by the checksum executor.
+     */
+    @Bean(name = PIPELINE_CONSUMER_EXECUTOR)
+    public ThreadPoolTaskExecutor pipelineConsumerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(0);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("pipeline-consumer-");
+
+        return executor;
+    }
+
+    /**
+     * Inflates the blocks of the BGZF files validated inside the service.
+     * By default it has as many threads as the number of available processors.
+     */
+    @Bean(name = INFLATER_POOL, destroyMethod = "shutdown")
+    public ForkJoinPool inflaterPool() {
+        return new ForkJoinPool(inflaterThreads > 0 ? inflaterThreads : Runtime.getRuntime().availableProcessors());
+    }
+}
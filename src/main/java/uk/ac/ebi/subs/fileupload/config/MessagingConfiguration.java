@@ -2,6 +2,7 @@ package uk.ac.ebi.subs.fileupload.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.AnonymousQueue;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
@@ -111,4 +112,21 @@ public class MessagingConfiguration {
         return BindingBuilder.bind(fuGlobusSubUnregisterQueue).to(submissionExchange)
                 .with(Topics.EVENT_SUBMISSION_SUBMITTED);
     }
+
+    /**
+     * Instantiate an exclusive {@link Queue} of this service instance for the submission submitted events,
+     * so every instance can evict the cached status of the submitted submission.
+     *
+     * @return an instance of an {@link AnonymousQueue} for submission submitted events.
+     */
+    @Bean
+    Queue submissionStatusCacheEvictionQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    Binding submissionStatusCacheEvictionQueueBinding(Queue submissionStatusCacheEvictionQueue, TopicExchange submissionExchange) {
+        return BindingBuilder.bind(submissionStatusCacheEvictionQueue).to(submissionExchange)
+                .with(Topics.EVENT_SUBMISSION_SUBMITTED);
+    }
 }
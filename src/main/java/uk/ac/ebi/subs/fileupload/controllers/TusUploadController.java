@@ -0,0 +1,97 @@
+package uk.ac.ebi.subs.fileupload.controllers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.FileApiError;
+import uk.ac.ebi.subs.fileupload.services.tus.TusUploadService;
+import uk.ac.ebi.subs.fileupload.util.TusProtocol;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * This is a REST controller that implements the tus resumable upload protocol natively,
+ * so clients can upload files to this service directly instead of going through a tusd server.
+ */
+@RestController
+@RequestMapping("/files")
+public class TusUploadController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TusUploadController.class);
+
+    private TusUploadService tusUploadService;
+
+    public TusUploadController(TusUploadService tusUploadService) {
+        this.tusUploadService = tusUploadService;
+    }
+
+    @RequestMapping(method = RequestMethod.OPTIONS)
+    public ResponseEntity<Object> describeServer() {
+        return tusUploadService.describeServer();
+    }
+
+    @RequestMapping(method = RequestMethod.POST)
+    public ResponseEntity<Object> createUpload(@RequestHeader(value = TusProtocol.TUS_RESUMABLE, required = false) String tusResumable,
+                                               @RequestHeader(value = TusProtocol.UPLOAD_LENGTH, required = false) Long uploadLength,
+                                               @RequestHeader(value = TusProtocol.UPLOAD_METADATA, required = false) String uploadMetadata,
+                                               @RequestHeader(value = TusProtocol.UPLOAD_CONCAT, required = false) String uploadConcat) {
+        if (!TusProtocol.VERSION.equals(tusResumable)) {
+            return unsupportedVersion(tusResumable);
+        }
+
+        return tusUploadService.createUpload(uploadLength, uploadMetadata, uploadConcat, ServletUriComponentsBuilder.fromCurrentRequestUri());
+    }
+
+    @RequestMapping(value = "/{tusId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Object> getUploadOffset(@RequestHeader(value = TusProtocol.TUS_RESUMABLE, required = false) String tusResumable,
+                                                  @PathVariable String tusId) {
+        if (!TusProtocol.VERSION.equals(tusResumable)) {
+            return unsupportedVersion(tusResumable);
+        }
+
+        return tusUploadService.getUploadOffset(tusId);
+    }
+
+    @RequestMapping(value = "/{tusId}", method = RequestMethod.PATCH, consumes = TusProtocol.OFFSET_OCTET_STREAM)
+    public ResponseEntity<Object> appendChunk(@RequestHeader(value = TusProtocol.TUS_RESUMABLE, required = false) String tusResumable,
+                                              @RequestHeader(value = TusProtocol.UPLOAD_OFFSET) long offset,
+                                              @PathVariable String tusId,
+                                              HttpServletRequest request) throws IOException {
+        if (!TusProtocol.VERSION.equals(tusResumable)) {
+            return unsupportedVersion(tusResumable);
+        }
+
+        LOGGER.debug("Receiving chunk of upload: {} from offset: {}", tusId, offset);
+
+        return tusUploadService.appendChunk(tusId, offset, request.getInputStream());
+    }
+
+    @RequestMapping(value = "/{tusId}", method = RequestMethod.DELETE)
+    public ResponseEntity<Object> terminateUpload(@RequestHeader(value = TusProtocol.TUS_RESUMABLE, required = false) String tusResumable,
+                                                  @PathVariable String tusId) {
+        if (!TusProtocol.VERSION.equals(tusResumable)) {
+            return unsupportedVersion(tusResumable);
+        }
+
+        return tusUploadService.terminateUpload(tusId);
+    }
+
+    private ResponseEntity<Object> unsupportedVersion(String tusResumable) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TusProtocol.TUS_VERSION, TusProtocol.VERSION);
+
+        return new ResponseEntity<>(
+                new FileApiError(HttpStatus.PRECONDITION_FAILED, String.format(ErrorMessages.UNSUPPORTED_TUS_VERSION, tusResumable)),
+                headers, HttpStatus.PRECONDITION_FAILED);
+    }
+}
@@ -21,5 +21,20 @@ public class ErrorMessages {
     public static final String FILENAME_MANDATORY = "It is mandatory to send the filename in the metadata of the request.";
 
     public static final String INVALID_JWT_TOKEN = "The authorization token (JWT) is invalid";
+    public static final String MALFORMED_JWT_TOKEN = "The authorization token (JWT) is malformed";
     public static final String NOT_ENOUGH_DISKSPACE = "The file storage has not enough usable disk space to store the file: %s";
+    public static final String PRE_CREATE_CHECK_TIMEOUT = "The upload request of the file: %s could not be checked in %d ms.";
+
+    public static final String UNSUPPORTED_TUS_VERSION = "The requested tus protocol version: %s is not supported.";
+    public static final String INVALID_UPLOAD_LENGTH = "The Upload-Length header has to be a non-negative number.";
+    public static final String INVALID_UPLOAD_METADATA = "The Upload-Metadata header is malformed.";
+    public static final String UPLOAD_NOT_FOUND = "Upload with id: %s is not found.";
+    public static final String UPLOAD_LOCKED = "Upload with id: %s is currently being written by another request.";
+    public static final String UPLOAD_OFFSET_MISMATCH = "The sent Upload-Offset: %d does not match the current offset of the upload: %d.";
+    public static final String INVALID_UPLOAD_CONCAT = "The Upload-Concat header is malformed.";
+    public static final String PARTIAL_UPLOAD_NOT_COMPLETE = "Partial upload with id: %s is not found or not complete.";
+    public static final String PARTIAL_UPLOAD_NOT_OWNED = "Partial upload with id: %s does not belong to the user and the submission of the final upload.";
+    public static final String PARTIAL_UPLOAD_CONSUMED = "Partial upload with id: %s is being assembled into the final upload with id: %s.";
+    public static final String FINAL_UPLOAD_NOT_MODIFIABLE = "Upload with id: %s is a final upload and can not be modified.";
+    public static final String UPLOAD_LENGTH_EXCEEDED = "The request body exceeds the declared Upload-Length of the upload with id: %s.";
 }
@@ -18,6 +18,7 @@ public class EventHandlerSupplier {
     private PostCreateEvent postCreateEvent;
     private PostReceiveEvent postReceiveEvent;
     private PostFinishEvent postFinishEvent;
+    private PostTerminateEvent postTerminateEvent;
 
     @Bean
     public Map<String, TusEvent> eventHandlers() {
@@ -26,15 +27,18 @@ public class EventHandlerSupplier {
         eventHandlers.put(TUSEventType.POST_CREATE.getEventType(), postCreateEvent);
         eventHandlers.put(TUSEventType.POST_RECEIVE.getEventType(), postReceiveEvent);
         eventHandlers.put(TUSEventType.POST_FINISH.getEventType(), postFinishEvent);
+        eventHandlers.put(TUSEventType.POST_TERMINATE.getEventType(), postTerminateEvent);
 
         return eventHandlers;
     }
 
-    public EventHandlerSupplier(PreCreateEvent preCreateEvent, PostCreateEvent postCreateEvent, PostReceiveEvent postReceiveEvent, PostFinishEvent postFinishEvent) {
+    public EventHandlerSupplier(PreCreateEvent preCreateEvent, PostCreateEvent postCreateEvent, PostReceiveEvent postReceiveEvent,
+                                PostFinishEvent postFinishEvent, PostTerminateEvent postTerminateEvent) {
         this.preCreateEvent = preCreateEvent;
         this.postCreateEvent = postCreateEvent;
         this.postReceiveEvent = postReceiveEvent;
         this.postFinishEvent = postFinishEvent;
+        this.postTerminateEvent = postTerminateEvent;
     }
 
     public TusEvent supplyEventHandler(String eventType) {
@@ -2,10 +2,12 @@ package uk.ac.ebi.subs.fileupload.eventhandlers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import uk.ac.ebi.subs.data.fileupload.FileStatus;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 
@@ -13,29 +15,36 @@ import java.util.UUID;
 
 /**
  * This class is handling the 'post-create' hook event that is coming from the tusd server.
- * It is responsible to persist the information about the file to upload into the MongoDB database.
+ * It is responsible to persist the information about the file to upload into the MongoDB database
+ * and to keep the disk space reserved for it by the 'pre-create' hook event.
  */
 @Component
 public class PostCreateEvent implements TusEvent {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PostCreateEvent.class);
 
-    public JWTExtractor setupJWTExtractor(String jwtToken) {
-         return new JWTExtractor(jwtToken);
-    }
-
     @Override
     public ResponseEntity<Object> handle(TUSFileInfo tusFileInfo, EventHandlerService eventHandlerService) {
+        if (tusFileInfo.isPartial()) {
+            LOGGER.debug("Partial upload: {} does not have a file document.", tusFileInfo.getTusId());
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+
         File file = FileHelper.convertTUSFileInfoToFile(tusFileInfo);
         file.setId(UUID.randomUUID().toString());
         file.setStatus(FileStatus.INITIALIZED);
 
-        JWTExtractor jwtExtractor = setupJWTExtractor(tusFileInfo.getMetadata().getJwtToken());
+        VerifiedToken verifiedToken = eventHandlerService.verifyToken(tusFileInfo.getMetadata().getJwtToken());
 
-        file.setCreatedBy(jwtExtractor.getUsername());
+        file.setCreatedBy(verifiedToken.getUsername());
 
         LOGGER.debug(String.format("File object: %s", file));
 
-        return eventHandlerService.persistOrUpdateFileInformation(file);
+        ResponseEntity<Object> response = eventHandlerService.persistOrUpdateFileInformation(file);
+        if (response.getStatusCode().equals(HttpStatus.OK)) {
+            eventHandlerService.bindDiskSpaceReservation(tusFileInfo);
+        }
+
+        return response;
     }
 }
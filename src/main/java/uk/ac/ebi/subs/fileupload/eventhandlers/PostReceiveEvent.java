@@ -2,6 +2,7 @@ package uk.ac.ebi.subs.fileupload.eventhandlers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import uk.ac.ebi.subs.data.fileupload.FileStatus;
@@ -23,6 +24,10 @@ public class PostReceiveEvent implements TusEvent {
 
     @Override
     public ResponseEntity<Object> handle(TUSFileInfo tusFileInfo, EventHandlerService eventHandlerService) {
+        if (tusFileInfo.isPartial()) {
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+
         File file = FileHelper.convertTUSFileInfoToFile(tusFileInfo);
 
         file.setStatus(FileStatus.UPLOADING);
@@ -30,6 +35,6 @@ public class PostReceiveEvent implements TusEvent {
 
         LOGGER.info(String.format("File object: %s", file));
 
-        return eventHandlerService.persistOrUpdateFileInformation(file);
+        return eventHandlerService.updateUploadProgress(file);
     }
 }
@@ -4,19 +4,34 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
 import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
 import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 
+/**
+ * This class is handling the 'post-terminate' hook event that is coming from the tusd server
+ * or from the native tus endpoint.
+ * It is responsible to delete the relevant file document from the MongoDB database and the file from the storage.
+ */
+@Component
 public class PostTerminateEvent implements TusEvent {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PostTerminateEvent.class);
 
     @Override
     public ResponseEntity<Object> handle(TUSFileInfo tusFileInfo, EventHandlerService eventHandlerService) {
+        if (tusFileInfo.isPartial()) {
+            return ResponseEntity.accepted().build();
+        }
+
         final String tusID = tusFileInfo.getTusId();
+        eventHandlerService.flushUploadProgress(tusID);
+        eventHandlerService.discardRunningChecksum(tusID);
+        eventHandlerService.releaseDiskSpace(tusID);
+
         if (!eventHandlerService.isFileExists(tusID)) {
             LOGGER.debug("File with name: {} and generated TUS ID: is not exists in the database.", tusFileInfo.getMetadata().getFilename(), tusFileInfo.getTusId());
             return ErrorResponse.assemble(
@@ -25,7 +40,9 @@ public class PostTerminateEvent implements TusEvent {
 
         File fileToDelete = eventHandlerService.getFileByTusID(tusID);
 
-        eventHandlerService.deleteFileFromStorage(fileToDelete.getTargetPath(), fileToDelete.getSubmissionId());
+        if (fileToDelete.getTargetPath() != null) {
+            eventHandlerService.deleteFileFromStorage(fileToDelete.getTargetPath(), fileToDelete.getSubmissionId());
+        }
 
         eventHandlerService.deleteFileFromDB(tusID);
 
@@ -1,35 +1,25 @@
 package uk.ac.ebi.subs.fileupload.eventhandlers;
 
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
-import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 
 /**
  * This class is handling the 'pre-create' hook event that is coming from the tusd server.
- * It is checking if the JWT token is valid and the submission is modifiable.
+ * It is checking if the JWT token is valid, the submission is modifiable, there is enough disk space
+ * and the file has not been uploaded to the submission yet.
+ * The partial uploads of the concatenation extension have the same checks, apart from the filename ones.
  */
 @Component
 public class PreCreateEvent implements TusEvent {
 
     @Override
     public ResponseEntity<Object> handle(TUSFileInfo tusFileInfo, EventHandlerService eventHandlerService) {
-
-        ResponseEntity<Object> response = eventHandlerService.validateUploadRequest(tusFileInfo);
-
-        if (response.getStatusCode().equals(HttpStatus.OK)) {
-            String filename = tusFileInfo.getMetadata().getFilename();
-            String submissionId = tusFileInfo.getMetadata().getSubmissionID();
-
-            if (eventHandlerService.isFileDuplicated(filename, submissionId)) {
-                response = ErrorResponse.assemble(HttpStatus.CONFLICT,
-                        String.format(ErrorMessages.DUPLICATED_FILE_ERROR, filename, submissionId));
-            }
+        if (tusFileInfo.isPartial()) {
+            return eventHandlerService.validatePartialUploadRequest(tusFileInfo);
         }
 
-        return response;
+        return eventHandlerService.validateUploadRequest(tusFileInfo);
     }
 }
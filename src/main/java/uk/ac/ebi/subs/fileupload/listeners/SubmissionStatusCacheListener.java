@@ -0,0 +1,33 @@
+package uk.ac.ebi.subs.fileupload.listeners;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.services.SubmissionService;
+import uk.ac.ebi.subs.processing.SubmissionEnvelope;
+
+/**
+ * This class is listening on the submission submitted events of this service instance
+ * and evicts the cached status of the submitted submission.
+ */
+@Service
+@RequiredArgsConstructor
+public class SubmissionStatusCacheListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubmissionStatusCacheListener.class);
+
+    @NonNull
+    private SubmissionService submissionService;
+
+    @RabbitListener(queues = "#{submissionStatusCacheEvictionQueue.name}")
+    public void onSubmissionSubmitted(SubmissionEnvelope subEnvelope) {
+        String submissionId = subEnvelope.getSubmission().getId();
+
+        LOGGER.debug("Evicting the cached status of the submitted submission. SubmissionID : {}", submissionId);
+
+        submissionService.evictSubmissionStatus(submissionId);
+    }
+}
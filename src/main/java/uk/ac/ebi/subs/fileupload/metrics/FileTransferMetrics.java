@@ -0,0 +1,46 @@
+package uk.ac.ebi.subs.fileupload.metrics;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransfer;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransferService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the counters of the file transfers and the progress and throughput of the active transfers
+ * on the metrics endpoint.
+ */
+@Component
+public class FileTransferMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "transfer.";
+
+    private FileTransferService fileTransferService;
+
+    public FileTransferMetrics(FileTransferService fileTransferService) {
+        this.fileTransferService = fileTransferService;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<FileTransfer> activeTransfers = fileTransferService.getActiveTransfers();
+
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(PREFIX + "renamed", fileTransferService.getRenamedFiles()));
+        metrics.add(new Metric<>(PREFIX + "copied", fileTransferService.getCopiedFiles()));
+        metrics.add(new Metric<>(PREFIX + "copied.bytes", fileTransferService.getCopiedBytes()));
+        metrics.add(new Metric<>(PREFIX + "active", activeTransfers.size()));
+
+        for (FileTransfer transfer : activeTransfers) {
+            String transferPrefix = PREFIX + "active." + transfer.getId() + ".";
+            metrics.add(new Metric<>(transferPrefix + "progress", transfer.getProgress()));
+            metrics.add(new Metric<>(transferPrefix + "throughput", transfer.getThroughput()));
+        }
+
+        return metrics;
+    }
+}
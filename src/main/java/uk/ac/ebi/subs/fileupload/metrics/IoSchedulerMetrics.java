@@ -0,0 +1,52 @@
+package uk.ac.ebi.subs.fileupload.metrics;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.io.IoWaitStatistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the queue wait times of the bulk disk operations of every priority class
+ * and the load of the I/O queue of every volume on the metrics endpoint.
+ */
+@Component
+public class IoSchedulerMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "io.";
+
+    private IoScheduler ioScheduler;
+
+    public IoSchedulerMetrics(IoScheduler ioScheduler) {
+        this.ioScheduler = ioScheduler;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        for (IoClass ioClass : IoClass.values()) {
+            String classPrefix = PREFIX + "class." + ioClass.getPropertyName() + ".";
+            IoWaitStatistics statistics = ioScheduler.getStatistics(ioClass);
+
+            metrics.add(new Metric<>(classPrefix + "operations", statistics.getOperations()));
+            metrics.add(new Metric<>(classPrefix + "waitTime.total", statistics.getTotalWaitTime()));
+            metrics.add(new Metric<>(classPrefix + "waitTime.max", statistics.getMaxWaitTime()));
+        }
+
+        for (String queueName : ioScheduler.getQueueNames()) {
+            String volumePrefix = PREFIX + "volume." + queueName + ".";
+
+            metrics.add(new Metric<>(volumePrefix + "active", ioScheduler.getActiveOperations(queueName)));
+            metrics.add(new Metric<>(volumePrefix + "queued", ioScheduler.getQueuedOperations(queueName)));
+            metrics.add(new Metric<>(volumePrefix + "throttledTime", ioScheduler.getThrottledTime(queueName)));
+        }
+
+        return metrics;
+    }
+}
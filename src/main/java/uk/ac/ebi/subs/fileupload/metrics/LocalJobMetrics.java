@@ -0,0 +1,48 @@
+package uk.ac.ebi.subs.fileupload.metrics;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobRunner;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobStatistics;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Exposes the queue depth, the outcomes and the run times of the local jobs of every type on the metrics endpoint.
+ */
+@Component
+public class LocalJobMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "localJobs.";
+
+    private LocalJobRunner localJobRunner;
+
+    public LocalJobMetrics(LocalJobRunner localJobRunner) {
+        this.localJobRunner = localJobRunner;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        for (LocalJobType type : LocalJobType.values()) {
+            String typePrefix = PREFIX + type.getPropertyName() + ".";
+            LocalJobStatistics statistics = localJobRunner.getStatistics(type);
+
+            metrics.add(new Metric<>(typePrefix + "queued", localJobRunner.getQueueDepth(type)));
+            metrics.add(new Metric<>(typePrefix + "running", localJobRunner.getRunningJobs(type)));
+            metrics.add(new Metric<>(typePrefix + "succeeded", statistics.getSucceeded()));
+            metrics.add(new Metric<>(typePrefix + "failed", statistics.getFailed()));
+            metrics.add(new Metric<>(typePrefix + "timedOut", statistics.getTimedOut()));
+            metrics.add(new Metric<>(typePrefix + "rejected", statistics.getRejected()));
+            metrics.add(new Metric<>(typePrefix + "runTime.total", statistics.getTotalRunTime()));
+            metrics.add(new Metric<>(typePrefix + "runTime.max", statistics.getMaxRunTime()));
+        }
+
+        return metrics;
+    }
+}
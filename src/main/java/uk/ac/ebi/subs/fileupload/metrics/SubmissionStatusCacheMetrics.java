@@ -0,0 +1,37 @@
+package uk.ac.ebi.subs.fileupload.metrics;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.services.SubmissionService;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Exposes the statistics of the submission status cache on the metrics endpoint.
+ */
+@Component
+public class SubmissionStatusCacheMetrics implements PublicMetrics {
+
+    private static final String PREFIX = "cache.submissionStatus.";
+
+    private SubmissionService submissionService;
+
+    public SubmissionStatusCacheMetrics(SubmissionService submissionService) {
+        this.submissionService = submissionService;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats cacheStats = submissionService.getSubmissionStatusCacheStats();
+
+        return Arrays.asList(
+                new Metric<>(PREFIX + "size", submissionService.getSubmissionStatusCacheSize()),
+                new Metric<>(PREFIX + "hit", cacheStats.hitCount()),
+                new Metric<>(PREFIX + "miss", cacheStats.missCount()),
+                new Metric<>(PREFIX + "eviction", cacheStats.evictionCount()),
+                new Metric<>(PREFIX + "hit.ratio", cacheStats.hitRate()));
+    }
+}
@@ -0,0 +1,54 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class represents the first processed file with a given content, keyed by the SHA-256 checksum of the content.
+ * The later uploads of the same content are hard linked to this file and get its processing results.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "contentIndex")
+public class ContentIndexEntry {
+
+    @Id
+    private String sha256;
+    /**
+     * The cheap fingerprint of the file, the files with another fingerprint can not have the same content.
+     */
+    @Indexed
+    private String fingerprint;
+    private String path;
+    private long size;
+    /**
+     * The identity of the file on its file system, the device and inode on Unix,
+     * so a file replaced at the same path is not mistaken for the indexed one.
+     */
+    private String fileKey;
+    private long lastModifiedTime;
+    /**
+     * The processing results of the file as nested documents, the dotted field paths can not be keys in MongoDB.
+     */
+    private Map<String, Object> results = new LinkedHashMap<>();
+    private LocalDateTime createdDate;
+
+    public ContentIndexEntry(String sha256, String fingerprint, String path, long size, String fileKey,
+                             long lastModifiedTime, Map<String, Object> results) {
+        this.sha256 = sha256;
+        this.fingerprint = fingerprint;
+        this.path = path;
+        this.size = size;
+        this.fileKey = fileKey;
+        this.lastModifiedTime = lastModifiedTime;
+        this.results = results;
+        this.createdDate = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,25 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Value;
+
+/**
+ * This class represents the type of an uploaded file, as detected from its content or, failing that, from its extension.
+ */
+@Value
+public class DetectedFileType {
+
+    /**
+     * The ways the type of a file can be detected.
+     */
+    public enum Source {
+        CONTENT,
+        EXTENSION
+    }
+
+    /**
+     * The type of the file, as in {@link uk.ac.ebi.subs.fileupload.util.FileType}, or null if the file is not supported.
+     */
+    private String type;
+    private boolean compressed;
+    private Source source;
+}
@@ -0,0 +1,14 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Value;
+
+/**
+ * This class represents the checksums of an uploaded file as lower case hexadecimal strings.
+ */
+@Value
+public class FileChecksums {
+
+    private String md5;
+    private String sha256;
+    private String crc32c;
+}
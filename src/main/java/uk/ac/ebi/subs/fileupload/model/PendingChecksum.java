@@ -0,0 +1,39 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class represents a file at its target path that is waiting for its checksums and the rest of its processing.
+ * It is stored in the database, so the failed calculations are retried and none is lost by a restart of the service.
+ * The worker of the service instance working on it holds a lease on it until the lease expiry date.
+ * The content validation of a file that may be a duplicate is deferred until its checksums have been calculated.
+ * The fingerprint calculated when the file was sent for processing is kept, so it is not calculated again.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "pendingChecksums")
+public class PendingChecksum {
+
+    @Id
+    private String tusId;
+    private String path;
+    private String fingerprint;
+    private boolean validationDeferred;
+    private boolean failed;
+    private int attempts;
+    private LocalDateTime nextAttemptDate;
+    private String lastError;
+    private String owner;
+    private LocalDateTime leaseExpiryDate;
+
+    public PendingChecksum(String tusId, String path) {
+        this.tusId = tusId;
+        this.path = path;
+        this.nextAttemptDate = LocalDateTime.now();
+    }
+}
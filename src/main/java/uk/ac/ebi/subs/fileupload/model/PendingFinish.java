@@ -0,0 +1,45 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a finished upload that still has to be moved to its target path,
+ * validated and sent for processing. It is stored in the database, so it survives a restart of the service.
+ * The worker of the service instance working on it holds a lease on it until the lease expiry date.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "pendingFinishes")
+public class PendingFinish {
+
+    @Id
+    private String tusId;
+    private List<String> partialUploadIds = new ArrayList<>();
+    private Stage stage = Stage.RECORDED;
+    private int attempts;
+    private LocalDateTime nextAttemptDate;
+    private String lastError;
+    private String owner;
+    private LocalDateTime leaseExpiryDate;
+
+    public PendingFinish(String tusId, List<String> partialUploadIds) {
+        this.tusId = tusId;
+        this.partialUploadIds = partialUploadIds;
+        this.nextAttemptDate = LocalDateTime.now();
+    }
+
+    /**
+     * The steps of finishing an upload in the order the workers advance them.
+     * The DISPATCHED stage is recorded before the file is sent for processing.
+     */
+    public enum Stage {
+        RECORDED, MOVED, VALIDATED, DISPATCHED, FAILED
+    }
+}
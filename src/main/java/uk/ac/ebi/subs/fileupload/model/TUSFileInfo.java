@@ -40,6 +40,27 @@ public class TUSFileInfo {
     @JsonProperty(value = "PartialUploads")
     private String[] partialUploads;
 
+    /**
+     * The name of the storage volume the upload has been placed on by this service.
+     * It is not set by the tusd server, the uploads stored by tusd are on the default volume.
+     */
+    @JsonProperty(value = "Volume")
+    private String volume;
+
+    /**
+     * The name of the user who has created the upload. It is recorded on the partial uploads of this service,
+     * so only their owner can assemble them into a final upload.
+     */
+    @JsonProperty(value = "Owner")
+    private String owner;
+
+    /**
+     * The ID of the final upload the partial upload is assembled into. A consumed partial upload can be neither
+     * terminated nor assembled into another final upload, it is removed from the storage once it has been assembled.
+     */
+    @JsonProperty(value = "ConsumedBy")
+    private String consumedBy;
+
     public TUSFileInfo() {
     }
 
@@ -91,6 +112,9 @@ public class TUSFileInfo {
                 ", isPartial=" + isPartial +
                 ", isFinal=" + isFinal +
                 ", partialUploads=" + Arrays.toString(partialUploads) +
+                ", volume='" + volume + '\'' +
+                ", owner='" + owner + '\'' +
+                ", consumedBy='" + consumedBy + '\'' +
                 '}';
     }
 }
@@ -0,0 +1,29 @@
+package uk.ac.ebi.subs.fileupload.model;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * This class represents the latest known progress of an upload.
+ */
+@Value
+public class UploadProgress {
+
+    private long uploadedSize;
+    private LocalDateTime uploadStartDate;
+
+    /**
+     * Combines 2 progress events of the same upload into the one that is the furthest
+     * and keeps the earliest upload start date.
+     */
+    public UploadProgress merge(UploadProgress other) {
+        LocalDateTime earliestStartDate = uploadStartDate;
+        if (earliestStartDate == null
+                || (other.getUploadStartDate() != null && other.getUploadStartDate().isBefore(earliestStartDate))) {
+            earliestStartDate = other.getUploadStartDate();
+        }
+
+        return new UploadProgress(Math.max(uploadedSize, other.getUploadedSize()), earliestStartDate);
+    }
+}
@@ -0,0 +1,131 @@
+package uk.ac.ebi.subs.fileupload.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwx.JsonWebStructure;
+import org.jose4j.lang.JoseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.InvalidTokenException;
+import uk.ac.ebi.subs.fileupload.errors.MalformedTokenException;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is responsible for verifying the JWT tokens sent with the upload requests.
+ * The signature of a token is checked with the public key of the AAP only once,
+ * then the verified claims are cached by the digest of the token until the token expires.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String USERNAME_CLAIM = "name";
+    private static final String DOMAINS_CLAIM = "domains";
+    private static final int ALLOWED_CLOCK_SKEW_IN_SECONDS = 30;
+
+    private JwtConsumer jwtConsumer;
+
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    public TokenService(@Value("${file-upload.security.certificatePath}") String certificatePath,
+                        @Value("${file-upload.security.issuer}") String issuer,
+                        @Value("${file-upload.security.tokenCache.maximumSize:10000}") long tokenCacheMaximumSize) {
+        this(loadPublicKey(certificatePath), issuer, tokenCacheMaximumSize);
+    }
+
+    TokenService(PublicKey verificationKey, String issuer, long tokenCacheMaximumSize) {
+        this.jwtConsumer = new JwtConsumerBuilder()
+                .setRequireExpirationTime()
+                .setAllowedClockSkewInSeconds(ALLOWED_CLOCK_SKEW_IN_SECONDS)
+                .setExpectedIssuer(issuer)
+                .setVerificationKey(verificationKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(tokenCacheMaximumSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String tokenDigest, VerifiedToken verifiedToken, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), verifiedToken.getExpiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenDigest, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenDigest, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Verifies the signature, the issuer and the expiry of the given token and returns its claims.
+     *
+     * @param jwtToken the JWT security token of the user
+     * @return the verified claims of the token
+     * @throws MalformedTokenException if the token can not be parsed
+     * @throws InvalidTokenException if the signature of the token is invalid or the token has expired
+     */
+    public VerifiedToken verify(String jwtToken) {
+        VerifiedToken verifiedToken = verifiedTokens.get(Utils.digest(jwtToken), tokenDigest -> verifySignature(jwtToken));
+
+        if (verifiedToken.isExpired()) {
+            throw new InvalidTokenException(ErrorMessages.INVALID_JWT_TOKEN, null);
+        }
+
+        return verifiedToken;
+    }
+
+    private VerifiedToken verifySignature(String jwtToken) {
+        try {
+            JsonWebStructure.fromCompactSerialization(jwtToken);
+        } catch (JoseException e) {
+            throw new MalformedTokenException(ErrorMessages.MALFORMED_JWT_TOKEN, e);
+        }
+
+        try {
+            JwtClaims claims = jwtConsumer.processToClaims(jwtToken);
+
+            List<String> domains = claims.hasClaim(DOMAINS_CLAIM)
+                    ? claims.getStringListClaimValue(DOMAINS_CLAIM) : Collections.emptyList();
+
+            return new VerifiedToken(claims.getStringClaimValue(USERNAME_CLAIM), domains,
+                    Instant.ofEpochMilli(claims.getExpirationTime().getValueInMillis()));
+        } catch (InvalidJwtException | MalformedClaimException e) {
+            LOGGER.info("JWT token verification failed: {}", e.getMessage());
+            throw new InvalidTokenException(ErrorMessages.INVALID_JWT_TOKEN, e);
+        }
+    }
+
+    private static PublicKey loadPublicKey(String certificatePath) {
+        try (InputStream certificate = new ClassPathResource(certificatePath).getInputStream()) {
+            return CertificateFactory.getInstance("X.509").generateCertificate(certificate).getPublicKey();
+        } catch (IOException | CertificateException e) {
+            throw new IllegalStateException("The certificate of the token issuer could not be loaded from: " + certificatePath, e);
+        }
+    }
+}
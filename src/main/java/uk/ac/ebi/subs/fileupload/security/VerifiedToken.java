@@ -0,0 +1,21 @@
+package uk.ac.ebi.subs.fileupload.security;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This class contains the claims of a JWT token whose signature has been verified.
+ */
+@Value
+public class VerifiedToken {
+
+    private String username;
+    private List<String> domains;
+    private Instant expiresAt;
+
+    public boolean isExpired() {
+        return !Instant.now().isBefore(expiresAt);
+    }
+}
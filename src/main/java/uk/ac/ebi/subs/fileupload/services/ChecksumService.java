@@ -0,0 +1,622 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.model.PendingChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.ChecksumCalculator;
+import uk.ac.ebi.subs.fileupload.services.checksum.MessageDigestChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksumStore;
+import uk.ac.ebi.subs.fileupload.services.indexing.FileIndexers;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.pipeline.ChecksumConsumer;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileConsumer;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingPipeline;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingResult;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileStatisticsCollector;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FormatValidators;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This class is responsible for calculating the checksums of the uploaded files inside the service.
+ * The file is read once by the {@link FileProcessingPipeline}, which feeds the checksum calculation,
+ * the statistics collector, the format validator and the indexer of the file at the same time,
+ * then all of their results are stored on the file document with one update.
+ * A file with the same content as an already processed file is replaced by a hard link to that file
+ * by the {@link ContentIndexService}, and the results of that file are reused instead of processing it again.
+ * Only the files with the fingerprint of an already processed file are looked up by their full checksum.
+ * The content validation of such a file is deferred until it is known to have new content,
+ * then it is requested with a {@link DeferredContentValidationEvent}, so a duplicate is never validated.
+ * The files are processed by a bounded pool of workers, so only a limited number of files is read from the disk
+ * at the same time, and the whole file reads are background operations of the {@link IoScheduler}.
+ * Every submitted file is recorded as a {@link PendingChecksum} until it has been processed, a worker claims it
+ * with a lease before processing it, so only one instance of the service processes a file,
+ * and a failed processing is retried with an increasing delay.
+ *
+ * <p>While a file is being uploaded, its running checksum is advanced over the newly received bytes
+ * on every progress event and stored by the {@link RunningChecksumStore}.
+ * When the upload is finished, only the bytes received after the last progress event are read again.</p>
+ */
+@Service
+public class ChecksumService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumService.class);
+
+    private static final String ID = "_id";
+    private static final String STATUS = "status";
+    private static final String GENERATED_TUS_ID = "generatedTusId";
+    private static final String TARGET_PATH = "targetPath";
+    private static final String PROCESSING_ERRORS = "processingErrors";
+    private static final String BIN_FILE_EXTENSION_BY_TUS = ".bin";
+
+    private static final String PATH = "path";
+    private static final String VALIDATION_DEFERRED = "validationDeferred";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String FAILED = "failed";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_ATTEMPT_DATE = "nextAttemptDate";
+    private static final String LAST_ERROR = "lastError";
+    private static final String OWNER = "owner";
+    private static final String LEASE_EXPIRY_DATE = "leaseExpiryDate";
+
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int MAX_RETRY_DELAY_SHIFT = 6;
+
+    private FileUpdateService fileUpdateService;
+    private ContentIndexService contentIndexService;
+    private FileFingerprinter fileFingerprinter;
+    private MongoOperations mongoOperations;
+    private RunningChecksumStore runningChecksumStore;
+    private FileProcessingPipeline fileProcessingPipeline;
+    private FormatValidators formatValidators;
+    private FileIndexers fileIndexers;
+    private FileTypeDetector fileTypeDetector;
+    private Executor checksumExecutor;
+    private Executor runningChecksumExecutor;
+    private StorageVolumes storageVolumes;
+    private IoScheduler ioScheduler;
+    private ServiceInstance serviceInstance;
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${file-upload.checksum.maxAttempts:5}")
+    private int maxAttempts;
+    @Value("${file-upload.checksum.retryDelay:60000}")
+    private long retryDelay;
+    @Value("${file-upload.checksum.leaseDuration:3600000}")
+    private long leaseDuration;
+
+    private final ThreadLocal<ByteBuffer> readBuffer;
+    private final Set<String> checksumsInProgress = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Long> requestedOffsets = new ConcurrentHashMap<>();
+    private final Set<String> advancesInProgress = ConcurrentHashMap.newKeySet();
+    private final Map<String, Object> runningChecksumLocks = new ConcurrentHashMap<>();
+
+    public ChecksumService(FileUpdateService fileUpdateService, ContentIndexService contentIndexService,
+                           FileFingerprinter fileFingerprinter, MongoOperations mongoOperations,
+                           RunningChecksumStore runningChecksumStore, FileProcessingPipeline fileProcessingPipeline,
+                           FormatValidators formatValidators, FileIndexers fileIndexers,
+                           FileTypeDetector fileTypeDetector,
+                           @Qualifier(ExecutorConfiguration.CHECKSUM_EXECUTOR) Executor checksumExecutor,
+                           @Qualifier(ExecutorConfiguration.RUNNING_CHECKSUM_EXECUTOR) Executor runningChecksumExecutor,
+                           StorageVolumes storageVolumes, IoScheduler ioScheduler, ServiceInstance serviceInstance,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${file-upload.checksum.bufferSize:8388608}") int bufferSize) {
+        this.fileUpdateService = fileUpdateService;
+        this.contentIndexService = contentIndexService;
+        this.fileFingerprinter = fileFingerprinter;
+        this.mongoOperations = mongoOperations;
+        this.runningChecksumStore = runningChecksumStore;
+        this.fileProcessingPipeline = fileProcessingPipeline;
+        this.formatValidators = formatValidators;
+        this.fileIndexers = fileIndexers;
+        this.fileTypeDetector = fileTypeDetector;
+        this.checksumExecutor = checksumExecutor;
+        this.runningChecksumExecutor = runningChecksumExecutor;
+        this.storageVolumes = storageVolumes;
+        this.ioScheduler = ioScheduler;
+        this.serviceInstance = serviceInstance;
+        this.eventPublisher = eventPublisher;
+        this.readBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    /**
+     * Queues the advancement of the running checksum of an upload up to the given offset.
+     * The offsets requested while the running checksum is being advanced are coalesced,
+     * so every received byte is read once at most.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param offset the number of bytes received so far
+     */
+    public void advance(String tusId, long offset) {
+        requestedOffsets.merge(tusId, offset, Math::max);
+        if (!advancesInProgress.add(tusId)) {
+            return;
+        }
+
+        try {
+            runningChecksumExecutor.execute(() -> advanceToRequestedOffsets(tusId));
+        } catch (RejectedExecutionException e) {
+            advancesInProgress.remove(tusId);
+            LOGGER.debug("The running checksum workers are busy, the running checksum of upload: {} is advanced later.", tusId);
+        }
+    }
+
+    /**
+     * Removes the running checksum of the given upload, for example when the upload has been terminated.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     */
+    public void discardRunningChecksum(String tusId) {
+        requestedOffsets.remove(tusId);
+        synchronized (runningChecksumLock(tusId)) {
+            runningChecksumStore.delete(tusId);
+        }
+        runningChecksumLocks.remove(tusId);
+    }
+
+    /**
+     * Records the given file that has been moved to its target path as a pending checksum
+     * and queues the calculation of its checksums.
+     *
+     * @param file the file waiting for its checksum
+     * @param fileType the detected type of the file, it chooses the validator of the file
+     */
+    public void submit(File file, DetectedFileType fileType) {
+        submit(file, fileType, null, false);
+    }
+
+    /**
+     * Records the given file that has been moved to its target path as a pending checksum
+     * and queues the calculation of its checksums.
+     * The given fingerprint is stored with the pending checksum, so it is neither calculated nor looked up again.
+     *
+     * @param file the file waiting for its checksum
+     * @param fileType the detected type of the file, it chooses the validator of the file
+     * @param fingerprint the fingerprint calculated by {@link #fingerprint(File)}, or null if it has to be calculated
+     * @param validationDeferred true if the file may be a duplicate, so its content validation has to be requested
+     *                           when the file turns out not to be one
+     */
+    public void submit(File file, DetectedFileType fileType, String fingerprint, boolean validationDeferred) {
+        String tusId = file.getGeneratedTusId();
+        recordPendingChecksum(tusId, file.getTargetPath(), fingerprint, validationDeferred);
+
+        execute(tusId, Paths.get(file.getTargetPath()), fileType);
+    }
+
+    /**
+     * @param file the file finished by the post-finish workers
+     * @return true if the file has a pending checksum or it is not waiting for its checksum anymore
+     */
+    public boolean isSubmitted(File file) {
+        return file.getStatus() != FileStatus.READY_FOR_CHECKSUM
+                || mongoOperations.exists(Query.query(Criteria.where(ID).is(file.getGeneratedTusId())), PendingChecksum.class);
+    }
+
+    /**
+     * Calculates the fingerprint of the given file and stores it on its document.
+     *
+     * @param file the file waiting for its checksum
+     * @return the fingerprint of the file, or null if it could not be calculated
+     */
+    public String fingerprint(File file) {
+        return fingerprint(file.getGeneratedTusId(), Paths.get(file.getTargetPath()));
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a file, or null if it could not be calculated
+     * @return true if an already processed file has the same fingerprint, so the file may be a duplicate
+     */
+    public boolean mayBeDuplicate(String fingerprint) {
+        return fingerprint != null && contentIndexService.hasCandidates(fingerprint);
+    }
+
+    /**
+     * Queues the pending checksums that are due and not leased by a worker, including the ones recorded
+     * before the last restart and the ones that are retried.
+     * Their types are read from their documents, only the files finished by an earlier version are detected again.
+     */
+    @Scheduled(fixedDelayString = "${file-upload.checksum.scanInterval:10000}")
+    public void resumePendingChecksums() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where(FAILED).ne(true)
+                .and(NEXT_ATTEMPT_DATE).lte(now)
+                .orOperator(Criteria.where(LEASE_EXPIRY_DATE).is(null), Criteria.where(LEASE_EXPIRY_DATE).lte(now)))
+                .with(new Sort(Sort.Direction.ASC, NEXT_ATTEMPT_DATE))
+                .limit(SCAN_BATCH_SIZE);
+
+        mongoOperations.find(query, PendingChecksum.class)
+                .forEach(pendingChecksum -> execute(pendingChecksum.getTusId(), Paths.get(pendingChecksum.getPath()), null));
+    }
+
+    /**
+     * Records the pending checksums of the files that have been waiting for their checksum since an earlier version
+     * of the service, which did not record them. The files are read page by page and only their IDs and paths are loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recordPendingChecksums() {
+        String collectionName = mongoOperations.getCollectionName(File.class);
+        int recordedCount = 0;
+        Object lastId = null;
+        List<DBObject> documents;
+        do {
+            Criteria criteria = Criteria.where(STATUS).is(FileStatus.READY_FOR_CHECKSUM);
+            if (lastId != null) {
+                criteria = criteria.and(ID).gt(lastId);
+            }
+            Query query = Query.query(criteria).with(new Sort(Sort.Direction.ASC, ID)).limit(SCAN_BATCH_SIZE);
+            query.fields().include(GENERATED_TUS_ID).include(TARGET_PATH);
+
+            documents = mongoOperations.find(query, DBObject.class, collectionName);
+            for (DBObject document : documents) {
+                lastId = document.get(ID);
+                WriteResult writeResult =
+                        recordPendingChecksum((String) document.get(GENERATED_TUS_ID), (String) document.get(TARGET_PATH),
+                                null, false);
+                if (writeResult.getUpsertedId() != null) {
+                    recordedCount++;
+                }
+            }
+        } while (documents.size() == SCAN_BATCH_SIZE);
+
+        LOGGER.info("Recorded the pending checksums of {} files waiting for their checksum.", recordedCount);
+    }
+
+    /**
+     * Records the pending checksum of the given file, unless it already has one.
+     */
+    private WriteResult recordPendingChecksum(String tusId, String path, String fingerprint,
+                                              boolean validationDeferred) {
+        Update update = new Update()
+                .setOnInsert(PATH, path)
+                .setOnInsert(VALIDATION_DEFERRED, validationDeferred)
+                .setOnInsert(NEXT_ATTEMPT_DATE, LocalDateTime.now());
+        if (fingerprint != null) {
+            update.setOnInsert(FINGERPRINT, fingerprint);
+        }
+
+        return mongoOperations.upsert(Query.query(Criteria.where(ID).is(tusId)), update, PendingChecksum.class);
+    }
+
+    private void execute(String tusId, Path path, DetectedFileType fileType) {
+        if (!checksumsInProgress.add(tusId)) {
+            return;
+        }
+
+        try {
+            checksumExecutor.execute(() -> {
+                try {
+                    process(tusId, path, fileType);
+                } finally {
+                    checksumsInProgress.remove(tusId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            checksumsInProgress.remove(tusId);
+            LOGGER.warn("The checksum workers are busy, the file of upload: {} is going to be processed by a later scan.", tusId);
+        }
+    }
+
+    /**
+     * Processes the given file, if its pending checksum can be claimed by this instance.
+     * The pending checksum is removed when the file has been processed, otherwise it is retried later.
+     * The deferred content validation of a file that is not a duplicate is requested before the pending checksum is removed.
+     *
+     * @param fileType the detected type of the file, or null if it has to be read from the file document
+     */
+    private void process(String tusId, Path path, DetectedFileType fileType) {
+        PendingChecksum pendingChecksum = claim(tusId);
+        if (pendingChecksum == null) {
+            return;
+        }
+
+        try {
+            boolean duplicate = processAndRecordResults(pendingChecksum, path,
+                    fileType != null ? fileType : pendingFileType(tusId, path));
+            if (pendingChecksum.isValidationDeferred() && !duplicate) {
+                eventPublisher.publishEvent(new DeferredContentValidationEvent(tusId));
+            }
+            mongoOperations.remove(Query.query(Criteria.where(ID).is(tusId)), PendingChecksum.class);
+        } catch (IOException | RuntimeException e) {
+            scheduleRetry(pendingChecksum, e);
+        }
+    }
+
+    /**
+     * Leases the pending checksum of the given upload to this instance, unless it has failed or it is leased by another worker.
+     *
+     * @return the claimed pending checksum or null, if it could not be claimed
+     */
+    private PendingChecksum claim(String tusId) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where(ID).is(tusId)
+                .and(FAILED).ne(true)
+                .orOperator(Criteria.where(LEASE_EXPIRY_DATE).is(null), Criteria.where(LEASE_EXPIRY_DATE).lte(now)));
+        Update update = new Update()
+                .set(OWNER, serviceInstance.getId())
+                .set(LEASE_EXPIRY_DATE, now.plusNanos(leaseDuration * 1_000_000));
+
+        PendingChecksum pendingChecksum = mongoOperations.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), PendingChecksum.class);
+        if (pendingChecksum == null) {
+            LOGGER.debug("The pending checksum of upload: {} is done, failed or leased by another worker.", tusId);
+        }
+
+        return pendingChecksum;
+    }
+
+    private void scheduleRetry(PendingChecksum pendingChecksum, Exception cause) {
+        int attempts = pendingChecksum.getAttempts() + 1;
+
+        Update update = new Update()
+                .set(ATTEMPTS, attempts)
+                .set(LAST_ERROR, cause.getMessage())
+                .unset(OWNER)
+                .unset(LEASE_EXPIRY_DATE);
+
+        if (attempts >= maxAttempts) {
+            LOGGER.error("Could not process the file: {} after {} attempts. Error message: {}",
+                    pendingChecksum.getPath(), attempts, cause.getMessage());
+            update.set(FAILED, true);
+        } else {
+            long delay = retryDelay << Math.min(attempts - 1, MAX_RETRY_DELAY_SHIFT);
+            LOGGER.warn("Could not process the file: {}, retrying in {} ms. Error message: {}",
+                    pendingChecksum.getPath(), delay, cause.getMessage());
+            update.set(NEXT_ATTEMPT_DATE, LocalDateTime.now().plusNanos(delay * 1_000_000));
+        }
+
+        mongoOperations.updateFirst(Query.query(Criteria.where(ID).is(pendingChecksum.getTusId())), update, PendingChecksum.class);
+    }
+
+    /**
+     * Calculates the MD5, SHA-256 and CRC32C checksums of the given file in one read pass.
+     *
+     * @param path the path of the file
+     * @return the checksums of the file
+     * @throws IOException if the file could not be read
+     */
+    public FileChecksums calculate(Path path) throws IOException {
+        ChecksumConsumer checksumConsumer = new ChecksumConsumer();
+        FileProcessingResult result;
+        try (IoPermit permit = ioScheduler.acquire(path, IoClass.PROCESSING)) {
+            result = fileProcessingPipeline.process(path, Collections.singletonList(checksumConsumer), permit);
+        }
+        if (result.hasFailed(ChecksumConsumer.NAME)) {
+            throw new IOException(result.getErrors().get(ChecksumConsumer.NAME));
+        }
+
+        return checksumConsumer.getChecksums();
+    }
+
+    /**
+     * Reads the given file once for all of its consumers and stores their results on the file document.
+     * The results are stored only if the checksums could be calculated, the failures of the other consumers
+     * are stored in the {@code processingErrors} field.
+     * The fingerprint of the file is calculated first, unless it has been stored with the pending checksum
+     * together with the result of its lookup. If it matches the fingerprint of an already processed file,
+     * the checksums are completed before the other consumers run, from the running checksum of the upload
+     * or from the whole file, so a duplicate is linked to the processed file without the rest of the processing.
+     *
+     * @return true if the file is a duplicate, that has been linked to the processed file
+     * @throws IOException if the checksums of the file could not be calculated
+     */
+    private boolean processAndRecordResults(PendingChecksum pendingChecksum, Path path, DetectedFileType fileType)
+            throws IOException {
+        long startTime = System.nanoTime();
+        String tusId = pendingChecksum.getTusId();
+        String fingerprint = pendingChecksum.getFingerprint();
+        boolean mayBeDuplicate;
+        if (fingerprint != null) {
+            mayBeDuplicate = pendingChecksum.isValidationDeferred();
+        } else {
+            fingerprint = fingerprint(tusId, path);
+            mayBeDuplicate = mayBeDuplicate(fingerprint);
+        }
+
+        ChecksumCalculator checksum = loadRunningChecksum(tusId, path);
+        if (checksum == null) {
+            checksum = new MessageDigestChecksum();
+        }
+        if (mayBeDuplicate) {
+            try (IoPermit permit = ioScheduler.acquire(path, IoClass.PROCESSING)) {
+                read(path, checksum, Files.size(path), permit);
+            }
+            Map<String, Object> reusedResults =
+                    contentIndexService.linkToIndexedContent(checksum.getChecksums().getSha256(), path);
+            if (reusedResults != null) {
+                if (fileUpdateService.recordProcessingResults(tusId, reusedResults)) {
+                    LOGGER.info("The results of the file: {} have been reused from a file of the same content.", path);
+                }
+                discardRunningChecksum(tusId);
+                return true;
+            }
+        }
+
+        List<FileConsumer> consumers = new ArrayList<>();
+        consumers.add(new ChecksumConsumer(checksum));
+        consumers.add(new FileStatisticsCollector());
+        formatValidators.validatorFor(fileType).ifPresent(consumers::add);
+        fileIndexers.indexerFor(fileType, path).ifPresent(consumers::add);
+
+        FileProcessingResult result;
+        try (IoPermit permit = ioScheduler.acquire(path, IoClass.PROCESSING)) {
+            result = fileProcessingPipeline.process(path, consumers, permit);
+        }
+        if (result.hasFailed(ChecksumConsumer.NAME)) {
+            throw new IOException("Could not calculate the checksums: " + result.getErrors().get(ChecksumConsumer.NAME));
+        }
+
+        Map<String, Object> fields = new LinkedHashMap<>(result.getFields());
+        if (!result.getErrors().isEmpty()) {
+            fields.put(PROCESSING_ERRORS, result.getErrors());
+        }
+
+        if (fileUpdateService.recordProcessingResults(tusId, fields)) {
+            LOGGER.info("The file: {} has been processed by {} consumers in {} ms. MD5: {}",
+                    path, consumers.size(), (System.nanoTime() - startTime) / 1_000_000,
+                    result.getFields().get(ChecksumConsumer.MD5_CHECKSUM));
+            if (result.getErrors().isEmpty() && fingerprint != null) {
+                contentIndexService.register((String) result.getFields().get(ChecksumConsumer.SHA256_CHECKSUM),
+                        fingerprint, path, result.getFields());
+            }
+        } else {
+            LOGGER.debug("The file: {} is not waiting for its checksum anymore.", path);
+        }
+        discardRunningChecksum(tusId);
+        return false;
+    }
+
+    /**
+     * Calculates the fingerprint of the given file and stores it on its document.
+     *
+     * @return the fingerprint of the file or null, if it could not be calculated
+     */
+    private String fingerprint(String tusId, Path path) {
+        try {
+            String fingerprint = fileFingerprinter.fingerprint(path);
+            fileUpdateService.recordFingerprint(tusId, fingerprint);
+            return fingerprint;
+        } catch (IOException e) {
+            LOGGER.warn("Could not calculate the fingerprint of the file: {}. Error message: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private DetectedFileType pendingFileType(String tusId, Path path) {
+        DetectedFileType fileType = fileUpdateService.findFileType(tusId);
+        if (fileType == null) {
+            fileType = fileTypeDetector.detect(path);
+            fileUpdateService.recordFileType(tusId, fileType);
+        }
+        return fileType;
+    }
+
+    /**
+     * Loads the stored running checksum of an upload, so the checksums are not calculated again
+     * over the bytes it has already covered.
+     *
+     * @return the running checksum or null, if the upload has no usable running checksum
+     */
+    private RunningChecksum loadRunningChecksum(String tusId, Path path) throws IOException {
+        synchronized (runningChecksumLock(tusId)) {
+            RunningChecksum runningChecksum = runningChecksumStore.load(tusId);
+            if (runningChecksum == null) {
+                return null;
+            }
+
+            if (runningChecksum.getOffset() > Files.size(path)) {
+                LOGGER.warn("The running checksum of the file: {} is ahead of its size, calculating it again.", path);
+                return null;
+            }
+
+            LOGGER.debug("Completing the running checksum of the file: {} from offset: {}", path, runningChecksum.getOffset());
+            return runningChecksum;
+        }
+    }
+
+    private void advanceToRequestedOffsets(String tusId) {
+        do {
+            try {
+                Long offset;
+                while ((offset = requestedOffsets.remove(tusId)) != null) {
+                    advanceRunningChecksum(tusId, offset);
+                }
+            } finally {
+                advancesInProgress.remove(tusId);
+            }
+        } while (requestedOffsets.containsKey(tusId) && advancesInProgress.add(tusId));
+    }
+
+    /**
+     * Advances the running checksum of an upload as a processing operation of the {@link IoScheduler},
+     * so the reads of many uploads in progress do not hold back the interactive operations on the volume.
+     * The permit is acquired before the lock of the running checksum, so a waiting advance does not hold the lock.
+     */
+    private void advanceRunningChecksum(String tusId, long offset) {
+        Path uploadFilePath = Paths.get(storageVolumes.locate(tusId + BIN_FILE_EXTENSION_BY_TUS));
+
+        try (IoPermit permit = ioScheduler.acquire(uploadFilePath, IoClass.PROCESSING)) {
+            synchronized (runningChecksumLock(tusId)) {
+                RunningChecksum runningChecksum = runningChecksumStore.load(tusId);
+                if (runningChecksum == null) {
+                    runningChecksum = new RunningChecksum();
+                }
+                if (runningChecksum.getOffset() >= offset) {
+                    return;
+                }
+
+                read(uploadFilePath, runningChecksum, offset, permit);
+                runningChecksumStore.store(tusId, runningChecksum);
+            }
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("The upload: {} has already been moved or terminated.", tusId);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not advance the running checksum of upload: {}. Error message: {}", tusId, e.getMessage());
+        }
+    }
+
+    /**
+     * Advances the given checksum over the bytes of the given file up to the given offset.
+     */
+    private void read(Path path, ChecksumCalculator checksum, long endOffset, IoPermit permit) throws IOException {
+        ByteBuffer buffer = readBuffer.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (checksum.getOffset() < endOffset) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), endOffset - checksum.getOffset()));
+                if (channel.read(buffer, checksum.getOffset()) < 0) {
+                    break;
+                }
+
+                buffer.flip();
+                permit.throttle(buffer.remaining());
+                checksum.update(buffer);
+            }
+        }
+    }
+
+    private Object runningChecksumLock(String tusId) {
+        return runningChecksumLocks.computeIfAbsent(tusId, id -> new Object());
+    }
+}
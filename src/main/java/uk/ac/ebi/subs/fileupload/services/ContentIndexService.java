@@ -0,0 +1,240 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.model.ContentIndexEntry;
+import uk.ac.ebi.subs.fileupload.services.indexing.FileIndexer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class deduplicates the uploaded files by their content.
+ * The first processed file of every content is stored in the content index by its SHA-256 checksum,
+ * a later upload of the same content is replaced by a hard link to that file and gets its processing results,
+ * so the same content is neither stored nor processed twice.
+ * The entries are indexed by the cheap fingerprint of their files as well, so a file that has no entry
+ * with its fingerprint is known to be new before its full checksum is calculated.
+ * An entry records the identity, size and modification time of its file, and it is only trusted while they match,
+ * so a file replaced or modified at the indexed path is never linked to. A deleted file is removed from the index.
+ */
+@Service
+public class ContentIndexService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentIndexService.class);
+
+    private static final String ID = "_id";
+    private static final String PATH = "path";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String DUPLICATE_OF = "duplicateOf";
+    private static final String LINK_FILE_EXTENSION = ".link";
+
+    private MongoOperations mongoOperations;
+    private boolean enabled;
+
+    public ContentIndexService(MongoOperations mongoOperations,
+                               @Value("${file-upload.deduplication.enabled:true}") boolean enabled) {
+        this.mongoOperations = mongoOperations;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param fingerprint the fingerprint of a file calculated by the {@link FileFingerprinter}
+     * @return true if an indexed file has the same fingerprint, so the file may be a duplicate
+     */
+    public boolean hasCandidates(String fingerprint) {
+        return enabled && mongoOperations.exists(Query.query(Criteria.where(FINGERPRINT).is(fingerprint)),
+                ContentIndexEntry.class);
+    }
+
+    /**
+     * Replaces the given file with a hard link to the indexed file of the same content, if there is one.
+     * The index of the indexed file is linked beside the given file as well.
+     *
+     * @param sha256 the SHA-256 checksum of the file
+     * @param path the path of the file
+     * @return the processing results of the indexed file, with the {@code duplicateOf} field pointing to it,
+     * or null if the content is not indexed or the file could not be linked to it
+     */
+    public Map<String, Object> linkToIndexedContent(String sha256, Path path) {
+        if (!enabled) {
+            return null;
+        }
+
+        ContentIndexEntry entry = mongoOperations.findById(sha256, ContentIndexEntry.class);
+        if (entry == null) {
+            return null;
+        }
+
+        Path indexedPath = Paths.get(entry.getPath());
+        try {
+            if (!isUnchanged(indexedPath, entry)) {
+                LOGGER.info("The indexed file: {} has been moved or changed, removing it from the content index.", indexedPath);
+                mongoOperations.remove(Query.query(Criteria.where(ID).is(sha256).and(PATH).is(entry.getPath())),
+                        ContentIndexEntry.class);
+                return null;
+            }
+            if (Files.isSameFile(indexedPath, path) || Files.size(path) != entry.getSize()) {
+                return null;
+            }
+
+            link(indexedPath, path);
+            Map<String, Object> results = flatten(entry.getResults());
+            linkIndex(indexedPath, path, results);
+            results.put(DUPLICATE_OF, entry.getPath());
+
+            LOGGER.info("The file: {} has the same content as: {}, it has been replaced by a hard link.", path, indexedPath);
+            return results;
+        } catch (IOException e) {
+            LOGGER.warn("Could not link the file: {} to the file of the same content: {}. Error message: {}",
+                    path, indexedPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given file in the content index, unless a file of the same content has been stored already.
+     *
+     * @param sha256 the SHA-256 checksum of the file
+     * @param fingerprint the fingerprint of the file
+     * @param path the path of the file
+     * @param results the processing results of the file, by the paths of their fields
+     */
+    public void register(String sha256, String fingerprint, Path path, Map<String, Object> results) {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            mongoOperations.insert(new ContentIndexEntry(sha256, fingerprint, path.toString(), attributes.size(),
+                    fileKey(attributes), attributes.lastModifiedTime().toMillis(), nest(results)));
+        } catch (DuplicateKeyException e) {
+            LOGGER.debug("The content of the file: {} has already been indexed.", path);
+        } catch (IOException e) {
+            LOGGER.warn("Could not add the file: {} to the content index. Error message: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the entries of the given file from the content index, so no upload is linked to it after it has been deleted.
+     *
+     * @param path the path of the deleted file
+     */
+    public void unregister(Path path) {
+        if (!enabled) {
+            return;
+        }
+
+        mongoOperations.remove(Query.query(Criteria.where(PATH).is(path.toString())), ContentIndexEntry.class);
+    }
+
+    /**
+     * @return true if the file at the given path is still the indexed file with the same content
+     */
+    private static boolean isUnchanged(Path indexedPath, ContentIndexEntry entry) throws IOException {
+        if (Files.notExists(indexedPath)) {
+            return false;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(indexedPath, BasicFileAttributes.class);
+        String fileKey = fileKey(attributes);
+        return attributes.size() == entry.getSize()
+                && attributes.lastModifiedTime().toMillis() == entry.getLastModifiedTime()
+                && fileKey != null && fileKey.equals(entry.getFileKey());
+    }
+
+    /**
+     * @return the identity of the file on its file system or null, if the file system does not provide one
+     */
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+
+    /**
+     * Links the index of the indexed file beside the given file under the same extension,
+     * or drops the index from the results, if it can not be linked.
+     */
+    private void linkIndex(Path indexedPath, Path path, Map<String, Object> results) {
+        Object indexPath = results.get(FileIndexer.INDEX_PATH);
+        if (!(indexPath instanceof String) || !((String) indexPath).startsWith(indexedPath.toString())) {
+            return;
+        }
+
+        String extension = ((String) indexPath).substring(indexedPath.toString().length());
+        Path linkedIndexPath = path.resolveSibling(path.getFileName() + extension);
+        try {
+            link(Paths.get((String) indexPath), linkedIndexPath);
+            results.put(FileIndexer.INDEX_PATH, linkedIndexPath.toString());
+        } catch (IOException e) {
+            LOGGER.warn("Could not link the index of the file: {}. Error message: {}", path, e.getMessage());
+            results.keySet().removeIf(field -> field.startsWith("index."));
+        }
+    }
+
+    /**
+     * Creates the hard link beside the file it replaces and renames it over the file,
+     * so the file is never missing from its path.
+     */
+    private static void link(Path existingPath, Path path) throws IOException {
+        Path linkPath = path.resolveSibling(path.getFileName() + LINK_FILE_EXTENSION);
+        Files.deleteIfExists(linkPath);
+        Files.createLink(linkPath, existingPath);
+        try {
+            Files.move(linkPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(linkPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Turns the dotted field paths of the given results into nested maps.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> nest(Map<String, Object> results) {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        results.forEach((field, value) -> {
+            Map<String, Object> parent = nested;
+            String[] names = field.split("\\.");
+            for (int i = 0; i < names.length - 1; i++) {
+                parent = (Map<String, Object>) parent.computeIfAbsent(names[i], name -> new LinkedHashMap<>());
+            }
+            parent.put(names[names.length - 1], value);
+        });
+        return nested;
+    }
+
+    /**
+     * Turns the given nested maps back into the dotted field paths of the results.
+     */
+    static Map<String, Object> flatten(Map<String, Object> nested) {
+        Map<String, Object> results = new LinkedHashMap<>();
+        flatten("", nested, results);
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(String prefix, Map<String, Object> nested, Map<String, Object> results) {
+        nested.forEach((name, value) -> {
+            if (value instanceof Map) {
+                flatten(prefix + name + ".", (Map<String, Object>) value, results);
+            } else {
+                results.put(prefix + name, value);
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import lombok.Value;
+
+/**
+ * Published by the {@link ChecksumService} when a file, whose content validation has been deferred
+ * until it was known whether it is a duplicate, turned out to have new content and has to be validated.
+ */
+@Value
+public class DeferredContentValidationEvent {
+
+    private String tusId;
+}
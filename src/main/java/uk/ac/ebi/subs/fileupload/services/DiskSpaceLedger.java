@@ -0,0 +1,375 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolume;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * This class keeps account of the disk space promised to the accepted uploads on each of the {@link StorageVolumes}.
+ * The space of an upload is reserved when its upload request is checked, so concurrent requests can not be accepted
+ * for the same free space, and it is released as the bytes of the upload land on the disk and when it is finished
+ * or terminated. The usable space of the volumes is sampled periodically instead of being queried for every request.
+ *
+ * <p>An upload is placed on the volume with the fewest uploads being written to it, among the volumes with enough
+ * available space, so the write load is spread over the disks. A reservation made for an upload request is pending
+ * until the upload is created, a pending reservation that is never bound to an upload expires after a timeout.
+ * A bound reservation whose upload makes no progress for a longer timeout expires as well, so an abandoned upload
+ * does not hold its space forever. The reservations of the uploads in progress of this service instance are rebuilt
+ * from their file documents on startup, the uploads of the other instances are accounted for by those instances.</p>
+ */
+@Service
+public class DiskSpaceLedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskSpaceLedger.class);
+
+    private static final String STATUS = "status";
+    private static final String GENERATED_TUS_ID = "generatedTusId";
+    private static final String TOTAL_SIZE = "totalSize";
+    private static final String UPLOADED_SIZE = "uploadedSize";
+    private static final String VOLUME = "volume";
+    private static final String INSTANCE = "instance";
+
+    private MongoOperations mongoOperations;
+    private StorageVolumes storageVolumes;
+    private ServiceInstance serviceInstance;
+    private long pendingTimeout;
+    private long boundTimeout;
+
+    private final Map<String, Reservation> reservations = new HashMap<>();
+    private final Map<String, VolumeAccount> volumeAccounts = new LinkedHashMap<>();
+
+    public DiskSpaceLedger(MongoOperations mongoOperations, StorageVolumes storageVolumes,
+                           ServiceInstance serviceInstance,
+                           @Value("${file-upload.diskSpace.pendingTimeout:600000}") long pendingTimeout,
+                           @Value("${file-upload.diskSpace.boundTimeout:86400000}") long boundTimeout) {
+        this.mongoOperations = mongoOperations;
+        this.storageVolumes = storageVolumes;
+        this.serviceInstance = serviceInstance;
+        this.pendingTimeout = pendingTimeout;
+        this.boundTimeout = boundTimeout;
+        for (StorageVolume volume : storageVolumes.getVolumes()) {
+            volumeAccounts.put(volume.getName(), new VolumeAccount(volume.getUsableSpace()));
+        }
+    }
+
+    /**
+     * Samples the usable space of the storage volumes and drops the expired reservations.
+     */
+    @Scheduled(fixedDelayString = "${file-upload.diskSpace.sampleInterval:5000}")
+    public void sampleUsableSpace() {
+        for (StorageVolume volume : storageVolumes.getVolumes()) {
+            long usableSpace = volume.getUsableSpace();
+            synchronized (this) {
+                volumeAccounts.get(volume.getName()).usableSpace = usableSpace;
+            }
+        }
+        expireReservations();
+    }
+
+    /**
+     * Reserves the space of the uploads of this service instance that were in progress before the last restart
+     * on their recorded volumes. The uploads recorded before the instances were recorded on them are reserved as well.
+     * The reservations made since the startup are kept.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Query query = Query.query(Criteria.where(STATUS).in(FileStatus.INITIALIZED, FileStatus.UPLOADING)
+                .orOperator(Criteria.where(INSTANCE).is(serviceInstance.getId()),
+                        Criteria.where(INSTANCE).exists(false)));
+        query.fields().include(GENERATED_TUS_ID).include(TOTAL_SIZE).include(UPLOADED_SIZE).include(VOLUME);
+
+        int rebuiltCount = 0;
+        for (DBObject document : mongoOperations.find(query, DBObject.class, mongoOperations.getCollectionName(File.class))) {
+            String tusId = (String) document.get(GENERATED_TUS_ID);
+            String volumeName;
+            try {
+                volumeName = storageVolumes.getVolume((String) document.get(VOLUME)).getName();
+            } catch (IllegalStateException e) {
+                LOGGER.warn("Could not rebuild the disk space reservation of upload: {}. Error message: {}", tusId, e.getMessage());
+                continue;
+            }
+
+            synchronized (this) {
+                if (!reservations.containsKey(tusId)) {
+                    add(tusId, Reservation.bound(volumeName, longValue(document.get(TOTAL_SIZE)), boundExpiryNanos()));
+                    progress(tusId, longValue(document.get(UPLOADED_SIZE)));
+                    rebuiltCount++;
+                }
+            }
+        }
+
+        LOGGER.info("Rebuilt the disk space reservations of {} uploads in progress, {} bytes are reserved.",
+                rebuiltCount, getReservedSpace());
+    }
+
+    /**
+     * Places an upload request on the least loaded volume with enough available space and reserves its space there.
+     * A previous reservation with the same key is replaced.
+     *
+     * @param key identifies the upload request, the reservation can be bound to the upload under this key
+     * @param size the size of the upload
+     * @return the name of the volume the space has been reserved on, or null if no volume has enough space
+     */
+    public synchronized String reserve(String key, long size) {
+        String volumeName = place(size, reservations.get(key));
+        if (volumeName != null) {
+            replace(key, volumeName, size);
+        }
+        return volumeName;
+    }
+
+    /**
+     * Reserves the space of an upload request on the default volume, for the uploads that can not be placed,
+     * like the ones stored by the tusd server in its own directory.
+     *
+     * @return true if the space has been reserved, false if there is not enough space
+     */
+    public synchronized boolean reserveOnDefaultVolume(String key, long size) {
+        String volumeName = storageVolumes.getDefaultVolume().getName();
+        if (availableSpace(volumeName, reservations.get(key)) <= size) {
+            return false;
+        }
+
+        replace(key, volumeName, size);
+        return true;
+    }
+
+    /**
+     * Chooses a volume for a file that is moved onto the storage straight away, without reserving its space.
+     *
+     * @param size the size of the file
+     * @return the name of the least loaded volume with enough available space, or null if there is none
+     */
+    public synchronized String place(long size) {
+        return place(size, null);
+    }
+
+    /**
+     * Moves the pending reservation of an upload request to the created upload, so it only expires
+     * when the upload makes no progress for the bound timeout.
+     * The upload has been accepted already, so it is reserved even if there was no pending reservation for it.
+     *
+     * @param key the key of the pending reservation
+     * @param tusId the ID of the created upload
+     * @param size the size of the upload
+     * @param volumeName the volume the upload is stored on, or null if it is the volume of the pending reservation
+     * @return the name of the volume of the upload
+     */
+    public synchronized String bind(String key, String tusId, long size, String volumeName) {
+        Reservation pending = reservations.get(key);
+        if (volumeName == null) {
+            volumeName = pending != null ? pending.volumeName : storageVolumes.getDefaultVolume().getName();
+        }
+
+        remove(key);
+        remove(tusId);
+        add(tusId, Reservation.bound(volumeName, size, boundExpiryNanos()));
+        return volumeName;
+    }
+
+    /**
+     * Releases the part of the reservation of an upload that has landed on the disk and extends its expiry.
+     * The space of an upload whose reservation has expired is not reserved again.
+     *
+     * @param tusId the ID of the upload
+     * @param uploadedSize the number of bytes of the upload received so far
+     */
+    public synchronized void progress(String tusId, long uploadedSize) {
+        Reservation reservation = reservations.get(tusId);
+        if (reservation == null) {
+            return;
+        }
+
+        long outstanding = Math.max(0, reservation.size - uploadedSize);
+        if (outstanding < reservation.outstanding) {
+            VolumeAccount account = volumeAccounts.get(reservation.volumeName);
+            account.reservedSpace -= reservation.outstanding - outstanding;
+            if (outstanding == 0) {
+                account.activeUploads--;
+            }
+            reservation.outstanding = outstanding;
+            reservation.expiryNanos = boundExpiryNanos();
+        }
+    }
+
+    /**
+     * Releases the whole reservation of a finished or terminated upload, or of a rejected upload request.
+     */
+    public synchronized void release(String key) {
+        remove(key);
+    }
+
+    /**
+     * @return the name of the volume of the given reservation, or null if there is no such reservation
+     */
+    public synchronized String getVolumeName(String key) {
+        Reservation reservation = reservations.get(key);
+        return reservation == null ? null : reservation.volumeName;
+    }
+
+    /**
+     * @return the sampled usable space of the given volume minus the space reserved for the uploads on it
+     */
+    public synchronized long getAvailableSpace(String volumeName) {
+        return availableSpace(volumeName, null);
+    }
+
+    public synchronized long getReservedSpace() {
+        return volumeAccounts.values().stream().mapToLong(account -> account.reservedSpace).sum();
+    }
+
+    /**
+     * Drops the pending reservations that have not been bound, and the bound reservations
+     * whose uploads have not made progress, within their timeouts.
+     */
+    synchronized void expireReservations() {
+        long now = System.nanoTime();
+        List<String> expiredKeys = reservations.entrySet().stream()
+                .filter(entry -> (entry.getValue().pending || entry.getValue().outstanding > 0)
+                        && now - entry.getValue().expiryNanos >= 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        expiredKeys.forEach(key -> {
+            if (reservations.get(key).pending) {
+                LOGGER.debug("The pending disk space reservation: {} has expired.", key);
+            } else {
+                LOGGER.info("The upload: {} has made no progress for {} ms, its disk space reservation has expired.",
+                        key, boundTimeout);
+            }
+            remove(key);
+        });
+    }
+
+    private long boundExpiryNanos() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(boundTimeout);
+    }
+
+    /**
+     * @param replaced the reservation that is going to be replaced, its space is available for the new one
+     */
+    private String place(long size, Reservation replaced) {
+        String placement = null;
+        for (String volumeName : volumeAccounts.keySet()) {
+            long availableSpace = availableSpace(volumeName, replaced);
+            if (availableSpace <= size) {
+                continue;
+            }
+
+            int activeUploads = activeUploads(volumeName, replaced);
+            if (placement == null || activeUploads < activeUploads(placement, replaced)
+                    || activeUploads == activeUploads(placement, replaced)
+                    && availableSpace > availableSpace(placement, replaced)) {
+                placement = volumeName;
+            }
+        }
+        return placement;
+    }
+
+    private int activeUploads(String volumeName, Reservation replaced) {
+        int activeUploads = volumeAccounts.get(volumeName).activeUploads;
+        if (replaced != null && replaced.volumeName.equals(volumeName) && replaced.outstanding > 0) {
+            activeUploads--;
+        }
+        return activeUploads;
+    }
+
+    private long availableSpace(String volumeName, Reservation replaced) {
+        VolumeAccount account = volumeAccounts.get(volumeName);
+        long availableSpace = account.usableSpace - account.reservedSpace;
+        if (replaced != null && replaced.volumeName.equals(volumeName)) {
+            availableSpace += replaced.outstanding;
+        }
+        return availableSpace;
+    }
+
+    private void replace(String key, String volumeName, long size) {
+        remove(key);
+        add(key, Reservation.pending(volumeName, size, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pendingTimeout)));
+    }
+
+    private void add(String key, Reservation reservation) {
+        reservations.put(key, reservation);
+        VolumeAccount account = volumeAccounts.get(reservation.volumeName);
+        account.reservedSpace += reservation.outstanding;
+        if (reservation.outstanding > 0) {
+            account.activeUploads++;
+        }
+    }
+
+    private void remove(String key) {
+        Reservation reservation = reservations.remove(key);
+        if (reservation != null) {
+            VolumeAccount account = volumeAccounts.get(reservation.volumeName);
+            account.reservedSpace -= reservation.outstanding;
+            if (reservation.outstanding > 0) {
+                account.activeUploads--;
+            }
+        }
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    /**
+     * The sampled usable space of a volume, the space reserved on it and the number of uploads still written to it.
+     */
+    private static final class VolumeAccount {
+
+        private long usableSpace;
+        private long reservedSpace;
+        private int activeUploads;
+
+        private VolumeAccount(long usableSpace) {
+            this.usableSpace = usableSpace;
+        }
+    }
+
+    /**
+     * The space reserved for an upload on a volume and the part of it that has not landed on the disk yet.
+     */
+    private static final class Reservation {
+
+        private final String volumeName;
+        private final long size;
+        private final boolean pending;
+        private long expiryNanos;
+        private long outstanding;
+
+        private Reservation(String volumeName, long size, boolean pending, long expiryNanos) {
+            this.volumeName = volumeName;
+            this.size = size;
+            this.pending = pending;
+            this.expiryNanos = expiryNanos;
+            this.outstanding = size;
+        }
+
+        static Reservation pending(String volumeName, long size, long expiryNanos) {
+            return new Reservation(volumeName, size, true, expiryNanos);
+        }
+
+        static Reservation bound(String volumeName, long size, long expiryNanos) {
+            return new Reservation(volumeName, size, false, expiryNanos);
+        }
+    }
+}
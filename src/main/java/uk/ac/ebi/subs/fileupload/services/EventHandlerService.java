@@ -1,29 +1,57 @@
 package uk.ac.ebi.subs.fileupload.services;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
 import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
 import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
 import uk.ac.ebi.subs.fileupload.errors.FileDeletionException;
 import uk.ac.ebi.subs.fileupload.listeners.FileDeletedMessage;
-import uk.ac.ebi.subs.fileupload.model.ChecksumGenerationMessage;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
 import uk.ac.ebi.subs.fileupload.model.FileContentValidationMessage;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
-import uk.ac.ebi.subs.fileupload.util.FileType;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJob;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobRunner;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobType;
+import uk.ac.ebi.subs.fileupload.services.outbox.MessageOutbox;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
 import uk.ac.ebi.subs.messaging.Exchanges;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
+import uk.ac.ebi.subs.validator.data.ValidationResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * This class is responsible for handling the various events published by the tusd server.
@@ -33,34 +61,77 @@ public class EventHandlerService {
 
     private ValidationService validationService;
     private FileRepository fileRepository;
-    private RabbitMessagingTemplate rabbitMessagingTemplate;
-
-    @Value("${file-upload.sourceBasePath}")
-    private String sourcePath;
+    private MessageOutbox messageOutbox;
+    private FileUpdateService fileUpdateService;
+    private UploadProgressBuffer uploadProgressBuffer;
+    private ChecksumService checksumService;
+    private ContentIndexService contentIndexService;
+    private LocalJobRunner localJobRunner;
+    private ProcessingRouter processingRouter;
+    private FileTypeDetector fileTypeDetector;
+    private DiskSpaceLedger diskSpaceLedger;
+    private StorageVolumes storageVolumes;
+    private ServiceInstance serviceInstance;
+    private Executor preCreateCheckExecutor;
+
+    @Value("${file-upload.preCreateCheck.timeout:5000}")
+    private long preCreateCheckTimeout;
 
     @Value("${spring.profiles.active}")
     private String activeProfile;
 
-    @Value("${fileProcessing-listener.checksum-calculator.jobName}")
-    private String checksumCalculatorJobName;
     @Value("${fileProcessing-listener.content-validator.jobName}")
     private String contentValidatorJobName;
 
-    private static final String EVENT_FILE_CHECKSUM_GENERATION = "file.checksum.generation";
     private static final String EVENT_FILE_CONTENT_VALIDATION = "file.content.validation";
     private static final String SUBMISSION_EXCHANGE = "usi-1:submission-exchange";
 
     private static final String EVENT_ASSAYDATA_FILEREF_VALIDATION_BY_FILE_DELETION = "file.deleted.validation";
     private static final String SUBMISSION_ID_CANT_BE_NULL = "Submission ID can not be null.";
 
+    private static final String SERVER_TIMING_HEADER = "Server-Timing";
+    private static final String TOKEN_CHECK = "token";
+    private static final String DISK_SPACE_CHECK = "diskSpace";
+    private static final String SUBMISSION_CHECK = "submission";
+    private static final String DUPLICATED_FILE_CHECK = "duplicatedFile";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(EventHandlerService.class);
 
-    public EventHandlerService(ValidationService validationService, FileRepository fileRepository, RabbitMessagingTemplate rabbitMessagingTemplate) {
+    public EventHandlerService(ValidationService validationService, FileRepository fileRepository,
+                               MessageOutbox messageOutbox, FileUpdateService fileUpdateService,
+                               UploadProgressBuffer uploadProgressBuffer, ChecksumService checksumService,
+                               ContentIndexService contentIndexService, LocalJobRunner localJobRunner, ProcessingRouter processingRouter,
+                               FileTypeDetector fileTypeDetector, DiskSpaceLedger diskSpaceLedger,
+                               StorageVolumes storageVolumes, ServiceInstance serviceInstance,
+                               @Qualifier(ExecutorConfiguration.PRE_CREATE_CHECK_EXECUTOR) Executor preCreateCheckExecutor) {
         this.validationService = validationService;
         this.fileRepository = fileRepository;
-        this.rabbitMessagingTemplate = rabbitMessagingTemplate;
+        this.messageOutbox = messageOutbox;
+        this.fileUpdateService = fileUpdateService;
+        this.uploadProgressBuffer = uploadProgressBuffer;
+        this.checksumService = checksumService;
+        this.contentIndexService = contentIndexService;
+        this.localJobRunner = localJobRunner;
+        this.processingRouter = processingRouter;
+        this.fileTypeDetector = fileTypeDetector;
+        this.diskSpaceLedger = diskSpaceLedger;
+        this.storageVolumes = storageVolumes;
+        this.serviceInstance = serviceInstance;
+        this.preCreateCheckExecutor = preCreateCheckExecutor;
     }
 
+    /**
+     * Check the validity of the file upload request.
+     * After the metadata of the request has been validated, the disk space of the upload is reserved on the calling thread,
+     * then the signature of the JWT token, the state of the submission and the uniqueness of the filename
+     * within the submission are checked concurrently.
+     * The first failing check determines the response and the per-check timings are sent back in a Server-Timing header.
+     * The reservation is made before any other check runs, so it can always be released again, if the request is rejected,
+     * the storage volume chosen for an accepted upload is set on the given properties.
+     *
+     * @param tusFileInfo the properties of the file to upload
+     * @return response entity with OK HTTP status if everything is fine, otherwise other HTTP error status
+     */
     public ResponseEntity<Object> validateUploadRequest(TUSFileInfo tusFileInfo) {
         TUSFileInfo.MetaData fileMetadata = tusFileInfo.getMetadata();
 
@@ -70,15 +141,157 @@ public class EventHandlerService {
             return response;
         }
 
-        if (!isEnoughDiskSpaceExists(tusFileInfo.getSize())) {
-            return ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY,
-                    String.format(ErrorMessages.NOT_ENOUGH_DISKSPACE, tusFileInfo.getMetadata().getFilename()));
+        String jwtToken = fileMetadata.getJwtToken();
+        String submissionId = fileMetadata.getSubmissionID();
+        String filename = fileMetadata.getFilename();
+
+        Map<String, Supplier<ResponseEntity<Object>>> checks = new LinkedHashMap<>();
+        checks.put(TOKEN_CHECK, () -> {
+            validationService.verifyToken(jwtToken);
+            return new ResponseEntity<>(HttpStatus.OK);
+        });
+        checks.put(SUBMISSION_CHECK, () -> validationService.validateFileUploadRequest(jwtToken, submissionId));
+        checks.put(DUPLICATED_FILE_CHECK, () -> isFileDuplicated(filename, submissionId)
+                ? ErrorResponse.assemble(HttpStatus.CONFLICT, String.format(ErrorMessages.DUPLICATED_FILE_ERROR, filename, submissionId))
+                : new ResponseEntity<>(HttpStatus.OK));
+
+        String reservationKey = diskSpaceReservationKey(fileMetadata);
+        CheckResult diskSpaceCheck = CheckResult.execute(DISK_SPACE_CHECK, () -> reserveDiskSpace(tusFileInfo, reservationKey)
+                ? new ResponseEntity<>(HttpStatus.OK)
+                : ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY, String.format(ErrorMessages.NOT_ENOUGH_DISKSPACE, filename)));
+
+        try {
+            response = executeChecks(filename, diskSpaceCheck, checks);
+        } catch (RuntimeException e) {
+            diskSpaceLedger.release(reservationKey);
+            throw e;
+        }
+
+        if (response.getStatusCode().equals(HttpStatus.OK)) {
+            tusFileInfo.setVolume(diskSpaceLedger.getVolumeName(reservationKey));
+        } else {
+            diskSpaceLedger.release(reservationKey);
+        }
+
+        return response;
+    }
+
+    /**
+     * Runs the given checks concurrently, if the given, already executed first check has passed.
+     */
+    private ResponseEntity<Object> executeChecks(String filename, CheckResult firstCheck,
+                                                 Map<String, Supplier<ResponseEntity<Object>>> checks) {
+        StringJoiner serverTiming = new StringJoiner(", ");
+        serverTiming.add(firstCheck.toServerTiming());
+        if (firstCheck.getException() != null) {
+            throw firstCheck.getException();
+        }
+        if (!firstCheck.getResponse().getStatusCode().equals(HttpStatus.OK)) {
+            return withServerTiming(firstCheck.getResponse(), serverTiming);
+        }
+
+        CompletionService<CheckResult> completionService = new ExecutorCompletionService<>(preCreateCheckExecutor);
+        List<Future<CheckResult>> futures = new ArrayList<>();
+        checks.forEach((name, check) -> futures.add(completionService.submit(() -> CheckResult.execute(name, check))));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(preCreateCheckTimeout);
+        Set<String> unfinishedChecks = new LinkedHashSet<>(checks.keySet());
+        ResponseEntity<Object> response = new ResponseEntity<>(HttpStatus.OK);
+        RuntimeException checkException = null;
+
+        try {
+            while (!unfinishedChecks.isEmpty()) {
+                Future<CheckResult> completedCheck = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completedCheck == null) {
+                    response = ErrorResponse.assemble(HttpStatus.SERVICE_UNAVAILABLE,
+                            String.format(ErrorMessages.PRE_CREATE_CHECK_TIMEOUT, filename, preCreateCheckTimeout));
+                    checkException = null;
+                    break;
+                }
+
+                CheckResult checkResult = completedCheck.get();
+                unfinishedChecks.remove(checkResult.getName());
+                serverTiming.add(checkResult.toServerTiming());
+
+                if (checkResult.getException() != null) {
+                    if (checkException == null) {
+                        checkException = checkResult.getException();
+                    }
+                } else if (!checkResult.getResponse().getStatusCode().equals(HttpStatus.OK)) {
+                    response = checkResult.getResponse();
+                    checkException = null;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking the upload request of file: " + filename, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Checking the upload request of file: " + filename + " failed", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        unfinishedChecks.forEach(name -> serverTiming.add(name + ";desc=\"not finished\""));
+
+        LOGGER.debug("Timings of the upload request checks of file: {} are: {}", filename, serverTiming);
+
+        if (checkException != null) {
+            throw checkException;
         }
 
+        return withServerTiming(response, serverTiming);
+    }
+
+    private static ResponseEntity<Object> withServerTiming(ResponseEntity<Object> response, StringJoiner serverTiming) {
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(SERVER_TIMING_HEADER, serverTiming.toString())
+                .body(response.getBody());
+    }
+
+    /**
+     * Check the validity of a partial upload request of the tus concatenation extension.
+     * Partial uploads do not have a file document until their final upload is created, so their filename is not checked,
+     * but the JWT token and the submission of their metadata are, the same way as for a whole upload.
+     * The user of the token is recorded as the owner of the partial upload, so only the same user can assemble it
+     * into a final upload of the same submission.
+     * Their reservation is not bound to a file document, so it is held only until the pending reservations expire.
+     *
+     * @param tusFileInfo the properties of the partial upload
+     * @return response entity with OK HTTP status if everything is fine, otherwise other HTTP error status
+     */
+    public ResponseEntity<Object> validatePartialUploadRequest(TUSFileInfo tusFileInfo) {
+        TUSFileInfo.MetaData fileMetadata = tusFileInfo.getMetadata();
         String jwtToken = fileMetadata.getJwtToken();
         String submissionId = fileMetadata.getSubmissionID();
 
-        return validationService.validateFileUploadRequest(jwtToken, submissionId);
+        if (StringUtils.isEmpty(jwtToken)) {
+            return ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY, ErrorMessages.JWT_TOKEN_MANDATORY);
+        }
+        if (StringUtils.isEmpty(submissionId)) {
+            return ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY, ErrorMessages.SUBMISSION_ID_MANDATORY);
+        }
+
+        VerifiedToken verifiedToken = validationService.verifyToken(jwtToken);
+        ResponseEntity<Object> response = validationService.validateFileUploadRequest(jwtToken, submissionId);
+        if (!response.getStatusCode().equals(HttpStatus.OK)) {
+            return response;
+        }
+        tusFileInfo.setOwner(verifiedToken.getUsername());
+
+        String reservationKey = isStoredByTusd(tusFileInfo) ? UUID.randomUUID().toString() : tusFileInfo.getTusId();
+        if (!reserveDiskSpace(tusFileInfo, reservationKey)) {
+            return ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY,
+                    String.format(ErrorMessages.NOT_ENOUGH_DISKSPACE, tusFileInfo.getTusId()));
+        }
+        tusFileInfo.setVolume(diskSpaceLedger.getVolumeName(reservationKey));
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    public VerifiedToken verifyToken(String jwtToken) {
+        return validationService.verifyToken(jwtToken);
     }
 
     public boolean isFileDuplicated(String fileName, String submissionUUID) {
@@ -88,11 +301,48 @@ public class EventHandlerService {
         return existedFile != null;
     }
 
-    public boolean isEnoughDiskSpaceExists(long fileSize) {
-        java.io.File file = new java.io.File(sourcePath);
-        long usableSpace = file.getUsableSpace();
+    /**
+     * Reserves the disk space of an upload in the {@link DiskSpaceLedger}, if it is not promised to other uploads.
+     * The uploads stored by the tusd server are kept on the default volume, the other uploads are placed
+     * on the least loaded storage volume.
+     *
+     * @param tusFileInfo the properties of the file to upload
+     * @param reservationKey identifies the upload request
+     * @return true if the space has been reserved
+     */
+    public boolean reserveDiskSpace(TUSFileInfo tusFileInfo, String reservationKey) {
+        if (isStoredByTusd(tusFileInfo)) {
+            return diskSpaceLedger.reserveOnDefaultVolume(reservationKey, tusFileInfo.getSize());
+        }
+        return diskSpaceLedger.reserve(reservationKey, tusFileInfo.getSize()) != null;
+    }
+
+    /**
+     * Moves the disk space reserved for the upload request of a created upload to the upload itself
+     * and records the storage volume of the upload and this service instance, that accounts for its space,
+     * on its file document.
+     */
+    public void bindDiskSpaceReservation(TUSFileInfo tusFileInfo) {
+        String volumeName = diskSpaceLedger.bind(diskSpaceReservationKey(tusFileInfo.getMetadata()),
+                tusFileInfo.getTusId(), tusFileInfo.getSize(), tusFileInfo.getVolume());
+        diskSpaceLedger.progress(tusFileInfo.getTusId(), tusFileInfo.getOffsetValue());
+        fileUpdateService.recordVolume(tusFileInfo.getTusId(), volumeName, serviceInstance.getId());
+    }
+
+    public void releaseDiskSpace(String tusId) {
+        diskSpaceLedger.release(tusId);
+    }
 
-        return usableSpace > fileSize;
+    /**
+     * The tusd server assigns the ID of an upload only after its 'pre-create' hook and it stores the upload
+     * in its own directory, which is the default volume.
+     */
+    private static boolean isStoredByTusd(TUSFileInfo tusFileInfo) {
+        return tusFileInfo.getTusId() == null || tusFileInfo.getTusId().isEmpty();
+    }
+
+    private static String diskSpaceReservationKey(TUSFileInfo.MetaData fileMetadata) {
+        return fileMetadata.getSubmissionID() + "/" + fileMetadata.getFilename();
     }
 
     public boolean isFileExists(String tusID) {
@@ -109,9 +359,20 @@ public class EventHandlerService {
         }
     }
 
+    /**
+     * Deletes a file from its storage volume and from the content index.
+     * Only the files on the storage volumes can be deleted, the request of any other file is logged and ignored,
+     * so a deletion message of such a file is not redelivered forever.
+     */
     public void deleteFileFromStorage(String filePathForDeletion, String submissionID) {
+        if (storageVolumes.findVolumeOf(Paths.get(filePathForDeletion)) == null) {
+            LOGGER.error("The file: {} is not on any of the storage volumes, it is not deleted.", filePathForDeletion);
+            return;
+        }
+
         try {
             Files.deleteIfExists(Paths.get(filePathForDeletion));
+            contentIndexService.unregister(Paths.get(filePathForDeletion));
             notifyFileReferenceValidatorOfFileDeletion(submissionID);
         } catch (IOException e) {
             throw new FileDeletionException(filePathForDeletion);
@@ -127,7 +388,7 @@ public class EventHandlerService {
         fileDeletedMessage.setSubmissionId(submissionId);
 
         LOGGER.debug("Sending assay data to file reference validation queue");
-        rabbitMessagingTemplate.convertAndSend(Exchanges.SUBMISSIONS, EVENT_ASSAYDATA_FILEREF_VALIDATION_BY_FILE_DELETION, fileDeletedMessage);
+        messageOutbox.publish(Exchanges.SUBMISSIONS, EVENT_ASSAYDATA_FILEREF_VALIDATION_BY_FILE_DELETION, fileDeletedMessage);
     }
 
     public ResponseEntity<Object> persistOrUpdateFileInformation(File file) {
@@ -148,46 +409,107 @@ public class EventHandlerService {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    public void executeFileProcessingOnCluster(File file) {
-        executeChecksumCalculationOnCluster(file);
-        executeFileContentValidationOnCluster(file);
+    /**
+     * Records the progress of an upload, advances its running checksum over the newly received bytes
+     * and releases their part of the reserved disk space.
+     */
+    public ResponseEntity<Object> updateUploadProgress(File file) {
+        ResponseEntity<Object> response =
+                uploadProgressBuffer.record(file.getGeneratedTusId(), file.getUploadedSize(), file.getUploadStartDate());
+
+        if (response.getStatusCode().equals(HttpStatus.OK)) {
+            checksumService.advance(file.getGeneratedTusId(), file.getUploadedSize());
+            diskSpaceLedger.progress(file.getGeneratedTusId(), file.getUploadedSize());
+        }
+
+        return response;
     }
 
-    public void executeFileProcessingOnVM(File file) {
-        try {
-            executeChecksumCalculationOnVM(file);
-            executeFileContentValidationOnVM(file);
-        } catch (IOException ex) {
-            LOGGER.error("Error occurred while processing the file: {}. Error message: {}",
-                    file.getFilename(), ex.getMessage());
-            // TODO send validationResult message to the aggregator
-        }
+    public void flushUploadProgress(String tusId) {
+        uploadProgressBuffer.flush(tusId);
     }
 
-    private void executeChecksumCalculationOnCluster(File file) {
-        ChecksumGenerationMessage checksumGenerationMessage = new ChecksumGenerationMessage();
-        checksumGenerationMessage.setGeneratedTusId(file.getGeneratedTusId());
+    public void discardRunningChecksum(String tusId) {
+        checksumService.discardRunningChecksum(tusId);
+    }
 
-        LOGGER.info("Sending the following message to {} exchange with {} routing key: {}",
-                SUBMISSION_EXCHANGE, EVENT_FILE_CHECKSUM_GENERATION, checksumGenerationMessage);
+    /**
+     * Detects the type of the given file from its content and stores it on the file document,
+     * then calculates the checksums of the file inside the service
+     * and validates its content on the VM or on the cluster, as decided by the {@link ProcessingRouter}.
+     * A file with the fingerprint of an already processed file may be a duplicate, so its content validation
+     * is deferred until its checksums show that it is not, a duplicate reuses the results of the processed file.
+     * The fingerprint is calculated once here and handed over with the file to the checksum calculation.
+     */
+    public void executeFileProcessing(File file) {
+        DetectedFileType fileType = fileTypeDetector.detect(Paths.get(file.getTargetPath()));
+        fileUpdateService.recordFileType(file.getGeneratedTusId(), fileType);
+
+        String fingerprint = checksumService.fingerprint(file);
+        if (checksumService.mayBeDuplicate(fingerprint)) {
+            LOGGER.debug("The file: {} may be a duplicate, its content validation is deferred.", file.getFilename());
+            checksumService.submit(file, fileType, fingerprint, true);
+            return;
+        }
+
+        if (processingRouter.route(file, fileType.getType()) == ProcessingRouter.Route.LOCAL) {
+            executeFileProcessingOnVM(file, fileType, fingerprint);
+        } else {
+            executeFileProcessingOnCluster(file, fileType, fingerprint);
+        }
+    }
 
-        rabbitMessagingTemplate.convertAndSend(SUBMISSION_EXCHANGE, EVENT_FILE_CHECKSUM_GENERATION, checksumGenerationMessage);
+    /**
+     * @return true if the checksum of the given file has already been submitted by an earlier dispatch
+     */
+    public boolean isFileProcessingDispatched(File file) {
+        return checksumService.isSubmitted(file);
     }
 
-    private void executeChecksumCalculationOnVM(File file) throws IOException {
-        StringJoiner commandForComputeMD5OnVM = new StringJoiner(" ");
-        commandForComputeMD5OnVM.add(checksumCalculatorJobName).add(file.getGeneratedTusId())
-                .add(activeProfile);
+    /**
+     * Validates the content of a file that has turned out not to be a duplicate
+     * on the VM or on the cluster, as decided by the {@link ProcessingRouter}.
+     */
+    @EventListener
+    public void executeDeferredContentValidation(DeferredContentValidationEvent event) {
+        File file = fileRepository.findByGeneratedTusId(event.getTusId());
+        if (file == null) {
+            LOGGER.warn("The file of upload: {} has been deleted before its content validation.", event.getTusId());
+            return;
+        }
 
-        LOGGER.info("Executing the following command on the VM: {}", commandForComputeMD5OnVM);
+        DetectedFileType detectedFileType = fileUpdateService.findFileType(event.getTusId());
+        String fileType = detectedFileType == null ? null : detectedFileType.getType();
+        if (processingRouter.route(file, fileType) == ProcessingRouter.Route.LOCAL) {
+            executeFileContentValidationOnVM(file, fileType);
+        } else {
+            executeFileContentValidationOnCluster(file, fileType);
+        }
+    }
+
+    /**
+     * Calculates the checksums of the given file inside the service and requests its content validation on the cluster.
+     *
+     * @param fingerprint the fingerprint of the file, or null if it has to be calculated with its checksums
+     */
+    public void executeFileProcessingOnCluster(File file, DetectedFileType fileType, String fingerprint) {
+        checksumService.submit(file, fileType, fingerprint, false);
+        executeFileContentValidationOnCluster(file, fileType.getType());
+    }
 
-        java.lang.Runtime rt = java.lang.Runtime.getRuntime();
-        rt.exec(commandForComputeMD5OnVM.toString());
+    /**
+     * Calculates the checksums of the given file inside the service and queues the validation of its content on the VM.
+     * When the local queue is full, the content is validated on the cluster instead.
+     *
+     * @param fingerprint the fingerprint of the file, or null if it has to be calculated with its checksums
+     */
+    public void executeFileProcessingOnVM(File file, DetectedFileType fileType, String fingerprint) {
+        checksumService.submit(file, fileType, fingerprint, false);
+        executeFileContentValidationOnVM(file, fileType.getType());
     }
 
-    private void executeFileContentValidationOnCluster(File file) {
+    private void executeFileContentValidationOnCluster(File file, String fileType) {
         final String fileTargetPath = file.getTargetPath();
-        String fileType = FileType.getFileTypeByExtension(fileTargetPath);
         if (fileType != null) {
             FileContentValidationMessage fileContentValidationMessage = new FileContentValidationMessage();
             fileContentValidationMessage.setFileUUID(file.getId());
@@ -200,41 +522,80 @@ public class EventHandlerService {
             LOGGER.info("Sending the following message to {} exchange with {} routing key: {}",
                     SUBMISSION_EXCHANGE, EVENT_FILE_CONTENT_VALIDATION, fileContentValidationMessage);
 
-            rabbitMessagingTemplate.convertAndSend(SUBMISSION_EXCHANGE, EVENT_FILE_CONTENT_VALIDATION, fileContentValidationMessage);
+            messageOutbox.publish(SUBMISSION_EXCHANGE, EVENT_FILE_CONTENT_VALIDATION, fileContentValidationMessage);
         } else {
             LOGGER.info("The uploaded file: {} is not supported for file content validation", fileTargetPath);
         }
     }
 
-    private void executeFileContentValidationOnVM(File file) throws IOException {
-        StringJoiner commandForValidateFileContent = new StringJoiner(" ");
-        commandForValidateFileContent.add(contentValidatorJobName)
-                .add(assembleCommandLineParameters(file))
-                .add(activeProfile);
+    private void executeFileContentValidationOnVM(File file, String fileType) {
+        final String targetPath = file.getTargetPath();
+
+        List<String> command = new ArrayList<>(Arrays.asList(contentValidatorJobName.trim().split("\\s+")));
+        command.add(file.getId());
+        command.add(targetPath);
+        command.add(String.valueOf(fileType));
+        command.add(file.getValidationResult().getUuid());
+        command.add(String.valueOf(file.getValidationResult().getVersion()));
+        command.add(activeProfile);
+
+        if (!localJobRunner.submit(new LocalJob(LocalJobType.CONTENT_VALIDATION, file.getGeneratedTusId(),
+                Paths.get(targetPath), command))) {
+            LOGGER.info("The local queue is full, sending the file: {} to the cluster.", file.getFilename());
+            executeFileContentValidationOnCluster(file, fileType);
+        }
+    }
 
-        LOGGER.info("Executing the following command on the VM: {}", commandForValidateFileContent);
 
-        Runtime rt = Runtime.getRuntime();
-        rt.exec(commandForValidateFileContent.toString());
+    public File validateFileReference(String tusId) {
+        return validationService.validateFileReference(tusId);
     }
 
-    private String assembleCommandLineParameters(File file) {
-        final String targetPath = file.getTargetPath();
+    /**
+     * Finishes the upload of the given file with two writes: the insert of its validation result
+     * and one atomic update of the file document with its final state.
+     * The file reference validation is only requested when the file document has been updated,
+     * otherwise the inserted validation result is deleted again.
+     *
+     * @param file the file with its final state, its ID has to be the ID of the persisted file document
+     * @return the updated file document or null, if there was no file document to finish
+     */
+    public File finishUpload(File file) {
+        ValidationResult validationResult = validationService.createValidationResult(file);
+        file.setValidationResult(validationResult);
+
+        File finishedFile = null;
+        try {
+            finishedFile = fileUpdateService.finishUpload(file);
+        } finally {
+            if (finishedFile == null) {
+                discardValidationResult(file.getGeneratedTusId(), validationResult);
+            }
+        }
 
-        StringJoiner commandLineParameters = new StringJoiner(" ");
-        commandLineParameters
-                .add(file.getId())
-                .add(targetPath)
-                .add(FileType.getFileTypeByExtension(targetPath))
-                .add(file.getValidationResult().getUuid())
-                .add(String.valueOf(file.getValidationResult().getVersion()));
+        if (finishedFile != null) {
+            validationService.sendFileReferenceValidationEvent(finishedFile);
+        }
 
-        return commandLineParameters.toString();
+        return finishedFile;
     }
 
-
-    public File validateFileReference(String tusId) {
-        return validationService.validateFileReference(tusId);
+    /**
+     * Deletes the validation result of a finish that has not updated the file document.
+     * When the update failed, it may still have reached the document,
+     * so the result is kept if the document refers to it.
+     */
+    private void discardValidationResult(String tusId, ValidationResult validationResult) {
+        try {
+            File persistedFile = fileRepository.findByGeneratedTusId(tusId);
+            ValidationResult persistedResult = persistedFile == null ? null : persistedFile.getValidationResult();
+            if (persistedResult == null || !validationResult.getUuid().equals(persistedResult.getUuid())) {
+                validationService.deleteValidationResult(validationResult);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not delete the unused validation result: {} of upload: {}. Error message: {}",
+                    validationResult.getUuid(), tusId, e.getMessage());
+        }
     }
 
     private File updateFileProperties(File newFile, File persistedFile) {
@@ -252,4 +613,29 @@ public class EventHandlerService {
         return persistedFile;
     }
 
+    /**
+     * The outcome of a single check of an upload request with its duration.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class CheckResult {
+
+        private final String name;
+        private final ResponseEntity<Object> response;
+        private final RuntimeException exception;
+        private final long durationNanos;
+
+        static CheckResult execute(String name, Supplier<ResponseEntity<Object>> check) {
+            long start = System.nanoTime();
+            try {
+                return new CheckResult(name, check.get(), null, System.nanoTime() - start);
+            } catch (RuntimeException ex) {
+                return new CheckResult(name, null, ex, System.nanoTime() - start);
+            }
+        }
+
+        String toServerTiming() {
+            return String.format(Locale.ROOT, "%s;dur=%.1f", name, durationNanos / 1_000_000.0);
+        }
+    }
 }
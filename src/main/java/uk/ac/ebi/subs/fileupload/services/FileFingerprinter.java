@@ -0,0 +1,79 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class calculates a cheap fingerprint of a file from its size and the SHA-256 digest of three samples:
+ * the first, the middle and the last part of the file, read with positional reads.
+ * Files with different fingerprints can not have the same content, so only the files with a matching fingerprint
+ * have to be hashed in full to find out whether they are duplicates.
+ */
+@Component
+public class FileFingerprinter {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private int sampleSize;
+
+    public FileFingerprinter(@Value("${file-upload.fingerprint.sampleSize:1048576}") int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @param path the path of the file
+     * @return the fingerprint of the file: its size and the hexadecimal digest of its samples, separated by a colon
+     * @throws IOException if the file could not be read
+     */
+    public String fingerprint(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(sampleSize);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= 3L * sampleSize) {
+                readSample(channel, 0, size, buffer, digest);
+            } else {
+                readSample(channel, 0, sampleSize, buffer, digest);
+                readSample(channel, (size - sampleSize) / 2, sampleSize, buffer, digest);
+                readSample(channel, size - sampleSize, sampleSize, buffer, digest);
+            }
+
+            return size + ":" + Utils.toHex(digest.digest());
+        }
+    }
+
+    private static void readSample(FileChannel channel, long position, long length,
+                                   ByteBuffer buffer, MessageDigest digest) throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("The file has been truncated while it was being fingerprinted.");
+            }
+
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " algorithm is not available", e);
+        }
+    }
+}
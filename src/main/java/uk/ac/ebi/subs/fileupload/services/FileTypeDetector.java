@@ -0,0 +1,166 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.util.FileType;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * This class detects the type of an uploaded file from the magic numbers and the first lines of its content,
+ * so a mislabelled file is still validated as what it really is.
+ * Only the first few KB of the file are read and a compressed file is inflated only as far as they go.
+ * When the content is not recognised, the type is looked up by the extension of the file.
+ */
+@Component
+public class FileTypeDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTypeDetector.class);
+
+    static final int HEAD_SIZE = 4096;
+
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+    private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
+    private static final byte[] CRAM_MAGIC = "CRAM".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VCF_MAGIC = "##fileformat=VCF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * @param path the path of the file
+     * @return the detected type of the file
+     */
+    public DetectedFileType detect(Path path) {
+        String filename = path.getFileName().toString();
+        String typeByExtension = FileType.getFileTypeByExtension(filename);
+
+        byte[] head;
+        try {
+            head = readHead(path);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the head of the file: {}, detecting its type by its extension. Error message: {}",
+                    path, e.getMessage());
+            return new DetectedFileType(typeByExtension, false, DetectedFileType.Source.EXTENSION);
+        }
+
+        boolean compressed = startsWith(head, GZIP_MAGIC);
+        String typeByContent;
+        if (compressed) {
+            typeByContent = detectByContent(inflateHead(head));
+        } else if (startsWith(head, CRAM_MAGIC)) {
+            typeByContent = FileType.CRAM;
+        } else {
+            typeByContent = detectByContent(head);
+        }
+
+        if (typeByContent == null) {
+            return new DetectedFileType(typeByExtension, compressed, DetectedFileType.Source.EXTENSION);
+        }
+
+        if (typeByExtension != null && !typeByExtension.equals(typeByContent)) {
+            LOGGER.warn("The file: {} is named as {}, but its content is {}.", path, typeByExtension, typeByContent);
+        }
+        return new DetectedFileType(typeByContent, compressed, DetectedFileType.Source.CONTENT);
+    }
+
+    private static String detectByContent(byte[] head) {
+        if (startsWith(head, BAM_MAGIC)) {
+            return FileType.BAM;
+        }
+        if (startsWith(head, VCF_MAGIC)) {
+            return FileType.VCF;
+        }
+        if (looksLikeFastq(head)) {
+            return FileType.FASTQ;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the given bytes start with a header line starting with '@', a sequence of letters
+     * and a separator line starting with '+'
+     */
+    private static boolean looksLikeFastq(byte[] head) {
+        if (head.length == 0 || head[0] != '@') {
+            return false;
+        }
+
+        int sequenceStart = indexOf(head, (byte) '\n', 0) + 1;
+        if (sequenceStart == 0) {
+            return false;
+        }
+        int sequenceEnd = indexOf(head, (byte) '\n', sequenceStart);
+        if (sequenceEnd <= sequenceStart) {
+            return false;
+        }
+        for (int i = sequenceStart; i < sequenceEnd; i++) {
+            if (!Character.isLetter(head[i]) && head[i] != '.' && head[i] != '\r') {
+                return false;
+            }
+        }
+
+        return sequenceEnd + 1 < head.length && head[sequenceEnd + 1] == '+';
+    }
+
+    /**
+     * Inflates the given head of a gzip file as far as it goes.
+     */
+    private static byte[] inflateHead(byte[] head) {
+        byte[] inflated = new byte[HEAD_SIZE];
+        int length = 0;
+        try (GZIPInputStream gzipStream = new GZIPInputStream(new ByteArrayInputStream(head))) {
+            int read;
+            while (length < inflated.length && (read = gzipStream.read(inflated, length, inflated.length - length)) >= 0) {
+                length += read;
+            }
+        } catch (EOFException | ZipException e) {
+            // the head ends in the middle of the compressed data, the bytes inflated so far are enough
+        } catch (IOException e) {
+            LOGGER.debug("Could not inflate the head of a file. Error message: {}", e.getMessage());
+        }
+
+        return Arrays.copyOf(inflated, length);
+    }
+
+    private static byte[] readHead(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEAD_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // reads until the buffer is full or the end of the file
+            }
+        }
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,331 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.model.UploadProgress;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobState;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobType;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+import uk.ac.ebi.subs.validator.data.ValidationResult;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * This class is responsible for the field level updates of the {@link File} documents,
+ * so the frequent events of an upload do not have to read and rewrite the whole document.
+ * Some fields, like the volume, fingerprint, file type and processing results, are not mapped by the {@link File} class.
+ * Saving a whole file document with the {@link uk.ac.ebi.subs.repository.repos.fileupload.FileRepository} erases them,
+ * so once a file document has been created, it must only be modified through the updates of this class.
+ */
+@Service
+public class FileUpdateService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileUpdateService.class);
+
+    private static final String GENERATED_TUS_ID = "generatedTusId";
+    private static final String STATUS = "status";
+    private static final String UPLOADED_SIZE = "uploadedSize";
+    private static final String UPLOAD_START_DATE = "uploadStartDate";
+    private static final String UPLOAD_FINISH_DATE = "uploadFinishDate";
+    private static final String UPLOAD_PATH = "uploadPath";
+    private static final String TARGET_PATH = "targetPath";
+    private static final String VALIDATION_RESULT = "validationResult";
+    private static final String LOCAL_JOBS = "localJobs";
+    private static final String FILE_TYPE = "fileType";
+    private static final String FILE_TYPE_DETECTION = "fileTypeDetection";
+    private static final String COMPRESSED = "compressed";
+    private static final String SOURCE = "source";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String VOLUME = "volume";
+    private static final String INSTANCE = "instance";
+
+    private MongoOperations mongoOperations;
+
+    public FileUpdateService(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Records the progress of an upload with a single update of the status, uploaded size and upload start date fields.
+     * The uploaded size can only grow and the upload start date is kept from the first progress event,
+     * so progress events arriving out of order do not overwrite newer information.
+     * Files that are already uploaded are not modified.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param uploadedSize the number of bytes received so far
+     * @param uploadStartDate the time of the progress event
+     * @return response entity with OK HTTP status if the file document exists, otherwise NOT_FOUND HTTP status
+     */
+    public ResponseEntity<Object> updateUploadProgress(String tusId, long uploadedSize, LocalDateTime uploadStartDate) {
+        WriteResult writeResult = mongoOperations.updateFirst(
+                uploadInProgressQuery(tusId), uploadProgressUpdate(uploadedSize, uploadStartDate), File.class);
+
+        if (writeResult.getN() == 0) {
+            if (!mongoOperations.exists(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)), File.class)) {
+                return ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.FILE_DOCUMENT_NOT_FOUND, tusId));
+            }
+
+            LOGGER.debug("Upload progress of file: {} is ignored, because its upload has already finished.", tusId);
+        }
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Records the progress of several uploads in one unordered bulk write.
+     * It has the same semantics as {@link #updateUploadProgress(String, long, LocalDateTime)},
+     * but the progress of unknown or already uploaded files is silently ignored.
+     *
+     * @param uploadProgresses the latest progress of the uploads keyed by their tus ID
+     */
+    public void updateUploadProgresses(Map<String, UploadProgress> uploadProgresses) {
+        if (uploadProgresses.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOperations = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, File.class);
+        uploadProgresses.forEach((tusId, uploadProgress) ->
+                bulkOperations.updateOne(uploadInProgressQuery(tusId),
+                        uploadProgressUpdate(uploadProgress.getUploadedSize(), uploadProgress.getUploadStartDate())));
+
+        BulkWriteResult bulkWriteResult = bulkOperations.execute();
+
+        LOGGER.debug("Upload progress of {} file(s) has been written, {} of them matched an upload in progress.",
+                uploadProgresses.size(), bulkWriteResult.getMatchedCount());
+    }
+
+    /**
+     * Records that all the bytes of an upload have been received with one atomic update of the status,
+     * uploaded size, upload finish date and path fields, before the file is moved to its target path.
+     * The upload finish date of a repeated event does not overwrite the original one.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param uploadedSize the number of bytes received
+     * @param uploadFinishDate the time of the event
+     * @param uploadPath the path of the uploaded file on the storage of the tus server
+     * @param targetPath the path the uploaded file has to be moved to
+     * @return the updated file document or null, if there was no upload in progress with the given ID
+     */
+    public File recordUploadFinish(String tusId, long uploadedSize, LocalDateTime uploadFinishDate,
+                                   String uploadPath, String targetPath) {
+        Query query = Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)
+                .and(STATUS).in(FileStatus.INITIALIZED, FileStatus.UPLOADING, FileStatus.UPLOADED));
+
+        Update update = new Update()
+                .set(STATUS, FileStatus.UPLOADED)
+                .set(UPLOADED_SIZE, uploadedSize)
+                .min(UPLOAD_FINISH_DATE, uploadFinishDate)
+                .set(UPLOAD_PATH, uploadPath)
+                .set(TARGET_PATH, targetPath);
+
+        return mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), File.class);
+    }
+
+    /**
+     * Records the end of an upload with one atomic update of the status, uploaded size, upload finish date,
+     * path and validation result fields of the given file.
+     * Only files with an upload in progress or an upload waiting to be moved are modified,
+     * so a repeated or late event can not move a file document back to an earlier status.
+     *
+     * @param file the file with its final state
+     * @return the updated file document or null, if there was no file document to finish
+     */
+    public File finishUpload(File file) {
+        Query query = Query.query(Criteria.where(GENERATED_TUS_ID).is(file.getGeneratedTusId())
+                .and(STATUS).in(FileStatus.INITIALIZED, FileStatus.UPLOADING, FileStatus.UPLOADED));
+
+        Update update = new Update()
+                .set(STATUS, file.getStatus())
+                .set(UPLOADED_SIZE, file.getUploadedSize())
+                .set(UPLOAD_FINISH_DATE, file.getUploadFinishDate())
+                .set(UPLOAD_PATH, file.getUploadPath())
+                .set(TARGET_PATH, file.getTargetPath())
+                .set(VALIDATION_RESULT, file.getValidationResult());
+
+        return mongoOperations.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), File.class);
+    }
+
+    /**
+     * Stores the validation result of a file with a single field update, keeping the rest of its document untouched.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param validationResult the validation result of the file
+     * @return the updated file document or null, if there is no file document with the given ID
+     */
+    public File recordValidationResult(String tusId, ValidationResult validationResult) {
+        return mongoOperations.findAndModify(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)),
+                Update.update(VALIDATION_RESULT, validationResult), FindAndModifyOptions.options().returnNew(true), File.class);
+    }
+
+    /**
+     * Stores the results of the processing of a file waiting for its checksum
+     * and makes it ready for archiving with one update.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param fields the values of the fields of the file document, by the paths of the fields
+     * @return true if the file document has been updated, false if the file is not waiting for its checksum
+     */
+    public boolean recordProcessingResults(String tusId, Map<String, Object> fields) {
+        Query query = Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)
+                .and(STATUS).is(FileStatus.READY_FOR_CHECKSUM));
+
+        Update update = new Update();
+        fields.forEach(update::set);
+        update.set(STATUS, FileStatus.READY_FOR_ARCHIVE);
+
+        return mongoOperations.updateFirst(query, update, File.class).getN() > 0;
+    }
+
+    /**
+     * Stores the detected type of a file in its {@code fileType} field,
+     * and whether it is compressed and how its type has been detected in its {@code fileTypeDetection} field.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param detectedFileType the detected type of the file
+     */
+    public void recordFileType(String tusId, DetectedFileType detectedFileType) {
+        Update update = new Update()
+                .set(FILE_TYPE, detectedFileType.getType())
+                .set(FILE_TYPE_DETECTION + "." + COMPRESSED, detectedFileType.isCompressed())
+                .set(FILE_TYPE_DETECTION + "." + SOURCE, detectedFileType.getSource());
+
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)), update, File.class);
+    }
+
+    /**
+     * Stores the fingerprint of a file, calculated by the {@link FileFingerprinter}, in its {@code fingerprint} field.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param fingerprint the fingerprint of the file
+     */
+    public void recordFingerprint(String tusId, String fingerprint) {
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)),
+                Update.update(FINGERPRINT, fingerprint), File.class);
+    }
+
+    /**
+     * Stores the name of the storage volume of an upload in its {@code volume} field.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param volumeName the name of the storage volume the upload has been placed on
+     */
+    public void recordVolume(String tusId, String volumeName) {
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)),
+                Update.update(VOLUME, volumeName), File.class);
+    }
+
+    /**
+     * Records that a file transferred through Globus has been moved to its volume with one atomic update
+     * of the status, upload path and volume fields.
+     *
+     * @param tusId the ID of the upload generated for the transferred file
+     * @param uploadPath the path the file has been moved to
+     * @param volumeName the name of the storage volume the file has been moved to
+     */
+    public void recordGlobusMove(String tusId, String uploadPath, String volumeName) {
+        Update update = new Update()
+                .set(STATUS, FileStatus.READY_FOR_CHECKSUM)
+                .set(UPLOAD_PATH, uploadPath)
+                .set(VOLUME, volumeName);
+
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)), update, File.class);
+    }
+
+    /**
+     * Stores the name of the storage volume of an upload in its {@code volume} field
+     * and the ID of the service instance that has reserved its disk space in its {@code instance} field.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param volumeName the name of the storage volume the upload has been placed on
+     * @param instanceId the ID of the {@link ServiceInstance} accounting for the disk space of the upload
+     */
+    public void recordVolume(String tusId, String volumeName, String instanceId) {
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)),
+                new Update().set(VOLUME, volumeName).set(INSTANCE, instanceId), File.class);
+    }
+
+    /**
+     * Reads the name of the storage volume of an upload stored by {@link #recordVolume(String, String)}.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @return the name of the storage volume or null, if no volume has been recorded for the upload
+     */
+    public String findVolume(String tusId) {
+        Query query = Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId));
+        query.fields().include(VOLUME);
+
+        DBObject document = mongoOperations.findOne(query, DBObject.class, mongoOperations.getCollectionName(File.class));
+        return document == null ? null : (String) document.get(VOLUME);
+    }
+
+    /**
+     * Reads the detected type of a file stored by {@link #recordFileType(String, DetectedFileType)}.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @return the detected type of the file or null, if its type has not been detected
+     */
+    public DetectedFileType findFileType(String tusId) {
+        Query query = Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId));
+        query.fields().include(FILE_TYPE).include(FILE_TYPE_DETECTION);
+
+        DBObject document = mongoOperations.findOne(query, DBObject.class, mongoOperations.getCollectionName(File.class));
+        if (document == null || !(document.get(FILE_TYPE_DETECTION) instanceof DBObject)) {
+            return null;
+        }
+
+        DBObject detection = (DBObject) document.get(FILE_TYPE_DETECTION);
+        return new DetectedFileType((String) document.get(FILE_TYPE),
+                Boolean.TRUE.equals(detection.get(COMPRESSED)),
+                DetectedFileType.Source.valueOf(String.valueOf(detection.get(SOURCE))));
+    }
+
+    /**
+     * Records the outcome of a local job of a file under the {@code localJobs.<job type>} field of its document.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @param type the type of the job
+     * @param state the outcome of the job
+     * @param exitCode the exit code of the process or null, if the process has not exited by itself
+     * @param runTime the run time of the job in milliseconds
+     */
+    public void recordLocalJobResult(String tusId, LocalJobType type, LocalJobState state, Integer exitCode, long runTime) {
+        String jobField = LOCAL_JOBS + "." + type.getPropertyName() + ".";
+
+        Update update = new Update()
+                .set(jobField + "state", state)
+                .set(jobField + "exitCode", exitCode)
+                .set(jobField + "runTime", runTime)
+                .set(jobField + "finishDate", LocalDateTime.now());
+
+        mongoOperations.updateFirst(Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)), update, File.class);
+    }
+
+    private Query uploadInProgressQuery(String tusId) {
+        return Query.query(Criteria.where(GENERATED_TUS_ID).is(tusId)
+                .and(STATUS).in(FileStatus.INITIALIZED, FileStatus.UPLOADING));
+    }
+
+    private Update uploadProgressUpdate(long uploadedSize, LocalDateTime uploadStartDate) {
+        return new Update()
+                .set(STATUS, FileStatus.UPLOADING)
+                .max(UPLOADED_SIZE, uploadedSize)
+                .min(UPLOAD_START_DATE, uploadStartDate);
+    }
+}
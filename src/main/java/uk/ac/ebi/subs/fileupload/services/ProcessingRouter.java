@@ -0,0 +1,77 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobRunner;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobType;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+/**
+ * This class decides whether the content of an uploaded file is validated on the VM or on the cluster.
+ * Small files are validated on the VM straight away, as long as the local queue is not too deep,
+ * while large files and the overflow of the local queue are sent to the cluster.
+ * The size limit can be configured per file type under {@code file-upload.routing.types.<file type>.localMaxSize}.
+ * Files with the prefix for local processing are always validated on the VM.
+ */
+@Component
+public class ProcessingRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessingRouter.class);
+
+    private static final String FILE_TYPE_MAX_SIZE_PROPERTY = "file-upload.routing.types.%s.localMaxSize";
+
+    /**
+     * The places where the content of a file can be validated.
+     */
+    public enum Route {
+        LOCAL,
+        CLUSTER
+    }
+
+    private LocalJobRunner localJobRunner;
+    private Environment environment;
+
+    @Value("${file-upload.filePrefixForLocalProcessing}")
+    private String filePrefixForLocalProcessing;
+    @Value("${file-upload.routing.localMaxSize:104857600}")
+    private long localMaxSize;
+    @Value("${file-upload.routing.maxLocalQueueDepth:50}")
+    private int maxLocalQueueDepth;
+
+    public ProcessingRouter(LocalJobRunner localJobRunner, Environment environment) {
+        this.localJobRunner = localJobRunner;
+        this.environment = environment;
+    }
+
+    /**
+     * @param file the file to validate
+     * @param fileType the detected type of the file
+     * @return the place where the content of the file is validated
+     */
+    public Route route(File file, String fileType) {
+        if (file.getFilename().startsWith(filePrefixForLocalProcessing)) {
+            return Route.LOCAL;
+        }
+
+        if (fileType == null) {
+            return Route.CLUSTER;
+        }
+
+        long totalSize = file.getTotalSize();
+        long maxSize = environment.getProperty(String.format(FILE_TYPE_MAX_SIZE_PROPERTY, fileType), Long.class, localMaxSize);
+        if (totalSize > maxSize) {
+            return Route.CLUSTER;
+        }
+
+        int queueDepth = localJobRunner.getQueueDepth(LocalJobType.CONTENT_VALIDATION);
+        if (queueDepth >= maxLocalQueueDepth) {
+            LOGGER.debug("The local queue has {} jobs, sending the file: {} to the cluster.", queueDepth, file.getFilename());
+            return Route.CLUSTER;
+        }
+
+        return Route.LOCAL;
+    }
+}
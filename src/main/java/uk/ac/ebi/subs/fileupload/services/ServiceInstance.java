@@ -0,0 +1,43 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+/**
+ * The identity of this instance of the service. The background work shared by the instances through the database,
+ * like the pending finishes and checksums, is claimed with it, so only one instance works on an item at a time.
+ * It is configured by {@code file-upload.instanceId} and defaults to the host name, so it survives a restart.
+ */
+@Component
+public class ServiceInstance {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceInstance.class);
+
+    private final String id;
+
+    public ServiceInstance(@Value("${file-upload.instanceId:}") String instanceId) {
+        this.id = StringUtils.hasText(instanceId) ? instanceId : hostName();
+        LOGGER.info("The ID of this service instance is: {}", id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            String id = UUID.randomUUID().toString();
+            LOGGER.warn("The host name could not be resolved, a random ID is used for this service instance: {}", id);
+            return id;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package uk.ac.ebi.subs.fileupload.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.hateoas.MediaTypes;
@@ -14,8 +17,11 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.subs.data.status.SubmissionStatusEnum;
 import uk.ac.ebi.subs.fileupload.errors.SubmissionNotFoundException;
+import uk.ac.ebi.subs.fileupload.util.Utils;
 import uk.ac.ebi.subs.repository.model.SubmissionStatus;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * This class is responsible for provide information about {@code Submission}s.
  * Created by karoly on 18/12/2017.
@@ -32,11 +38,52 @@ public class SubmissionService {
     @Value("${file-upload.subs-api.submissionURI}")
     private String submissionURI;
 
-    public SubmissionService(RestTemplateBuilder restTemplateBuilder) {
+    private Cache<SubmissionStatusKey, String> submissionStatusCache;
+
+    public SubmissionService(RestTemplateBuilder restTemplateBuilder,
+                             @Value("${file-upload.subs-api.statusCache.maximumSize:10000}") long statusCacheMaximumSize,
+                             @Value("${file-upload.subs-api.statusCache.expireAfterWrite:60}") long statusCacheExpireAfterWrite) {
         this.restTemplate = restTemplateBuilder.build();
+        this.submissionStatusCache = Caffeine.newBuilder()
+                .maximumSize(statusCacheMaximumSize)
+                .expireAfterWrite(statusCacheExpireAfterWrite, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
     }
 
+    /**
+     * Returns the status of the given submission.
+     * The status is cached per submission and per JWT token, so a user can only get a status
+     * that has been authorised with the user's own token.
+     *
+     * @param submissionUuid the UUID of the submission
+     * @param jwtToken the JWT security token of the user
+     * @return the status of the submission
+     * @throws SubmissionNotFoundException if the submission does not exist
+     */
     public String getSubmissionStatus(String submissionUuid, String jwtToken) throws SubmissionNotFoundException {
+        return submissionStatusCache.get(new SubmissionStatusKey(submissionUuid, Utils.digest(jwtToken)),
+                key -> fetchSubmissionStatus(submissionUuid, jwtToken));
+    }
+
+    /**
+     * Removes the cached statuses of the given submission, so the next status request fetches it again.
+     *
+     * @param submissionUuid the UUID of the submission
+     */
+    public void evictSubmissionStatus(String submissionUuid) {
+        submissionStatusCache.asMap().keySet().removeIf(key -> key.getSubmissionUuid().equals(submissionUuid));
+    }
+
+    public CacheStats getSubmissionStatusCacheStats() {
+        return submissionStatusCache.stats();
+    }
+
+    public long getSubmissionStatusCacheSize() {
+        return submissionStatusCache.estimatedSize();
+    }
+
+    private String fetchSubmissionStatus(String submissionUuid, String jwtToken) {
         ResponseEntity<SubmissionStatus> submissionStatusResponse;
         try {
             submissionStatusResponse = restTemplate.exchange(
@@ -68,4 +115,10 @@ public class SubmissionService {
 
         return new HttpEntity<>(headers);
     }
+
+    @lombok.Value
+    private static class SubmissionStatusKey {
+        private String submissionUuid;
+        private String tokenDigest;
+    }
 }
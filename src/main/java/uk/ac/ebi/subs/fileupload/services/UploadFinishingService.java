@@ -0,0 +1,401 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
+import uk.ac.ebi.subs.fileupload.model.PendingFinish;
+import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksumStore;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolume;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransfer;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransferService;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * This class is responsible for finishing the uploads in the background.
+ * The 'post-finish' hook event only records the finished upload in the database,
+ * then a bounded pool of workers moves the file to its target path, requests its reference validation
+ * and sends it for processing. Each finished upload advances through the stages of a {@link PendingFinish},
+ * failed steps are retried with an increasing delay and the pending finishes are scanned periodically,
+ * so the uploads finished before a restart are not lost.
+ * Every instance of the service scans the same pending finishes, so a worker claims a pending finish
+ * with a lease before working on it. The lease of a crashed instance expires and another instance takes over.
+ */
+@Service
+public class UploadFinishingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UploadFinishingService.class);
+
+    private static final String BIN_FILE_EXTENSION_BY_TUS = ".bin";
+    private static final String INFO_FILE_EXTENSION_BY_TUS = ".info";
+    private static final String FILE_SEPARATOR = System.getProperty("file.separator");
+
+    private static final String ID = "_id";
+    private static final String STAGE = "stage";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_ATTEMPT_DATE = "nextAttemptDate";
+    private static final String LAST_ERROR = "lastError";
+    private static final String OWNER = "owner";
+    private static final String LEASE_EXPIRY_DATE = "leaseExpiryDate";
+
+    private static final String PART_FILE_EXTENSION = ".part";
+
+    private static final int SCAN_BATCH_SIZE = 500;
+    private static final int MAX_RETRY_DELAY_SHIFT = 6;
+
+    private EventHandlerService eventHandlerService;
+    private FileUpdateService fileUpdateService;
+    private MongoOperations mongoOperations;
+    private FileTransferService fileTransferService;
+    private RunningChecksumStore runningChecksumStore;
+    private StorageVolumes storageVolumes;
+    private IoScheduler ioScheduler;
+    private ServiceInstance serviceInstance;
+    private Executor postFinishExecutor;
+
+    @Value("${file-upload.targetBasePath}")
+    private String targetBasePath;
+
+    @Value("${file-upload.postFinish.maxAttempts:10}")
+    private int maxAttempts;
+    @Value("${file-upload.postFinish.retryDelay:30000}")
+    private long retryDelay;
+    @Value("${file-upload.postFinish.leaseDuration:600000}")
+    private long leaseDuration;
+
+    private final Set<String> finishesInProgress = ConcurrentHashMap.newKeySet();
+
+    public UploadFinishingService(EventHandlerService eventHandlerService, FileUpdateService fileUpdateService,
+                                  MongoOperations mongoOperations, FileTransferService fileTransferService,
+                                  RunningChecksumStore runningChecksumStore, StorageVolumes storageVolumes,
+                                  IoScheduler ioScheduler, ServiceInstance serviceInstance,
+                                  @Qualifier(ExecutorConfiguration.POST_FINISH_EXECUTOR) Executor postFinishExecutor) {
+        this.eventHandlerService = eventHandlerService;
+        this.fileUpdateService = fileUpdateService;
+        this.mongoOperations = mongoOperations;
+        this.fileTransferService = fileTransferService;
+        this.runningChecksumStore = runningChecksumStore;
+        this.storageVolumes = storageVolumes;
+        this.ioScheduler = ioScheduler;
+        this.serviceInstance = serviceInstance;
+        this.postFinishExecutor = postFinishExecutor;
+    }
+
+    /**
+     * Durably records that all the bytes of an upload have been received and hands it over to the workers.
+     * The target path of the file is on the storage volume of the upload, so the file is moved by a rename.
+     *
+     * @param tusFileInfo the properties of the finished upload
+     * @return response entity with OK HTTP status if the upload has been recorded, otherwise NOT_FOUND HTTP status
+     */
+    public ResponseEntity<Object> recordUploadFinish(TUSFileInfo tusFileInfo) {
+        String tusId = tusFileInfo.getTusId();
+        TUSFileInfo.MetaData metadata = tusFileInfo.getMetadata();
+
+        StorageVolume volume = storageVolumes.getVolume(fileUpdateService.findVolume(tusId));
+        String fullSourcePath = volume.resolve(tusId + BIN_FILE_EXTENSION_BY_TUS);
+        String fullTargetPath = volume.resolve(targetBasePath, Utils.generateFolderName(metadata.getSubmissionID()));
+
+        File file = fileUpdateService.recordUploadFinish(tusId, tusFileInfo.getOffsetValue(), LocalDateTime.now(),
+                fullSourcePath, String.join(FILE_SEPARATOR, fullTargetPath, metadata.getFilename()));
+
+        if (file == null) {
+            return ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.FILE_DOCUMENT_NOT_FOUND, tusId));
+        }
+
+        List<String> partialUploadIds = tusFileInfo.isFinal()
+                ? Arrays.asList(tusFileInfo.getPartialUploads())
+                : Collections.emptyList();
+        mongoOperations.save(new PendingFinish(tusId, partialUploadIds));
+
+        submit(tusId);
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Picks up the pending finishes that are due and not leased by a worker, including the ones recorded
+     * before the last restart and the ones that could not be handed over to the workers.
+     */
+    @Scheduled(fixedDelayString = "${file-upload.postFinish.scanInterval:10000}")
+    public void resumePendingFinishes() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where(STAGE).ne(PendingFinish.Stage.FAILED)
+                .and(NEXT_ATTEMPT_DATE).lte(now)
+                .orOperator(Criteria.where(LEASE_EXPIRY_DATE).is(null), Criteria.where(LEASE_EXPIRY_DATE).lte(now)))
+                .with(new Sort(Sort.Direction.ASC, NEXT_ATTEMPT_DATE))
+                .limit(SCAN_BATCH_SIZE);
+
+        mongoOperations.find(query, PendingFinish.class)
+                .forEach(pendingFinish -> submit(pendingFinish.getTusId()));
+    }
+
+    private void submit(String tusId) {
+        if (!finishesInProgress.add(tusId)) {
+            return;
+        }
+
+        try {
+            postFinishExecutor.execute(() -> {
+                try {
+                    finish(tusId);
+                } finally {
+                    finishesInProgress.remove(tusId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finishesInProgress.remove(tusId);
+            LOGGER.warn("The post-finish workers are busy, the upload: {} is going to be finished by a later scan.", tusId);
+        }
+    }
+
+    /**
+     * Advances the given upload through the remaining stages of its pending finish.
+     * The move and the validation can be repeated safely, so a failed or interrupted finish is continued
+     * from its last recorded stage. The dispatch for processing is recorded before the file is sent,
+     * and a retried dispatch only sends the file again if its checksum has not been submitted by the first one.
+     * Nothing is done, if the pending finish is leased by another worker.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     */
+    public void finish(String tusId) {
+        PendingFinish pendingFinish = claim(tusId);
+        if (pendingFinish == null) {
+            return;
+        }
+
+        try {
+            File file = eventHandlerService.getFileByTusID(tusId);
+            if (file == null) {
+                LOGGER.info("The file document of upload: {} has been deleted, there is nothing to finish.", tusId);
+                deletePartialUploads(pendingFinish.getPartialUploadIds());
+                mongoOperations.remove(pendingFinish);
+                return;
+            }
+
+            if (pendingFinish.getStage() == PendingFinish.Stage.RECORDED) {
+                transferFile(file, pendingFinish.getPartialUploadIds());
+                advance(pendingFinish, PendingFinish.Stage.MOVED);
+            }
+
+            if (pendingFinish.getStage() == PendingFinish.Stage.MOVED) {
+                if (file.getStatus() == FileStatus.UPLOADED) {
+                    file.setStatus(FileStatus.READY_FOR_CHECKSUM);
+                    file.setUploadPath(file.getTargetPath());
+
+                    File finishedFile = eventHandlerService.finishUpload(file);
+                    if (finishedFile != null) {
+                        file = finishedFile;
+                    }
+                }
+                advance(pendingFinish, PendingFinish.Stage.VALIDATED);
+            }
+
+            if (pendingFinish.getStage() == PendingFinish.Stage.VALIDATED) {
+                advance(pendingFinish, PendingFinish.Stage.DISPATCHED);
+                eventHandlerService.executeFileProcessing(file);
+            } else if (eventHandlerService.isFileProcessingDispatched(file)) {
+                LOGGER.info("The file: {} has already been sent for processing, it is not sent again.", file.getFilename());
+            } else {
+                eventHandlerService.executeFileProcessing(file);
+            }
+            mongoOperations.remove(pendingFinish);
+        } catch (IOException | RuntimeException e) {
+            scheduleRetry(pendingFinish, e);
+        }
+    }
+
+    /**
+     * Leases the given pending finish to this instance, unless it has failed or it is leased by another worker.
+     *
+     * @return the claimed pending finish or null, if it could not be claimed
+     */
+    private PendingFinish claim(String tusId) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where(ID).is(tusId)
+                .and(STAGE).ne(PendingFinish.Stage.FAILED)
+                .orOperator(Criteria.where(LEASE_EXPIRY_DATE).is(null), Criteria.where(LEASE_EXPIRY_DATE).lte(now)));
+
+        PendingFinish pendingFinish = mongoOperations.findAndModify(query, leaseUpdate(now),
+                FindAndModifyOptions.options().returnNew(true), PendingFinish.class);
+        if (pendingFinish == null) {
+            LOGGER.debug("The pending finish of upload: {} is finished, failed or leased by another worker.", tusId);
+        }
+
+        return pendingFinish;
+    }
+
+    private Update leaseUpdate(LocalDateTime now) {
+        return new Update()
+                .set(OWNER, serviceInstance.getId())
+                .set(LEASE_EXPIRY_DATE, now.plusNanos(leaseDuration * 1_000_000));
+    }
+
+    private void advance(PendingFinish pendingFinish, PendingFinish.Stage stage) {
+        pendingFinish.setStage(stage);
+        mongoOperations.updateFirst(Query.query(Criteria.where(ID).is(pendingFinish.getTusId())),
+                leaseUpdate(LocalDateTime.now()).set(STAGE, stage), PendingFinish.class);
+    }
+
+    private void scheduleRetry(PendingFinish pendingFinish, Exception cause) {
+        int attempts = pendingFinish.getAttempts() + 1;
+
+        Update update = new Update()
+                .set(ATTEMPTS, attempts)
+                .set(LAST_ERROR, cause.getMessage())
+                .unset(OWNER)
+                .unset(LEASE_EXPIRY_DATE);
+
+        if (attempts >= maxAttempts) {
+            LOGGER.error("Could not finish the upload: {} after {} attempts. Error message: {}",
+                    pendingFinish.getTusId(), attempts, cause.getMessage());
+            update.set(STAGE, PendingFinish.Stage.FAILED);
+        } else {
+            long delay = retryDelay << Math.min(attempts - 1, MAX_RETRY_DELAY_SHIFT);
+            LOGGER.warn("Could not finish the upload: {} at stage {}, retrying in {} ms. Error message: {}",
+                    pendingFinish.getTusId(), pendingFinish.getStage(), delay, cause.getMessage());
+            update.set(NEXT_ATTEMPT_DATE, LocalDateTime.now().plusNanos(delay * 1_000_000));
+        }
+
+        mongoOperations.updateFirst(Query.query(Criteria.where(ID).is(pendingFinish.getTusId())), update, PendingFinish.class);
+    }
+
+    private void transferFile(File file, List<String> partialUploadIds) throws IOException {
+        Path targetFilePath = Paths.get(file.getTargetPath());
+        String fullSourcePath = file.getUploadPath();
+
+        if (Files.exists(targetFilePath) && Files.notExists(Paths.get(fullSourcePath))) {
+            long targetSize = Files.size(targetFilePath);
+            if (targetSize == file.getTotalSize()) {
+                LOGGER.debug("The file: {} has already been moved to its target path.", file.getFilename());
+                return;
+            }
+            if (partialUploadIds.isEmpty()) {
+                throw new IOException(String.format("The file: %s at its target path has %d bytes instead of %d, and its upload is gone.",
+                        file.getFilename(), targetSize, file.getTotalSize()));
+            }
+            LOGGER.warn("The file: {} at its target path has {} bytes instead of {}, it is assembled again.",
+                    file.getFilename(), targetSize, file.getTotalSize());
+        }
+
+        String fullTargetPath = targetFilePath.getParent().toString();
+        if (partialUploadIds.isEmpty()) {
+            FileTransfer transfer = moveFile(file.getFilename(), fullSourcePath, fullTargetPath,
+                    runningChecksumStore.load(file.getGeneratedTusId()));
+            if (transfer.getChecksum() != null) {
+                runningChecksumStore.store(file.getGeneratedTusId(), transfer.getChecksum());
+            }
+            deleteInfoFile(fullSourcePath);
+        } else {
+            assembleFile(file, partialUploadIds, fullSourcePath);
+        }
+    }
+
+    /**
+     * Assembles the file of a final upload of the tus concatenation extension from its partial uploads
+     * into a part file next to the target path, then moves it into place and removes the partial uploads from the storage.
+     * The target path only ever holds a complete file, even if the service crashes during the assembly.
+     * The partial uploads are not recorded anywhere, so they are looked up on the storage volumes.
+     * They are recorded as consumed by the final upload, so they are not modified until they are removed here.
+     * The assembly is an interactive operation of the {@link IoScheduler} on the volume of the target path.
+     */
+    void assembleFile(File file, List<String> partialUploadIds, String fullSourcePath) throws IOException {
+        List<Path> partialFilePaths = partialUploadIds.stream()
+                .map(partialUploadId -> Paths.get(storageVolumes.locate(partialUploadId + BIN_FILE_EXTENSION_BY_TUS)))
+                .collect(Collectors.toList());
+
+        Path targetFilePath = Paths.get(file.getTargetPath());
+        Path partFilePath = Paths.get(file.getTargetPath() + PART_FILE_EXTENSION);
+        Files.deleteIfExists(partFilePath);
+        try (IoPermit permit = ioScheduler.acquire(targetFilePath, IoClass.INTERACTIVE)) {
+            concatenateFiles(partialFilePaths, partFilePath, permit);
+        }
+        Files.move(partFilePath, targetFilePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        deletePartialUploads(partialUploadIds);
+        Files.deleteIfExists(Paths.get(fullSourcePath));
+        deleteInfoFile(fullSourcePath);
+    }
+
+    private void deletePartialUploads(List<String> partialUploadIds) throws IOException {
+        for (String partialUploadId : partialUploadIds) {
+            Files.deleteIfExists(Paths.get(storageVolumes.locate(partialUploadId + BIN_FILE_EXTENSION_BY_TUS)));
+            Files.deleteIfExists(Paths.get(storageVolumes.locate(partialUploadId + INFO_FILE_EXTENSION_BY_TUS)));
+        }
+    }
+
+    void concatenateFiles(List<Path> sourceFilePaths, Path targetFilePath, IoPermit permit) throws IOException {
+        Files.createDirectories(targetFilePath.getParent());
+
+        FileChannel target = FileChannel.open(targetFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try (target) {
+            for (Path sourceFilePath : sourceFilePaths) {
+                try (FileChannel source = FileChannel.open(sourceFilePath, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = source.size();
+                    while (position < size) {
+                        long transferred = source.transferTo(position, size - position, target);
+                        permit.throttle(transferred);
+                        position += transferred;
+                    }
+                }
+            }
+            target.force(true);
+        } catch (IOException ex) {
+            Files.deleteIfExists(targetFilePath);
+            throw ex;
+        }
+    }
+
+    /**
+     * Moves the uploaded file to its target path. When the file has to be copied to another file system,
+     * the given running checksum of the upload is completed while copying it and returned with the transfer.
+     */
+    FileTransfer moveFile(String filename, String fullSourcePath, String fullTargetPath, RunningChecksum runningChecksum)
+            throws IOException {
+        return fileTransferService.move(Paths.get(fullSourcePath), Paths.get(fullTargetPath, filename), IoClass.INTERACTIVE,
+                runningChecksum);
+    }
+
+    void deleteInfoFile(String fullSourcePath) throws IOException {
+        Files.deleteIfExists(Paths.get(fullSourcePath.substring(0, fullSourcePath.length() - 3) + "info"));
+    }
+}
@@ -0,0 +1,108 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.model.UploadProgress;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for coalescing the progress events of the uploads.
+ * Only the latest progress of an upload is kept in memory and the pending progresses are written to the database
+ * in one batch periodically or when there are too many of them.
+ * The first progress event of an upload is written straight away, so an unknown upload can be reported to the client.
+ * The uploads confirmed that way are forgotten after a while without progress, so the abandoned ones do not pile up.
+ */
+@Service
+public class UploadProgressBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UploadProgressBuffer.class);
+
+    private FileUpdateService fileUpdateService;
+
+    private int flushThreshold;
+
+    private final Map<String, UploadProgress> pendingProgresses = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> confirmedUploads;
+
+    public UploadProgressBuffer(FileUpdateService fileUpdateService,
+                                @Value("${file-upload.progressBuffer.flushThreshold:500}") int flushThreshold,
+                                @Value("${file-upload.progressBuffer.confirmedUploads.maximumSize:100000}") long confirmedUploadsMaximumSize,
+                                @Value("${file-upload.progressBuffer.confirmedUploads.expireAfterAccess:600}") long confirmedUploadsExpireAfterAccess) {
+        this.fileUpdateService = fileUpdateService;
+        this.flushThreshold = flushThreshold;
+        this.confirmedUploads = Caffeine.newBuilder()
+                .maximumSize(confirmedUploadsMaximumSize)
+                .expireAfterAccess(confirmedUploadsExpireAfterAccess, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public ResponseEntity<Object> record(String tusId, long uploadedSize, LocalDateTime uploadStartDate) {
+        if (confirmedUploads.getIfPresent(tusId) == null) {
+            ResponseEntity<Object> response = fileUpdateService.updateUploadProgress(tusId, uploadedSize, uploadStartDate);
+            if (response.getStatusCode().equals(HttpStatus.OK)) {
+                confirmedUploads.put(tusId, Boolean.TRUE);
+            }
+
+            return response;
+        }
+
+        pendingProgresses.merge(tusId, new UploadProgress(uploadedSize, uploadStartDate), UploadProgress::merge);
+
+        if (pendingProgresses.size() >= flushThreshold) {
+            flush();
+        }
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Writes the pending progress of the given upload and stops buffering its progress events.
+     * It has to be called before the upload gets finished or terminated.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     */
+    public void flush(String tusId) {
+        confirmedUploads.invalidate(tusId);
+
+        UploadProgress uploadProgress = pendingProgresses.remove(tusId);
+        if (uploadProgress != null) {
+            fileUpdateService.updateUploadProgress(tusId, uploadProgress.getUploadedSize(), uploadProgress.getUploadStartDate());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${file-upload.progressBuffer.flushInterval:1000}")
+    public void flush() {
+        Map<String, UploadProgress> progressesToWrite = new HashMap<>();
+        for (String tusId : pendingProgresses.keySet()) {
+            UploadProgress uploadProgress = pendingProgresses.remove(tusId);
+            if (uploadProgress != null) {
+                progressesToWrite.put(tusId, uploadProgress);
+            }
+        }
+
+        if (progressesToWrite.isEmpty()) {
+            return;
+        }
+
+        try {
+            fileUpdateService.updateUploadProgresses(progressesToWrite);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Writing the progress of {} upload(s) failed, they will be retried. Error message: {}",
+                    progressesToWrite.size(), ex.getMessage());
+            progressesToWrite.forEach((tusId, uploadProgress) ->
+                    pendingProgresses.merge(tusId, uploadProgress, UploadProgress::merge));
+        }
+    }
+}
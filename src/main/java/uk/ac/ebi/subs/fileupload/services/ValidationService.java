@@ -2,7 +2,6 @@ package uk.ac.ebi.subs.fileupload.services;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -10,6 +9,9 @@ import org.springframework.util.StringUtils;
 import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
 import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.security.TokenService;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
+import uk.ac.ebi.subs.fileupload.services.outbox.MessageOutbox;
 import uk.ac.ebi.subs.messaging.Exchanges;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
@@ -29,11 +31,15 @@ public class ValidationService {
     @NonNull
     private SubmissionService submissionService;
     @NonNull
-    private RabbitMessagingTemplate rabbitMessagingTemplate;
+    private MessageOutbox messageOutbox;
     @NonNull
     private ValidationResultRepository validationResultRepository;
     @NonNull
     private FileRepository fileRepository;
+    @NonNull
+    private FileUpdateService fileUpdateService;
+    @NonNull
+    private TokenService tokenService;
 
     private static final String FILE_REF_VALIDATION_ROUTING_KEY = "usi.file.created";
 
@@ -59,6 +65,16 @@ public class ValidationService {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Verify the JWT token of the file upload request.
+     *
+     * @param jwtToken the JWT security token from the original TUS client's file upload request
+     * @return the verified claims of the token
+     */
+    public VerifiedToken verifyToken(String jwtToken) {
+        return tokenService.verify(jwtToken);
+    }
+
     public ResponseEntity<Object> validateMetadata(TUSFileInfo.MetaData fileMetadata) {
         String jwtToken = fileMetadata.getJwtToken();
         String submissionId = fileMetadata.getSubmissionID();
@@ -81,32 +97,52 @@ public class ValidationService {
         return response;
     }
 
+    /**
+     * Creates the validation result of the given file and requests the validation of its reference.
+     * Only the validation result field of the file document is updated, so the fields recorded by
+     * the {@link FileUpdateService} are kept.
+     *
+     * @param tusId the ID of the upload generated by the tus server
+     * @return the updated file document
+     */
     public File validateFileReference(String tusId) {
         File persistedFile = fileRepository.findByGeneratedTusId(tusId);
-        createValidationResult(persistedFile);
-        sendFileReferenceValidationEvent(persistedFile);
+        File updatedFile = fileUpdateService.recordValidationResult(tusId, createValidationResult(persistedFile));
+        sendFileReferenceValidationEvent(updatedFile);
 
-        return persistedFile;
+        return updatedFile;
     }
 
-    private void createValidationResult(File file) {
+    /**
+     * Inserts a new validation result for the given file without modifying the file document itself.
+     *
+     * @param file the file the validation result belongs to
+     * @return the inserted validation result
+     */
+    public ValidationResult createValidationResult(File file) {
         ValidationResult validationResult = new ValidationResult();
         validationResult.setEntityUuid(file.getId());
         validationResult.setDataTypeId(FILES_DATA_TYPE_ID);
         validationResult.setUuid(UUID.randomUUID().toString());
 
         validationResult.setSubmissionId(file.getSubmissionId());
-        validationResultRepository.save(validationResult);
 
-        file.setValidationResult(validationResult);
+        return validationResultRepository.insert(validationResult);
+    }
 
-        fileRepository.save(file);
+    /**
+     * Deletes a validation result that no file document refers to.
+     *
+     * @param validationResult the validation result to delete
+     */
+    public void deleteValidationResult(ValidationResult validationResult) {
+        validationResultRepository.delete(validationResult);
     }
 
-    private void sendFileReferenceValidationEvent(uk.ac.ebi.subs.data.fileupload.File file) {
+    public void sendFileReferenceValidationEvent(uk.ac.ebi.subs.data.fileupload.File file) {
         FileUploadValidationEnvelopeToCoordinator validationEnvelope =
                 new FileUploadValidationEnvelopeToCoordinator(file.getSubmissionId(), file);
 
-        rabbitMessagingTemplate.convertAndSend(Exchanges.SUBMISSIONS, FILE_REF_VALIDATION_ROUTING_KEY, validationEnvelope);
+        messageOutbox.publish(Exchanges.SUBMISSIONS, FILE_REF_VALIDATION_ROUTING_KEY, validationEnvelope);
     }
 }
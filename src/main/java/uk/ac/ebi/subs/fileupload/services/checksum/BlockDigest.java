@@ -0,0 +1,133 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class is the base of the message digests processing the data in 64 byte blocks.
+ * Unlike {@link java.security.MessageDigest} its internal state can be exported and imported again,
+ * so the digest of a growing file can be continued after a restart of the service.
+ */
+abstract class BlockDigest {
+
+    static final int BLOCK_SIZE = 64;
+
+    private static final int LENGTH_SIZE = Long.BYTES;
+
+    private final int[] state;
+    private final byte[] pendingBlock = new byte[BLOCK_SIZE];
+    private long byteCount;
+
+    BlockDigest(int[] initialState) {
+        this.state = initialState.clone();
+    }
+
+    /**
+     * The byte order of the words of the blocks, the message length and the digest.
+     */
+    abstract ByteOrder byteOrder();
+
+    /**
+     * Processes the next 64 bytes of the given data into the given state.
+     */
+    abstract void processBlock(int[] state, ByteBuffer data);
+
+    /**
+     * Updates the digest with the remaining bytes of the given buffer and moves its position to its limit.
+     *
+     * @param input the bytes to add to the digest
+     */
+    void update(ByteBuffer input) {
+        ByteBuffer data = input.slice().order(byteOrder());
+        input.position(input.limit());
+
+        int pendingLength = (int) (byteCount % BLOCK_SIZE);
+        byteCount += data.remaining();
+
+        if (pendingLength > 0) {
+            int length = Math.min(BLOCK_SIZE - pendingLength, data.remaining());
+            data.get(pendingBlock, pendingLength, length);
+            if (pendingLength + length < BLOCK_SIZE) {
+                return;
+            }
+            processBlock(state, ByteBuffer.wrap(pendingBlock).order(byteOrder()));
+        }
+
+        while (data.remaining() >= BLOCK_SIZE) {
+            processBlock(state, data);
+        }
+        data.get(pendingBlock, 0, data.remaining());
+    }
+
+    /**
+     * Calculates the digest of the bytes added so far. The digest can still be updated afterwards.
+     *
+     * @return the digest
+     */
+    byte[] digest() {
+        int pendingLength = (int) (byteCount % BLOCK_SIZE);
+        int paddedLength = pendingLength + 1 + LENGTH_SIZE > BLOCK_SIZE ? 2 * BLOCK_SIZE : BLOCK_SIZE;
+
+        ByteBuffer padding = ByteBuffer.allocate(paddedLength).order(byteOrder());
+        padding.put(pendingBlock, 0, pendingLength);
+        padding.put((byte) 0x80);
+        padding.putLong(paddedLength - LENGTH_SIZE, byteCount * Byte.SIZE);
+        padding.rewind();
+
+        int[] finalState = state.clone();
+        while (padding.hasRemaining()) {
+            processBlock(finalState, padding);
+        }
+
+        ByteBuffer digest = ByteBuffer.allocate(finalState.length * Integer.BYTES).order(byteOrder());
+        for (int word : finalState) {
+            digest.putInt(word);
+        }
+        return digest.array();
+    }
+
+    long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the internal state of the digest: the chaining values, the number of bytes and the pending bytes
+     */
+    byte[] exportState() {
+        int pendingLength = (int) (byteCount % BLOCK_SIZE);
+        ByteBuffer exported = ByteBuffer.allocate(state.length * Integer.BYTES + Long.BYTES + pendingLength);
+        for (int word : state) {
+            exported.putInt(word);
+        }
+        exported.putLong(byteCount);
+        exported.put(pendingBlock, 0, pendingLength);
+
+        return exported.array();
+    }
+
+    /**
+     * Replaces the internal state of the digest with a state exported by the same kind of digest.
+     *
+     * @param exportedState the state returned by {@link #exportState()}
+     */
+    void importState(byte[] exportedState) {
+        ByteBuffer exported = ByteBuffer.wrap(exportedState);
+        int headerLength = state.length * Integer.BYTES + Long.BYTES;
+        if (exportedState.length < headerLength) {
+            throw new IllegalArgumentException("The exported digest state is too short.");
+        }
+
+        int[] importedState = new int[state.length];
+        for (int i = 0; i < importedState.length; i++) {
+            importedState[i] = exported.getInt();
+        }
+        long importedByteCount = exported.getLong();
+        if (importedByteCount < 0 || exported.remaining() != importedByteCount % BLOCK_SIZE) {
+            throw new IllegalArgumentException("The exported digest state is corrupted.");
+        }
+
+        System.arraycopy(importedState, 0, state, 0, state.length);
+        byteCount = importedByteCount;
+        exported.get(pendingBlock, 0, exported.remaining());
+    }
+}
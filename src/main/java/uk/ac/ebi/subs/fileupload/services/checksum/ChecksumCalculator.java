@@ -0,0 +1,28 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Calculates the MD5, SHA-256 and CRC32C checksums of the bytes of a file, passed to it in order.
+ */
+public interface ChecksumCalculator {
+
+    /**
+     * Advances the checksums over the remaining bytes of the given buffer and moves its position to its limit.
+     *
+     * @param data the bytes following the bytes processed so far
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * @return the number of bytes processed so far
+     */
+    long getOffset();
+
+    /**
+     * @return the checksums of the bytes processed so far
+     */
+    FileChecksums getChecksums();
+}
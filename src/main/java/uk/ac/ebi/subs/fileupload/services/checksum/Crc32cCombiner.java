@@ -0,0 +1,81 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+/**
+ * This class combines the CRC32C checksums of two consecutive byte ranges into the checksum of the whole range,
+ * the same way as {@code crc32_combine} of zlib does it for CRC32.
+ * It lets the running checksum keep using the intrinsic {@link java.util.zip.CRC32C}, that can not be seeded.
+ */
+final class Crc32cCombiner {
+
+    /** The reflected Castagnoli polynomial. */
+    private static final int POLYNOMIAL = 0x82f63b78;
+
+    private static final int[] ONE_ZERO_BIT_OPERATOR = new int[32];
+
+    static {
+        ONE_ZERO_BIT_OPERATOR[0] = POLYNOMIAL;
+        for (int i = 1; i < ONE_ZERO_BIT_OPERATOR.length; i++) {
+            ONE_ZERO_BIT_OPERATOR[i] = 1 << (i - 1);
+        }
+    }
+
+    private Crc32cCombiner() {
+    }
+
+    /**
+     * @param firstCrc the checksum of the first range
+     * @param secondCrc the checksum of the second range
+     * @param secondLength the length of the second range in bytes
+     * @return the checksum of the first range followed by the second range
+     */
+    static long combine(long firstCrc, long secondCrc, long secondLength) {
+        if (secondLength <= 0) {
+            return firstCrc;
+        }
+
+        int[] even = new int[32];
+        int[] odd = new int[32];
+
+        // operators for two and four zero bits
+        square(even, ONE_ZERO_BIT_OPERATOR);
+        square(odd, even);
+
+        int crc = (int) firstCrc;
+        long length = secondLength;
+        // apply the operators of the set bits of the length, starting with the one of a single zero byte
+        do {
+            square(even, odd);
+            if ((length & 1) != 0) {
+                crc = times(even, crc);
+            }
+            length >>>= 1;
+            if (length == 0) {
+                break;
+            }
+
+            square(odd, even);
+            if ((length & 1) != 0) {
+                crc = times(odd, crc);
+            }
+            length >>>= 1;
+        } while (length != 0);
+
+        return (crc ^ (int) secondCrc) & 0xffffffffL;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int i = 0; i < 32; i++) {
+            square[i] = times(matrix, matrix[i]);
+        }
+    }
+}
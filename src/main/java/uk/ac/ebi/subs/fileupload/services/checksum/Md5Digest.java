@@ -0,0 +1,79 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * MD5 message digest (RFC 1321) with an exportable internal state.
+ */
+class Md5Digest extends BlockDigest {
+
+    private static final int[] INITIAL_STATE = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476};
+
+    private static final int[] SHIFTS = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21
+    };
+
+    private static final int[] CONSTANTS = new int[64];
+
+    static {
+        for (int i = 0; i < CONSTANTS.length; i++) {
+            CONSTANTS[i] = (int) (long) (Math.abs(Math.sin(i + 1)) * 4294967296.0);
+        }
+    }
+
+    private final int[] words = new int[16];
+
+    Md5Digest() {
+        super(INITIAL_STATE);
+    }
+
+    @Override
+    ByteOrder byteOrder() {
+        return ByteOrder.LITTLE_ENDIAN;
+    }
+
+    @Override
+    void processBlock(int[] state, ByteBuffer data) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = data.getInt();
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+
+        for (int i = 0; i < 64; i++) {
+            int f;
+            int g;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                g = i;
+            } else if (i < 32) {
+                f = (d & b) | (~d & c);
+                g = (5 * i + 1) & 15;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                g = (3 * i + 5) & 15;
+            } else {
+                f = c ^ (b | ~d);
+                g = (7 * i) & 15;
+            }
+
+            int temp = d;
+            d = c;
+            c = b;
+            b += Integer.rotateLeft(a + f + CONSTANTS[i] + words[g], SHIFTS[i]);
+            a = temp;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class calculates the checksums of a whole file with the message digests of the JDK, which are intrinsified
+ * and much faster than the digests of the {@link RunningChecksum}. Their state can not be exported, so it is used
+ * whenever a file is hashed from its first byte in one go and the state does not have to survive a restart.
+ */
+public class MessageDigestChecksum implements ChecksumCalculator {
+
+    private final MessageDigest md5 = messageDigest("MD5");
+    private final MessageDigest sha256 = messageDigest("SHA-256");
+    private final CRC32C crc32c = new CRC32C();
+    private long offset;
+
+    @Override
+    public void update(ByteBuffer data) {
+        offset += data.remaining();
+
+        md5.update(data.duplicate());
+        sha256.update(data.duplicate());
+        crc32c.update(data);
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the checksums of the bytes processed so far, without finishing the digests
+     */
+    @Override
+    public FileChecksums getChecksums() {
+        return new FileChecksums(Utils.toHex(digest(md5)), Utils.toHex(digest(sha256)),
+                String.format("%08x", crc32c.getValue()));
+    }
+
+    private static byte[] digest(MessageDigest messageDigest) {
+        try {
+            return ((MessageDigest) messageDigest.clone()).digest();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(messageDigest.getAlgorithm() + " digest can not be cloned", e);
+        }
+    }
+
+    private static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " algorithm is not available", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * This class holds the MD5, SHA-256 and CRC32C checksums of the first bytes of a file that is still growing.
+ * The checksums are advanced over the newly appended bytes only, and the whole state can be serialised,
+ * so the checksums of an upload survive a restart of the service.
+ * Its digests are slower than the ones of the JDK, so a file hashed from its first byte in one go
+ * uses a {@link MessageDigestChecksum} instead.
+ */
+public class RunningChecksum implements ChecksumCalculator {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final Md5Digest md5 = new Md5Digest();
+    private final Sha256Digest sha256 = new Sha256Digest();
+    private long crc32c;
+    private long offset;
+
+    @Override
+    public void update(ByteBuffer data) {
+        int length = data.remaining();
+
+        md5.update(data.duplicate());
+        sha256.update(data.duplicate());
+
+        CRC32C rangeCrc = new CRC32C();
+        rangeCrc.update(data);
+        crc32c = Crc32cCombiner.combine(crc32c, rangeCrc.getValue(), length);
+
+        offset += length;
+    }
+
+    @Override
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public FileChecksums getChecksums() {
+        return new FileChecksums(Utils.toHex(md5.digest()), Utils.toHex(sha256.digest()), String.format("%08x", crc32c));
+    }
+
+    /**
+     * Serialises the state of the checksums. The serialised state ends with its own CRC32,
+     * so a state damaged by a crash is recognised when it is read back.
+     *
+     * @return the serialised state
+     */
+    public byte[] toBytes() {
+        byte[] md5State = md5.exportState();
+        byte[] sha256State = sha256.exportState();
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + md5State.length
+                + Integer.BYTES + sha256State.length + Integer.BYTES + Integer.BYTES);
+        buffer.putInt(FORMAT_VERSION)
+                .putLong(offset)
+                .putInt(md5State.length).put(md5State)
+                .putInt(sha256State.length).put(sha256State)
+                .putInt((int) crc32c);
+
+        CRC32 stateCrc = new CRC32();
+        stateCrc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) stateCrc.getValue());
+
+        return buffer.array();
+    }
+
+    /**
+     * Restores the checksums from their serialised state.
+     *
+     * @param bytes the state returned by {@link #toBytes()}
+     * @return the restored checksums
+     * @throws IllegalArgumentException if the state is damaged or has an unknown format
+     */
+    public static RunningChecksum fromBytes(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            CRC32 stateCrc = new CRC32();
+            stateCrc.update(bytes, 0, bytes.length - Integer.BYTES);
+            if ((int) stateCrc.getValue() != buffer.getInt(bytes.length - Integer.BYTES)) {
+                throw new IllegalArgumentException("The checksum state is damaged.");
+            }
+
+            int formatVersion = buffer.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown checksum state format: " + formatVersion);
+            }
+
+            RunningChecksum runningChecksum = new RunningChecksum();
+            runningChecksum.offset = buffer.getLong();
+            runningChecksum.md5.importState(readBytes(buffer));
+            runningChecksum.sha256.importState(readBytes(buffer));
+            runningChecksum.crc32c = buffer.getInt() & 0xffffffffL;
+
+            if (runningChecksum.md5.getByteCount() != runningChecksum.offset
+                    || runningChecksum.sha256.getByteCount() != runningChecksum.offset) {
+                throw new IllegalArgumentException("The checksum state is inconsistent.");
+            }
+
+            return runningChecksum;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("The checksum state is truncated.", e);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
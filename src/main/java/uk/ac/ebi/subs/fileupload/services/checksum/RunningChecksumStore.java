@@ -0,0 +1,74 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * This class stores the running checksums of the uploads next to their {@code <id>.bin} files
+ * in {@code <id>.digest} files. A state is written into a temporary file first, then renamed over the previous one,
+ * so a crash leaves either the previous or the new state behind.
+ */
+@Component
+public class RunningChecksumStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RunningChecksumStore.class);
+
+    private static final String DIGEST_FILE_EXTENSION = ".digest";
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private String sourcePath;
+
+    public RunningChecksumStore(@Value("${file-upload.sourceBasePath}") String sourcePath) {
+        this.sourcePath = sourcePath;
+    }
+
+    /**
+     * @param tusId the ID of the upload generated by the tus server
+     * @return the stored running checksum of the upload or null, if it has none or its state is damaged
+     */
+    public RunningChecksum load(String tusId) throws IOException {
+        Path digestFilePath = digestFilePath(tusId);
+        try {
+            return RunningChecksum.fromBytes(Files.readAllBytes(digestFilePath));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring the running checksum of upload: {}. Error message: {}", tusId, e.getMessage());
+            return null;
+        }
+    }
+
+    public void store(String tusId, RunningChecksum runningChecksum) throws IOException {
+        Path digestFilePath = digestFilePath(tusId);
+        Path temporaryFilePath = temporaryFilePath(tusId);
+
+        Files.write(temporaryFilePath, runningChecksum.toBytes());
+        Files.move(temporaryFilePath, digestFilePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void delete(String tusId) {
+        try {
+            Files.deleteIfExists(digestFilePath(tusId));
+            Files.deleteIfExists(temporaryFilePath(tusId));
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete the running checksum of upload: {}. Error message: {}", tusId, e.getMessage());
+        }
+    }
+
+    private Path digestFilePath(String tusId) {
+        return Paths.get(sourcePath, tusId + DIGEST_FILE_EXTENSION);
+    }
+
+    private Path temporaryFilePath(String tusId) {
+        return Paths.get(sourcePath, tusId + DIGEST_FILE_EXTENSION + TEMPORARY_FILE_EXTENSION);
+    }
+}
@@ -12,7 +12,15 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.services.DiskSpaceLedger;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
+import uk.ac.ebi.subs.fileupload.services.FileUpdateService;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksumStore;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolume;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransfer;
+import uk.ac.ebi.subs.fileupload.services.transfer.FileTransferService;
 import uk.ac.ebi.subs.fileupload.util.FileSource;
 import uk.ac.ebi.subs.fileupload.util.Utils;
 import uk.ac.ebi.subs.repository.model.Submission;
@@ -26,7 +34,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -56,8 +63,21 @@ public class GlobusService {
     @Autowired
     private GlobusApiClient globusApiClient;
 
-    @Value("${file-upload.sourceBasePath}")
-    private String sourceBasePath;
+    @Autowired
+    private FileTransferService fileTransferService;
+
+    @Autowired
+    private RunningChecksumStore runningChecksumStore;
+
+    @Autowired
+    private StorageVolumes storageVolumes;
+
+    @Autowired
+    private DiskSpaceLedger diskSpaceLedger;
+
+    @Autowired
+    private FileUpdateService fileUpdateService;
+
     @Value("${file-upload.targetBasePath}")
     private String targetBasePath;
 
@@ -69,9 +89,6 @@ public class GlobusService {
     @Value("${file-upload.globus.hostEndpoint.baseDirectory}")
     private String hostEndpointBaseDir;
 
-    @Value("${file-upload.filePrefixForLocalProcessing}")
-    private String filePrefixForLocalProcessing;
-
     public String getShareLink(String owner, String submissionId) {
         return getOrCreateGlobusShare(owner, submissionId).getShareLink();
     }
@@ -99,8 +116,10 @@ public class GlobusService {
                     }
                 })
                 .map(filePath -> new java.io.File(filePath.toUri()))
-                .map(file -> createFileObject(owner, submissionId, file))
-                .forEach(fileObj -> {
+                .forEach(file -> {
+                    StorageVolume volume = chooseVolume(file);
+                    File fileObj = createFileObject(owner, submissionId, file, volume);
+
                     try {
                         LOGGER.debug("Saving file document. Owner : {}, SubmissionID : {}, File : {}",
                                 owner, submissionId, fileObj.getFilename());
@@ -110,9 +129,8 @@ public class GlobusService {
                                 owner, submissionId, fileObj.getFilename());
                         moveFile(fileObj);
 
-                        fileObj.setUploadPath(fileObj.getTargetPath());
-                        fileObj.setStatus(FileStatus.READY_FOR_CHECKSUM);
-                        fileRepository.save(fileObj);
+                        fileUpdateService.recordGlobusMove(
+                                fileObj.getGeneratedTusId(), fileObj.getTargetPath(), volume.getName());
 
                         LOGGER.debug("Initiating file reference validation. Owner : {}, SubmissionID : {}, File : {}",
                                 owner, submissionId, fileObj.getFilename());
@@ -120,7 +138,7 @@ public class GlobusService {
 
                         LOGGER.debug("Initiating file processing. Owner : {}, SubmissionID : {}, File : {}",
                                 owner, submissionId, fileObj.getFilename());
-                        processFile(postReferenceValidationFile);
+                        eventHandlerService.executeFileProcessing(postReferenceValidationFile);
                     } catch (Exception ex) {
                         throw new RuntimeException("Error processing uploaded file. Owner : " + owner +
                                 ", SubmissionID : " + submissionId + ", File : " + fileObj.getFilename(), ex);
@@ -338,7 +356,21 @@ public class GlobusService {
         }
     }
 
-    private File createFileObject(String owner, String submissionId, java.io.File file) {
+    /**
+     * Chooses the storage volume of a file uploaded through Globus. A volume on the file system of the Globus share
+     * is preferred, so the file can be moved by a rename, otherwise the least loaded volume with enough space.
+     */
+    private StorageVolume chooseVolume(java.io.File file) {
+        StorageVolume volume = storageVolumes.findVolumeOnFileStoreOf(file.toPath());
+        if (volume != null) {
+            return volume;
+        }
+
+        String volumeName = diskSpaceLedger.place(file.length());
+        return volumeName != null ? storageVolumes.getVolume(volumeName) : storageVolumes.getDefaultVolume();
+    }
+
+    private File createFileObject(String owner, String submissionId, java.io.File file, StorageVolume volume) {
         Submission submission = submissionRepository.findOne(submissionId);
 
         File fileObj = new File();
@@ -354,12 +386,12 @@ public class GlobusService {
         fileObj.setUploadStartDate(LocalDateTime.now());
         fileObj.setUploadFinishDate(fileObj.getUploadStartDate());
         fileObj.setUploadPath(file.getAbsolutePath());
-        fileObj.setTargetPath(assembleTargetPath(owner, submissionId, file.getAbsolutePath()));
+        fileObj.setTargetPath(assembleTargetPath(owner, submissionId, file.getAbsolutePath(), volume));
 
         return fileObj;
     }
 
-    private String assembleTargetPath(String owner, String submissionId, String sourceFilePath) {
+    private String assembleTargetPath(String owner, String submissionId, String sourceFilePath, StorageVolume volume) {
         String genDirsPath = Utils.generateFolderName(submissionId);
 
         //Considering the possibility that files might have been uploaded into sub folders,
@@ -367,23 +399,18 @@ public class GlobusService {
         String startsWithOwner = sourceFilePath.substring(sourceFilePath.indexOf(owner));
         String withoutOwner = startsWithOwner.substring(startsWithOwner.indexOf("/") + 1);
 
-        return Paths.get(sourceBasePath, targetBasePath, genDirsPath, withoutOwner).toString();
+        return volume.resolve(targetBasePath, genDirsPath, withoutOwner);
     }
 
     private void moveFile(File file) {
         try {
-            Files.createDirectories(Paths.get(file.getTargetPath()).getParent());
-            Files.move(Paths.get(file.getUploadPath()), Paths.get(file.getTargetPath()), StandardCopyOption.ATOMIC_MOVE);
+            FileTransfer transfer = fileTransferService.move(Paths.get(file.getUploadPath()), Paths.get(file.getTargetPath()),
+                    IoClass.BULK);
+            if (transfer.getChecksum() != null) {
+                runningChecksumStore.store(file.getGeneratedTusId(), transfer.getChecksum());
+            }
         } catch (IOException e) {
             throw new RuntimeException("Error while moving file : " + file.toString(), e);
         }
     }
-
-    private void processFile(File file) {
-        if (!file.getFilename().startsWith(filePrefixForLocalProcessing)) {
-            eventHandlerService.executeFileProcessingOnCluster(file);
-        } else {
-            eventHandlerService.executeFileProcessingOnVM(file);
-        }
-    }
 }
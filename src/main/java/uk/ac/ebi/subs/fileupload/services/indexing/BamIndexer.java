@@ -0,0 +1,171 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import uk.ac.ebi.subs.fileupload.services.pipeline.BgzfInputStream;
+import uk.ac.ebi.subs.fileupload.services.pipeline.ChunkStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds the BAI index of a coordinate sorted BAM file.
+ * The BGZF blocks of the file are inflated in parallel by the {@link BgzfInputStream},
+ * and only the fixed fields and the CIGAR of the records are decoded to find their intervals on the references.
+ */
+public class BamIndexer extends FileIndexer {
+
+    static final String FORMAT = "BAI";
+
+    private static final String EXTENSION = ".bai";
+    private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private static final int FLAG_UNMAPPED = 4;
+    private static final int FIXED_FIELDS_SIZE = 32;
+    // the CIGAR operations that consume the reference: M, D, N, = and X
+    private static final int REFERENCE_CONSUMING_OPERATIONS = 1 | 1 << 2 | 1 << 3 | 1 << 7 | 1 << 8;
+
+    private final ForkJoinPool inflaterPool;
+
+    public BamIndexer(Path filePath, ForkJoinPool inflaterPool) {
+        super(filePath, FORMAT, EXTENSION);
+        this.inflaterPool = inflaterPool;
+    }
+
+    @Override
+    protected void writeIndex(ChunkStream chunks, OutputStream out) throws IOException {
+        try (BgzfInputStream bamStream = new BgzfInputStream(chunks, inflaterPool,
+                inflaterPool.getParallelism() * BLOCKS_IN_FLIGHT_PER_THREAD)) {
+            BinningIndex index = new BinningIndex(readHeader(bamStream));
+
+            byte[] record = new byte[FIXED_FIELDS_SIZE];
+            byte[] blockSizeBytes = new byte[4];
+            long recordCount = 0;
+            while (true) {
+                long startOffset = virtualOffset(bamStream);
+                if (!readFullyOrEnd(bamStream, blockSizeBytes)) {
+                    break;
+                }
+
+                int blockSize = intAt(blockSizeBytes, 0);
+                if (blockSize < FIXED_FIELDS_SIZE) {
+                    throw new IOException("Invalid BAM record: " + recordCount + ", its size is " + blockSize);
+                }
+                if (record.length < blockSize) {
+                    record = new byte[Math.max(blockSize, record.length * 2)];
+                }
+                readFully(bamStream, record, blockSize);
+
+                int referenceId = intAt(record, 0);
+                int start = intAt(record, 4);
+                int flag = unsignedShortAt(record, 14);
+                int end = start + referenceLength(record, blockSize, recordCount);
+                index.add(referenceId, start, end, startOffset, virtualOffset(bamStream), (flag & FLAG_UNMAPPED) == 0);
+                recordCount++;
+            }
+
+            LittleEndianOutputStream indexStream = new LittleEndianOutputStream(out);
+            indexStream.write(new byte[]{'B', 'A', 'I', 1});
+            indexStream.writeInt(index.getReferenceCount());
+            index.write(indexStream);
+            indexStream.flush();
+        }
+    }
+
+    /**
+     * Reads the header of the file up to its first record.
+     *
+     * @return the number of the references of the file
+     */
+    private static int readHeader(InputStream bamStream) throws IOException {
+        byte[] magic = new byte[BAM_MAGIC.length];
+        readFully(bamStream, magic, magic.length);
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != BAM_MAGIC[i]) {
+                throw new IOException("The file is not a BAM file.");
+            }
+        }
+
+        skipFully(bamStream, readInt(bamStream));
+        int referenceCount = readInt(bamStream);
+        for (int i = 0; i < referenceCount; i++) {
+            // the name of the reference and its length
+            skipFully(bamStream, readInt(bamStream) + 4L);
+        }
+        return referenceCount;
+    }
+
+    /**
+     * @return the number of the reference bases covered by the CIGAR of the given record
+     */
+    private static int referenceLength(byte[] record, int blockSize, long recordIndex) throws IOException {
+        int readNameLength = record[8] & 0xff;
+        int cigarLength = unsignedShortAt(record, 12);
+        int cigarOffset = FIXED_FIELDS_SIZE + readNameLength;
+        if (cigarOffset + cigarLength * 4 > blockSize) {
+            throw new IOException("Invalid BAM record: " + recordIndex + ", its CIGAR exceeds the record");
+        }
+
+        int length = 0;
+        for (int i = 0; i < cigarLength; i++) {
+            int operation = intAt(record, cigarOffset + i * 4);
+            if ((REFERENCE_CONSUMING_OPERATIONS & 1 << (operation & 0xf)) != 0) {
+                length += operation >>> 4;
+            }
+        }
+        return length;
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        byte[] bytes = new byte[4];
+        readFully(in, bytes, 4);
+        return intAt(bytes, 0);
+    }
+
+    private static boolean readFullyOrEnd(InputStream in, byte[] bytes) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        bytes[0] = (byte) first;
+        readFully(in, bytes, 1, bytes.length - 1);
+        return true;
+    }
+
+    private static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+        readFully(in, bytes, 0, length);
+    }
+
+    private static void readFully(InputStream in, byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(bytes, offset, length);
+            if (read < 0) {
+                throw new EOFException("The BAM file ends in the middle of a record.");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        if (length < 0) {
+            throw new IOException("The header of the BAM file is corrupt.");
+        }
+        for (long i = 0; i < length; i++) {
+            if (in.read() < 0) {
+                throw new EOFException("The BAM file ends in its header.");
+            }
+        }
+    }
+
+    private static int unsignedShortAt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int intAt(byte[] bytes, int offset) {
+        return unsignedShortAt(bytes, offset) | unsignedShortAt(bytes, offset + 2) << 16;
+    }
+}
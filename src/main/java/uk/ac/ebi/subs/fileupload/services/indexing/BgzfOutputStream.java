@@ -0,0 +1,96 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses its output into BGZF blocks and ends it with the BGZF end-of-file marker, as required by the tabix index.
+ */
+class BgzfOutputStream extends FilterOutputStream {
+
+    private static final int MAX_INPUT_SIZE = 65280;
+    private static final int MAX_BLOCK_SIZE = 65536;
+    private static final int HEADER_SIZE = 18;
+
+    private static final byte[] EOF_BLOCK = {
+            31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 66, 67, 2, 0, 27, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private final byte[] input = new byte[MAX_INPUT_SIZE];
+    private final byte[] block = new byte[MAX_BLOCK_SIZE];
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private int inputLength;
+
+    BgzfOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (inputLength == input.length) {
+            writeBlock();
+        }
+        input[inputLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (inputLength == input.length) {
+                writeBlock();
+            }
+            int count = Math.min(length, input.length - inputLength);
+            System.arraycopy(bytes, offset, input, inputLength, count);
+            inputLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (inputLength > 0) {
+                writeBlock();
+            }
+            out.write(EOF_BLOCK);
+        } finally {
+            deflater.end();
+            super.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(input, 0, inputLength);
+        deflater.finish();
+        int compressedLength = deflater.deflate(block, HEADER_SIZE, MAX_BLOCK_SIZE - HEADER_SIZE - 8);
+        if (!deflater.finished()) {
+            throw new IOException("The BGZF block could not be compressed into its maximum size.");
+        }
+
+        int blockSize = HEADER_SIZE + compressedLength + 8;
+        System.arraycopy(EOF_BLOCK, 0, block, 0, 16);
+        block[16] = (byte) (blockSize - 1);
+        block[17] = (byte) ((blockSize - 1) >>> 8);
+
+        crc.reset();
+        crc.update(input, 0, inputLength);
+        writeIntLittleEndian(HEADER_SIZE + compressedLength, (int) crc.getValue());
+        writeIntLittleEndian(HEADER_SIZE + compressedLength + 4, inputLength);
+
+        out.write(block, 0, blockSize);
+        inputLength = 0;
+    }
+
+    private void writeIntLittleEndian(int offset, int value) {
+        block[offset] = (byte) value;
+        block[offset + 1] = (byte) (value >>> 8);
+        block[offset + 2] = (byte) (value >>> 16);
+        block[offset + 3] = (byte) (value >>> 24);
+    }
+}
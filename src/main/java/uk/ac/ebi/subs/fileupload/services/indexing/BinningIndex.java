@@ -0,0 +1,169 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the binning and linear indexes shared by the BAI and TBI formats from the records of a coordinate sorted file.
+ * Every record is given with its 0-based, half-open interval on its reference
+ * and the BGZF virtual offsets of its start and its end.
+ */
+class BinningIndex {
+
+    private static final int MIN_SHIFT = 14;
+    private static final int PSEUDO_BIN = 37450;
+
+    private final List<ReferenceIndex> references = new ArrayList<>();
+    private int lastReferenceId = -1;
+    private int lastStart = -1;
+    private boolean unplacedRecordSeen;
+    private long unplacedRecordCount;
+
+    BinningIndex(int referenceCount) {
+        for (int i = 0; i < referenceCount; i++) {
+            references.add(new ReferenceIndex());
+        }
+    }
+
+    /**
+     * Adds a record to the index.
+     *
+     * @param referenceId the index of the reference of the record, or -1 if the record has no coordinates
+     * @param start the 0-based start of the record
+     * @param end the 0-based, exclusive end of the record
+     * @param startOffset the virtual offset of the start of the record
+     * @param endOffset the virtual offset of the end of the record
+     * @param mapped false if the record is unmapped, but placed at the position of its mate
+     * @throws IOException if the records are not sorted by their coordinates
+     */
+    void add(int referenceId, int start, int end, long startOffset, long endOffset, boolean mapped) throws IOException {
+        if (referenceId < 0 || start < 0) {
+            unplacedRecordSeen = true;
+            unplacedRecordCount++;
+            return;
+        }
+        if (unplacedRecordSeen || referenceId < lastReferenceId || (referenceId == lastReferenceId && start < lastStart)) {
+            throw new IOException("The file is not sorted by coordinate at reference: " + referenceId + ", position: " + start);
+        }
+        lastReferenceId = referenceId;
+        lastStart = start;
+
+        while (references.size() <= referenceId) {
+            references.add(new ReferenceIndex());
+        }
+        references.get(referenceId).add(start, Math.max(end, start + 1), startOffset, endOffset, mapped);
+    }
+
+    int getReferenceCount() {
+        return references.size();
+    }
+
+    /**
+     * Writes the indexes of the references and the number of the records without coordinates.
+     */
+    void write(LittleEndianOutputStream out) throws IOException {
+        for (ReferenceIndex reference : references) {
+            reference.write(out);
+        }
+        out.writeLong(unplacedRecordCount);
+    }
+
+    /**
+     * @return the bin of the given 0-based, half-open interval, as defined by the SAM specification
+     */
+    static int regionToBin(int start, int end) {
+        end--;
+        if (start >> 14 == end >> 14) {
+            return ((1 << 15) - 1) / 7 + (start >> 14);
+        }
+        if (start >> 17 == end >> 17) {
+            return ((1 << 12) - 1) / 7 + (start >> 17);
+        }
+        if (start >> 20 == end >> 20) {
+            return ((1 << 9) - 1) / 7 + (start >> 20);
+        }
+        if (start >> 23 == end >> 23) {
+            return ((1 << 6) - 1) / 7 + (start >> 23);
+        }
+        if (start >> 26 == end >> 26) {
+            return ((1 << 3) - 1) / 7 + (start >> 26);
+        }
+        return 0;
+    }
+
+    private static class ReferenceIndex {
+
+        private final Map<Integer, List<long[]>> bins = new TreeMap<>();
+        private long[] linearIndex = new long[0];
+
+        private long firstOffset = -1;
+        private long lastOffset;
+        private long mappedCount;
+        private long unmappedCount;
+
+        void add(int start, int end, long startOffset, long endOffset, boolean mapped) {
+            List<long[]> chunks = bins.computeIfAbsent(regionToBin(start, end), bin -> new ArrayList<>());
+            long[] lastChunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            if (lastChunk != null && lastChunk[1] == startOffset) {
+                lastChunk[1] = endOffset;
+            } else {
+                chunks.add(new long[]{startOffset, endOffset});
+            }
+
+            int lastWindow = (end - 1) >> MIN_SHIFT;
+            if (linearIndex.length <= lastWindow) {
+                int oldLength = linearIndex.length;
+                linearIndex = Arrays.copyOf(linearIndex, lastWindow + 1);
+                Arrays.fill(linearIndex, oldLength, linearIndex.length, -1);
+            }
+            for (int window = start >> MIN_SHIFT; window <= lastWindow; window++) {
+                if (linearIndex[window] == -1) {
+                    linearIndex[window] = startOffset;
+                }
+            }
+
+            if (firstOffset == -1) {
+                firstOffset = startOffset;
+            }
+            lastOffset = endOffset;
+            if (mapped) {
+                mappedCount++;
+            } else {
+                unmappedCount++;
+            }
+        }
+
+        void write(LittleEndianOutputStream out) throws IOException {
+            boolean hasRecords = firstOffset != -1;
+            out.writeInt(bins.size() + (hasRecords ? 1 : 0));
+            for (Map.Entry<Integer, List<long[]>> bin : bins.entrySet()) {
+                out.writeInt(bin.getKey());
+                out.writeInt(bin.getValue().size());
+                for (long[] chunk : bin.getValue()) {
+                    out.writeLong(chunk[0]);
+                    out.writeLong(chunk[1]);
+                }
+            }
+            if (hasRecords) {
+                out.writeInt(PSEUDO_BIN);
+                out.writeInt(2);
+                out.writeLong(firstOffset);
+                out.writeLong(lastOffset);
+                out.writeLong(mappedCount);
+                out.writeLong(unmappedCount);
+            }
+
+            // the windows without records take the offset of the window before them, the leading ones point to the start
+            out.writeInt(linearIndex.length);
+            long previousOffset = 0;
+            for (long offset : linearIndex) {
+                previousOffset = offset == -1 ? previousOffset : offset;
+                out.writeLong(previousOffset);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import uk.ac.ebi.subs.fileupload.services.pipeline.ChunkStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds the CRAI index of a coordinate sorted CRAM file.
+ * A CRAI line is written for every slice, from the headers of the containers and of the slices,
+ * so no block of the records is decompressed.
+ * The slices that hold the records of several references are not supported, their records would have to be decoded.
+ */
+public class CramIndexer extends FileIndexer {
+
+    static final String FORMAT = "CRAI";
+
+    private static final String EXTENSION = ".crai";
+    private static final byte[] CRAM_MAGIC = {'C', 'R', 'A', 'M'};
+    private static final int FILE_ID_SIZE = 20;
+    private static final int MULTIPLE_REFERENCES = -2;
+
+    private final byte[] intBuffer = new byte[4];
+
+    private ChunkStream cramStream;
+    private long offset;
+
+    public CramIndexer(Path filePath) {
+        super(filePath, FORMAT, EXTENSION);
+    }
+
+    @Override
+    protected void writeIndex(ChunkStream chunks, OutputStream out) throws IOException {
+        cramStream = chunks;
+        offset = 0;
+
+        int majorVersion = readFileDefinition();
+        GZIPOutputStream gzipStream = new GZIPOutputStream(out);
+        Writer indexWriter = new OutputStreamWriter(gzipStream, StandardCharsets.US_ASCII);
+
+        int containerCount = 0;
+        while (true) {
+            long containerOffset = offset;
+            int first = cramStream.read();
+            if (first < 0) {
+                break;
+            }
+            offset++;
+            int containerLength = first | readUnsignedByte() << 8 | readUnsignedByte() << 16 | readUnsignedByte() << 24;
+
+            readItf8(); // reference
+            readItf8(); // alignment start
+            readItf8(); // alignment span
+            int recordCount = readItf8();
+            if (majorVersion >= 3) {
+                readLtf8(); // record counter
+            } else {
+                readItf8(); // record counter
+            }
+            readLtf8(); // bases
+            readItf8(); // blocks
+            int[] landmarks = new int[readItf8()];
+            for (int i = 0; i < landmarks.length; i++) {
+                landmarks[i] = readItf8();
+            }
+            if (majorVersion >= 3) {
+                readFully(intBuffer, 4); // CRC32 of the header
+            }
+            long headerLength = offset - containerOffset;
+
+            byte[] container = new byte[containerLength];
+            readFully(container, containerLength);
+            containerCount++;
+
+            // the file header and the end of file containers have no records
+            if (recordCount == 0) {
+                continue;
+            }
+
+            for (int i = 0; i < landmarks.length; i++) {
+                int sliceEnd = i + 1 < landmarks.length ? landmarks[i + 1] : containerLength;
+                writeSlice(indexWriter, container, landmarks[i], sliceEnd, containerOffset, headerLength, containerCount);
+            }
+        }
+
+        indexWriter.flush();
+        gzipStream.finish();
+    }
+
+    /**
+     * Reads the file definition.
+     *
+     * @return the major version of the file format
+     */
+    private int readFileDefinition() throws IOException {
+        byte[] magic = new byte[CRAM_MAGIC.length];
+        readFully(magic, magic.length);
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != CRAM_MAGIC[i]) {
+                throw new IOException("The file is not a CRAM file.");
+            }
+        }
+
+        int majorVersion = readUnsignedByte();
+        readUnsignedByte(); // minor version
+        readFully(new byte[FILE_ID_SIZE], FILE_ID_SIZE);
+        if (majorVersion < 2 || majorVersion > 3) {
+            throw new IOException("The version " + majorVersion + " of the CRAM format is not supported.");
+        }
+        return majorVersion;
+    }
+
+    /**
+     * Writes the index line of the slice starting at the given landmark of a container.
+     * The slice header is a raw block at the start of the slice.
+     */
+    private void writeSlice(Writer indexWriter, byte[] container, int landmark, int sliceEnd,
+                            long containerOffset, long containerHeaderLength, int containerIndex) throws IOException {
+        if (landmark < 0 || landmark >= sliceEnd || sliceEnd > container.length) {
+            throw new IOException("Invalid CRAM container: " + containerIndex + ", its landmarks are out of its bounds");
+        }
+
+        int[] position = {landmark};
+        int compressionMethod = container[position[0]++];
+        position[0]++; // content type
+        itf8At(container, position); // content ID
+        itf8At(container, position); // compressed size
+        itf8At(container, position); // raw size
+        if (compressionMethod != 0) {
+            throw new IOException("Invalid CRAM container: " + containerIndex + ", the header of its slice is compressed");
+        }
+
+        int referenceId = itf8At(container, position);
+        int alignmentStart = itf8At(container, position);
+        int alignmentSpan = itf8At(container, position);
+        if (referenceId == MULTIPLE_REFERENCES) {
+            throw new IOException("The CRAM container: " + containerIndex
+                    + " has a slice of several references, it can not be indexed without decoding its records.");
+        }
+
+        indexWriter.write(referenceId + "\t" + alignmentStart + "\t" + alignmentSpan + "\t"
+                + containerOffset + "\t" + (containerHeaderLength + landmark) + "\t" + (sliceEnd - landmark) + "\n");
+    }
+
+    private int readItf8() throws IOException {
+        int first = readUnsignedByte();
+        if ((first & 0x80) == 0) {
+            return first;
+        }
+        if ((first & 0x40) == 0) {
+            return (first & 0x7f) << 8 | readUnsignedByte();
+        }
+        if ((first & 0x20) == 0) {
+            return (first & 0x3f) << 16 | readUnsignedByte() << 8 | readUnsignedByte();
+        }
+        if ((first & 0x10) == 0) {
+            return (first & 0x1f) << 24 | readUnsignedByte() << 16 | readUnsignedByte() << 8 | readUnsignedByte();
+        }
+        return (first & 0x0f) << 28 | readUnsignedByte() << 20 | readUnsignedByte() << 12 | readUnsignedByte() << 4
+                | readUnsignedByte() & 0x0f;
+    }
+
+    private long readLtf8() throws IOException {
+        int first = readUnsignedByte();
+        int extraBytes = Math.min(Integer.numberOfLeadingZeros(~first << 24), 8);
+        long value = extraBytes >= 7 ? 0 : first & 0xff >> (extraBytes + 1);
+        for (int i = 0; i < extraBytes; i++) {
+            value = value << 8 | readUnsignedByte();
+        }
+        return value;
+    }
+
+    private static int itf8At(byte[] bytes, int[] position) throws IOException {
+        if (position[0] >= bytes.length) {
+            throw new EOFException("The CRAM slice header ends unexpectedly.");
+        }
+        int first = bytes[position[0]] & 0xff;
+        int extraBytes = first < 0x80 ? 0 : first < 0xc0 ? 1 : first < 0xe0 ? 2 : first < 0xf0 ? 3 : 4;
+        if (position[0] + extraBytes >= bytes.length) {
+            throw new EOFException("The CRAM slice header ends unexpectedly.");
+        }
+
+        int value = first & (extraBytes == 4 ? 0x0f : 0xff >> (extraBytes + 1));
+        for (int i = 1; i <= extraBytes; i++) {
+            int next = bytes[position[0] + i] & 0xff;
+            value = i == 4 ? value << 4 | next & 0x0f : value << 8 | next;
+        }
+        position[0] += extraBytes + 1;
+        return value;
+    }
+
+    private int readUnsignedByte() throws IOException {
+        int read = cramStream.read();
+        if (read < 0) {
+            throw new EOFException("The CRAM file ends in the middle of a container.");
+        }
+        offset++;
+        return read;
+    }
+
+    private void readFully(byte[] bytes, int length) throws IOException {
+        int position = 0;
+        while (position < length) {
+            int read = cramStream.read(bytes, position, length - position);
+            if (read < 0) {
+                throw new EOFException("The CRAM file ends in the middle of a container.");
+            }
+            position += read;
+            offset += read;
+        }
+    }
+}
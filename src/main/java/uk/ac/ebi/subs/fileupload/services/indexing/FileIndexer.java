@@ -0,0 +1,86 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import uk.ac.ebi.subs.fileupload.services.pipeline.BgzfInputStream;
+import uk.ac.ebi.subs.fileupload.services.pipeline.ChunkStream;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileConsumer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Builds the index of a file while the file is read by the processing pipeline,
+ * and writes it beside the file under the conventional name of its format.
+ * The index is written to a temporary file first, so a failed indexing leaves no partial index behind.
+ */
+public abstract class FileIndexer implements FileConsumer {
+
+    public static final String NAME = "index";
+
+    public static final String INDEX_PATH = "index.path";
+    static final String INDEX_FORMAT = "index.format";
+
+    private static final String TEMPORARY_EXTENSION = ".part";
+
+    private final Path indexPath;
+    private final String format;
+
+    /**
+     * @param filePath the path of the file to index
+     * @param format the name of the index format
+     * @param extension the extension appended to the name of the file to name its index
+     */
+    protected FileIndexer(Path filePath, String format, String extension) {
+        this.indexPath = filePath.resolveSibling(filePath.getFileName() + extension);
+        this.format = format;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+        Path temporaryPath = indexPath.resolveSibling(indexPath.getFileName() + TEMPORARY_EXTENSION);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporaryPath))) {
+            writeIndex(chunks, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaryPath);
+            throw e;
+        }
+        Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        results.put(INDEX_PATH, indexPath.toString());
+        results.put(INDEX_FORMAT, format);
+    }
+
+    Path getIndexPath() {
+        return indexPath;
+    }
+
+    /**
+     * @return the virtual offset of the next byte of the given stream
+     * @throws IOException if the file turned out not to be BGZF compressed, its records have no virtual offsets then
+     */
+    static long virtualOffset(BgzfInputStream bgzfStream) throws IOException {
+        try {
+            return bgzfStream.getVirtualOffset();
+        } catch (IllegalStateException e) {
+            throw new IOException("The file is not BGZF compressed, it can not be indexed.");
+        }
+    }
+
+    /**
+     * Reads the file and writes its index.
+     *
+     * @param chunks the bytes of the file
+     * @param out the output of the index
+     * @throws IOException if the file could not be indexed
+     */
+    protected abstract void writeIndex(ChunkStream chunks, OutputStream out) throws IOException;
+}
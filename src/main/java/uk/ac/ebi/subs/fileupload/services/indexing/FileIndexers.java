@@ -0,0 +1,51 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileConsumer;
+import uk.ac.ebi.subs.fileupload.util.FileType;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class chooses the indexer of a file by its detected type, if the indexing of the files is enabled.
+ */
+@Component
+public class FileIndexers {
+
+    private ForkJoinPool inflaterPool;
+    private boolean enabled;
+
+    public FileIndexers(@Qualifier(ExecutorConfiguration.INFLATER_POOL) ForkJoinPool inflaterPool,
+                        @Value("${file-upload.indexing.enabled:false}") boolean enabled) {
+        this.inflaterPool = inflaterPool;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param fileType the detected type of the file
+     * @param filePath the path of the file, its index is written beside it
+     * @return the indexer of the file or empty, if the indexing is disabled or the type of the file can not be indexed
+     */
+    public Optional<FileConsumer> indexerFor(DetectedFileType fileType, Path filePath) {
+        if (!enabled || fileType.getType() == null) {
+            return Optional.empty();
+        }
+
+        switch (fileType.getType()) {
+            case FileType.BAM:
+                return Optional.of(new BamIndexer(filePath, inflaterPool));
+            case FileType.CRAM:
+                return Optional.of(new CramIndexer(filePath));
+            case FileType.VCF:
+                return fileType.isCompressed() ? Optional.of(new TabixIndexer(filePath, inflaterPool)) : Optional.empty();
+            default:
+                return Optional.empty();
+        }
+    }
+}
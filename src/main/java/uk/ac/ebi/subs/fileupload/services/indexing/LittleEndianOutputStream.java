@@ -0,0 +1,37 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the little-endian integers of the binary index formats.
+ */
+class LittleEndianOutputStream extends FilterOutputStream {
+
+    LittleEndianOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
+    void writeInt(int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    void writeLong(long value) throws IOException {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    void writeAscii(String value) throws IOException {
+        write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
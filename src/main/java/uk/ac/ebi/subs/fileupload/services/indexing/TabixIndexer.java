@@ -0,0 +1,152 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import uk.ac.ebi.subs.fileupload.services.pipeline.BgzfInputStream;
+import uk.ac.ebi.subs.fileupload.services.pipeline.ChunkStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds the tabix index of a coordinate sorted, bgzipped VCF file.
+ * Only the CHROM, POS, REF and INFO columns of the records are decoded, the samples are skipped without copying them.
+ */
+public class TabixIndexer extends FileIndexer {
+
+    static final String FORMAT = "TBI";
+
+    private static final String EXTENSION = ".tbi";
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private static final int VCF_FORMAT = 2;
+    private static final int SEQUENCE_COLUMN = 1;
+    private static final int BEGIN_COLUMN = 2;
+    private static final int END_COLUMN = 0;
+    private static final char META_CHARACTER = '#';
+
+    // CHROM, POS, ID, REF, ALT, QUAL, FILTER and INFO
+    private static final int INDEXED_COLUMNS = 8;
+    private static final int REF_COLUMN = 3;
+    private static final int INFO_COLUMN = 7;
+    private static final String END_KEY = "END=";
+
+    private final ForkJoinPool inflaterPool;
+
+    public TabixIndexer(Path filePath, ForkJoinPool inflaterPool) {
+        super(filePath, FORMAT, EXTENSION);
+        this.inflaterPool = inflaterPool;
+    }
+
+    @Override
+    protected void writeIndex(ChunkStream chunks, OutputStream out) throws IOException {
+        BinningIndex index = new BinningIndex(0);
+        List<String> sequenceNames = new ArrayList<>();
+        Map<String, Integer> sequenceIds = new HashMap<>();
+
+        try (BgzfInputStream vcfStream = new BgzfInputStream(chunks, inflaterPool,
+                inflaterPool.getParallelism() * BLOCKS_IN_FLIGHT_PER_THREAD)) {
+            StringBuilder line = new StringBuilder();
+            long lineNumber = 0;
+            while (true) {
+                long startOffset = virtualOffset(vcfStream);
+                if (!readColumns(vcfStream, line)) {
+                    break;
+                }
+                lineNumber++;
+                if (line.length() == 0 || line.charAt(0) == META_CHARACTER) {
+                    continue;
+                }
+
+                String[] columns = line.toString().split("\t", INDEXED_COLUMNS + 1);
+                if (columns.length < INDEXED_COLUMNS) {
+                    throw new IOException("Invalid VCF record at line: " + lineNumber + ", it has too few columns");
+                }
+
+                String sequenceName = columns[0];
+                Integer sequenceId = sequenceIds.get(sequenceName);
+                if (sequenceId == null) {
+                    sequenceId = sequenceNames.size();
+                    sequenceIds.put(sequenceName, sequenceId);
+                    sequenceNames.add(sequenceName);
+                } else if (sequenceId != sequenceNames.size() - 1) {
+                    throw new IOException("The file is not sorted by coordinate, the records of " + sequenceName
+                            + " are not contiguous at line: " + lineNumber);
+                }
+
+                int start = parsePosition(columns[1], lineNumber) - 1;
+                int end = recordEnd(columns[INFO_COLUMN], start + columns[REF_COLUMN].length(), lineNumber);
+                index.add(sequenceId, start, end, startOffset, virtualOffset(vcfStream), true);
+            }
+        }
+
+        try (LittleEndianOutputStream indexStream = new LittleEndianOutputStream(new BgzfOutputStream(out))) {
+            indexStream.write(new byte[]{'T', 'B', 'I', 1});
+            indexStream.writeInt(sequenceNames.size());
+            indexStream.writeInt(VCF_FORMAT);
+            indexStream.writeInt(SEQUENCE_COLUMN);
+            indexStream.writeInt(BEGIN_COLUMN);
+            indexStream.writeInt(END_COLUMN);
+            indexStream.writeInt(META_CHARACTER);
+            indexStream.writeInt(0);
+
+            byte[] names = String.join("\0", sequenceNames).concat("\0").getBytes(StandardCharsets.ISO_8859_1);
+            indexStream.writeInt(sequenceNames.isEmpty() ? 0 : names.length);
+            if (!sequenceNames.isEmpty()) {
+                indexStream.write(names);
+            }
+            index.write(indexStream);
+        }
+    }
+
+    /**
+     * Reads the next line of the file into the given builder, up to the end of its INFO column.
+     *
+     * @return false at the end of the file
+     */
+    private static boolean readColumns(BgzfInputStream vcfStream, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int tabs = 0;
+        int read = vcfStream.read();
+        if (read < 0) {
+            return false;
+        }
+
+        while (read >= 0 && read != '\n') {
+            if (read == '\t') {
+                tabs++;
+            }
+            if (tabs < INDEXED_COLUMNS && read != '\r') {
+                line.append((char) read);
+            }
+            read = vcfStream.read();
+        }
+        return true;
+    }
+
+    /**
+     * @return the 0-based, exclusive end of the record: the END of its INFO column if it has one,
+     * otherwise the end of its reference allele
+     */
+    private static int recordEnd(String info, int referenceAlleleEnd, long lineNumber) throws IOException {
+        for (String field : info.split(";")) {
+            if (field.startsWith(END_KEY)) {
+                return parsePosition(field.substring(END_KEY.length()), lineNumber);
+            }
+        }
+        return referenceAlleleEnd;
+    }
+
+    private static int parsePosition(String position, long lineNumber) throws IOException {
+        try {
+            return Integer.parseInt(position);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid VCF record at line: " + lineNumber + ", invalid position: " + position);
+        }
+    }
+}
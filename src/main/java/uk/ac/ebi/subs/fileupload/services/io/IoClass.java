@@ -0,0 +1,25 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+/**
+ * The priority classes of the bulk disk operations, in the order of their priority.
+ * A waiting operation of a class is started before the waiting operations of the classes after it.
+ */
+public enum IoClass {
+
+    /** Finishing an upload the user is waiting for. */
+    INTERACTIVE("interactive"),
+    /** Reading a finished file for its checksums and the other processing results. */
+    PROCESSING("processing"),
+    /** Moving the files of a Globus share in a batch. */
+    BULK("bulk");
+
+    private final String propertyName;
+
+    IoClass(String propertyName) {
+        this.propertyName = propertyName;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+}
@@ -0,0 +1,47 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The permit of a running bulk disk operation on a volume, it has to be closed when the operation is over.
+ * The operation reports the bytes it reads or writes through {@link #throttle(long)}, so a background operation
+ * keeps to the bandwidth cap of the volume.
+ */
+public class IoPermit implements AutoCloseable {
+
+    private static final IoPermit UNLIMITED = new IoPermit(null, null);
+
+    private final IoQueue queue;
+    private final IoClass ioClass;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    IoPermit(IoQueue queue, IoClass ioClass) {
+        this.queue = queue;
+        this.ioClass = ioClass;
+    }
+
+    /**
+     * @return a permit that is neither queued nor throttled, for the operations outside of the scheduler
+     */
+    public static IoPermit unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * @param bytes the number of bytes read or written by the operation since its last call
+     * @throws InterruptedIOException if the thread was interrupted while it was throttled
+     */
+    public void throttle(long bytes) throws InterruptedIOException {
+        if (queue != null) {
+            queue.throttle(ioClass, bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (queue != null && released.compareAndSet(false, true)) {
+            queue.release(ioClass);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+import java.io.InterruptedIOException;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The queue of the bulk disk operations of one volume. At most {@code concurrency} operations run at the same time,
+ * the waiting operations are started by their priority class, then in their order of arrival.
+ * When more than one operation can run, the last free slot is kept for the interactive operations,
+ * so they never wait for the end of a long background operation.
+ * The bandwidth cap only throttles the background operations, an interactive operation is never held back by it.
+ */
+final class IoQueue {
+
+    private static final Comparator<Waiter> WAITER_ORDER =
+            Comparator.<Waiter, IoClass>comparing(waiter -> waiter.ioClass).thenComparingLong(waiter -> waiter.sequence);
+
+    private final String name;
+    private final int concurrency;
+    private final int backgroundConcurrency;
+    private final TokenBucket tokenBucket;
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(WAITER_ORDER);
+    private long sequence;
+    private int active;
+    private int activeBackground;
+
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * @param bandwidth the bandwidth cap of the volume in bytes per second, 0 if it is not capped
+     */
+    IoQueue(String name, int concurrency, long bandwidth) {
+        this.name = name;
+        this.concurrency = Math.max(1, concurrency);
+        this.backgroundConcurrency = Math.max(1, this.concurrency - 1);
+        this.tokenBucket = bandwidth > 0 ? new TokenBucket(bandwidth) : null;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    synchronized void acquire(IoClass ioClass) throws InterruptedIOException {
+        Waiter waiter = new Waiter(ioClass, sequence++);
+        waiters.add(waiter);
+        grant();
+
+        try {
+            while (!waiter.granted) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            if (waiter.granted) {
+                release(ioClass);
+            } else {
+                waiters.remove(waiter);
+                grant();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the I/O queue of the volume: " + name);
+        }
+    }
+
+    synchronized void release(IoClass ioClass) {
+        active--;
+        if (ioClass != IoClass.INTERACTIVE) {
+            activeBackground--;
+        }
+        grant();
+    }
+
+    /**
+     * Waits until the given number of bytes of a background operation fits in the bandwidth cap of the volume.
+     */
+    void throttle(IoClass ioClass, long bytes) throws InterruptedIOException {
+        if (tokenBucket == null || ioClass == IoClass.INTERACTIVE) {
+            return;
+        }
+
+        long waitNanos = tokenBucket.take(bytes);
+        if (waitNanos > 0) {
+            throttledNanos.addAndGet(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttled on the volume: " + name);
+            }
+        }
+    }
+
+    synchronized int getActive() {
+        return active;
+    }
+
+    synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    long getThrottledTime() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    private void grant() {
+        boolean granted = false;
+        while (active < concurrency && !waiters.isEmpty()) {
+            Waiter next = waiters.peek();
+            if (next.ioClass != IoClass.INTERACTIVE) {
+                if (activeBackground >= backgroundConcurrency) {
+                    break;
+                }
+                activeBackground++;
+            }
+
+            waiters.poll();
+            next.granted = true;
+            active++;
+            granted = true;
+        }
+
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    private static final class Waiter {
+
+        private final IoClass ioClass;
+        private final long sequence;
+        private boolean granted;
+
+        private Waiter(IoClass ioClass, long sequence) {
+            this.ioClass = ioClass;
+            this.sequence = sequence;
+        }
+    }
+}
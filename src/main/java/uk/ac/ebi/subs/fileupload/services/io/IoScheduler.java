@@ -0,0 +1,115 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolume;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Every bulk disk operation, like moving, copying or reading a whole file, goes through this scheduler,
+ * so the operations of a busy class, like a Globus batch, can not starve the others on the same disk.
+ * Every storage volume has its own queue with a concurrency limit and an optional bandwidth cap,
+ * configured under {@code file-upload.io.volumes.<volume name>}, or by the defaults under {@code file-upload.io}.
+ * The files outside of the volumes, like the ones in the Globus shares, share the queue of the external storage.
+ * The waiting operations are started by their {@link IoClass}, so the interactive upload completion
+ * outranks the background processing, and it is not held back by the bandwidth cap.
+ */
+@Service
+public class IoScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IoScheduler.class);
+
+    private static final String PROPERTY_PREFIX = "file-upload.io.";
+    private static final String VOLUME_PROPERTY_PREFIX = PROPERTY_PREFIX + "volumes.%s.";
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final long DEFAULT_BANDWIDTH = 0;
+
+    static final String EXTERNAL_QUEUE = "external";
+
+    private StorageVolumes storageVolumes;
+
+    private final Map<String, IoQueue> queues = new LinkedHashMap<>();
+    private final Map<IoClass, IoWaitStatistics> statistics = new EnumMap<>(IoClass.class);
+
+    public IoScheduler(StorageVolumes storageVolumes, Environment environment) {
+        this.storageVolumes = storageVolumes;
+
+        int defaultConcurrency = environment.getProperty(PROPERTY_PREFIX + "concurrency", Integer.class, DEFAULT_CONCURRENCY);
+        long defaultBandwidth = environment.getProperty(PROPERTY_PREFIX + "bandwidth", Long.class, DEFAULT_BANDWIDTH);
+
+        List<String> queueNames = new ArrayList<>();
+        storageVolumes.getVolumes().forEach(volume -> queueNames.add(volume.getName()));
+        queueNames.add(EXTERNAL_QUEUE);
+
+        for (String queueName : queueNames) {
+            String propertyPrefix = String.format(VOLUME_PROPERTY_PREFIX, queueName);
+            int concurrency = environment.getProperty(propertyPrefix + "concurrency", Integer.class, defaultConcurrency);
+            long bandwidth = environment.getProperty(propertyPrefix + "bandwidth", Long.class, defaultBandwidth);
+
+            queues.put(queueName, new IoQueue(queueName, concurrency, bandwidth));
+            LOGGER.info("The I/O queue of the volume: {} runs {} operations at a time, its bandwidth cap is {} bytes/s.",
+                    queueName, concurrency, bandwidth > 0 ? bandwidth : "not set");
+        }
+
+        for (IoClass ioClass : IoClass.values()) {
+            statistics.put(ioClass, new IoWaitStatistics());
+        }
+    }
+
+    /**
+     * Waits until the given operation can run on the volume of the given file.
+     * A move is scheduled on the volume of its target path, where the file is written.
+     *
+     * @param path the path of the file read or written by the operation
+     * @param ioClass the priority class of the operation
+     * @return the permit of the operation, it has to be closed when the operation is over
+     * @throws InterruptedIOException if the thread was interrupted while it was waiting
+     */
+    public IoPermit acquire(Path path, IoClass ioClass) throws InterruptedIOException {
+        IoQueue queue = queueOf(path);
+
+        long startTime = System.nanoTime();
+        queue.acquire(ioClass);
+        long waitNanos = System.nanoTime() - startTime;
+        statistics.get(ioClass).record(waitNanos);
+
+        LOGGER.trace("The {} operation on the file: {} has waited {} ns for the volume: {}.",
+                ioClass, path, waitNanos, queue.getName());
+        return new IoPermit(queue, ioClass);
+    }
+
+    public List<String> getQueueNames() {
+        return new ArrayList<>(queues.keySet());
+    }
+
+    public int getActiveOperations(String queueName) {
+        return queues.get(queueName).getActive();
+    }
+
+    public int getQueuedOperations(String queueName) {
+        return queues.get(queueName).getQueued();
+    }
+
+    public long getThrottledTime(String queueName) {
+        return queues.get(queueName).getThrottledTime();
+    }
+
+    public IoWaitStatistics getStatistics(IoClass ioClass) {
+        return statistics.get(ioClass);
+    }
+
+    private IoQueue queueOf(Path path) {
+        StorageVolume volume = storageVolumes.findVolumeOf(path);
+        return queues.get(volume != null ? volume.getName() : EXTERNAL_QUEUE);
+    }
+}
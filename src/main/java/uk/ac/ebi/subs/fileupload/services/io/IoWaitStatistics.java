@@ -0,0 +1,32 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of the operations of one priority class and the time they have waited in the queues of the volumes.
+ */
+public class IoWaitStatistics {
+
+    private final AtomicLong operations = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    void record(long waitNanos) {
+        operations.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public long getOperations() {
+        return operations.get();
+    }
+
+    public long getTotalWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+}
@@ -0,0 +1,33 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+/**
+ * Caps the bandwidth of a volume. The bucket holds at most one second of bytes, the bytes of an operation are taken
+ * from it after they are known, so the bucket can go into debt and the next operations wait until it is paid back.
+ */
+final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @param bytes the number of bytes read or written
+     * @return the nanoseconds to wait before the next bytes, 0 if there is no need to wait
+     */
+    synchronized long take(long bytes) {
+        long now = System.nanoTime();
+        tokens = Math.min(bytesPerSecond, tokens + (now - lastRefill) * bytesPerSecond / NANOS_PER_SECOND);
+        lastRefill = now;
+
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond);
+    }
+}
@@ -0,0 +1,19 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A command to execute as a local process for an uploaded file.
+ * The process reads the whole file, so it is scheduled on the volume of the file.
+ */
+@Value
+public class LocalJob {
+
+    private LocalJobType type;
+    private String tusId;
+    private Path filePath;
+    private List<String> command;
+}
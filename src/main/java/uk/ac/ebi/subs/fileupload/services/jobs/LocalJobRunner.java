@@ -0,0 +1,216 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.services.FileUpdateService;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * This class is responsible for executing the local jobs of the uploaded files as processes on the VM.
+ * Every job type has its own bounded pool of workers, so a burst of files can not fork an unbounded number
+ * of processes. A job running longer than the timeout of its type is killed together with the processes it has started.
+ * A process is only started with a processing permit of the {@link IoScheduler} on the volume of its file,
+ * so a burst of local jobs can not starve the interactive operations on that volume.
+ * The permit limits how many processes read the volume at the same time, their bandwidth is not throttled.
+ * The output of the processes is captured into the log and the outcome of every job is recorded on its file document.
+ */
+@Service
+public class LocalJobRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalJobRunner.class);
+
+    private static final String PROPERTY_PREFIX = "file-upload.localJobs.";
+    private static final int DEFAULT_CONCURRENCY = 2;
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final long DEFAULT_TIMEOUT = 3_600_000L;
+
+    private static final int MAX_LOGGED_OUTPUT_LINES = 200;
+
+    private FileUpdateService fileUpdateService;
+    private IoScheduler ioScheduler;
+
+    private final Map<LocalJobType, ThreadPoolTaskExecutor> executors = new EnumMap<>(LocalJobType.class);
+    private final Map<LocalJobType, Long> timeouts = new EnumMap<>(LocalJobType.class);
+    private final Map<LocalJobType, LocalJobStatistics> statistics = new EnumMap<>(LocalJobType.class);
+
+    public LocalJobRunner(FileUpdateService fileUpdateService, IoScheduler ioScheduler, Environment environment) {
+        this.fileUpdateService = fileUpdateService;
+        this.ioScheduler = ioScheduler;
+
+        for (LocalJobType type : LocalJobType.values()) {
+            String propertyPrefix = PROPERTY_PREFIX + type.getPropertyName() + ".";
+            int concurrency = environment.getProperty(propertyPrefix + "concurrency", Integer.class, DEFAULT_CONCURRENCY);
+
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(concurrency);
+            executor.setMaxPoolSize(concurrency);
+            executor.setQueueCapacity(
+                    environment.getProperty(propertyPrefix + "queueCapacity", Integer.class, DEFAULT_QUEUE_CAPACITY));
+            executor.setThreadNamePrefix("local-job-" + type.getPropertyName() + "-");
+            executor.initialize();
+
+            executors.put(type, executor);
+            timeouts.put(type, environment.getProperty(propertyPrefix + "timeout", Long.class, DEFAULT_TIMEOUT));
+            statistics.put(type, new LocalJobStatistics());
+        }
+    }
+
+    /**
+     * Queues the given job. When the queue of its type is full, the job is rejected and recorded as such,
+     * and the caller has to process the file elsewhere.
+     *
+     * @param job the job to execute
+     * @return true if the job has been queued, false if it has been rejected
+     */
+    public boolean submit(LocalJob job) {
+        try {
+            executors.get(job.getType()).execute(() -> run(job));
+            return true;
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("The queue of the {} jobs is full, rejected the job of upload: {}", job.getType(), job.getTusId());
+            recordResult(job, LocalJobState.REJECTED, null, 0);
+            return false;
+        }
+    }
+
+    public int getQueueDepth(LocalJobType type) {
+        return executors.get(type).getThreadPoolExecutor().getQueue().size();
+    }
+
+    public int getRunningJobs(LocalJobType type) {
+        return executors.get(type).getActiveCount();
+    }
+
+    public LocalJobStatistics getStatistics(LocalJobType type) {
+        return statistics.get(type);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    private void run(LocalJob job) {
+        long startTime = System.nanoTime();
+        LocalJobState state;
+        Integer exitCode = null;
+
+        Process process = null;
+        Path outputFile = null;
+        try {
+            outputFile = Files.createTempFile("local-job-", ".log");
+
+            try (IoPermit ignored = ioScheduler.acquire(job.getFilePath(), IoClass.PROCESSING)) {
+                LOGGER.info("Executing the {} job of upload: {} with the command: {}",
+                        job.getType(), job.getTusId(), job.getCommand());
+                process = new ProcessBuilder(job.getCommand())
+                        .redirectErrorStream(true)
+                        .redirectOutput(outputFile.toFile())
+                        .start();
+
+                if (process.waitFor(timeouts.get(job.getType()), TimeUnit.MILLISECONDS)) {
+                    exitCode = process.exitValue();
+                    state = exitCode == 0 ? LocalJobState.SUCCEEDED : LocalJobState.FAILED;
+                } else {
+                    kill(process);
+                    process.waitFor();
+                    state = LocalJobState.TIMED_OUT;
+                }
+            }
+
+            logOutput(job, outputFile);
+        } catch (IOException e) {
+            LOGGER.error("Could not execute the {} job of upload: {}. Error message: {}",
+                    job.getType(), job.getTusId(), e.getMessage());
+            state = LocalJobState.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            kill(process);
+            state = LocalJobState.FAILED;
+        } finally {
+            deleteOutputFile(outputFile);
+        }
+
+        long runTime = (System.nanoTime() - startTime) / 1_000_000;
+        if (state == LocalJobState.SUCCEEDED) {
+            LOGGER.info("The {} job of upload: {} has succeeded in {} ms.", job.getType(), job.getTusId(), runTime);
+        } else {
+            LOGGER.error("The {} job of upload: {} has finished with state: {} and exit code: {} in {} ms.",
+                    job.getType(), job.getTusId(), state, exitCode, runTime);
+        }
+
+        recordResult(job, state, exitCode, runTime);
+    }
+
+    /**
+     * Kills the given process with the processes it has started. The descendants are collected first,
+     * as they are not descendants of the process anymore once it is gone.
+     */
+    private static void kill(Process process) {
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    private void recordResult(LocalJob job, LocalJobState state, Integer exitCode, long runTime) {
+        statistics.get(job.getType()).record(state, runTime);
+        try {
+            fileUpdateService.recordLocalJobResult(job.getTusId(), job.getType(), state, exitCode, runTime);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not record the result of the {} job of upload: {}. Error message: {}",
+                    job.getType(), job.getTusId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Logs the output of the finished process.
+     * A failure to read it is only logged, as it does not change the job state.
+     */
+    private void logOutput(LocalJob job, Path outputFile) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(outputFile), StandardCharsets.UTF_8))) {
+            String line;
+            int lineCount = 0;
+            while ((line = reader.readLine()) != null) {
+                if (lineCount++ == MAX_LOGGED_OUTPUT_LINES) {
+                    LOGGER.info("[{} {}] The rest of the output is omitted.", job.getType(), job.getTusId());
+                    break;
+                }
+                LOGGER.info("[{} {}] {}", job.getType(), job.getTusId(), line);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the output of the {} job of upload: {}. Error message: {}",
+                    job.getType(), job.getTusId(), e.getMessage());
+        }
+    }
+
+    private void deleteOutputFile(Path outputFile) {
+        if (outputFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(outputFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete the output file: {}. Error message: {}", outputFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+/**
+ * The outcome of a local job recorded on the file document.
+ * A rejected job has not been executed, its file has been sent to the cluster instead.
+ */
+public enum LocalJobState {
+
+    SUCCEEDED,
+    FAILED,
+    TIMED_OUT,
+    REJECTED
+}
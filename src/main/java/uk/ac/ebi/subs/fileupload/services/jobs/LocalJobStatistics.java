@@ -0,0 +1,62 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The counters and run times of the local jobs of one type.
+ */
+public class LocalJobStatistics {
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalRunTime = new AtomicLong();
+    private final AtomicLong maxRunTime = new AtomicLong();
+
+    void record(LocalJobState state, long runTimeMillis) {
+        switch (state) {
+            case SUCCEEDED:
+                succeeded.incrementAndGet();
+                break;
+            case FAILED:
+                failed.incrementAndGet();
+                break;
+            case TIMED_OUT:
+                timedOut.incrementAndGet();
+                break;
+            case REJECTED:
+                rejected.incrementAndGet();
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown local job state: " + state);
+        }
+
+        totalRunTime.addAndGet(runTimeMillis);
+        maxRunTime.accumulateAndGet(runTimeMillis, Math::max);
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getTotalRunTime() {
+        return totalRunTime.get();
+    }
+
+    public long getMaxRunTime() {
+        return maxRunTime.get();
+    }
+}
@@ -0,0 +1,20 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+/**
+ * The types of the jobs executed as local processes on the VM.
+ * Every type has its own pool of workers configured under {@code file-upload.localJobs.<propertyName>}.
+ */
+public enum LocalJobType {
+
+    CONTENT_VALIDATION("contentValidation");
+
+    private final String propertyName;
+
+    LocalJobType(String propertyName) {
+        this.propertyName = propertyName;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.ebi.subs.fileupload.services.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * This class is the single entry point for publishing messages to RabbitMQ.
+ * The messages are converted to JSON and appended to the local {@link OutboxJournal},
+ * so the caller does not wait for the broker. The {@link OutboxRelay} publishes them in the background.
+ */
+@Service
+public class MessageOutbox {
+
+    private ObjectMapper objectMapper;
+    private OutboxJournal outboxJournal;
+
+    public MessageOutbox(MappingJackson2MessageConverter jackson2Converter,
+                         @Value("${file-upload.outbox.directory:outbox}") String directory,
+                         @Value("${file-upload.outbox.segmentSize:16777216}") int segmentSize) throws IOException {
+        this.objectMapper = jackson2Converter.getObjectMapper();
+        this.outboxJournal = new OutboxJournal(Paths.get(directory), segmentSize);
+    }
+
+    /**
+     * Stores the given payload to be published to the given exchange with the given routing key.
+     *
+     * @param exchange the name of the exchange
+     * @param routingKey the routing key of the message
+     * @param payload the payload to convert to JSON
+     */
+    public void publish(String exchange, String routingKey, Object payload) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Could not convert the payload of the message to JSON.", e);
+        }
+
+        outboxJournal.append(new OutboxMessage(exchange, routingKey, body));
+    }
+
+    OutboxJournal getOutboxJournal() {
+        return outboxJournal;
+    }
+
+    @PreDestroy
+    public void close() {
+        outboxJournal.close();
+    }
+}
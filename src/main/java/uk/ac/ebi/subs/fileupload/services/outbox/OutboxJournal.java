@@ -0,0 +1,378 @@
+package uk.ac.ebi.subs.fileupload.services.outbox;
+
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * This class is an append-only journal of outgoing messages stored in memory-mapped segment files.
+ * Every message is appended with a single sequential write, then read back in the same order by the relay
+ * and flagged as acknowledged in place, when the broker has confirmed it.
+ * The segments that only contain acknowledged messages are deleted.
+ * When the journal is opened again, the messages that have not been acknowledged are read again,
+ * so the messages are delivered at least once.
+ *
+ * <p>Layout of a record: {@code [int length][int crc32][byte state][data]}, where the length is written last,
+ * so a record interrupted by a crash is recognised by its zero length or its wrong checksum.
+ * The data contains the exchange, the routing key and the body of the message.</p>
+ */
+public class OutboxJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxJournal.class);
+
+    private static final String SEGMENT_FILE_FORMAT = "outbox-%016d.journal";
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("^outbox-(\\d{16})\\.journal$");
+
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final int CRC_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final byte PENDING = 0;
+    private static final byte ACKNOWLEDGED = 1;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+
+    private long readSegmentIndex;
+    private int readPosition;
+
+    public OutboxJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Appends the given message to the end of the journal and wakes up the relay waiting for messages.
+     *
+     * @param message the message to append
+     */
+    public synchronized void append(OutboxMessage message) {
+        byte[] data = encode(message);
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (recordSize + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException(String.format(
+                    "The message of %d bytes does not fit into an outbox segment of %d bytes.", data.length, segmentSize));
+        }
+
+        if (writeSegment.getWritePosition() + recordSize + Integer.BYTES > segmentSize) {
+            try {
+                writeSegment.getBuffer().force();
+                writeSegment = openSegment(writeSegment.getIndex() + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create a new outbox segment.", e);
+            }
+        }
+
+        MappedByteBuffer buffer = writeSegment.getBuffer();
+        int position = writeSegment.getWritePosition();
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        buffer.putInt(position + CRC_OFFSET, (int) crc.getValue());
+        buffer.put(position + STATE_OFFSET, PENDING);
+        ByteBuffer dataBuffer = buffer.duplicate();
+        dataBuffer.position(position + RECORD_HEADER_SIZE);
+        dataBuffer.put(data);
+        buffer.putInt(position, data.length);
+
+        writeSegment.setWritePosition(position + recordSize);
+
+        notifyAll();
+    }
+
+    /**
+     * Reads the oldest messages that have not been acknowledged yet, without consuming them.
+     * The acknowledged messages in front of them are skipped for good.
+     *
+     * @param maxEntries the maximum number of messages to read
+     * @return the pending entries in the order they have been appended
+     */
+    public synchronized List<Entry> readPending(int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+
+        long segmentIndex = readSegmentIndex;
+        int position = readPosition;
+        while (entries.size() < maxEntries) {
+            Segment segment = segments.get(segmentIndex);
+            if (position >= segment.getWritePosition()) {
+                Long nextSegmentIndex = segments.higherKey(segmentIndex);
+                if (nextSegmentIndex == null) {
+                    break;
+                }
+                segmentIndex = nextSegmentIndex;
+                position = 0;
+                moveReadPositionIfNothingRead(entries, segmentIndex, position);
+                continue;
+            }
+
+            MappedByteBuffer buffer = segment.getBuffer();
+            int length = buffer.getInt(position);
+            int nextPosition = position + RECORD_HEADER_SIZE + length;
+            if (buffer.get(position + STATE_OFFSET) == PENDING) {
+                byte[] data = new byte[length];
+                ByteBuffer dataBuffer = buffer.duplicate();
+                dataBuffer.position(position + RECORD_HEADER_SIZE);
+                dataBuffer.get(data);
+
+                entries.add(new Entry(segmentIndex, position, nextPosition, decode(data)));
+            }
+            position = nextPosition;
+            moveReadPositionIfNothingRead(entries, segmentIndex, position);
+        }
+
+        deleteReadSegments();
+
+        return entries;
+    }
+
+    /**
+     * Flags the given entries as acknowledged and moves the read position of the journal after them.
+     * The segments that have been read completely are deleted.
+     *
+     * @param entries the entries returned by {@link #readPending(int)} in the same order
+     */
+    public synchronized void acknowledge(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        for (Entry entry : entries) {
+            Segment segment = segments.get(entry.getSegmentIndex());
+            if (segment != null) {
+                segment.getBuffer().put(entry.getPosition() + STATE_OFFSET, ACKNOWLEDGED);
+            }
+        }
+
+        Entry lastEntry = entries.get(entries.size() - 1);
+        if (lastEntry.getSegmentIndex() > readSegmentIndex
+                || (lastEntry.getSegmentIndex() == readSegmentIndex && lastEntry.getNextPosition() > readPosition)) {
+            readSegmentIndex = lastEntry.getSegmentIndex();
+            readPosition = lastEntry.getNextPosition();
+        }
+
+        deleteReadSegments();
+    }
+
+    /**
+     * Waits until there is a pending message to read or the given time has elapsed.
+     *
+     * @param timeoutMillis the maximum time to wait in milliseconds
+     */
+    public synchronized void awaitPending(long timeoutMillis) throws InterruptedException {
+        if (!hasPending()) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /**
+     * Wakes up the relay waiting for messages, for example when the service is stopping.
+     */
+    public synchronized void wakeUp() {
+        notifyAll();
+    }
+
+    public synchronized long getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.values().forEach(segment -> segment.getBuffer().force());
+    }
+
+    private void moveReadPositionIfNothingRead(List<Entry> entries, long segmentIndex, int position) {
+        if (entries.isEmpty()) {
+            readSegmentIndex = segmentIndex;
+            readPosition = position;
+        }
+    }
+
+    private boolean hasPending() {
+        return readSegmentIndex != writeSegment.getIndex() || readPosition < writeSegment.getWritePosition();
+    }
+
+    private void deleteReadSegments() {
+        while (segments.firstKey() < readSegmentIndex) {
+            Segment segment = segments.remove(segments.firstKey());
+            try {
+                Files.deleteIfExists(segmentPath(segment.getIndex()));
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete the acknowledged outbox segment: {}. Error message: {}",
+                        segmentPath(segment.getIndex()), e.getMessage());
+            }
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                Matcher matcher = SEGMENT_FILE_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), null);
+                }
+            });
+        }
+
+        if (segments.isEmpty()) {
+            writeSegment = openSegment(0);
+        } else {
+            for (Long segmentIndex : new ArrayList<>(segments.keySet())) {
+                writeSegment = openSegment(segmentIndex);
+            }
+        }
+
+        Map.Entry<Long, Segment> firstSegment = segments.firstEntry();
+        readSegmentIndex = firstSegment.getKey();
+        readPosition = 0;
+
+        long pendingCount = readPending(Integer.MAX_VALUE).size();
+        if (pendingCount > 0) {
+            LOGGER.info("Recovered {} message(s) from the outbox that have not been acknowledged by the broker.", pendingCount);
+        }
+    }
+
+    private Segment openSegment(long index) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentPath(index),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+
+        Segment segment = new Segment(index, buffer);
+        segment.setWritePosition(findEndOfRecords(buffer));
+        segments.put(index, segment);
+
+        return segment;
+    }
+
+    private int findEndOfRecords(MappedByteBuffer buffer) {
+        int position = 0;
+        boolean incompleteRecord = false;
+        while (position + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > segmentSize) {
+                incompleteRecord = true;
+                break;
+            }
+
+            byte[] data = new byte[length];
+            ByteBuffer dataBuffer = buffer.duplicate();
+            dataBuffer.position(position + RECORD_HEADER_SIZE);
+            dataBuffer.get(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != buffer.getInt(position + CRC_OFFSET)) {
+                incompleteRecord = true;
+                break;
+            }
+
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        if (incompleteRecord) {
+            LOGGER.warn("Discarding the incomplete outbox record at position: {}.", position);
+            for (int i = position; i < segmentSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        return position;
+    }
+
+    private Path segmentPath(long index) {
+        return directory.resolve(String.format(SEGMENT_FILE_FORMAT, index));
+    }
+
+    private static byte[] encode(OutboxMessage message) {
+        byte[] exchange = message.getExchange().getBytes(StandardCharsets.UTF_8);
+        byte[] routingKey = message.getRoutingKey().getBytes(StandardCharsets.UTF_8);
+        byte[] body = message.getBody();
+
+        return ByteBuffer.allocate(2 * Integer.BYTES + exchange.length + routingKey.length + body.length)
+                .putInt(exchange.length).put(exchange)
+                .putInt(routingKey.length).put(routingKey)
+                .put(body)
+                .array();
+    }
+
+    private static OutboxMessage decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        byte[] exchange = new byte[buffer.getInt()];
+        buffer.get(exchange);
+        byte[] routingKey = new byte[buffer.getInt()];
+        buffer.get(routingKey);
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+
+        return new OutboxMessage(new String(exchange, StandardCharsets.UTF_8),
+                new String(routingKey, StandardCharsets.UTF_8), body);
+    }
+
+    /**
+     * A message read from the journal with its location.
+     */
+    @Value
+    public static class Entry {
+        private long segmentIndex;
+        private int position;
+        private int nextPosition;
+        private OutboxMessage message;
+    }
+
+    private static final class Segment {
+        private final long index;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        private long getIndex() {
+            return index;
+        }
+
+        private MappedByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        private int getWritePosition() {
+            return writePosition;
+        }
+
+        private void setWritePosition(int writePosition) {
+            this.writePosition = writePosition;
+        }
+    }
+}
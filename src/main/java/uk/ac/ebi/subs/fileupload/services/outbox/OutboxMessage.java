@@ -0,0 +1,15 @@
+package uk.ac.ebi.subs.fileupload.services.outbox;
+
+import lombok.Value;
+
+/**
+ * This class represents a message waiting in the outbox to be published to RabbitMQ.
+ * The body contains the JSON representation of the payload.
+ */
+@Value
+public class OutboxMessage {
+
+    private String exchange;
+    private String routingKey;
+    private byte[] body;
+}
@@ -0,0 +1,149 @@
+package uk.ac.ebi.subs.fileupload.services.outbox;
+
+import com.rabbitmq.client.AMQP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * This class drains the {@link MessageOutbox} to RabbitMQ on a background thread.
+ * The pending messages are published in batches on a channel in confirm mode
+ * and flagged as acknowledged only after the broker has confirmed the whole batch.
+ * A failed batch is published again after a delay, so the messages are delivered at least once.
+ */
+@Component
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final int PERSISTENT_DELIVERY_MODE = 2;
+
+    private static final AMQP.BasicProperties JSON_MESSAGE_PROPERTIES = new AMQP.BasicProperties.Builder()
+            .contentType("application/json")
+            .contentEncoding("UTF-8")
+            .deliveryMode(PERSISTENT_DELIVERY_MODE)
+            .priority(0)
+            .build();
+
+    private MessageOutbox messageOutbox;
+    private RabbitMessagingTemplate rabbitMessagingTemplate;
+
+    @Value("${file-upload.outbox.relay.autoStartup:true}")
+    private boolean autoStartup;
+    @Value("${file-upload.outbox.relay.batchSize:100}")
+    private int batchSize;
+    @Value("${file-upload.outbox.relay.confirmTimeout:5000}")
+    private long confirmTimeout;
+    @Value("${file-upload.outbox.relay.retryDelay:1000}")
+    private long retryDelay;
+    @Value("${file-upload.outbox.relay.pollInterval:1000}")
+    private long pollInterval;
+
+    private volatile boolean running;
+    private Thread relayThread;
+
+    public OutboxRelay(MessageOutbox messageOutbox, RabbitMessagingTemplate rabbitMessagingTemplate) {
+        this.messageOutbox = messageOutbox;
+        this.rabbitMessagingTemplate = rabbitMessagingTemplate;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        running = true;
+        relayThread = new Thread(this::relay, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (relayThread != null) {
+            messageOutbox.getOutboxJournal().wakeUp();
+            try {
+                relayThread.join(confirmTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            relayThread = null;
+        }
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    private void relay() {
+        OutboxJournal outboxJournal = messageOutbox.getOutboxJournal();
+
+        while (running) {
+            try {
+                List<OutboxJournal.Entry> entries = outboxJournal.readPending(batchSize);
+                if (entries.isEmpty()) {
+                    outboxJournal.awaitPending(pollInterval);
+                    continue;
+                }
+
+                publishWithConfirms(entries);
+                outboxJournal.acknowledge(entries);
+
+                LOGGER.debug("{} message(s) of the outbox have been confirmed by the broker.", entries.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not publish the messages of the outbox, retrying in {} ms. Error message: {}",
+                        retryDelay, e.getMessage());
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    void publishWithConfirms(List<OutboxJournal.Entry> entries) {
+        rabbitMessagingTemplate.getRabbitTemplate().execute(channel -> {
+            channel.confirmSelect();
+            for (OutboxJournal.Entry entry : entries) {
+                OutboxMessage message = entry.getMessage();
+                channel.basicPublish(message.getExchange(), message.getRoutingKey(), JSON_MESSAGE_PROPERTIES, message.getBody());
+            }
+            channel.waitForConfirmsOrDie(confirmTimeout);
+
+            return null;
+        });
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(retryDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
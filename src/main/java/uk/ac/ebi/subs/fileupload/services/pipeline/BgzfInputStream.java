@@ -0,0 +1,306 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a BGZF file, like a BAM or a bgzipped FASTQ or VCF file, on the threads of a {@link ForkJoinPool}.
+ * Every BGZF block is a gzip member that records its own compressed size, so the blocks can be cut out of the stream
+ * without inflating them and inflated in parallel, while the decompressed bytes are returned in their original order.
+ * The number of blocks in flight is bounded, so a slow reader holds back the reading of the compressed stream.
+ * The position of the reader is available as a BGZF virtual offset, as used by the BAM and tabix indexes.
+ *
+ * <p>The size of a gzip member that is not a BGZF block is only known when it has been inflated,
+ * so from the first such member the rest of the stream is decompressed on the calling thread,
+ * the same way as {@link GZIPInputStream} does.</p>
+ */
+public class BgzfInputStream extends InputStream {
+
+    private static final int HEADER_SIZE = 12;
+    private static final int TRAILER_SIZE = 8;
+    private static final int MAX_BLOCK_SIZE = 65536;
+
+    private static final int GZIP_ID1 = 31;
+    private static final int GZIP_ID2 = 139;
+    private static final int DEFLATE = 8;
+    private static final int FLAG_EXTRA = 4;
+    private static final int BGZF_SUBFIELD_ID1 = 'B';
+    private static final int BGZF_SUBFIELD_ID2 = 'C';
+
+    private final InputStream in;
+    private final ForkJoinPool inflaterPool;
+    private final int maxBlocksInFlight;
+
+    private final Deque<Block> blocksInFlight = new ArrayDeque<>();
+    private InputStream sequentialStream;
+    private boolean compressedStreamEnded;
+    private long compressedOffset;
+    private long blockCount;
+
+    private byte[] current = new byte[0];
+    private int position;
+    private long currentBlockAddress;
+    private long nextBlockAddress;
+
+    /**
+     * @param in the compressed stream
+     * @param inflaterPool inflates the blocks
+     * @param maxBlocksInFlight the maximum number of blocks read ahead of the reader of this stream
+     */
+    public BgzfInputStream(InputStream in, ForkJoinPool inflaterPool, int maxBlocksInFlight) {
+        this.in = in;
+        this.inflaterPool = inflaterPool;
+        this.maxBlocksInFlight = maxBlocksInFlight;
+    }
+
+    /**
+     * @return true if the stream has been decompressed in parallel so far, false after its first non-BGZF member
+     */
+    public boolean isBgzf() {
+        return sequentialStream == null && blockCount > 0;
+    }
+
+    /**
+     * @return the virtual offset of the next byte to be read: the offset of its block in the compressed stream
+     * shifted left by 16 bits, plus its offset in the inflated block. At the end of a block, it is the virtual offset
+     * of the start of the next block.
+     * @throws IllegalStateException if the stream is not decompressed as BGZF blocks
+     */
+    public long getVirtualOffset() {
+        if (sequentialStream != null) {
+            throw new IllegalStateException("The stream is not BGZF compressed, it has no virtual offsets.");
+        }
+        return position < current.length ? currentBlockAddress << 16 | position : nextBlockAddress << 16;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == current.length) {
+            if (!nextBlock()) {
+                return sequentialStream == null ? -1 : sequentialStream.read();
+            }
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (position == current.length) {
+            if (!nextBlock()) {
+                return sequentialStream == null ? -1 : sequentialStream.read(bytes, offset, length);
+            }
+        }
+
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, bytes, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        blocksInFlight.forEach(block -> block.data.cancel(false));
+        blocksInFlight.clear();
+        if (sequentialStream != null) {
+            sequentialStream.close();
+        }
+        in.close();
+    }
+
+    /**
+     * Reads ahead and moves to the next inflated block.
+     *
+     * @return false if there are no more blocks to be inflated in parallel
+     */
+    private boolean nextBlock() throws IOException {
+        while (blocksInFlight.size() < maxBlocksInFlight && !compressedStreamEnded && sequentialStream == null) {
+            readBlock();
+        }
+
+        Block block = blocksInFlight.poll();
+        if (block == null) {
+            return false;
+        }
+
+        current = await(block.data);
+        position = 0;
+        currentBlockAddress = block.address;
+        nextBlockAddress = block.address + block.size;
+        return true;
+    }
+
+    private void readBlock() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            if (blockCount == 0) {
+                throw new EOFException("The file is empty.");
+            }
+            compressedStreamEnded = true;
+            return;
+        }
+
+        byte[] header = new byte[HEADER_SIZE];
+        header[0] = (byte) first;
+        readFully(header, 1, HEADER_SIZE - 1);
+        if ((header[0] & 0xff) != GZIP_ID1 || (header[1] & 0xff) != GZIP_ID2 || header[2] != DEFLATE) {
+            throw new ZipException("Not in GZIP format");
+        }
+
+        if (header[3] != FLAG_EXTRA) {
+            continueSequentially(header);
+            return;
+        }
+
+        int extraLength = unsignedShort(header, 10);
+        byte[] extra = new byte[extraLength];
+        readFully(extra, 0, extraLength);
+
+        int blockSize = bgzfBlockSize(extra);
+        if (blockSize < 0) {
+            byte[] readBytes = Arrays.copyOf(header, HEADER_SIZE + extraLength);
+            System.arraycopy(extra, 0, readBytes, HEADER_SIZE, extraLength);
+            continueSequentially(readBytes);
+            return;
+        }
+
+        int dataOffset = HEADER_SIZE + extraLength;
+        if (blockSize < dataOffset + TRAILER_SIZE) {
+            throw new ZipException("Corrupt BGZF block size: " + blockSize);
+        }
+
+        byte[] compressedBlock = new byte[blockSize];
+        System.arraycopy(header, 0, compressedBlock, 0, HEADER_SIZE);
+        System.arraycopy(extra, 0, compressedBlock, HEADER_SIZE, extraLength);
+        readFully(compressedBlock, dataOffset, blockSize - dataOffset);
+
+        long blockIndex = blockCount++;
+        blocksInFlight.add(new Block(compressedOffset, blockSize,
+                inflaterPool.submit(() -> inflate(compressedBlock, dataOffset, blockIndex))));
+        compressedOffset += blockSize;
+    }
+
+    /**
+     * Hands the rest of the stream, including the already read bytes of the current member, to a {@link GZIPInputStream}.
+     */
+    private void continueSequentially(byte[] readBytes) throws IOException {
+        sequentialStream = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(readBytes), in));
+    }
+
+    private static byte[] inflate(byte[] compressedBlock, int dataOffset, long blockIndex) throws ZipException {
+        int trailerOffset = compressedBlock.length - TRAILER_SIZE;
+        long expectedCrc = unsignedInt(compressedBlock, trailerOffset);
+        long expectedSize = unsignedInt(compressedBlock, trailerOffset + 4);
+        if (expectedSize > MAX_BLOCK_SIZE) {
+            throw new ZipException("Corrupt BGZF block: " + blockIndex + ", its size is " + expectedSize);
+        }
+
+        byte[] block = new byte[(int) expectedSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressedBlock, dataOffset, trailerOffset - dataOffset);
+            int inflatedSize = inflater.inflate(block);
+            if (!inflater.finished() || inflatedSize != expectedSize) {
+                throw new ZipException("Corrupt BGZF block: " + blockIndex + ", its size does not match its trailer");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt BGZF block: " + blockIndex + ", " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        if (crc.getValue() != expectedCrc) {
+            throw new ZipException("Corrupt BGZF block: " + blockIndex + ", its CRC does not match its trailer");
+        }
+
+        return block;
+    }
+
+    private static byte[] await(Future<byte[]> block) throws IOException {
+        try {
+            return block.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating a BGZF block.");
+        } catch (ExecutionException e) {
+            // the fork-join pool wraps the checked exceptions of the tasks
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the size of the block recorded in the BC subfield of the given extra field, or -1 if there is none
+     */
+    private static int bgzfBlockSize(byte[] extra) {
+        int offset = 0;
+        while (offset + 4 <= extra.length) {
+            int subfieldLength = unsignedShort(extra, offset + 2);
+            if (extra[offset] == BGZF_SUBFIELD_ID1 && extra[offset + 1] == BGZF_SUBFIELD_ID2 && subfieldLength == 2
+                    && offset + 6 <= extra.length) {
+                return unsignedShort(extra, offset + 4) + 1;
+            }
+            offset += 4 + subfieldLength;
+        }
+        return -1;
+    }
+
+    private void readFully(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(bytes, offset, length);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of the compressed file.");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private static int unsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static long unsignedInt(byte[] bytes, int offset) {
+        return unsignedShort(bytes, offset) | (long) unsignedShort(bytes, offset + 2) << 16;
+    }
+
+    /**
+     * A block being inflated and its place in the compressed stream.
+     */
+    private static final class Block {
+
+        private final long address;
+        private final int size;
+        private final Future<byte[]> data;
+
+        private Block(long address, int size, Future<byte[]> data) {
+            this.address = address;
+            this.size = size;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.services.checksum.ChecksumCalculator;
+import uk.ac.ebi.subs.fileupload.services.checksum.MessageDigestChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Calculates the MD5, SHA-256 and CRC32C checksums of a file.
+ * The MD5 checksum is stored in the {@code checksum} field as well, where the rest of the system expects it.
+ * A file is hashed with the digests of the JDK from its first byte.
+ * When it is seeded with the running checksum of the upload, only the rest of the file is consumed.
+ */
+public class ChecksumConsumer implements FileConsumer {
+
+    public static final String NAME = "checksum";
+
+    public static final String CHECKSUM = "checksum";
+    public static final String MD5_CHECKSUM = "checksums.md5";
+    public static final String SHA256_CHECKSUM = "checksums.sha256";
+    public static final String CRC32C_CHECKSUM = "checksums.crc32c";
+
+    private final ChecksumCalculator checksum;
+
+    public ChecksumConsumer() {
+        this(new MessageDigestChecksum());
+    }
+
+    /**
+     * @param checksum the checksum to continue, like the {@link RunningChecksum} of the upload
+     */
+    public ChecksumConsumer(ChecksumCalculator checksum) {
+        this.checksum = checksum;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public long getStartOffset() {
+        return checksum.getOffset();
+    }
+
+    @Override
+    public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+        ByteBuffer chunk;
+        while ((chunk = chunks.nextChunk()) != null) {
+            checksum.update(chunk);
+        }
+
+        FileChecksums fileChecksums = checksum.getChecksums();
+        results.put(CHECKSUM, fileChecksums.getMd5());
+        results.put(MD5_CHECKSUM, fileChecksums.getMd5());
+        results.put(SHA256_CHECKSUM, fileChecksums.getSha256());
+        results.put(CRC32C_CHECKSUM, fileChecksums.getCrc32c());
+    }
+
+    public FileChecksums getChecksums() {
+        return checksum.getChecksums();
+    }
+}
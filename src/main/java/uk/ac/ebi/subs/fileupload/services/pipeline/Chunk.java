@@ -0,0 +1,40 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A chunk of a file shared by the consumers of the pipeline.
+ * Its buffer is given back to the pool of the pipeline, when every consumer has released it.
+ */
+final class Chunk {
+
+    static final Chunk END = new Chunk(null, null, -1, 0);
+
+    private final ByteBuffer buffer;
+    private final Queue<ByteBuffer> freeBuffers;
+    private final long offset;
+    private final AtomicInteger references;
+
+    Chunk(ByteBuffer buffer, Queue<ByteBuffer> freeBuffers, long offset, int references) {
+        this.buffer = buffer;
+        this.freeBuffers = freeBuffers;
+        this.offset = offset;
+        this.references = new AtomicInteger(references);
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            freeBuffers.offer(buffer);
+        }
+    }
+}
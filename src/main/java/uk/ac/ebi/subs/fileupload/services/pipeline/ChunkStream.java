@@ -0,0 +1,133 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The bytes of a file delivered to a {@link FileConsumer}, either chunk by chunk with {@link #nextChunk()}
+ * or as an {@link InputStream}. A chunk is released when the next one is requested,
+ * and the reader of the pipeline waits for free buffers, so a slow consumer slows down the reading of the file
+ * instead of letting the chunks pile up in memory.
+ */
+public class ChunkStream extends InputStream {
+
+    private final BlockingQueue<Chunk> chunks;
+    private final long startOffset;
+
+    private Chunk currentChunk;
+    private ByteBuffer current;
+    private boolean ended;
+
+    ChunkStream(BlockingQueue<Chunk> chunks, long startOffset) {
+        this.chunks = chunks;
+        this.startOffset = startOffset;
+    }
+
+    /**
+     * Releases the current chunk and waits for the next one.
+     *
+     * @return the next chunk as a read-only buffer, or null at the end of the file
+     */
+    public ByteBuffer nextChunk() throws IOException {
+        releaseCurrentChunk();
+
+        while (!ended) {
+            Chunk chunk = take();
+            if (chunk == Chunk.END) {
+                ended = true;
+                break;
+            }
+
+            ByteBuffer view = chunk.view();
+            if (chunk.getOffset() + view.remaining() <= startOffset) {
+                chunk.release();
+                continue;
+            }
+            if (chunk.getOffset() < startOffset) {
+                view.position((int) (startOffset - chunk.getOffset()));
+            }
+
+            currentChunk = chunk;
+            current = view;
+            return view;
+        }
+
+        return null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+
+        int count = Math.min(length, current.remaining());
+        current.get(bytes, offset, count);
+        return count;
+    }
+
+    /**
+     * Unlike most streams this one waits for the next chunk, when the current one has been read,
+     * so readers of concatenated data, like {@link java.util.zip.GZIPInputStream}, see the data that follows.
+     */
+    @Override
+    public int available() throws IOException {
+        return ensureData() ? current.remaining() : 0;
+    }
+
+    /**
+     * The chunks are released by the pipeline, when the consumer has finished.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Releases the remaining chunks without reading them.
+     */
+    void drain() throws IOException {
+        while (nextChunk() != null) {
+            // every chunk is released by the next call
+        }
+    }
+
+    private boolean ensureData() throws IOException {
+        while (current == null || !current.hasRemaining()) {
+            if (nextChunk() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseCurrentChunk() {
+        if (currentChunk != null) {
+            currentChunk.release();
+            currentChunk = null;
+            current = null;
+        }
+    }
+
+    private Chunk take() throws IOException {
+        try {
+            return chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next chunk of the file.");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the 4-line records of a FASTQ file directly over the bytes of the file, without creating a string per line.
+ * The bytes can be split at any position, the state of the current record is kept between the calls.
+ *
+ * <p>A record has to have a header line starting with '@', a sequence line of letters, a separator line starting
+ * with '+' and a quality line of the same length as the sequence, made of the Phred+33 characters from '!' to '~'.
+ * Carriage returns are ignored, so files with Windows line endings are accepted.</p>
+ */
+class FastqScanner {
+
+    private static final int HEADER = 0;
+    private static final int SEQUENCE = 1;
+    private static final int SEPARATOR = 2;
+    private static final int QUALITY = 3;
+
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte HEADER_START = '@';
+    private static final byte SEPARATOR_START = '+';
+    private static final int MIN_QUALITY = '!';
+    private static final int MAX_QUALITY = '~';
+
+    private static final boolean[] SEQUENCE_CHARACTERS = new boolean[256];
+
+    static {
+        for (int c = 'A'; c <= 'Z'; c++) {
+            SEQUENCE_CHARACTERS[c] = true;
+            SEQUENCE_CHARACTERS[Character.toLowerCase(c)] = true;
+        }
+        SEQUENCE_CHARACTERS['.'] = true;
+    }
+
+    private final long[] qualityHistogram = new long[MAX_QUALITY - MIN_QUALITY + 1];
+
+    private int line = HEADER;
+    private int lineLength;
+    private long sequenceLength;
+    private long qualityLength;
+
+    private long readCount;
+    private long baseCount;
+
+    /**
+     * Checks the given bytes as the continuation of the bytes checked so far.
+     *
+     * @throws FileFormatException at the first violation of the format
+     */
+    void scan(byte[] bytes, int offset, int length) throws FileFormatException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b == NEW_LINE) {
+                endLine();
+            } else if (b != CARRIAGE_RETURN) {
+                scanByte(b);
+            }
+        }
+    }
+
+    /**
+     * Checks that the file has not ended in the middle of a record.
+     *
+     * @throws FileFormatException if the last record is incomplete
+     */
+    void finish() throws FileFormatException {
+        if (lineLength > 0) {
+            endLine();
+        }
+        if (line != HEADER) {
+            throw error("the file ends in the middle of the record");
+        }
+        if (readCount == 0) {
+            throw new FileFormatException("The file does not contain any FASTQ records.");
+        }
+    }
+
+    long getReadCount() {
+        return readCount;
+    }
+
+    long getBaseCount() {
+        return baseCount;
+    }
+
+    /**
+     * @return the number of quality characters by their Phred score, up to the highest score found
+     */
+    List<Long> getQualityHistogram() {
+        int maxScore = qualityHistogram.length - 1;
+        while (maxScore >= 0 && qualityHistogram[maxScore] == 0) {
+            maxScore--;
+        }
+
+        List<Long> histogram = new ArrayList<>(maxScore + 1);
+        for (int score = 0; score <= maxScore; score++) {
+            histogram.add(qualityHistogram[score]);
+        }
+        return histogram;
+    }
+
+    private void scanByte(byte b) throws FileFormatException {
+        switch (line) {
+            case HEADER:
+                if (lineLength == 0 && b != HEADER_START) {
+                    throw error("the header line does not start with '@'");
+                }
+                break;
+            case SEQUENCE:
+                if (!SEQUENCE_CHARACTERS[b & 0xff]) {
+                    throw error("the sequence contains an invalid character: " + printable(b));
+                }
+                sequenceLength++;
+                break;
+            case SEPARATOR:
+                if (lineLength == 0 && b != SEPARATOR_START) {
+                    throw error("the separator line does not start with '+'");
+                }
+                break;
+            default:
+                if (b < MIN_QUALITY || b > MAX_QUALITY) {
+                    throw error("the quality contains an invalid character: " + printable(b));
+                }
+                qualityHistogram[b - MIN_QUALITY]++;
+                qualityLength++;
+                break;
+        }
+        lineLength++;
+    }
+
+    private void endLine() throws FileFormatException {
+        switch (line) {
+            case HEADER:
+                if (lineLength == 0) {
+                    throw error("the header line is empty");
+                }
+                break;
+            case SEPARATOR:
+                if (lineLength == 0) {
+                    throw error("the separator line is empty");
+                }
+                break;
+            case QUALITY:
+                if (qualityLength != sequenceLength) {
+                    throw error("the length of the quality (" + qualityLength
+                            + ") does not match the length of the sequence (" + sequenceLength + ")");
+                }
+                readCount++;
+                baseCount += sequenceLength;
+                sequenceLength = 0;
+                qualityLength = 0;
+                break;
+            default:
+                break;
+        }
+
+        line = (line + 1) % 4;
+        lineLength = 0;
+    }
+
+    private FileFormatException error(String message) {
+        return new FileFormatException("Invalid FASTQ record: " + (readCount + 1) + ", " + message + ".");
+    }
+
+    private static String printable(byte b) {
+        int c = b & 0xff;
+        return c >= 32 && c < 127 ? "'" + (char) c + "'" : String.format("0x%02x", c);
+    }
+}
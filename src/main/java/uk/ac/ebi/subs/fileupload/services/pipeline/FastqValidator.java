@@ -0,0 +1,42 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Validates a compressed FASTQ file while it is decompressed by the {@link GzipIntegrityValidator},
+ * and stores its number of reads, number of bases and the histogram of its quality scores.
+ */
+public class FastqValidator extends GzipIntegrityValidator {
+
+    public static final String NAME = "fastq";
+
+    static final String READ_COUNT = "contentCheck.readCount";
+    static final String BASE_COUNT = "contentCheck.baseCount";
+    static final String QUALITY_HISTOGRAM = "contentCheck.qualityHistogram";
+
+    private final FastqScanner scanner = new FastqScanner();
+
+    public FastqValidator(ForkJoinPool inflaterPool) {
+        super(inflaterPool);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected void consumeUncompressed(byte[] bytes, int length) throws FileFormatException {
+        scanner.scan(bytes, 0, length);
+    }
+
+    @Override
+    protected void finish(Map<String, Object> results) throws FileFormatException {
+        scanner.finish();
+
+        results.put(READ_COUNT, scanner.getReadCount());
+        results.put(BASE_COUNT, scanner.getBaseCount());
+        results.put(QUALITY_HISTOGRAM, scanner.getQualityHistogram());
+    }
+}
@@ -0,0 +1,34 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A consumer of the bytes of a file read by the {@link FileProcessingPipeline}.
+ * Every consumer runs on its own thread and reads the chunks of the file at its own pace,
+ * the results of the consumers are stored on the file document in one update.
+ */
+public interface FileConsumer {
+
+    /**
+     * @return the name of the consumer, used to report its failure
+     */
+    String getName();
+
+    /**
+     * @return the offset of the first byte of the file needed by the consumer
+     */
+    default long getStartOffset() {
+        return 0;
+    }
+
+    /**
+     * Consumes the bytes of the file and puts its results into the given map.
+     * The keys of the map are the paths of the fields of the file document.
+     *
+     * @param chunks the bytes of the file from the start offset of the consumer
+     * @param results the results of the consumer
+     * @throws IOException if the bytes could not be consumed, the results of the consumer are discarded then
+     */
+    void consume(ChunkStream chunks, Map<String, Object> results) throws IOException;
+}
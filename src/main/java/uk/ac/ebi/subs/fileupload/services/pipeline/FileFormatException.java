@@ -0,0 +1,11 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+/**
+ * Thrown by a format validator, when the content of a file does not match its format.
+ */
+public class FileFormatException extends Exception {
+
+    public FileFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,160 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class reads a file from the disk exactly once and fans its chunks out to several {@link FileConsumer}s,
+ * like the digests, the format validator and the statistics collector of the file.
+ * Every consumer runs on its own thread and the chunks are shared by the consumers without copying them.
+ * The file is read into a small, fixed number of buffers, a buffer is reused only when every consumer has released it,
+ * so the memory used by a file is bounded and the file is read at the pace of its slowest consumer.
+ */
+@Component
+public class FileProcessingPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileProcessingPipeline.class);
+
+    private Executor consumerExecutor;
+
+    private final ThreadLocal<BlockingQueue<ByteBuffer>> bufferPool;
+
+    /**
+     * @param consumerExecutor runs the consumers, it has to run every consumer on its own thread
+     * @param bufferSize the size of the buffers the file is read into
+     * @param bufferCount the number of buffers of a file being read
+     */
+    public FileProcessingPipeline(@Qualifier(ExecutorConfiguration.PIPELINE_CONSUMER_EXECUTOR) Executor consumerExecutor,
+                                  @Value("${file-upload.pipeline.bufferSize:4194304}") int bufferSize,
+                                  @Value("${file-upload.pipeline.bufferCount:4}") int bufferCount) {
+        this.consumerExecutor = consumerExecutor;
+        this.bufferPool = ThreadLocal.withInitial(() -> {
+            BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(bufferCount);
+            for (int i = 0; i < bufferCount; i++) {
+                buffers.add(ByteBuffer.allocateDirect(bufferSize));
+            }
+            return buffers;
+        });
+    }
+
+    /**
+     * Reads the given file once, from the smallest start offset of the given consumers, and feeds it to the consumers.
+     *
+     * @param path the path of the file
+     * @param consumers the consumers of the file
+     * @return the merged results of the consumers and the errors of the failed consumers
+     * @throws IOException if the file could not be read
+     */
+    public FileProcessingResult process(Path path, List<FileConsumer> consumers) throws IOException {
+        return process(path, consumers, IoPermit.unlimited());
+    }
+
+    /**
+     * Reads the given file like {@link #process(Path, List)}, within the bandwidth cap of the given I/O permit.
+     *
+     * @param permit the permit of the read, every chunk read is reported to it
+     */
+    public FileProcessingResult process(Path path, List<FileConsumer> consumers, IoPermit permit) throws IOException {
+        if (consumers.isEmpty()) {
+            return new FileProcessingResult(Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        long startOffset = consumers.stream().mapToLong(FileConsumer::getStartOffset).min().getAsLong();
+        BlockingQueue<ByteBuffer> freeBuffers = bufferPool.get();
+
+        List<BlockingQueue<Chunk>> queues = new ArrayList<>();
+        List<Map<String, Object>> consumerResults = new ArrayList<>();
+        List<CompletableFuture<Void>> consumerFutures = new ArrayList<>();
+        Map<String, String> errors = new ConcurrentHashMap<>();
+
+        for (FileConsumer consumer : consumers) {
+            BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+            Map<String, Object> results = new LinkedHashMap<>();
+            queues.add(queue);
+            consumerResults.add(results);
+
+            ChunkStream chunks = new ChunkStream(queue, consumer.getStartOffset());
+            consumerFutures.add(CompletableFuture.runAsync(() -> consume(path, consumer, chunks, results, errors),
+                    consumerExecutor));
+        }
+
+        IOException readFailure = null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long position = startOffset;
+            long size = channel.size();
+            while (position < size) {
+                ByteBuffer buffer = freeBuffers.take();
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    freeBuffers.add(buffer);
+                    break;
+                }
+
+                permit.throttle(read);
+                buffer.flip();
+                Chunk chunk = new Chunk(buffer, freeBuffers, position, queues.size());
+                queues.forEach(queue -> queue.add(chunk));
+                position += read;
+            }
+        } catch (IOException e) {
+            readFailure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            readFailure = new InterruptedIOException("Interrupted while reading the file: " + path);
+        } finally {
+            queues.forEach(queue -> queue.add(Chunk.END));
+        }
+
+        CompletableFuture.allOf(consumerFutures.toArray(new CompletableFuture[0])).join();
+
+        if (readFailure != null) {
+            throw readFailure;
+        }
+
+        Map<String, Object> fields = new LinkedHashMap<>();
+        consumerResults.forEach(fields::putAll);
+
+        return new FileProcessingResult(fields, errors);
+    }
+
+    private void consume(Path path, FileConsumer consumer, ChunkStream chunks,
+                         Map<String, Object> results, Map<String, String> errors) {
+        try {
+            consumer.consume(chunks, results);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("The {} consumer of the file: {} has failed. Error message: {}", consumer.getName(), path, e.getMessage());
+            results.clear();
+            errors.put(consumer.getName(), String.valueOf(e.getMessage()));
+        } finally {
+            try {
+                chunks.drain();
+            } catch (IOException e) {
+                LOGGER.warn("Could not release the chunks of the file: {}. Error message: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * The merged results of the consumers of a file and the errors of the consumers that have failed.
+ */
+@Value
+public class FileProcessingResult {
+
+    private Map<String, Object> fields;
+    private Map<String, String> errors;
+
+    public boolean hasFailed(String consumerName) {
+        return errors.containsKey(consumerName);
+    }
+}
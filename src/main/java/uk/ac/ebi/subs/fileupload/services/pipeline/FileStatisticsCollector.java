@@ -0,0 +1,47 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Counts the bytes and the lines of a file.
+ */
+public class FileStatisticsCollector implements FileConsumer {
+
+    public static final String NAME = "statistics";
+
+    static final String SIZE = "statistics.size";
+    static final String LINE_COUNT = "statistics.lineCount";
+
+    private static final byte NEW_LINE = '\n';
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+        long size = 0;
+        long lineCount = 0;
+        byte lastByte = NEW_LINE;
+
+        ByteBuffer chunk;
+        while ((chunk = chunks.nextChunk()) != null) {
+            size += chunk.remaining();
+            while (chunk.hasRemaining()) {
+                lastByte = chunk.get();
+                if (lastByte == NEW_LINE) {
+                    lineCount++;
+                }
+            }
+        }
+        if (lastByte != NEW_LINE) {
+            lineCount++;
+        }
+
+        results.put(SIZE, size);
+        results.put(LINE_COUNT, lineCount);
+    }
+}
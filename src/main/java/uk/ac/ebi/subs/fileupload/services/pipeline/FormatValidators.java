@@ -0,0 +1,44 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.util.FileType;
+
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class chooses the in-process validator of a file by its detected type.
+ */
+@Component
+public class FormatValidators {
+
+    private ForkJoinPool inflaterPool;
+
+    public FormatValidators(@Qualifier(ExecutorConfiguration.INFLATER_POOL) ForkJoinPool inflaterPool) {
+        this.inflaterPool = inflaterPool;
+    }
+
+    /**
+     * @param fileType the detected type of the file
+     * @return the validator of the file or empty, if there is no in-process validator for its type
+     */
+    public Optional<FileConsumer> validatorFor(DetectedFileType fileType) {
+        if (fileType.getType() == null) {
+            return Optional.empty();
+        }
+
+        switch (fileType.getType()) {
+            case FileType.FASTQ:
+                return fileType.isCompressed() ? Optional.of(new FastqValidator(inflaterPool)) : Optional.empty();
+            case FileType.BAM:
+                return Optional.of(new GzipIntegrityValidator(inflaterPool));
+            case FileType.VCF:
+                return fileType.isCompressed() ? Optional.of(new GzipIntegrityValidator(inflaterPool)) : Optional.empty();
+            default:
+                return Optional.empty();
+        }
+    }
+}
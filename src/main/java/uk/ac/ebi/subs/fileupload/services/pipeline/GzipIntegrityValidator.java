@@ -0,0 +1,86 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipException;
+
+/**
+ * Checks that a gzip or BGZF compressed file can be decompressed from its start to its end,
+ * so truncated and corrupt uploads are caught before they are archived.
+ * The BGZF blocks are inflated in parallel by the {@link BgzfInputStream}.
+ * The outcome of the check is a result of the consumer, only an unreadable file makes the consumer fail.
+ * The validators of the compressed formats extend this class to check the decompressed bytes on the way.
+ */
+public class GzipIntegrityValidator implements FileConsumer {
+
+    public static final String NAME = "gzipIntegrity";
+
+    static final String VALID = "contentCheck.valid";
+    static final String MESSAGE = "contentCheck.message";
+    static final String VALIDATOR = "contentCheck.validator";
+    static final String UNCOMPRESSED_SIZE = "contentCheck.uncompressedSize";
+    static final String COMPRESSION = "contentCheck.compression";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private final ForkJoinPool inflaterPool;
+
+    public GzipIntegrityValidator(ForkJoinPool inflaterPool) {
+        this.inflaterPool = inflaterPool;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+        results.put(VALIDATOR, getName());
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long uncompressedSize = 0;
+        try (BgzfInputStream gzipStream = new BgzfInputStream(chunks, inflaterPool,
+                inflaterPool.getParallelism() * BLOCKS_IN_FLIGHT_PER_THREAD)) {
+            int read;
+            while ((read = gzipStream.read(buffer)) >= 0) {
+                uncompressedSize += read;
+                consumeUncompressed(buffer, read);
+            }
+            results.put(COMPRESSION, gzipStream.isBgzf() ? "BGZF" : "GZIP");
+            finish(results);
+        } catch (ZipException | EOFException e) {
+            results.put(VALID, false);
+            results.put(MESSAGE, "The file is not a valid gzip file: " + e.getMessage());
+            results.put(UNCOMPRESSED_SIZE, uncompressedSize);
+            return;
+        } catch (FileFormatException e) {
+            results.put(VALID, false);
+            results.put(MESSAGE, e.getMessage());
+            results.put(UNCOMPRESSED_SIZE, uncompressedSize);
+            return;
+        }
+
+        results.put(VALID, true);
+        results.put(UNCOMPRESSED_SIZE, uncompressedSize);
+    }
+
+    /**
+     * Checks the next decompressed bytes of the file.
+     *
+     * @throws FileFormatException if the bytes do not match the format of the file
+     */
+    protected void consumeUncompressed(byte[] bytes, int length) throws FileFormatException {
+    }
+
+    /**
+     * Completes the check of the decompressed file and puts its results into the given map.
+     *
+     * @throws FileFormatException if the file does not match its format
+     */
+    protected void finish(Map<String, Object> results) throws FileFormatException {
+    }
+}
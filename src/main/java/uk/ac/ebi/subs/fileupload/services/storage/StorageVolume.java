@@ -0,0 +1,46 @@
+package uk.ac.ebi.subs.fileupload.services.storage;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * A directory, usually on its own disk, where the uploads are written and where they stay after they are finished.
+ * The uploads are stored at the root of the volume and the finished files under the target base path within it,
+ * so finishing an upload is a rename on the same file system.
+ */
+@Getter
+public class StorageVolume {
+
+    private final String name;
+    private final String basePath;
+
+    StorageVolume(String name, String basePath) {
+        this.name = name;
+        this.basePath = basePath;
+    }
+
+    /**
+     * @param more the names of the path within the volume
+     * @return the path within the volume
+     */
+    public String resolve(String... more) {
+        return Paths.get(basePath, more).toString();
+    }
+
+    public long getUsableSpace() {
+        return new java.io.File(basePath).getUsableSpace();
+    }
+
+    FileStore getFileStore() throws IOException {
+        return Files.getFileStore(Paths.get(basePath));
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + basePath + ")";
+    }
+}
@@ -0,0 +1,137 @@
+package uk.ac.ebi.subs.fileupload.services.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the storage volumes of the uploads, so the uploads can be spread over several disks.
+ * The volumes are listed by name in {@code file-upload.storage.volumeNames} and the directory of a volume is configured
+ * under {@code file-upload.storage.volumes.<volume name>.path}.
+ * The first volume is the default volume, it is the directory of the tusd server and its path defaults to
+ * {@code file-upload.sourceBasePath}. The files recorded before the volumes were introduced are on the default volume.
+ */
+@Component
+public class StorageVolumes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageVolumes.class);
+
+    private static final String VOLUME_PATH_PROPERTY = "file-upload.storage.volumes.%s.path";
+
+    private final Map<String, StorageVolume> volumes = new LinkedHashMap<>();
+    private final StorageVolume defaultVolume;
+
+    public StorageVolumes(Environment environment,
+                          @Value("${file-upload.sourceBasePath}") String sourceBasePath,
+                          @Value("${file-upload.storage.volumeNames:default}") String[] volumeNames) {
+        for (String volumeName : volumeNames) {
+            String path = environment.getProperty(String.format(VOLUME_PATH_PROPERTY, volumeName),
+                    volumes.isEmpty() ? sourceBasePath : null);
+            if (path == null) {
+                throw new IllegalStateException("The path of the storage volume: " + volumeName + " is not configured.");
+            }
+            volumes.put(volumeName, new StorageVolume(volumeName, path));
+        }
+        if (volumes.isEmpty()) {
+            throw new IllegalStateException("No storage volumes are configured.");
+        }
+
+        defaultVolume = volumes.values().iterator().next();
+        LOGGER.info("The storage volumes are: {}", volumes.values());
+    }
+
+    public List<StorageVolume> getVolumes() {
+        return Collections.unmodifiableList(new ArrayList<>(volumes.values()));
+    }
+
+    public StorageVolume getDefaultVolume() {
+        return defaultVolume;
+    }
+
+    /**
+     * @param name the name of the volume, as recorded on a file document
+     * @return the volume with the given name or the default volume, if no name has been recorded
+     * @throws IllegalStateException if the volume is not configured any more
+     */
+    public StorageVolume getVolume(String name) {
+        if (name == null) {
+            return defaultVolume;
+        }
+
+        StorageVolume volume = volumes.get(name);
+        if (volume == null) {
+            throw new IllegalStateException("The storage volume: " + name + " is not configured.");
+        }
+        return volume;
+    }
+
+    /**
+     * Looks up a file stored at the root of a volume, like an upload whose volume is not known.
+     *
+     * @param fileName the name of the file
+     * @return the path of the file on the first volume that has it, or its path on the default volume
+     */
+    public String locate(String fileName) {
+        for (StorageVolume volume : volumes.values()) {
+            String path = volume.resolve(fileName);
+            if (Files.exists(Paths.get(path))) {
+                return path;
+            }
+        }
+        return defaultVolume.resolve(fileName);
+    }
+
+    /**
+     * @param path the path of a file
+     * @return the volume whose directory contains the given file, or null if it is not on any of the volumes
+     */
+    public StorageVolume findVolumeOf(Path path) {
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        for (StorageVolume volume : volumes.values()) {
+            if (normalizedPath.startsWith(Paths.get(volume.getBasePath()).toAbsolutePath().normalize())) {
+                return volume;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param path the path of an existing file
+     * @return the volume on the same file system as the given file, so the file can be moved onto it by a rename,
+     * or null if there is none
+     */
+    public StorageVolume findVolumeOnFileStoreOf(Path path) {
+        FileStore fileStore;
+        try {
+            fileStore = Files.getFileStore(path);
+        } catch (IOException e) {
+            LOGGER.debug("Could not find the file system of the file: {}. Error message: {}", path, e.getMessage());
+            return null;
+        }
+
+        for (StorageVolume volume : volumes.values()) {
+            try {
+                if (volume.getFileStore().equals(fileStore)) {
+                    return volume;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Could not find the file system of the storage volume: {}. Error message: {}",
+                        volume, e.getMessage());
+            }
+        }
+        return null;
+    }
+}
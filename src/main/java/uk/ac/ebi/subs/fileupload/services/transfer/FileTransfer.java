@@ -0,0 +1,66 @@
+package uk.ac.ebi.subs.fileupload.services.transfer;
+
+import lombok.Getter;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+
+import java.nio.file.Path;
+
+/**
+ * The progress of moving a file to its target path.
+ * A file moved by a rename is transferred at once, a file copied to another file system is transferred in chunks,
+ * and its checksum is calculated while it is being copied, continuing the running checksum of the upload if it has one.
+ */
+@Getter
+public class FileTransfer {
+
+    private final long id;
+    private final Path sourcePath;
+    private final Path targetPath;
+    private final long totalBytes;
+    private final long startTime = System.nanoTime();
+
+    private volatile long transferredBytes;
+    private volatile long finishTime;
+    private volatile boolean copied;
+    private volatile RunningChecksum checksum;
+
+    FileTransfer(long id, Path sourcePath, Path targetPath, long totalBytes) {
+        this.id = id;
+        this.sourcePath = sourcePath;
+        this.targetPath = targetPath;
+        this.totalBytes = totalBytes;
+    }
+
+    /**
+     * @return the ratio of the transferred bytes between 0 and 1
+     */
+    public double getProgress() {
+        return totalBytes == 0 ? 1 : (double) transferredBytes / totalBytes;
+    }
+
+    /**
+     * @return the average number of bytes transferred per second so far
+     */
+    public double getThroughput() {
+        long elapsedNanos = (finishTime == 0 ? System.nanoTime() : finishTime) - startTime;
+        return elapsedNanos == 0 ? 0 : transferredBytes * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public boolean isFinished() {
+        return finishTime != 0;
+    }
+
+    void addTransferredBytes(long bytes) {
+        transferredBytes += bytes;
+    }
+
+    void copied(RunningChecksum checksum) {
+        this.copied = true;
+        this.checksum = checksum;
+    }
+
+    void finish() {
+        transferredBytes = totalBytes;
+        finishTime = System.nanoTime();
+    }
+}
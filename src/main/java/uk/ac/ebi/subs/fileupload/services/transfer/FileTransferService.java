@@ -0,0 +1,241 @@
+package uk.ac.ebi.subs.fileupload.services.transfer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is responsible for moving the uploaded files to their target paths.
+ * A file is renamed atomically when its target path is on the same file system.
+ * Otherwise it is copied in chunks with {@link FileChannel#transferTo} into a temporary file next to its target path,
+ * that is synced to the disk, verified and renamed to the target path, then the source file is deleted.
+ * The checksums of the file are calculated in the same pass: the bytes already covered by the running checksum
+ * of the upload are transferred as they are, and the rest is read into a buffer once, hashed and written to the copy.
+ * A file without a running checksum, like the file of a Globus share, is hashed from its first byte.
+ * Every move is scheduled by the {@link IoScheduler} on the volume of its target path.
+ */
+@Service
+public class FileTransferService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTransferService.class);
+
+    private static final String PARTIAL_FILE_EXTENSION = ".part";
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    private IoScheduler ioScheduler;
+    private final long chunkSize;
+
+    private final AtomicLong transferIds = new AtomicLong();
+    private final Map<Long, FileTransfer> activeTransfers = new ConcurrentHashMap<>();
+
+    private final AtomicLong renamedFiles = new AtomicLong();
+    private final AtomicLong copiedFiles = new AtomicLong();
+    private final AtomicLong copiedBytes = new AtomicLong();
+
+    private final ThreadLocal<ByteBuffer> copyBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(COPY_BUFFER_SIZE));
+
+    public FileTransferService(IoScheduler ioScheduler,
+                               @Value("${file-upload.transfer.chunkSize:67108864}") long chunkSize) {
+        this.ioScheduler = ioScheduler;
+        this.chunkSize = Math.min(chunkSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Moves the given file to the given target path, creating the missing parent directories of the target path.
+     *
+     * @param sourcePath the path of the file to move
+     * @param targetPath the path to move the file to
+     * @param ioClass the priority class of the move
+     * @return the finished transfer
+     * @throws IOException if the file could not be moved, the source file is left untouched then
+     */
+    public FileTransfer move(Path sourcePath, Path targetPath, IoClass ioClass) throws IOException {
+        return move(sourcePath, targetPath, ioClass, null);
+    }
+
+    /**
+     * Moves the given file to the given target path, creating the missing parent directories of the target path.
+     *
+     * @param sourcePath the path of the file to move
+     * @param targetPath the path to move the file to
+     * @param ioClass the priority class of the move
+     * @param runningChecksum the running checksum of the file to continue, if the file is copied,
+     *                        or null to hash the file from its first byte
+     * @return the finished transfer, with the checksum of the whole file, if the file has been copied
+     * @throws IOException if the file could not be moved, the source file is left untouched then
+     */
+    public FileTransfer move(Path sourcePath, Path targetPath, IoClass ioClass, RunningChecksum runningChecksum)
+            throws IOException {
+        Files.createDirectories(targetPath.getParent());
+
+        long totalBytes = Files.size(sourcePath);
+        IoPermit permit = ioScheduler.acquire(targetPath, ioClass);
+        FileTransfer transfer = new FileTransfer(transferIds.incrementAndGet(), sourcePath, targetPath, totalBytes);
+        activeTransfers.put(transfer.getId(), transfer);
+        try {
+            try {
+                Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+                renamedFiles.incrementAndGet();
+            } catch (AtomicMoveNotSupportedException e) {
+                LOGGER.info("The file: {} is on another file system than: {}, copying it.", sourcePath, targetPath);
+                copy(transfer, permit, runningChecksum);
+                Files.delete(sourcePath);
+                copiedFiles.incrementAndGet();
+            }
+
+            transfer.finish();
+            LOGGER.debug("Moved the file: {} to: {} at {} MB/s.",
+                    sourcePath, targetPath, String.format("%.1f", transfer.getThroughput() / 1_000_000));
+
+            return transfer;
+        } finally {
+            activeTransfers.remove(transfer.getId());
+            permit.close();
+        }
+    }
+
+    /**
+     * @return the transfers that are in progress
+     */
+    public Collection<FileTransfer> getActiveTransfers() {
+        return new ArrayList<>(activeTransfers.values());
+    }
+
+    public long getRenamedFiles() {
+        return renamedFiles.get();
+    }
+
+    public long getCopiedFiles() {
+        return copiedFiles.get();
+    }
+
+    public long getCopiedBytes() {
+        return copiedBytes.get();
+    }
+
+    void copy(FileTransfer transfer, IoPermit permit, RunningChecksum runningChecksum) throws IOException {
+        Path sourcePath = transfer.getSourcePath();
+        Path targetPath = transfer.getTargetPath();
+        Path partialFilePath = targetPath.resolveSibling(targetPath.getFileName() + PARTIAL_FILE_EXTENSION);
+
+        BasicFileAttributes sourceAttributes = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+        RunningChecksum checksum = runningChecksum;
+        if (checksum != null && checksum.getOffset() > sourceAttributes.size()) {
+            LOGGER.warn("The running checksum of the file: {} is ahead of its size, it is not continued.", sourcePath);
+            checksum = null;
+        }
+        if (checksum == null) {
+            checksum = new RunningChecksum();
+        }
+
+        try {
+            try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(partialFilePath, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long length = Math.min(chunkSize, size - position);
+                    permit.throttle(length);
+
+                    copyChunk(source, target, position, length, checksum);
+
+                    position += length;
+                    transfer.addTransferredBytes(length);
+                    copiedBytes.addAndGet(length);
+                }
+
+                target.force(true);
+            }
+
+            verifyCopy(sourcePath, sourceAttributes, partialFilePath);
+
+            Files.move(partialFilePath, targetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory(targetPath.getParent());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partialFilePath);
+            throw e;
+        }
+
+        transfer.copied(checksum);
+    }
+
+    /**
+     * Copies a chunk of the source file to the end of the target file. The bytes already covered by the running checksum
+     * are transferred without passing through the service, the rest is read once, hashed and written.
+     */
+    private void copyChunk(FileChannel source, FileChannel target, long position, long length, RunningChecksum checksum)
+            throws IOException {
+        long end = position + length;
+        long hashedPosition = Math.max(position, Math.min(checksum.getOffset(), end));
+
+        long transferred = 0;
+        while (transferred < hashedPosition - position) {
+            long count = source.transferTo(position + transferred, hashedPosition - position - transferred, target);
+            if (count == 0) {
+                throw new EOFException("The file ended at: " + (position + transferred) + " while it was copied.");
+            }
+            transferred += count;
+        }
+
+        ByteBuffer buffer = copyBuffer.get();
+        while (hashedPosition < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - hashedPosition));
+            int read = source.read(buffer, hashedPosition);
+            if (read < 0) {
+                throw new EOFException("The file ended at: " + hashedPosition + " while it was copied.");
+            }
+
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            hashedPosition += read;
+        }
+    }
+
+    private void verifyCopy(Path sourcePath, BasicFileAttributes sourceAttributes, Path partialFilePath) throws IOException {
+        BasicFileAttributes currentSourceAttributes = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+        if (currentSourceAttributes.size() != sourceAttributes.size()
+                || !currentSourceAttributes.lastModifiedTime().equals(sourceAttributes.lastModifiedTime())) {
+            throw new IOException("The file: " + sourcePath + " has been modified while it was copied.");
+        }
+
+        long copiedSize = Files.size(partialFilePath);
+        if (copiedSize != sourceAttributes.size()) {
+            throw new IOException(String.format("The copy of the file: %s has %d bytes instead of %d.",
+                    sourcePath, copiedSize, sourceAttributes.size()));
+        }
+    }
+
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.debug("Could not sync the directory: {}. Error message: {}", directory, e.getMessage());
+        }
+    }
+}
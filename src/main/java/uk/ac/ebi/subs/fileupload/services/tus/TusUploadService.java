@@ -0,0 +1,540 @@
+package uk.ac.ebi.subs.fileupload.services.tus;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
+import uk.ac.ebi.subs.fileupload.eventhandlers.EventHandlerSupplier;
+import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.fileupload.util.TUSEventType;
+import uk.ac.ebi.subs.fileupload.util.TusProtocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * This class implements the core of the tus resumable upload protocol (creation, offset retrieval, appending and
+ * termination) on top of the {@link StorageVolumes}.
+ * The uploads are stored the same way as the tusd server stores them: the content goes into a {@code <id>.bin} file
+ * and the properties of the upload into a {@code <id>.info} file, so the existing hook event handlers can process them
+ * as lifecycle callbacks without any network round-trip. Every upload is stored on the volume chosen for it
+ * by the 'pre-create' event handler, which is recorded in its properties.
+ */
+@Service
+public class TusUploadService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TusUploadService.class);
+
+    private static final String BIN_FILE_EXTENSION = ".bin";
+    private static final String INFO_FILE_EXTENSION = ".info";
+
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+
+    private static final Pattern TUS_ID_PATTERN = Pattern.compile("^[0-9a-f]{32}$");
+
+    private EventHandlerService eventHandlerService;
+    private EventHandlerSupplier eventHandlerSupplier;
+    private ObjectMapper objectMapper;
+    private StorageVolumes storageVolumes;
+
+    private final Map<String, TUSFileInfo> uploads = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> uploadLocks = new ConcurrentHashMap<>();
+
+    public TusUploadService(EventHandlerService eventHandlerService, EventHandlerSupplier eventHandlerSupplier,
+                            ObjectMapper objectMapper, StorageVolumes storageVolumes) {
+        this.eventHandlerService = eventHandlerService;
+        this.eventHandlerSupplier = eventHandlerSupplier;
+        this.objectMapper = objectMapper;
+        this.storageVolumes = storageVolumes;
+    }
+
+    public ResponseEntity<Object> describeServer() {
+        HttpHeaders headers = tusHeaders();
+        headers.set(TusProtocol.TUS_VERSION, TusProtocol.VERSION);
+        headers.set(TusProtocol.TUS_EXTENSION, TusProtocol.EXTENSIONS);
+
+        return new ResponseEntity<>(headers, HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Creates a new upload. With the concatenation extension the upload can be a partial upload, that is only
+     * a chunk of a file uploaded on a parallel connection, or a final upload, that assembles the given partial
+     * uploads into the file. Partial uploads do not have a file document, only their final upload has one.
+     *
+     * @param uploadLength the value of the Upload-Length header, it is not sent for final uploads
+     * @param uploadMetadata the value of the Upload-Metadata header
+     * @param uploadConcat the value of the Upload-Concat header, it is only sent for partial and final uploads
+     * @param locationBuilder the URI builder of the collection of the uploads
+     * @return response entity with CREATED HTTP status and the location of the upload, otherwise other HTTP error status
+     */
+    public ResponseEntity<Object> createUpload(Long uploadLength, String uploadMetadata, String uploadConcat,
+                                               UriComponentsBuilder locationBuilder) {
+        Map<String, String> metadata;
+        try {
+            metadata = parseMetadata(uploadMetadata);
+        } catch (IllegalArgumentException ex) {
+            return ErrorResponse.assemble(HttpStatus.BAD_REQUEST, ErrorMessages.INVALID_UPLOAD_METADATA);
+        }
+
+        TUSFileInfo upload = new TUSFileInfo();
+        upload.setTusId(UUID.randomUUID().toString().replace("-", ""));
+        upload.setMetadata(TUSFileInfo.buildMetaData(metadata.get(TusProtocol.METADATA_FILENAME),
+                metadata.get(TusProtocol.METADATA_SUBMISSION_ID), metadata.get(TusProtocol.METADATA_JWT_TOKEN)));
+
+        if (uploadConcat != null && uploadConcat.startsWith(TusProtocol.CONCAT_FINAL)) {
+            List<String> partialUploadIds;
+            try {
+                partialUploadIds = parsePartialUploadIds(uploadConcat);
+            } catch (IllegalArgumentException ex) {
+                return ErrorResponse.assemble(HttpStatus.BAD_REQUEST, ErrorMessages.INVALID_UPLOAD_CONCAT);
+            }
+            upload.setFinal(true);
+            upload.setPartialUploads(partialUploadIds.toArray(new String[0]));
+
+            return createFinalUpload(upload, partialUploadIds, locationBuilder);
+        }
+
+        if (uploadLength == null || uploadLength < 0) {
+            return ErrorResponse.assemble(HttpStatus.BAD_REQUEST, ErrorMessages.INVALID_UPLOAD_LENGTH);
+        }
+        if (uploadConcat != null && !uploadConcat.equals(TusProtocol.CONCAT_PARTIAL)) {
+            return ErrorResponse.assemble(HttpStatus.BAD_REQUEST, ErrorMessages.INVALID_UPLOAD_CONCAT);
+        }
+        upload.setSize(uploadLength);
+        upload.setPartial(uploadConcat != null);
+
+        ResponseEntity<Object> response = fireLifecycleEvent(TUSEventType.PRE_CREATE, upload);
+        if (!response.getStatusCode().equals(HttpStatus.OK)) {
+            return response;
+        }
+
+        final String tusId = upload.getTusId();
+        try {
+            Files.createFile(binFilePath(upload));
+            objectMapper.writeValue(infoFilePath(upload).toFile(), upload);
+        } catch (IOException ex) {
+            LOGGER.error("Could not create the storage files of upload: {}. Error message: {}", tusId, ex.getMessage());
+            deleteUploadFiles(upload);
+            return ErrorResponse.assemble(HttpStatus.INTERNAL_SERVER_ERROR, ErrorMessages.FILE_CREATION_ERROR);
+        }
+        uploads.put(tusId, upload);
+
+        response = fireLifecycleEvent(TUSEventType.POST_CREATE, upload);
+        if (!response.getStatusCode().equals(HttpStatus.OK)) {
+            deleteUploadFiles(upload);
+            forgetUpload(tusId);
+            return response;
+        }
+
+        if (upload.getSize() == 0 && !upload.isPartial()) {
+            fireLifecycleEvent(TUSEventType.POST_FINISH, upload);
+            forgetUpload(tusId);
+        }
+
+        return created(tusId, locationBuilder);
+    }
+
+    /**
+     * Creates a final upload from the given, already completed partial uploads.
+     * Only the partial uploads of the same user and submission can be assembled, the user is taken from the JWT token.
+     * The partial uploads are recorded as consumed by the final upload in their info files before the final upload
+     * is handed over to the post-finish workers, so they can be neither terminated nor assembled into another final
+     * upload until the worker has assembled the final file from them and removed them from the storage.
+     */
+    private ResponseEntity<Object> createFinalUpload(TUSFileInfo upload, List<String> partialUploadIds,
+                                                     UriComponentsBuilder locationBuilder) {
+        String jwtToken = upload.getMetadata().getJwtToken();
+        if (StringUtils.isEmpty(jwtToken)) {
+            return ErrorResponse.assemble(HttpStatus.UNPROCESSABLE_ENTITY, ErrorMessages.JWT_TOKEN_MANDATORY);
+        }
+        upload.setOwner(eventHandlerService.verifyToken(jwtToken).getUsername());
+
+        List<ReentrantLock> partialUploadLocks = new ArrayList<>();
+        List<TUSFileInfo> partialUploads = new ArrayList<>();
+        boolean isAssembled = false;
+        try {
+            long size = 0;
+            for (String partialUploadId : partialUploadIds) {
+                TUSFileInfo partialUpload = findUpload(partialUploadId);
+                if (partialUpload == null || !partialUpload.isPartial()
+                        || partialUpload.getOffsetValue() != partialUpload.getSize()) {
+                    return ErrorResponse.assemble(HttpStatus.BAD_REQUEST,
+                            String.format(ErrorMessages.PARTIAL_UPLOAD_NOT_COMPLETE, partialUploadId));
+                }
+                if (!hasSameOwner(partialUpload, upload)) {
+                    return ErrorResponse.assemble(HttpStatus.FORBIDDEN,
+                            String.format(ErrorMessages.PARTIAL_UPLOAD_NOT_OWNED, partialUploadId));
+                }
+
+                ReentrantLock partialUploadLock = uploadLocks.computeIfAbsent(partialUploadId, id -> new ReentrantLock());
+                if (!partialUploadLock.tryLock()) {
+                    return ErrorResponse.assemble(HttpStatus.LOCKED, String.format(ErrorMessages.UPLOAD_LOCKED, partialUploadId));
+                }
+                partialUploadLocks.add(partialUploadLock);
+
+                if (partialUpload.getConsumedBy() != null) {
+                    return ErrorResponse.assemble(HttpStatus.LOCKED,
+                            String.format(ErrorMessages.PARTIAL_UPLOAD_CONSUMED, partialUploadId, partialUpload.getConsumedBy()));
+                }
+                partialUploads.add(partialUpload);
+
+                size += partialUpload.getSize();
+            }
+            upload.setSize(size);
+            upload.setOffsetValue(size);
+
+            ResponseEntity<Object> response = fireLifecycleEvent(TUSEventType.PRE_CREATE, upload);
+            if (!response.getStatusCode().equals(HttpStatus.OK)) {
+                return response;
+            }
+
+            final String tusId = upload.getTusId();
+            try {
+                objectMapper.writeValue(infoFilePath(upload).toFile(), upload);
+            } catch (IOException ex) {
+                LOGGER.error("Could not create the info file of upload: {}. Error message: {}", tusId, ex.getMessage());
+                deleteUploadFiles(upload);
+                return ErrorResponse.assemble(HttpStatus.INTERNAL_SERVER_ERROR, ErrorMessages.FILE_CREATION_ERROR);
+            }
+
+            response = fireLifecycleEvent(TUSEventType.POST_CREATE, upload);
+            if (!response.getStatusCode().equals(HttpStatus.OK)) {
+                deleteUploadFiles(upload);
+                return response;
+            }
+
+            try {
+                markConsumed(partialUploads, tusId);
+            } catch (IOException ex) {
+                LOGGER.error("Could not record the partial uploads of upload: {} as consumed. Error message: {}",
+                        tusId, ex.getMessage());
+                releaseConsumed(partialUploads);
+                return ErrorResponse.assemble(HttpStatus.INTERNAL_SERVER_ERROR, ErrorMessages.FILE_CREATION_ERROR);
+            }
+
+            response = fireLifecycleEvent(TUSEventType.POST_FINISH, upload);
+            isAssembled = response.getStatusCode().is2xxSuccessful();
+            if (!isAssembled) {
+                releaseConsumed(partialUploads);
+                return response;
+            }
+
+            return created(tusId, locationBuilder);
+        } finally {
+            partialUploadLocks.forEach(ReentrantLock::unlock);
+            if (isAssembled) {
+                partialUploadIds.forEach(this::forgetUpload);
+            }
+        }
+    }
+
+    /**
+     * Records the given final upload as the consumer of the partial uploads in their info files.
+     */
+    private void markConsumed(List<TUSFileInfo> partialUploads, String finalUploadId) throws IOException {
+        for (TUSFileInfo partialUpload : partialUploads) {
+            partialUpload.setConsumedBy(finalUploadId);
+            objectMapper.writeValue(infoFilePath(partialUpload).toFile(), partialUpload);
+        }
+    }
+
+    /**
+     * Clears the consumer of the partial uploads of a final upload that could not be handed over to the workers,
+     * so they can be assembled again.
+     */
+    private void releaseConsumed(List<TUSFileInfo> partialUploads) {
+        for (TUSFileInfo partialUpload : partialUploads) {
+            partialUpload.setConsumedBy(null);
+            try {
+                objectMapper.writeValue(infoFilePath(partialUpload).toFile(), partialUpload);
+            } catch (IOException ex) {
+                LOGGER.error("Could not release the partial upload: {}. Error message: {}",
+                        partialUpload.getTusId(), ex.getMessage());
+            }
+        }
+    }
+
+    private static boolean hasSameOwner(TUSFileInfo partialUpload, TUSFileInfo finalUpload) {
+        return partialUpload.getOwner() != null
+                && partialUpload.getOwner().equals(finalUpload.getOwner())
+                && Objects.equals(partialUpload.getMetadata().getSubmissionID(), finalUpload.getMetadata().getSubmissionID());
+    }
+
+    public ResponseEntity<Object> getUploadOffset(String tusId) {
+        TUSFileInfo upload = findUpload(tusId);
+        if (upload == null) {
+            return ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.UPLOAD_NOT_FOUND, tusId));
+        }
+
+        HttpHeaders headers = tusHeaders();
+        headers.set(TusProtocol.UPLOAD_OFFSET, String.valueOf(upload.getOffsetValue()));
+        headers.set(TusProtocol.UPLOAD_LENGTH, String.valueOf(upload.getSize()));
+        headers.setCacheControl("no-store");
+        if (upload.isPartial()) {
+            headers.set(TusProtocol.UPLOAD_CONCAT, TusProtocol.CONCAT_PARTIAL);
+        }
+
+        return new ResponseEntity<>(headers, HttpStatus.OK);
+    }
+
+    /**
+     * Appends the request body to the upload starting at the given offset.
+     * The body is streamed straight into the upload's file through a {@link FileChannel}, then the
+     * 'post-receive' and - when the upload is complete - the 'post-finish' event handlers are executed in-process.
+     *
+     * @param tusId the ID of the upload
+     * @param offset the value of the Upload-Offset header sent by the client
+     * @param body the request body containing the chunk of the file
+     * @return response entity with NO_CONTENT HTTP status and the new offset, otherwise other HTTP error status
+     * @throws IOException if the chunk could not be read from the request or written to the storage
+     */
+    public ResponseEntity<Object> appendChunk(String tusId, long offset, InputStream body) throws IOException {
+        TUSFileInfo upload = findUpload(tusId);
+        if (upload == null) {
+            return ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.UPLOAD_NOT_FOUND, tusId));
+        }
+
+        ReentrantLock uploadLock = uploadLocks.computeIfAbsent(tusId, id -> new ReentrantLock());
+        if (!uploadLock.tryLock()) {
+            return ErrorResponse.assemble(HttpStatus.LOCKED, String.format(ErrorMessages.UPLOAD_LOCKED, tusId));
+        }
+
+        try {
+            if (upload.isFinal()) {
+                return ErrorResponse.assemble(HttpStatus.FORBIDDEN, String.format(ErrorMessages.FINAL_UPLOAD_NOT_MODIFIABLE, tusId));
+            }
+
+            if (upload.getOffsetValue() != offset) {
+                return ErrorResponse.assemble(HttpStatus.CONFLICT,
+                        String.format(ErrorMessages.UPLOAD_OFFSET_MISMATCH, offset, upload.getOffsetValue()));
+            }
+
+            long written = writeChunk(binFilePath(upload), offset, upload.getSize() - offset, body);
+            upload.setOffsetValue(offset + written);
+
+            boolean isLengthExceeded = upload.getOffsetValue() == upload.getSize() && body.read() != -1;
+
+            ResponseEntity<Object> response = fireLifecycleEvent(TUSEventType.POST_RECEIVE, upload);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                return response;
+            }
+
+            if (upload.getOffsetValue() == upload.getSize()) {
+                response = fireLifecycleEvent(TUSEventType.POST_FINISH, upload);
+                forgetUpload(tusId);
+                if (!response.getStatusCode().is2xxSuccessful()) {
+                    return response;
+                }
+            }
+
+            if (isLengthExceeded) {
+                return ErrorResponse.assemble(HttpStatus.PAYLOAD_TOO_LARGE,
+                        String.format(ErrorMessages.UPLOAD_LENGTH_EXCEEDED, tusId));
+            }
+
+            HttpHeaders headers = tusHeaders();
+            headers.set(TusProtocol.UPLOAD_OFFSET, String.valueOf(upload.getOffsetValue()));
+
+            return new ResponseEntity<>(headers, HttpStatus.NO_CONTENT);
+        } finally {
+            uploadLock.unlock();
+        }
+    }
+
+    public ResponseEntity<Object> terminateUpload(String tusId) {
+        TUSFileInfo upload = findUpload(tusId);
+        if (upload == null) {
+            return ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.UPLOAD_NOT_FOUND, tusId));
+        }
+
+        ReentrantLock uploadLock = uploadLocks.computeIfAbsent(tusId, id -> new ReentrantLock());
+        if (!uploadLock.tryLock()) {
+            return ErrorResponse.assemble(HttpStatus.LOCKED, String.format(ErrorMessages.UPLOAD_LOCKED, tusId));
+        }
+
+        try {
+            if (upload.getConsumedBy() != null) {
+                return ErrorResponse.assemble(HttpStatus.LOCKED,
+                        String.format(ErrorMessages.PARTIAL_UPLOAD_CONSUMED, tusId, upload.getConsumedBy()));
+            }
+
+            deleteUploadFiles(upload);
+            fireLifecycleEvent(TUSEventType.POST_TERMINATE, upload);
+        } finally {
+            forgetUpload(tusId);
+            uploadLock.unlock();
+        }
+
+        return new ResponseEntity<>(tusHeaders(), HttpStatus.NO_CONTENT);
+    }
+
+    private ResponseEntity<Object> fireLifecycleEvent(TUSEventType eventType, TUSFileInfo upload) {
+        LOGGER.debug("Executing the {} event handler for upload: {}", eventType.getEventType(), upload.getTusId());
+
+        return eventHandlerSupplier.supplyEventHandler(eventType.getEventType()).handle(upload, eventHandlerService);
+    }
+
+    private ResponseEntity<Object> created(String tusId, UriComponentsBuilder locationBuilder) {
+        HttpHeaders headers = tusHeaders();
+        headers.setLocation(locationBuilder.path("/{tusId}").buildAndExpand(tusId).toUri());
+
+        return new ResponseEntity<>(headers, HttpStatus.CREATED);
+    }
+
+    private long writeChunk(Path binFilePath, long offset, long maxLength, InputStream body) throws IOException {
+        byte[] chunk = new byte[TRANSFER_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(binFilePath, StandardOpenOption.WRITE)) {
+            channel.position(offset);
+
+            while (written < maxLength) {
+                int read = body.read(chunk, 0, (int) Math.min(chunk.length, maxLength - written));
+                if (read == -1) {
+                    break;
+                }
+
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += read;
+            }
+        }
+
+        return written;
+    }
+
+    private TUSFileInfo findUpload(String tusId) {
+        if (!TUS_ID_PATTERN.matcher(tusId).matches()) {
+            return null;
+        }
+
+        return uploads.computeIfAbsent(tusId, this::readUploadInfo);
+    }
+
+    /**
+     * Reads the properties of an upload created before the last restart, from the storage volume that has them.
+     * An upload with unreadable files is logged and treated as not found, so it is not cached either.
+     */
+    private TUSFileInfo readUploadInfo(String tusId) {
+        Path infoFilePath = Paths.get(storageVolumes.locate(tusId + INFO_FILE_EXTENSION));
+        if (Files.notExists(infoFilePath)) {
+            return null;
+        }
+
+        try {
+            TUSFileInfo upload = objectMapper.readValue(infoFilePath.toFile(), TUSFileInfo.class);
+            Path binFilePath = binFilePath(upload);
+            if (Files.notExists(binFilePath)) {
+                return null;
+            }
+            upload.setOffsetValue(Files.size(binFilePath));
+
+            return upload;
+        } catch (IOException ex) {
+            LOGGER.error("Could not read the info file of upload: {}. Error message: {}", tusId, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void forgetUpload(String tusId) {
+        uploads.remove(tusId);
+        uploadLocks.remove(tusId);
+    }
+
+    private void deleteUploadFiles(TUSFileInfo upload) {
+        try {
+            Files.deleteIfExists(binFilePath(upload));
+            Files.deleteIfExists(infoFilePath(upload));
+        } catch (IOException ex) {
+            LOGGER.error("Could not delete the storage files of upload: {}. Error message: {}", upload.getTusId(), ex.getMessage());
+        }
+    }
+
+    private Path binFilePath(TUSFileInfo upload) {
+        return Paths.get(storageVolumes.getVolume(upload.getVolume()).resolve(upload.getTusId() + BIN_FILE_EXTENSION));
+    }
+
+    private Path infoFilePath(TUSFileInfo upload) {
+        return Paths.get(storageVolumes.getVolume(upload.getVolume()).resolve(upload.getTusId() + INFO_FILE_EXTENSION));
+    }
+
+    private HttpHeaders tusHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION);
+
+        return headers;
+    }
+
+    /**
+     * Extracts the IDs of the partial uploads from an Upload-Concat header value like
+     * {@code final;/files/a /files/b} or {@code final;https://host/files/a https://host/files/b}.
+     * A partial upload can only be given once.
+     */
+    static List<String> parsePartialUploadIds(String uploadConcat) {
+        String prefix = TusProtocol.CONCAT_FINAL + ";";
+        if (!uploadConcat.startsWith(prefix) || uploadConcat.length() == prefix.length()) {
+            throw new IllegalArgumentException(ErrorMessages.INVALID_UPLOAD_CONCAT);
+        }
+
+        List<String> partialUploadIds = new ArrayList<>();
+        for (String partialUploadUrl : uploadConcat.substring(prefix.length()).trim().split("\\s+")) {
+            String partialUploadId = partialUploadUrl.substring(partialUploadUrl.lastIndexOf('/') + 1);
+            if (!TUS_ID_PATTERN.matcher(partialUploadId).matches() || partialUploadIds.contains(partialUploadId)) {
+                throw new IllegalArgumentException(ErrorMessages.INVALID_UPLOAD_CONCAT);
+            }
+            partialUploadIds.add(partialUploadId);
+        }
+
+        return partialUploadIds;
+    }
+
+    static Map<String, String> parseMetadata(String uploadMetadata) {
+        Map<String, String> metadata = new HashMap<>();
+        if (uploadMetadata == null || uploadMetadata.isBlank()) {
+            return metadata;
+        }
+
+        for (String pair : uploadMetadata.split(",")) {
+            String[] keyAndValue = pair.trim().split(" ");
+            if (keyAndValue[0].isEmpty() || keyAndValue.length > 2) {
+                throw new IllegalArgumentException(ErrorMessages.INVALID_UPLOAD_METADATA);
+            }
+
+            String value = keyAndValue.length == 2
+                    ? new String(Base64.getDecoder().decode(keyAndValue[1]), StandardCharsets.UTF_8)
+                    : "";
+            metadata.put(keyAndValue[0], value);
+        }
+
+        return metadata;
+    }
+}
@@ -3,26 +3,53 @@ package uk.ac.ebi.subs.fileupload.util;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * This class maps the extensions of the supported files to their types.
+ * The extensions are stored in a trie of their reversed characters, so a filename is looked up
+ * with one walk from its end and the longest matching extension wins.
+ */
 public class FileType {
 
-    private static Map<String, String> extensionToType = new HashMap<>();
+    public static final String FASTQ = "FASTQ";
+    public static final String VCF = "VCF";
+    public static final String BAM = "BAM";
+    public static final String CRAM = "CRAM";
+
+    private static final SuffixNode extensionToType = new SuffixNode();
 
     static {
-        extensionToType.put("fastq.gz", "FASTQ");
-        extensionToType.put("fq.gz", "FASTQ");
-        extensionToType.put("vcf", "VCF");
-        extensionToType.put("vcf.gz", "VCF");
-        extensionToType.put("bam", "BAM");
-        extensionToType.put("cram", "CRAM");
+        addExtension("fastq.gz", FASTQ);
+        addExtension("fq.gz", FASTQ);
+        addExtension("vcf", VCF);
+        addExtension("vcf.gz", VCF);
+        addExtension("bam", BAM);
+        addExtension("cram", CRAM);
     }
 
     public static String getFileTypeByExtension(String filename) {
-        for (String extension : extensionToType.keySet()) {
-            if (filename.endsWith(extension)) {
-                return extensionToType.get(extension);
+        SuffixNode node = extensionToType;
+        String fileType = null;
+        for (int i = filename.length() - 1; i >= 0 && node != null; i--) {
+            node = node.children.get(filename.charAt(i));
+            if (node != null && node.fileType != null) {
+                fileType = node.fileType;
             }
         }
 
-        return null;
+        return fileType;
+    }
+
+    private static void addExtension(String extension, String fileType) {
+        SuffixNode node = extensionToType;
+        for (int i = extension.length() - 1; i >= 0; i--) {
+            node = node.children.computeIfAbsent(extension.charAt(i), c -> new SuffixNode());
+        }
+        node.fileType = fileType;
+    }
+
+    private static class SuffixNode {
+
+        private final Map<Character, SuffixNode> children = new HashMap<>();
+        private String fileType;
     }
 }
@@ -0,0 +1,32 @@
+package uk.ac.ebi.subs.fileupload.util;
+
+/**
+ * Constants of the tus resumable upload protocol (version 1.0.0) that are used by the native tus endpoint.
+ * See <a href="https://tus.io/protocols/resumable-upload.html">the protocol specification</a>.
+ */
+public final class TusProtocol {
+
+    public static final String VERSION = "1.0.0";
+    public static final String EXTENSIONS = "creation,termination,concatenation";
+
+    public static final String TUS_RESUMABLE = "Tus-Resumable";
+    public static final String TUS_VERSION = "Tus-Version";
+    public static final String TUS_EXTENSION = "Tus-Extension";
+
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+    public static final String UPLOAD_METADATA = "Upload-Metadata";
+    public static final String UPLOAD_CONCAT = "Upload-Concat";
+
+    public static final String CONCAT_PARTIAL = "partial";
+    public static final String CONCAT_FINAL = "final";
+
+    public static final String OFFSET_OCTET_STREAM = "application/offset+octet-stream";
+
+    public static final String METADATA_FILENAME = "name";
+    public static final String METADATA_SUBMISSION_ID = "submissionID";
+    public static final String METADATA_JWT_TOKEN = "jwtToken";
+
+    private TusProtocol() {
+    }
+}
@@ -1,7 +1,13 @@
 package uk.ac.ebi.subs.fileupload.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class Utils {
 
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
     public static String generateFolderName(String submissionUUID) {
 
         return String.join(System.getProperty("file.separator"),
@@ -9,4 +15,31 @@ public class Utils {
                 submissionUUID.substring(1, 2),
                 submissionUUID);
     }
+
+    /**
+     * Creates the hexadecimal SHA-256 digest of the given value,
+     * so sensitive values like tokens can be used as keys without keeping them in memory.
+     */
+    public static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance(DIGEST_ALGORITHM)
+                    .digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+
+            return toHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " algorithm is not available", e);
+        }
+    }
+
+    /**
+     * Creates the lower case hexadecimal representation of the given bytes.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return hex.toString();
+    }
 }
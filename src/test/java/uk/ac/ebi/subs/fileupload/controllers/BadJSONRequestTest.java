@@ -11,6 +11,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -57,6 +58,9 @@ public class BadJSONRequestTest {
     @MockBean
     private MappingMongoConverter mappingMongoConverter;
 
+    @MockBean
+    private MongoOperations mongoOperations;
+
     @MockBean
     private ValidationResultRepository validationResultRepository;
 
@@ -8,6 +8,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -44,6 +45,9 @@ public class HealthEndpointCorsTest {
     @MockBean
     private MappingMongoConverter mappingMongoConverter;
 
+    @MockBean
+    private MongoOperations mongoOperations;
+
     @MockBean
     private FileRepository fileRepository;
 
@@ -0,0 +1,283 @@
+package uk.ac.ebi.subs.fileupload.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.security.TokenService;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
+import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
+import uk.ac.ebi.subs.fileupload.services.ValidationService;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
+import uk.ac.ebi.subs.fileupload.util.TusProtocol;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class TusUploadControllerTest {
+
+    private static final String SUBMISSION_ID = "submission_1234";
+    private static final String FILENAME = "test_file.cram";
+    private static final String UPLOAD_USER = "Karel";
+    private static final String JWT_TOKEN = "header."
+            + Base64.getEncoder().encodeToString(("{\"name\":\"" + UPLOAD_USER + "\"}").getBytes(StandardCharsets.UTF_8))
+            + ".signature";
+    private static final String OTHER_USER = "Jozef";
+    private static final String OTHER_JWT_TOKEN = "header."
+            + Base64.getEncoder().encodeToString(("{\"name\":\"" + OTHER_USER + "\"}").getBytes(StandardCharsets.UTF_8))
+            + ".signature";
+
+    private static final Path TARGET_FOLDER_BASE = Paths.get("src/test/resources", "ready_to_agent");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @SpyBean
+    private EventHandlerService eventHandlerService;
+
+    @SpyBean
+    private ValidationService validationService;
+
+    @MockBean
+    private RabbitMessagingTemplate rabbitMessagingTemplate;
+
+    @MockBean
+    private GlobusApiClient globusApiClient;
+
+    @MockBean
+    private GlobusService globusService;
+
+    @MockBean
+    private TokenService tokenService;
+
+    @After
+    public void tearDown() throws IOException {
+        if (Files.exists(TARGET_FOLDER_BASE)) {
+            try (Stream<Path> paths = Files.walk(TARGET_FOLDER_BASE)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Before
+    public void setup() {
+        fileRepository.deleteAll();
+
+        doReturn(new ResponseEntity<>(HttpStatus.OK))
+                .when(eventHandlerService).validateUploadRequest(any(TUSFileInfo.class));
+        given(this.tokenService.verify(JWT_TOKEN)).willReturn(
+                new VerifiedToken(UPLOAD_USER, Collections.emptyList(), Instant.now().plusSeconds(300)));
+        given(this.tokenService.verify(OTHER_JWT_TOKEN)).willReturn(
+                new VerifiedToken(OTHER_USER, Collections.emptyList(), Instant.now().plusSeconds(300)));
+        doReturn(new ResponseEntity<>(HttpStatus.OK))
+                .when(validationService).validateFileUploadRequest(any(String.class), any(String.class));
+    }
+
+    @Test
+    public void whenAskingForTheServerCapabilities_ThenSupportedVersionAndExtensionsAreReturned() throws Exception {
+        this.mockMvc.perform(options("/files"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(TusProtocol.TUS_VERSION, TusProtocol.VERSION))
+                .andExpect(header().string(TusProtocol.TUS_EXTENSION, TusProtocol.EXTENSIONS));
+    }
+
+    @Test
+    public void whenCreatingAnUploadWithoutTusResumableHeader_ThenPreconditionFails() throws Exception {
+        this.mockMvc.perform(post("/files")
+                .header(TusProtocol.UPLOAD_LENGTH, 10L)
+                .header(TusProtocol.UPLOAD_METADATA, assembleMetadata()))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string(TusProtocol.TUS_VERSION, TusProtocol.VERSION));
+    }
+
+    @Test
+    public void whenAChunkIsAppendedToACreatedUpload_ThenOffsetAndFileDocumentAreUpdated() throws Exception {
+        String location = this.mockMvc.perform(post("/files")
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_LENGTH, 10L)
+                .header(TusProtocol.UPLOAD_METADATA, assembleMetadata()))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        String uploadPath = location.substring(location.indexOf("/files/"));
+
+        assertThat(fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID).getCreatedBy(), is(equalTo(UPLOAD_USER)));
+
+        this.mockMvc.perform(patch(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_OFFSET, 0L)
+                .contentType(TusProtocol.OFFSET_OCTET_STREAM)
+                .content("test".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(TusProtocol.UPLOAD_OFFSET, "4"));
+
+        this.mockMvc.perform(head(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TusProtocol.UPLOAD_OFFSET, "4"))
+                .andExpect(header().string(TusProtocol.UPLOAD_LENGTH, "10"));
+
+        File uploadingFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
+        assertThat(uploadingFile.getUploadedSize(), is(equalTo(4L)));
+        assertThat(uploadingFile.getStatus(), is(equalTo(FileStatus.UPLOADING)));
+
+        this.mockMvc.perform(patch(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_OFFSET, 2L)
+                .contentType(TusProtocol.OFFSET_OCTET_STREAM)
+                .content("test".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isConflict());
+
+        this.mockMvc.perform(delete(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION))
+                .andExpect(status().isNoContent());
+
+        this.mockMvc.perform(head(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION))
+                .andExpect(status().isNotFound());
+
+        assertThat(fileRepository.count(), is(0L));
+    }
+
+    @Test
+    public void whenAFinalUploadIsCreatedFromPartialUploads_ThenTheFileIsAssembledAndOnlyOneFileDocumentExists() throws Exception {
+        String firstPartialUploadPath = createPartialUpload("abcd");
+        String secondPartialUploadPath = createPartialUpload("efgh");
+
+        assertThat(fileRepository.count(), is(0L));
+
+        this.mockMvc.perform(post("/files")
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_CONCAT,
+                        TusProtocol.CONCAT_FINAL + ";" + firstPartialUploadPath + " " + secondPartialUploadPath)
+                .header(TusProtocol.UPLOAD_METADATA, assembleMetadata()))
+                .andExpect(status().isCreated());
+
+        File finishedFile = awaitFileStatus(FileStatus.READY_FOR_CHECKSUM);
+
+        assertThat(fileRepository.count(), is(1L));
+        assertThat(finishedFile.getTotalSize(), is(equalTo(8L)));
+        assertThat(finishedFile.getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+        assertThat(new String(Files.readAllBytes(Paths.get(finishedFile.getTargetPath())), StandardCharsets.UTF_8),
+                is(equalTo("abcdefgh")));
+
+        this.mockMvc.perform(head(firstPartialUploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void whenAFinalUploadIsCreatedFromThePartialUploadsOfAnotherUser_ThenItIsForbidden() throws Exception {
+        String partialUploadPath = createPartialUpload("abcd", OTHER_JWT_TOKEN);
+
+        this.mockMvc.perform(post("/files")
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_CONCAT, TusProtocol.CONCAT_FINAL + ";" + partialUploadPath)
+                .header(TusProtocol.UPLOAD_METADATA, assembleMetadata()))
+                .andExpect(status().isForbidden());
+
+        assertThat(fileRepository.count(), is(0L));
+
+        this.mockMvc.perform(head(partialUploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void whenAPartialUploadIsCreatedWithoutToken_ThenItIsRejected() throws Exception {
+        this.mockMvc.perform(post("/files")
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_LENGTH, 4L)
+                .header(TusProtocol.UPLOAD_CONCAT, TusProtocol.CONCAT_PARTIAL))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    private File awaitFileStatus(FileStatus expectedStatus) throws InterruptedException {
+        File file = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
+        for (int i = 0; i < 100 && file != null && file.getStatus() != expectedStatus; i++) {
+            Thread.sleep(100);
+            file = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
+        }
+
+        return file;
+    }
+
+    private String createPartialUpload(String content) throws Exception {
+        return createPartialUpload(content, JWT_TOKEN);
+    }
+
+    private String createPartialUpload(String content, String jwtToken) throws Exception {
+        String location = this.mockMvc.perform(post("/files")
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_LENGTH, (long) content.length())
+                .header(TusProtocol.UPLOAD_CONCAT, TusProtocol.CONCAT_PARTIAL)
+                .header(TusProtocol.UPLOAD_METADATA, String.join(",",
+                        TusProtocol.METADATA_SUBMISSION_ID + " " + encode(SUBMISSION_ID),
+                        TusProtocol.METADATA_JWT_TOKEN + " " + encode(jwtToken))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("Location");
+        String uploadPath = location.substring(location.indexOf("/files/"));
+
+        this.mockMvc.perform(patch(uploadPath)
+                .header(TusProtocol.TUS_RESUMABLE, TusProtocol.VERSION)
+                .header(TusProtocol.UPLOAD_OFFSET, 0L)
+                .contentType(TusProtocol.OFFSET_OCTET_STREAM)
+                .content(content.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isNoContent());
+
+        return uploadPath;
+    }
+
+    private String assembleMetadata() {
+        return String.join(",",
+                TusProtocol.METADATA_FILENAME + " " + encode(FILENAME),
+                TusProtocol.METADATA_SUBMISSION_ID + " " + encode(SUBMISSION_ID),
+                TusProtocol.METADATA_JWT_TOKEN + " " + encode(JWT_TOKEN));
+    }
+
+    private String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
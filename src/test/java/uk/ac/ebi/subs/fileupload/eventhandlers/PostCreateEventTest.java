@@ -1,6 +1,5 @@
 package uk.ac.ebi.subs.fileupload.eventhandlers;
 
-import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,6 +10,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.security.TokenService;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
 import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
@@ -18,14 +19,14 @@ import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
 
+import java.time.Instant;
+import java.util.Collections;
+
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.matches;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.spy;
+import static org.mockito.BDDMockito.given;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -49,23 +50,18 @@ public class PostCreateEventTest {
     @MockBean
     private GlobusService globusService;
 
-    private PostCreateEvent postCreateEvent = spy(new PostCreateEvent());
+    @MockBean
+    private TokenService tokenService;
+
+    private PostCreateEvent postCreateEvent = new PostCreateEvent();
 
     @Before
     public void setup() {
         tusFileInfo = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_ID, FILENAME);
         fileRepository.deleteAll();
 
-        JSONObject jsonPayload = new JSONObject();
-        jsonPayload.put(JWTExtractor.USERNAME_KEY, UPLOAD_USER);
-        jsonPayload.put(JWTExtractor.DOMAINS_KEY, "Test_domain");
-
-        JWTExtractor jwtExtractor = spy(new JWTExtractor(JWT_TOKEN));
-
-        doReturn(jsonPayload)
-                .when(jwtExtractor).decodePayload(any(String.class));
-        doReturn(jwtExtractor)
-                .when(postCreateEvent).setupJWTExtractor(JWT_TOKEN);
+        given(this.tokenService.verify(JWT_TOKEN)).willReturn(
+                new VerifiedToken(UPLOAD_USER, Collections.singletonList("Test_domain"), Instant.now().plusSeconds(300)));
     }
 
     @Test
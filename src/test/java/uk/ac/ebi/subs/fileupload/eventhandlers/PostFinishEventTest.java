@@ -4,16 +4,18 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.Mockito;
 import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoOperations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.model.PendingFinish;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
@@ -32,16 +34,14 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Matchers.any;
-import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.doThrow;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -80,9 +80,15 @@ public class PostFinishEventTest {
 
     private File fileToPersist;
 
-    @SpyBean
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Autowired
     private PostFinishEvent postFinishEvent;
 
+    @MockBean(name = ExecutorConfiguration.POST_FINISH_EXECUTOR)
+    private Executor postFinishExecutor;
+
     @MockBean
     private GlobusApiClient globusApiClient;
 
@@ -106,13 +112,11 @@ public class PostFinishEventTest {
         fileRepository.save(fileToPersist);
 
         createTestResources();
-
-        doNothing()
-                .when(postFinishEvent).moveFile(any(String.class), any(String.class), any(String.class));
     }
 
     @After
     public void tearDown() throws IOException {
+        mongoOperations.dropCollection(PendingFinish.class);
         Files.deleteIfExists(Paths.get(TARGET_FOLDER + READY_TO_AGENT_FILE));
         Files.deleteIfExists(Paths.get(TEST_FILE_TO_UPLOAD));
         Files.deleteIfExists(Paths.get(TARGET_FOLDER_BASE + FOLDER1 + FOLDER2 + FOLDER3));
@@ -132,65 +136,43 @@ public class PostFinishEventTest {
     }
 
     @Test
-    public void whenReceivingAPostFinishEvent_ItShouldReturnHTTPStatusOKAndDocumentStatusAndUploadedSizeShouldBeUpdated() {
-        assertThat(fileRepository.count(), is(1L));
-
-        File persistedFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
-
-        assertThat(persistedFile.getStatus(), is(equalTo(FileStatus.UPLOADING)));
-
+    public void whenReceivingAPostFinishEvent_ItShouldReturnHTTPStatusOKAndTheFinishShouldBeRecordedForTheWorkers() {
         tusFileInfo.setOffsetValue(TOTAL_SIZE);
 
-        // mock the moveFile method to check the initial status change
-        doReturn(new ResponseEntity<>(HttpStatus.OK)).when(postFinishEvent)
-                .moveFile(any(File.class), Mockito.eq(eventHandlerService), any(String.class), any(String.class));
-
         ResponseEntity<Object> response = postFinishEvent.handle(tusFileInfo, eventHandlerService);
 
-        File finishedFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
+        File uploadedFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
 
         assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
 
         assertThat(fileRepository.count(), is(1L));
-        assertThat(finishedFile.getUploadedSize(), is(equalTo(TOTAL_SIZE)));
-        assertThat(finishedFile.getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(uploadedFile.getUploadedSize(), is(equalTo(TOTAL_SIZE)));
+        assertThat(uploadedFile.getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(uploadedFile.getUploadFinishDate(), is(notNullValue()));
+        assertThat(uploadedFile.getUploadPath(), is(TEST_FILE_TO_UPLOAD));
+        assertThat(uploadedFile.getTargetPath(), is(TARGET_FOLDER + FILE_SEPARATOR + READY_TO_AGENT_FILE));
+
+        PendingFinish pendingFinish = mongoOperations.findById(TUS_ID, PendingFinish.class);
+        assertThat(pendingFinish.getStage(), is(equalTo(PendingFinish.Stage.RECORDED)));
+        assertTrue(Files.exists(Paths.get(TEST_FILE_TO_UPLOAD)));
     }
 
     @Test
-    public void whenSuccessfullyReceivedAFileButFailedWhenMovingIt_thenItShouldRespondWithAcceptedStatus() throws IOException {
-        doThrow(IOException.class)
-                .when(postFinishEvent).moveFile(any(String.class), any(String.class), any(String.class));
-
-        tusFileInfo.setOffsetValue(TOTAL_SIZE);
-
-        ResponseEntity<Object> response = postFinishEvent.handle(tusFileInfo, eventHandlerService);
-
-        File uploadedFileDocument = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
-
-        assertThat(uploadedFileDocument.getUploadPath(), is(TEST_FILE_TO_UPLOAD));
-        assertThat(uploadedFileDocument.getTargetPath(), is(TARGET_FOLDER + FILE_SEPARATOR + READY_TO_AGENT_FILE));
-
-        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.ACCEPTED)));
-        assertTrue(Files.notExists(Paths.get(TARGET_FOLDER + READY_TO_AGENT_FILE)));
-    }
+    public void whenReceivingAPostFinishEventForAnAlreadyFinishedFile_ThenTheDocumentShouldNotBeModified() {
+        File persistedFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
+        persistedFile.setStatus(FileStatus.READY_FOR_CHECKSUM);
+        fileRepository.save(persistedFile);
 
-    @Test
-    public void whenSuccessfullyReceivedAFileAndSuccessfullyMovedIt_thenItShouldRespondWithOKStatusAndStatusShouldBeReadyToCheck() {
         tusFileInfo.setOffsetValue(TOTAL_SIZE);
 
         ResponseEntity<Object> response = postFinishEvent.handle(tusFileInfo, eventHandlerService);
 
         File finishedFile = fileRepository.findByFilenameAndSubmissionId(FILENAME, SUBMISSION_ID);
 
-        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
-
-        assertThat(fileRepository.count(), is(1L));
-        assertThat(finishedFile.getUploadedSize(), is(equalTo(TOTAL_SIZE)));
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.NOT_FOUND)));
         assertThat(finishedFile.getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
-        assertThat(finishedFile.getUploadFinishDate(), is(notNullValue()));
-
-        assertThat(finishedFile.getUploadPath(), is(TARGET_FOLDER + FILE_SEPARATOR + READY_TO_AGENT_FILE));
-        assertThat(finishedFile.getTargetPath(), is(TARGET_FOLDER+ FILE_SEPARATOR + READY_TO_AGENT_FILE));
+        assertThat(finishedFile.getUploadedSize(), is(equalTo(OFFSET_SIZE_1)));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class), is(nullValue()));
     }
 
     private void createTestResources() throws IOException {
@@ -12,6 +12,8 @@ import org.springframework.test.context.junit4.SpringRunner;
 import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
 import uk.ac.ebi.subs.fileupload.errors.FileApiError;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.security.TokenService;
+import uk.ac.ebi.subs.fileupload.security.VerifiedToken;
 import uk.ac.ebi.subs.fileupload.services.EventHandlerService;
 import uk.ac.ebi.subs.fileupload.services.ValidationService;
 import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
@@ -19,11 +21,17 @@ import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
 import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
 
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 
 @RunWith(SpringRunner.class)
@@ -34,6 +42,7 @@ public class PreCreateEventTest {
     private static final String JWT_TOKEN = "some.jwt.token";
     private static final String SUBMISSION_UUID = "submission_1234";
     private static final String FILENAME = "test_file.cram";
+    private static final String UPLOAD_USER = "Karel";
 
     @SpyBean
     private EventHandlerService eventHandlerService;
@@ -44,6 +53,9 @@ public class PreCreateEventTest {
     @MockBean
     private FileRepository fileRepository;
 
+    @MockBean
+    private TokenService tokenService;
+
     @MockBean
     private GlobusApiClient globusApiClient;
 
@@ -86,7 +98,7 @@ public class PreCreateEventTest {
     @Test
     public void whenRequestIsValidAndFileIsDuplicated_ShouldReturnHTTPStatusConflictAndDuplicatedFileMessage() {
         doReturn(mockedResponseOK)
-                .when(this.eventHandlerService).validateUploadRequest(tusFileInfo);
+                .when(this.validationService).validateFileUploadRequest(JWT_TOKEN, SUBMISSION_UUID);
         doReturn(true)
                 .when(this.eventHandlerService).isFileDuplicated(FILENAME, SUBMISSION_UUID);
 
@@ -99,9 +111,51 @@ public class PreCreateEventTest {
                 is(equalTo(String.format(ErrorMessages.DUPLICATED_FILE_ERROR, FILENAME, SUBMISSION_UUID))));
     }
 
+    @Test
+    public void whenRequestIsValid_ShouldReturnTheTimingsOfTheChecks() {
+        doReturn(mockedResponseOK)
+                .when(this.validationService).validateFileUploadRequest(JWT_TOKEN, SUBMISSION_UUID);
+
+        ResponseEntity<Object> response = preCreateEvent.handle(tusFileInfo, eventHandlerService);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
+        assertThat(response.getHeaders().getFirst("Server-Timing"),
+                allOf(containsString("token;dur="), containsString("diskSpace;dur="), containsString("submission;dur="), containsString("duplicatedFile;dur=")));
+    }
+
+    @Test
+    public void whenAPartialUploadRequestHasNoToken_ShouldReturnHTTPStatusUnprocessableEntity() {
+        TUSFileInfo partialUpload = TusFileInfoHelper.generateTUSFileInfo(null, SUBMISSION_UUID, null);
+        partialUpload.setPartial(true);
+
+        ResponseEntity<Object> response = preCreateEvent.handle(partialUpload, eventHandlerService);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.UNPROCESSABLE_ENTITY)));
+
+        FileApiError fileApiError = (FileApiError)response.getBody();
+        assertThat(fileApiError.getErrors().get(0), is(equalTo(ErrorMessages.JWT_TOKEN_MANDATORY)));
+    }
+
+    @Test
+    public void whenAPartialUploadRequestIsValid_ShouldRecordTheUserOfTheTokenAsItsOwner() {
+        TUSFileInfo partialUpload = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_UUID, null);
+        partialUpload.setPartial(true);
+        given(this.tokenService.verify(JWT_TOKEN)).willReturn(
+                new VerifiedToken(UPLOAD_USER, Collections.emptyList(), Instant.now().plusSeconds(300)));
+        doReturn(mockedResponseOK)
+                .when(this.validationService).validateFileUploadRequest(JWT_TOKEN, SUBMISSION_UUID);
+
+        ResponseEntity<Object> response = preCreateEvent.handle(partialUpload, eventHandlerService);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
+        assertThat(partialUpload.getOwner(), is(equalTo(UPLOAD_USER)));
+    }
+
     @Test
     public void whenNotEnoughDiskSpaceExists_ShouldReturnHTTPStatusUnprocessableEntityAndNotEnoughDiskSpaceMessage() {
-        doReturn(false).when(eventHandlerService).isEnoughDiskSpaceExists(anyLong());
+        doReturn(mockedResponseOK)
+                .when(this.validationService).validateFileUploadRequest(JWT_TOKEN, SUBMISSION_UUID);
+        doReturn(false).when(eventHandlerService).reserveDiskSpace(any(TUSFileInfo.class), anyString());
 
         ResponseEntity<Object> response = preCreateEvent.handle(tusFileInfo, eventHandlerService);
 
@@ -0,0 +1,55 @@
+package uk.ac.ebi.subs.fileupload.listeners;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.subs.fileupload.model.FileDeleteMessage;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class FileDeletionListenerTest {
+
+    private static final String SUBMISSION_ID = "12ab34cd56ef";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @MockBean
+    private RabbitMessagingTemplate rabbitMessagingTemplate;
+
+    @MockBean
+    private GlobusApiClient globusApiClient;
+
+    @MockBean
+    private GlobusService globusService;
+
+    @Autowired
+    private FileDeletionListener fileDeletionListener;
+
+    @Test
+    public void whenTheFileIsNotOnAnyOfTheStorageVolumes_ThenTheMessageIsConsumedAndTheFileIsNotDeleted() throws IOException {
+        Path file = temporaryFolder.newFile("test_file.cram").toPath();
+
+        FileDeleteMessage fileDeleteMessage = new FileDeleteMessage();
+        fileDeleteMessage.setTargetFilePath(file.toString());
+        fileDeleteMessage.setSubmissionId(SUBMISSION_ID);
+
+        fileDeletionListener.deleteFileFromStorage(fileDeleteMessage);
+
+        assertTrue(Files.exists(file));
+    }
+}
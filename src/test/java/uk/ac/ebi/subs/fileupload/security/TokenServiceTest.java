@@ -0,0 +1,118 @@
+package uk.ac.ebi.subs.fileupload.security;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.InvalidTokenException;
+import uk.ac.ebi.subs.fileupload.errors.MalformedTokenException;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TokenServiceTest {
+
+    private static final String CERTIFICATE_PATH = "aap_public_key.der";
+    private static final String ISSUER = "https://some.secure.com";
+    private static final String USERNAME = "user1";
+    private static final List<String> DOMAINS = Arrays.asList("self.team-a", "self.team-b");
+
+    private TokenService tokenService;
+
+    private KeyPair keyPair;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Before
+    public void setup() throws Exception {
+        tokenService = new TokenService(CERTIFICATE_PATH, ISSUER, 100L);
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    @Test
+    public void whenTokenIsMalformed_ThenMalformedTokenExceptionIsThrown() {
+        this.thrown.expect(MalformedTokenException.class);
+        this.thrown.expectMessage(ErrorMessages.MALFORMED_JWT_TOKEN);
+
+        tokenService.verify("some.jwt.token");
+    }
+
+    @Test
+    public void whenTokenIsNotSignedByTheIssuer_ThenInvalidTokenExceptionIsThrown() throws Exception {
+        this.thrown.expect(InvalidTokenException.class);
+        this.thrown.expectMessage(ErrorMessages.INVALID_JWT_TOKEN);
+
+        tokenService.verify(JWTHelper.token());
+    }
+
+    @Test
+    public void whenTokenIsSignedByTheIssuer_ThenItsClaimsAreReturned() {
+        TokenService keyPairTokenService = new TokenService(keyPair.getPublic(), ISSUER, 100L);
+
+        VerifiedToken verifiedToken = keyPairTokenService.verify(signedToken(300));
+
+        assertThat(verifiedToken.getUsername(), is(equalTo(USERNAME)));
+        assertThat(verifiedToken.getDomains(), is(equalTo(DOMAINS)));
+        assertThat(verifiedToken.isExpired(), is(false));
+    }
+
+    @Test
+    public void whenTheSameTokenIsVerifiedAgain_ThenItsCachedClaimsAreReturned() {
+        TokenService keyPairTokenService = new TokenService(keyPair.getPublic(), ISSUER, 100L);
+        String jwtToken = signedToken(300);
+
+        VerifiedToken verifiedToken = keyPairTokenService.verify(jwtToken);
+
+        assertThat(keyPairTokenService.verify(jwtToken), is(sameInstance(verifiedToken)));
+    }
+
+    @Test
+    public void whenACachedTokenExpires_ThenInvalidTokenExceptionIsThrown() throws Exception {
+        TokenService keyPairTokenService = new TokenService(keyPair.getPublic(), ISSUER, 100L);
+        String jwtToken = signedToken(1);
+        keyPairTokenService.verify(jwtToken);
+
+        Thread.sleep(1500);
+
+        this.thrown.expect(InvalidTokenException.class);
+        this.thrown.expectMessage(ErrorMessages.INVALID_JWT_TOKEN);
+
+        keyPairTokenService.verify(jwtToken);
+    }
+
+    @Test
+    public void whenTokenIsIssuedByAnotherIssuer_ThenInvalidTokenExceptionIsThrown() {
+        TokenService keyPairTokenService = new TokenService(keyPair.getPublic(), "https://another.issuer.com", 100L);
+
+        this.thrown.expect(InvalidTokenException.class);
+        this.thrown.expectMessage(ErrorMessages.INVALID_JWT_TOKEN);
+
+        keyPairTokenService.verify(signedToken(300));
+    }
+
+    private String signedToken(long ttlSeconds) {
+        JwtClaims claims = new JwtClaims();
+        claims.setIssuer(ISSUER);
+        claims.setExpirationTime(NumericDate.fromSeconds(NumericDate.now().getValue() + ttlSeconds));
+        claims.setIssuedAtToNow();
+        claims.setClaim("name", USERNAME);
+        claims.setStringListClaim("domains", DOMAINS);
+
+        return JWTHelper.build(claims, keyPair.getPrivate(), AlgorithmIdentifiers.RSA_USING_SHA256);
+    }
+}
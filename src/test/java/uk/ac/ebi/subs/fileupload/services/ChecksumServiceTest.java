@@ -0,0 +1,274 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.model.PendingChecksum;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksumStore;
+import uk.ac.ebi.subs.fileupload.services.indexing.FileIndexers;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingPipeline;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FormatValidators;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ChecksumServiceTest {
+
+    private static final String CONTENT = "123456789";
+    private static final String CONTENT_MD5 = "25f9e794323b453885f5181f1b624d0b";
+    private static final String CONTENT_SHA256 = "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225";
+    private static final String CONTENT_CRC32C = "e3069283";
+    // the content is shorter than the three samples of the fingerprint, so all of it is hashed
+    private static final String CONTENT_FINGERPRINT = "9:" + CONTENT_SHA256;
+
+    private static final String TUS_ID = "abcdefgh12345678";
+    private static final DetectedFileType UNKNOWN_FILE_TYPE =
+            new DetectedFileType(null, false, DetectedFileType.Source.EXTENSION);
+
+    // smaller than the content, so the file is read in several chunks
+    private static final int BUFFER_SIZE = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileUpdateService fileUpdateService;
+    private ContentIndexService contentIndexService;
+    private MongoOperations mongoOperations;
+    private ApplicationEventPublisher eventPublisher;
+    private RunningChecksumStore runningChecksumStore;
+    private ChecksumService checksumService;
+    private Path testFile;
+
+    @Before
+    public void setup() throws IOException {
+        fileUpdateService = mock(FileUpdateService.class);
+        contentIndexService = mock(ContentIndexService.class);
+        mongoOperations = mock(MongoOperations.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingChecksum.class))).thenReturn(new PendingChecksum(TUS_ID, null));
+        String sourcePath = temporaryFolder.getRoot().toString();
+        MockEnvironment environment = new MockEnvironment();
+        StorageVolumes storageVolumes = new StorageVolumes(environment, sourcePath, new String[]{"default"});
+        runningChecksumStore = new RunningChecksumStore(sourcePath);
+        checksumService = new ChecksumService(fileUpdateService, contentIndexService,
+                new FileFingerprinter(BUFFER_SIZE), mongoOperations, runningChecksumStore,
+                new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), BUFFER_SIZE, 2),
+                new FormatValidators(ForkJoinPool.commonPool()), new FileIndexers(ForkJoinPool.commonPool(), false),
+                new FileTypeDetector(),
+                new SyncTaskExecutor(), new SyncTaskExecutor(), storageVolumes, new IoScheduler(storageVolumes, environment),
+                new ServiceInstance("test-instance"), eventPublisher, BUFFER_SIZE);
+
+        testFile = temporaryFolder.newFile().toPath();
+        Files.write(testFile, CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void whenCalculatingTheChecksumsOfAFile_ThenAllChecksumsAreCalculatedInOnePass() throws IOException {
+        FileChecksums fileChecksums = checksumService.calculate(testFile);
+
+        assertThat(fileChecksums.getMd5(), is(equalTo(CONTENT_MD5)));
+        assertThat(fileChecksums.getSha256(), is(equalTo(CONTENT_SHA256)));
+        assertThat(fileChecksums.getCrc32c(), is(equalTo(CONTENT_CRC32C)));
+    }
+
+    @Test
+    public void whenAFileIsSubmitted_ThenItsProcessingResultsAreStoredOnTheFileDocument() {
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, expectedFields());
+    }
+
+    @Test
+    public void whenTheUploadHasARunningChecksum_ThenItIsCompletedOverTheRestOfTheFile() throws IOException {
+        Path uploadFile = temporaryFolder.getRoot().toPath().resolve(TUS_ID + ".bin");
+        Files.write(uploadFile, CONTENT.substring(0, 5).getBytes(StandardCharsets.UTF_8));
+
+        checksumService.advance(TUS_ID, 3);
+        checksumService.advance(TUS_ID, 5);
+
+        assertThat(runningChecksumStore.load(TUS_ID).getOffset(), is(equalTo(5L)));
+
+        Files.write(uploadFile, CONTENT.substring(5).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(uploadFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, expectedFields());
+        assertThat(runningChecksumStore.load(TUS_ID), is(nullValue()));
+    }
+
+    @Test
+    public void whenTheContentHasAlreadyBeenProcessed_ThenItsResultsAreReused() throws IOException {
+        Path uploadFile = temporaryFolder.getRoot().toPath().resolve(TUS_ID + ".bin");
+        Files.write(uploadFile, CONTENT.getBytes(StandardCharsets.UTF_8));
+        checksumService.advance(TUS_ID, 5);
+
+        Map<String, Object> reusedFields = expectedFields();
+        reusedFields.put("duplicateOf", "/submissions/other/test_file.txt");
+        when(contentIndexService.hasCandidates(CONTENT_FINGERPRINT)).thenReturn(true);
+        when(contentIndexService.linkToIndexedContent(CONTENT_SHA256, uploadFile)).thenReturn(reusedFields);
+
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(uploadFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(fileUpdateService).recordFingerprint(TUS_ID, CONTENT_FINGERPRINT);
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, reusedFields);
+        verify(contentIndexService, never()).register(anyString(), anyString(), any(Path.class),
+                anyMapOf(String.class, Object.class));
+        assertThat(runningChecksumStore.load(TUS_ID), is(nullValue()));
+    }
+
+    @Test
+    public void whenNoProcessedFileHasTheSameFingerprint_ThenTheFileIsProcessedAndAddedToTheContentIndex() {
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+        when(fileUpdateService.recordProcessingResults(TUS_ID, expectedFields())).thenReturn(true);
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(contentIndexService, never()).linkToIndexedContent(anyString(), any(Path.class));
+        verify(contentIndexService).register(CONTENT_SHA256, CONTENT_FINGERPRINT, testFile, expectedFields());
+    }
+
+    @Test
+    public void whenAFileWithDeferredValidationIsNotADuplicate_ThenItsContentValidationIsRequested() {
+        PendingChecksum pendingChecksum = new PendingChecksum(TUS_ID, testFile.toString());
+        pendingChecksum.setValidationDeferred(true);
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingChecksum.class))).thenReturn(pendingChecksum);
+        when(contentIndexService.hasCandidates(CONTENT_FINGERPRINT)).thenReturn(true);
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE, null, true);
+
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, expectedFields());
+        verify(eventPublisher).publishEvent(new DeferredContentValidationEvent(TUS_ID));
+    }
+
+    @Test
+    public void whenAFileWithDeferredValidationIsADuplicate_ThenItsContentIsNotValidated() {
+        PendingChecksum pendingChecksum = new PendingChecksum(TUS_ID, testFile.toString());
+        pendingChecksum.setValidationDeferred(true);
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingChecksum.class))).thenReturn(pendingChecksum);
+        Map<String, Object> reusedFields = expectedFields();
+        reusedFields.put("duplicateOf", "/submissions/other/test_file.txt");
+        when(contentIndexService.hasCandidates(CONTENT_FINGERPRINT)).thenReturn(true);
+        when(contentIndexService.linkToIndexedContent(CONTENT_SHA256, testFile)).thenReturn(reusedFields);
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE, null, true);
+
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, reusedFields);
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    public void whenTheFingerprintHasBeenCalculatedBeforeTheSubmission_ThenItIsNeitherCalculatedNorLookedUpAgain() {
+        PendingChecksum pendingChecksum = new PendingChecksum(TUS_ID, testFile.toString());
+        pendingChecksum.setFingerprint(CONTENT_FINGERPRINT);
+        pendingChecksum.setValidationDeferred(true);
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingChecksum.class))).thenReturn(pendingChecksum);
+        Map<String, Object> reusedFields = expectedFields();
+        reusedFields.put("duplicateOf", "/submissions/other/test_file.txt");
+        when(contentIndexService.linkToIndexedContent(CONTENT_SHA256, testFile)).thenReturn(reusedFields);
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE, CONTENT_FINGERPRINT, true);
+
+        verify(fileUpdateService, never()).recordFingerprint(anyString(), anyString());
+        verify(contentIndexService, never()).hasCandidates(anyString());
+        verify(fileUpdateService).recordProcessingResults(TUS_ID, reusedFields);
+    }
+
+    @Test
+    public void whenThePendingChecksumIsLeasedByAnotherInstance_ThenTheFileIsNotProcessed() {
+        when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingChecksum.class))).thenReturn(null);
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(fileUpdateService, never()).recordProcessingResults(anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public void whenTheFileCanNotBeRead_ThenItsPendingChecksumIsRetriedLater() throws IOException {
+        File file = new File();
+        file.setGeneratedTusId(TUS_ID);
+        file.setTargetPath(testFile.toString());
+        Files.delete(testFile);
+
+        checksumService.submit(file, UNKNOWN_FILE_TYPE);
+
+        verify(fileUpdateService, never()).recordProcessingResults(anyString(), anyMapOf(String.class, Object.class));
+        verify(mongoOperations).updateFirst(any(Query.class), any(Update.class), eq(PendingChecksum.class));
+        verify(mongoOperations, never()).remove(any(Query.class), eq(PendingChecksum.class));
+    }
+
+    private static Map<String, Object> expectedFields() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("checksum", CONTENT_MD5);
+        fields.put("checksums.md5", CONTENT_MD5);
+        fields.put("checksums.sha256", CONTENT_SHA256);
+        fields.put("checksums.crc32c", CONTENT_CRC32C);
+        fields.put("statistics.size", (long) CONTENT.length());
+        fields.put("statistics.lineCount", 1L);
+
+        return fields;
+    }
+}
@@ -0,0 +1,136 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import uk.ac.ebi.subs.fileupload.model.ContentIndexEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentIndexServiceTest {
+
+    private static final String CONTENT = "@read1\nACGT\n+\nIIII\n";
+    private static final String CONTENT_SHA256 = "sha256-of-the-content";
+    private static final String CONTENT_FINGERPRINT = "19:fingerprint-of-the-content";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MongoOperations mongoOperations;
+    private ContentIndexService contentIndexService;
+    private Path indexedFile;
+    private Path duplicateFile;
+
+    @Before
+    public void setup() throws IOException {
+        mongoOperations = mock(MongoOperations.class);
+        contentIndexService = new ContentIndexService(mongoOperations, true);
+
+        indexedFile = temporaryFolder.newFolder("submission1").toPath().resolve("test_file.fastq");
+        duplicateFile = temporaryFolder.newFolder("submission2").toPath().resolve("test_file.fastq");
+        Files.write(indexedFile, CONTENT.getBytes(StandardCharsets.UTF_8));
+        Files.write(duplicateFile, CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void whenTheContentIsIndexed_ThenTheFileIsLinkedToItAndGetsItsResults() throws IOException {
+        Path index = indexedFile.resolveSibling("test_file.fastq.fai");
+        Files.write(index, "index".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("checksum", "md5");
+        results.put("checksums.md5", "md5");
+        results.put("statistics.size", (long) CONTENT.length());
+        results.put("contentCheck.qualityHistogram", Arrays.asList(0L, 4L));
+        results.put("index.path", index.toString());
+        when(mongoOperations.findById(CONTENT_SHA256, ContentIndexEntry.class))
+                .thenReturn(indexedEntry(ContentIndexService.nest(results)));
+
+        Map<String, Object> reusedResults = contentIndexService.linkToIndexedContent(CONTENT_SHA256, duplicateFile);
+
+        Path linkedIndex = duplicateFile.resolveSibling("test_file.fastq.fai");
+        assertTrue(Files.isSameFile(indexedFile, duplicateFile));
+        assertTrue(Files.isSameFile(index, linkedIndex));
+        assertThat(reusedResults.get("checksums.md5"), is(equalTo("md5")));
+        assertThat(reusedResults.get("statistics.size"), is(equalTo((long) CONTENT.length())));
+        assertThat(reusedResults.get("contentCheck.qualityHistogram"), is(equalTo(Arrays.asList(0L, 4L))));
+        assertThat(reusedResults.get("index.path"), is(equalTo(linkedIndex.toString())));
+        assertThat(reusedResults.get("duplicateOf"), is(equalTo(indexedFile.toString())));
+    }
+
+    @Test
+    public void whenTheIndexedFileHasBeenRemoved_ThenItIsRemovedFromTheContentIndex() throws IOException {
+        when(mongoOperations.findById(CONTENT_SHA256, ContentIndexEntry.class))
+                .thenReturn(indexedEntry(new LinkedHashMap<>()));
+        Files.delete(indexedFile);
+
+        assertThat(contentIndexService.linkToIndexedContent(CONTENT_SHA256, duplicateFile), is(nullValue()));
+
+        verify(mongoOperations).remove(any(Query.class), eq(ContentIndexEntry.class));
+        assertTrue(Files.exists(duplicateFile));
+    }
+
+    @Test
+    public void whenTheSizesDoNotMatch_ThenTheFileIsNotLinked() throws IOException {
+        Files.write(duplicateFile, "@read1\nACGTA\n+\nIIIII\n".getBytes(StandardCharsets.UTF_8));
+        when(mongoOperations.findById(CONTENT_SHA256, ContentIndexEntry.class))
+                .thenReturn(indexedEntry(new LinkedHashMap<>()));
+
+        assertThat(contentIndexService.linkToIndexedContent(CONTENT_SHA256, duplicateFile), is(nullValue()));
+
+        assertFalse(Files.isSameFile(indexedFile, duplicateFile));
+    }
+
+    @Test
+    public void whenTheIndexedFileHasBeenReplacedAtItsPath_ThenItIsNotLinkedAndRemovedFromTheContentIndex() throws IOException {
+        when(mongoOperations.findById(CONTENT_SHA256, ContentIndexEntry.class))
+                .thenReturn(indexedEntry(new LinkedHashMap<>()));
+        Path replacement = indexedFile.resolveSibling("replacement.fastq");
+        Files.write(replacement, "@read1\nTGCA\n+\nIIII\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(indexedFile));
+        Files.move(replacement, indexedFile, StandardCopyOption.REPLACE_EXISTING);
+
+        assertThat(contentIndexService.linkToIndexedContent(CONTENT_SHA256, duplicateFile), is(nullValue()));
+
+        verify(mongoOperations).remove(any(Query.class), eq(ContentIndexEntry.class));
+        assertFalse(Files.isSameFile(indexedFile, duplicateFile));
+    }
+
+    @Test
+    public void whenAFileIsUnregistered_ThenItsEntriesAreRemovedFromTheContentIndex() {
+        contentIndexService.unregister(indexedFile);
+
+        verify(mongoOperations).remove(
+                Query.query(Criteria.where("path").is(indexedFile.toString())), ContentIndexEntry.class);
+    }
+
+    private ContentIndexEntry indexedEntry(Map<String, Object> results) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(indexedFile, BasicFileAttributes.class);
+        return new ContentIndexEntry(CONTENT_SHA256, CONTENT_FINGERPRINT, indexedFile.toString(), attributes.size(),
+                attributes.fileKey().toString(), attributes.lastModifiedTime().toMillis(), results);
+    }
+}
@@ -0,0 +1,170 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DiskSpaceLedgerTest {
+
+    private static final String TUS_ID = "abcdefgh12345678";
+    private static final String PENDING_KEY = "submission_1234/test_file.cram";
+    private static final String DEFAULT_VOLUME = "default";
+    private static final String SECOND_VOLUME = "second";
+    private static final String INSTANCE_ID = "test-instance";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MongoOperations mongoOperations;
+
+    @Before
+    public void setup() {
+        mongoOperations = mock(MongoOperations.class);
+        when(mongoOperations.getCollectionName(File.class)).thenReturn("file");
+    }
+
+    @Test
+    public void whenTheSpaceIsReserved_ThenItIsNotAvailableForOtherRequests() {
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(600000);
+        long availableSpace = diskSpaceLedger.getAvailableSpace(DEFAULT_VOLUME);
+
+        assertThat(diskSpaceLedger.reserve(PENDING_KEY, availableSpace - 100), is(equalTo(DEFAULT_VOLUME)));
+
+        assertThat(diskSpaceLedger.reserve("submission_1234/other_file.cram", 100), is(nullValue()));
+        assertFalse(diskSpaceLedger.reserveOnDefaultVolume("submission_1234/other_file.cram", 100));
+        assertTrue(diskSpaceLedger.reserveOnDefaultVolume("submission_1234/small_file.cram", 99));
+        // reserving again for the same request replaces its reservation
+        assertThat(diskSpaceLedger.reserve(PENDING_KEY, availableSpace - 100), is(equalTo(DEFAULT_VOLUME)));
+    }
+
+    @Test
+    public void whenTheBytesOfABoundReservationLand_ThenItIsReleasedGradually() {
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(600000);
+        long availableSpace = diskSpaceLedger.getAvailableSpace(DEFAULT_VOLUME);
+
+        diskSpaceLedger.reserve(PENDING_KEY, 1000);
+        assertThat(diskSpaceLedger.bind(PENDING_KEY, TUS_ID, 1000, null), is(equalTo(DEFAULT_VOLUME)));
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(1000L)));
+
+        diskSpaceLedger.progress(TUS_ID, 600);
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(400L)));
+
+        // a delayed progress event does not reserve the landed bytes again
+        diskSpaceLedger.progress(TUS_ID, 300);
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(400L)));
+
+        diskSpaceLedger.release(TUS_ID);
+        assertThat(diskSpaceLedger.getAvailableSpace(DEFAULT_VOLUME), is(equalTo(availableSpace)));
+    }
+
+    @Test
+    public void whenAPendingReservationExpires_ThenItIsReleasedButABoundOneIsKept() {
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(0);
+
+        diskSpaceLedger.reserve(PENDING_KEY, 1000);
+        diskSpaceLedger.reserve("submission_1234/other_file.cram", 500);
+        diskSpaceLedger.bind("submission_1234/other_file.cram", TUS_ID, 500, null);
+
+        diskSpaceLedger.expireReservations();
+
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(500L)));
+    }
+
+    @Test
+    public void whenTheLedgerIsRebuilt_ThenTheRemainingSpaceOfTheUploadsInProgressIsReservedOnTheirVolumes()
+            throws IOException {
+        BasicDBObject document = new BasicDBObject("generatedTusId", TUS_ID)
+                .append("totalSize", 8000L)
+                .append("uploadedSize", 3000L)
+                .append("volume", SECOND_VOLUME);
+        when(mongoOperations.find(any(Query.class), eq(DBObject.class), anyString()))
+                .thenReturn(Collections.singletonList(document));
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(600000, temporaryFolder.newFolder().getPath());
+
+        diskSpaceLedger.rebuild();
+
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(5000L)));
+        assertThat(diskSpaceLedger.getVolumeName(TUS_ID), is(equalTo(SECOND_VOLUME)));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).find(query.capture(), eq(DBObject.class), anyString());
+        assertThat(query.getValue().getQueryObject().toString(), containsString(INSTANCE_ID));
+    }
+
+    @Test
+    public void whenABoundUploadMakesNoProgressForTheTimeout_ThenItsReservationExpires() {
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(600000, 0);
+
+        diskSpaceLedger.reserve(PENDING_KEY, 1000);
+        diskSpaceLedger.reserve("submission_1234/other_file.cram", 500);
+        diskSpaceLedger.bind("submission_1234/other_file.cram", TUS_ID, 500, null);
+
+        diskSpaceLedger.expireReservations();
+
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(1000L)));
+        // the progress of an expired upload does not reserve its space again
+        diskSpaceLedger.progress(TUS_ID, 100);
+        assertThat(diskSpaceLedger.getReservedSpace(), is(equalTo(1000L)));
+    }
+
+    @Test
+    public void whenUploadsArePlaced_ThenTheyGoToTheVolumeWithTheFewestUploadsInProgress() throws IOException {
+        DiskSpaceLedger diskSpaceLedger = diskSpaceLedger(600000, temporaryFolder.newFolder().getPath());
+
+        String firstVolume = diskSpaceLedger.reserve("submission_1234/first_file.cram", 1000);
+        String secondVolume = diskSpaceLedger.reserve("submission_1234/second_file.cram", 1000);
+        assertFalse(firstVolume.equals(secondVolume));
+
+        diskSpaceLedger.bind("submission_1234/first_file.cram", TUS_ID, 1000, null);
+        diskSpaceLedger.progress(TUS_ID, 1000);
+
+        // the first upload has landed on its volume, so that volume is not written any more
+        assertThat(diskSpaceLedger.reserve("submission_1234/third_file.cram", 1000), is(equalTo(firstVolume)));
+    }
+
+    private DiskSpaceLedger diskSpaceLedger(long pendingTimeout) {
+        return diskSpaceLedger(pendingTimeout, 600000L);
+    }
+
+    private DiskSpaceLedger diskSpaceLedger(long pendingTimeout, long boundTimeout) {
+        StorageVolumes storageVolumes = new StorageVolumes(new MockEnvironment(),
+                temporaryFolder.getRoot().getPath(), new String[]{DEFAULT_VOLUME});
+        return new DiskSpaceLedger(mongoOperations, storageVolumes, new ServiceInstance(INSTANCE_ID), pendingTimeout,
+                boundTimeout);
+    }
+
+    private DiskSpaceLedger diskSpaceLedger(long pendingTimeout, String secondVolumePath) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file-upload.storage.volumes." + SECOND_VOLUME + ".path", secondVolumePath);
+        StorageVolumes storageVolumes = new StorageVolumes(environment,
+                temporaryFolder.getRoot().getPath(), new String[]{DEFAULT_VOLUME, SECOND_VOLUME});
+        return new DiskSpaceLedger(mongoOperations, storageVolumes, new ServiceInstance(INSTANCE_ID), pendingTimeout,
+                600000);
+    }
+}
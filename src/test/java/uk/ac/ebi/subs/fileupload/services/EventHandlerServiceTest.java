@@ -3,18 +3,28 @@ package uk.ac.ebi.subs.fileupload.services;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
 import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.model.FileContentValidationMessage;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJob;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobRunner;
+import uk.ac.ebi.subs.fileupload.services.outbox.MessageOutbox;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
 import uk.ac.ebi.subs.fileupload.eventhandlers.FileHelper;
 import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
 import uk.ac.ebi.subs.repository.model.fileupload.File;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
+import uk.ac.ebi.subs.validator.data.ValidationResult;
+
+import java.nio.file.Paths;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
@@ -22,6 +32,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @RunWith(SpringRunner.class)
 public class EventHandlerServiceTest {
@@ -30,6 +45,7 @@ public class EventHandlerServiceTest {
     private static final String NEW_FILE_NAME = "new_file.cram";
     private static final String SUBMISSION_ID = "12ab34cd56ef";
     private static final String JWT_TOKEN = "dummy.jwt.token";
+    private static final String FINGERPRINT = "9:15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225";
 
     private File persistedFile;
     private TUSFileInfo tusFileInfo;
@@ -43,14 +59,41 @@ public class EventHandlerServiceTest {
     private EventHandlerService eventHandlerService;
 
     @MockBean
-    private RabbitMessagingTemplate rabbitMessagingTemplate;
+    private MessageOutbox messageOutbox;
+
+    @MockBean
+    private FileUpdateService fileUpdateService;
+
+    @MockBean
+    private UploadProgressBuffer uploadProgressBuffer;
+
+    @MockBean
+    private ChecksumService checksumService;
+
+    @MockBean
+    private ContentIndexService contentIndexService;
+
+    @MockBean
+    private LocalJobRunner localJobRunner;
+
+    @MockBean
+    private ProcessingRouter processingRouter;
+
+    @MockBean
+    private FileTypeDetector fileTypeDetector;
+
+    @MockBean
+    private DiskSpaceLedger diskSpaceLedger;
+
+    @MockBean
+    private StorageVolumes storageVolumes;
 
     @Before
     public void setup() {
         tusFileInfo = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_ID, EXISTING_FILE_NAME);
         persistedFile = FileHelper.convertTUSFileInfoToFile(tusFileInfo);
 
-        eventHandlerService = new EventHandlerService(validationService, fileRepository, rabbitMessagingTemplate);
+        eventHandlerService = new EventHandlerService(validationService, fileRepository, messageOutbox, fileUpdateService, uploadProgressBuffer, checksumService, contentIndexService, localJobRunner, processingRouter, fileTypeDetector, diskSpaceLedger, storageVolumes, new ServiceInstance("test-instance"), new SyncTaskExecutor());
     }
 
     @Test
@@ -108,5 +151,68 @@ public class EventHandlerServiceTest {
 
         assertThat(response.getStatusCode(), is(equalTo(HttpStatus.UNPROCESSABLE_ENTITY)));
     }
-}
 
+    @Test
+    public void whenTheUploadRequestIsRejected_ThenItsDiskSpaceReservationIsReleased() {
+        given(this.validationService.validateMetadata(tusFileInfo.getMetadata()))
+                .willReturn(new ResponseEntity<>(HttpStatus.OK));
+        given(this.validationService.validateFileUploadRequest(JWT_TOKEN, SUBMISSION_ID))
+                .willReturn(new ResponseEntity<>(HttpStatus.OK));
+        given(this.diskSpaceLedger.reserve(SUBMISSION_ID + "/" + EXISTING_FILE_NAME, tusFileInfo.getSize()))
+                .willReturn("default");
+        given(this.fileRepository.findByFilenameAndSubmissionId(EXISTING_FILE_NAME, SUBMISSION_ID))
+                .willReturn(persistedFile);
+
+        ResponseEntity<Object> response = eventHandlerService.validateUploadRequest(tusFileInfo);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.CONFLICT)));
+        verify(this.diskSpaceLedger).release(SUBMISSION_ID + "/" + EXISTING_FILE_NAME);
+    }
+
+    @Test
+    public void whenTheLocalQueueRejectsTheContentValidation_ThenTheFileIsSentToTheCluster() {
+        ValidationResult validationResult = new ValidationResult();
+        validationResult.setUuid("validation-result-uuid");
+        persistedFile.setValidationResult(validationResult);
+        persistedFile.setTargetPath("/target/" + EXISTING_FILE_NAME);
+        ReflectionTestUtils.setField(eventHandlerService, "contentValidatorJobName", "validate_content.sh");
+        given(localJobRunner.submit(any(LocalJob.class))).willReturn(false);
+
+        eventHandlerService.executeFileProcessingOnVM(persistedFile,
+                new DetectedFileType("cram", false, DetectedFileType.Source.CONTENT), null);
+
+        verify(messageOutbox).publish(eq("usi-1:submission-exchange"), eq("file.content.validation"),
+                any(FileContentValidationMessage.class));
+    }
+
+    @Test
+    public void whenTheFileMayBeADuplicate_ThenItsContentValidationIsDeferredToItsChecksums() {
+        persistedFile.setTargetPath("/target/" + EXISTING_FILE_NAME);
+        DetectedFileType fileType = new DetectedFileType("cram", false, DetectedFileType.Source.CONTENT);
+        given(fileTypeDetector.detect(Paths.get(persistedFile.getTargetPath()))).willReturn(fileType);
+        given(checksumService.fingerprint(persistedFile)).willReturn(FINGERPRINT);
+        given(checksumService.mayBeDuplicate(FINGERPRINT)).willReturn(true);
+
+        eventHandlerService.executeFileProcessing(persistedFile);
+
+        verify(checksumService).fingerprint(persistedFile);
+        verify(checksumService).submit(persistedFile, fileType, FINGERPRINT, true);
+        verify(processingRouter, never()).route(any(File.class), anyString());
+        verify(localJobRunner, never()).submit(any(LocalJob.class));
+    }
+
+    @Test
+    public void whenTheFinishDoesNotUpdateTheFileDocument_ThenItsValidationResultIsDeleted() {
+        ValidationResult validationResult = new ValidationResult();
+        validationResult.setUuid("validation-result-uuid");
+        given(validationService.createValidationResult(persistedFile)).willReturn(validationResult);
+        given(fileUpdateService.finishUpload(persistedFile)).willReturn(null);
+        given(fileRepository.findByGeneratedTusId(persistedFile.getGeneratedTusId())).willReturn(null);
+
+        File finishedFile = eventHandlerService.finishUpload(persistedFile);
+
+        assertThat(finishedFile, is(equalTo(null)));
+        verify(validationService).deleteValidationResult(validationResult);
+        verify(validationService, never()).sendFileReferenceValidationEvent(any(File.class));
+    }
+}
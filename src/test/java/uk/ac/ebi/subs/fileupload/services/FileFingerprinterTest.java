@@ -0,0 +1,75 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class FileFingerprinterTest {
+
+    private static final int SAMPLE_SIZE = 4;
+    private static final int FILE_SIZE = 100;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileFingerprinter fileFingerprinter = new FileFingerprinter(SAMPLE_SIZE);
+
+    @Test
+    public void whenTheFilesDifferOutsideTheSamples_ThenTheirFingerprintsMatch() throws IOException {
+        byte[] content = content();
+        Path file = writeFile("file1", content);
+        content[20] ^= 1;
+        Path otherFile = writeFile("file2", content);
+
+        assertThat(fileFingerprinter.fingerprint(file), startsWith(FILE_SIZE + ":"));
+        assertThat(fileFingerprinter.fingerprint(otherFile), is(equalTo(fileFingerprinter.fingerprint(file))));
+    }
+
+    @Test
+    public void whenTheFilesDifferInTheFirstMiddleOrLastSample_ThenTheirFingerprintsDiffer() throws IOException {
+        byte[] content = content();
+        String fingerprint = fileFingerprinter.fingerprint(writeFile("file", content));
+
+        for (int position : new int[]{0, (FILE_SIZE - SAMPLE_SIZE) / 2, FILE_SIZE - 1}) {
+            byte[] changedContent = content();
+            changedContent[position] ^= 1;
+
+            assertThat(fileFingerprinter.fingerprint(writeFile("changed" + position, changedContent)),
+                    is(not(equalTo(fingerprint))));
+        }
+    }
+
+    @Test
+    public void whenTheFilesDifferInSize_ThenTheirFingerprintsDiffer() throws IOException {
+        byte[] content = content();
+        byte[] longerContent = new byte[FILE_SIZE + 1];
+        System.arraycopy(content, 0, longerContent, 0, FILE_SIZE);
+
+        assertThat(fileFingerprinter.fingerprint(writeFile("file", content)),
+                is(not(equalTo(fileFingerprinter.fingerprint(writeFile("longer", longerContent))))));
+    }
+
+    private Path writeFile(String filename, byte[] content) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(filename);
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] content() {
+        byte[] content = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_SIZE; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.ac.ebi.subs.fileupload.model.DetectedFileType;
+import uk.ac.ebi.subs.fileupload.util.FileType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FileTypeDetectorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileTypeDetector fileTypeDetector = new FileTypeDetector();
+
+    @Test
+    public void whenACompressedFastqIsMislabelled_ThenItIsDetectedByItsContent() throws IOException {
+        Path file = writeFile("reads.txt", gzip("@read1\nACGT\n+\nIIII\n".getBytes(StandardCharsets.US_ASCII)));
+
+        assertThat(fileTypeDetector.detect(file),
+                is(equalTo(new DetectedFileType(FileType.FASTQ, true, DetectedFileType.Source.CONTENT))));
+    }
+
+    @Test
+    public void whenTheFileIsABam_ThenItIsDetectedAfterInflatingItsHead() throws IOException {
+        byte[] bamHead = {'B', 'A', 'M', 1, 0, 0, 0, 0};
+        Path file = writeFile("alignments.fastq.gz", gzip(bamHead));
+
+        assertThat(fileTypeDetector.detect(file),
+                is(equalTo(new DetectedFileType(FileType.BAM, true, DetectedFileType.Source.CONTENT))));
+    }
+
+    @Test
+    public void whenTheFileIsACram_ThenItIsDetectedByItsMagicNumber() throws IOException {
+        Path file = writeFile("alignments", "CRAM\3\0".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(fileTypeDetector.detect(file),
+                is(equalTo(new DetectedFileType(FileType.CRAM, false, DetectedFileType.Source.CONTENT))));
+    }
+
+    @Test
+    public void whenTheFileIsAnUncompressedVcf_ThenItIsDetectedByItsHeader() throws IOException {
+        Path file = writeFile("variants.bin", "##fileformat=VCFv4.2\n#CHROM\tPOS\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(fileTypeDetector.detect(file),
+                is(equalTo(new DetectedFileType(FileType.VCF, false, DetectedFileType.Source.CONTENT))));
+    }
+
+    @Test
+    public void whenTheContentIsNotRecognised_ThenTheTypeIsDetectedByTheExtension() throws IOException {
+        Path file = writeFile("variants.vcf", "not a header".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(fileTypeDetector.detect(file),
+                is(equalTo(new DetectedFileType(FileType.VCF, false, DetectedFileType.Source.EXTENSION))));
+    }
+
+    private Path writeFile(String filename, byte[] content) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(filename);
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(bytes)) {
+            gzipStream.write(content);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,144 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.eventhandlers.FileHelper;
+import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
+import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
+import uk.ac.ebi.subs.validator.data.ValidationResult;
+import uk.ac.ebi.subs.validator.repository.ValidationResultRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class FileUpdateServiceTest {
+
+    private static final String JWT_TOKEN = "dummy.jwt.token";
+    private static final String SUBMISSION_ID = "12ab34cd56ef";
+    private static final String FILENAME = "test_file.cram";
+    private static final String TUS_ID = "abcdefgh12345678";
+    private static final String VOLUME_NAME = "volume1";
+
+    private static final LocalDateTime FIRST_EVENT_DATE = LocalDateTime.of(2019, 3, 1, 10, 0, 0);
+    private static final LocalDateTime SECOND_EVENT_DATE = FIRST_EVENT_DATE.plusSeconds(5);
+
+    @MockBean
+    private RabbitMessagingTemplate rabbitMessagingTemplate;
+
+    @MockBean
+    private GlobusApiClient globusApiClient;
+
+    @MockBean
+    private GlobusService globusService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private FileUpdateService fileUpdateService;
+
+    @Autowired
+    private ValidationResultRepository validationResultRepository;
+
+    @Before
+    public void setup() {
+        fileRepository.deleteAll();
+
+        TUSFileInfo tusFileInfo = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_ID, FILENAME);
+        tusFileInfo.setTusId(TUS_ID);
+        tusFileInfo.setSize(1000L);
+
+        File file = FileHelper.convertTUSFileInfoToFile(tusFileInfo);
+        file.setStatus(FileStatus.INITIALIZED);
+        fileRepository.save(file);
+    }
+
+    @Test
+    public void whenProgressEventsArriveInOrder_ThenTheLatestSizeAndTheFirstStartDateAreRecorded() {
+        fileUpdateService.updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE);
+        fileUpdateService.updateUploadProgress(TUS_ID, 200L, SECOND_EVENT_DATE);
+
+        File file = fileRepository.findByGeneratedTusId(TUS_ID);
+
+        assertThat(file.getStatus(), is(equalTo(FileStatus.UPLOADING)));
+        assertThat(file.getUploadedSize(), is(equalTo(200L)));
+        assertThat(file.getUploadStartDate(), is(equalTo(FIRST_EVENT_DATE)));
+    }
+
+    @Test
+    public void whenProgressEventsArriveOutOfOrder_ThenTheOlderEventDoesNotOverwriteTheNewerSize() {
+        fileUpdateService.updateUploadProgress(TUS_ID, 200L, SECOND_EVENT_DATE);
+        fileUpdateService.updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE);
+
+        File file = fileRepository.findByGeneratedTusId(TUS_ID);
+
+        assertThat(file.getUploadedSize(), is(equalTo(200L)));
+        assertThat(file.getUploadStartDate(), is(equalTo(FIRST_EVENT_DATE)));
+    }
+
+    @Test
+    public void whenAProgressEventArrivesAfterTheUploadHasFinished_ThenTheFileIsNotModified() {
+        File file = fileRepository.findByGeneratedTusId(TUS_ID);
+        file.setStatus(FileStatus.UPLOADED);
+        file.setUploadedSize(1000L);
+        fileRepository.save(file);
+
+        ResponseEntity<Object> response = fileUpdateService.updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE);
+
+        File uploadedFile = fileRepository.findByGeneratedTusId(TUS_ID);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.OK)));
+        assertThat(uploadedFile.getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(uploadedFile.getUploadedSize(), is(equalTo(1000L)));
+    }
+
+    @Test
+    public void whenAProgressEventArrivesForAnUnknownUpload_ThenNotFoundIsReturned() {
+        ResponseEntity<Object> response = fileUpdateService.updateUploadProgress("unknown_tus_id", 100L, FIRST_EVENT_DATE);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.NOT_FOUND)));
+    }
+
+    @Test
+    public void whenTheValidationResultIsRecorded_ThenTheFieldsNotMappedByTheFileAreKept() {
+        fileUpdateService.recordVolume(TUS_ID, VOLUME_NAME);
+        ValidationResult validationResult = new ValidationResult();
+        validationResult.setUuid(UUID.randomUUID().toString());
+        validationResultRepository.insert(validationResult);
+
+        File file = fileUpdateService.recordValidationResult(TUS_ID, validationResult);
+
+        assertThat(file.getValidationResult().getUuid(), is(equalTo(validationResult.getUuid())));
+        assertThat(fileUpdateService.findVolume(TUS_ID), is(equalTo(VOLUME_NAME)));
+    }
+
+    @Test
+    public void whenAGlobusMoveIsRecorded_ThenTheStatusUploadPathAndVolumeAreUpdatedTogether() {
+        fileUpdateService.recordGlobusMove(TUS_ID, "/target/" + FILENAME, VOLUME_NAME);
+
+        File movedFile = fileRepository.findByGeneratedTusId(TUS_ID);
+
+        assertThat(movedFile.getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+        assertThat(movedFile.getUploadPath(), is(equalTo("/target/" + FILENAME)));
+        assertThat(fileUpdateService.findVolume(TUS_ID), is(equalTo(VOLUME_NAME)));
+    }
+}
@@ -0,0 +1,74 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobRunner;
+import uk.ac.ebi.subs.fileupload.services.jobs.LocalJobType;
+import uk.ac.ebi.subs.fileupload.util.FileType;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ProcessingRouterTest {
+
+    private static final String LOCAL_PREFIX = "local_file_prefix";
+    private static final long LOCAL_MAX_SIZE = 1000L;
+    private static final long BAM_LOCAL_MAX_SIZE = 100L;
+    private static final int MAX_LOCAL_QUEUE_DEPTH = 5;
+
+    private LocalJobRunner localJobRunner;
+    private ProcessingRouter processingRouter;
+
+    @Before
+    public void setup() {
+        localJobRunner = mock(LocalJobRunner.class);
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file-upload.routing.types.BAM.localMaxSize", String.valueOf(BAM_LOCAL_MAX_SIZE));
+        processingRouter = new ProcessingRouter(localJobRunner, environment);
+        ReflectionTestUtils.setField(processingRouter, "filePrefixForLocalProcessing", LOCAL_PREFIX);
+        ReflectionTestUtils.setField(processingRouter, "localMaxSize", LOCAL_MAX_SIZE);
+        ReflectionTestUtils.setField(processingRouter, "maxLocalQueueDepth", MAX_LOCAL_QUEUE_DEPTH);
+    }
+
+    @Test
+    public void whenASmallFileIsFinished_ThenItIsProcessedLocally() {
+        assertThat(processingRouter.route(file("small.fastq.gz", 500L), FileType.FASTQ), is(equalTo(ProcessingRouter.Route.LOCAL)));
+    }
+
+    @Test
+    public void whenALargeFileIsFinished_ThenItIsSentToTheCluster() {
+        assertThat(processingRouter.route(file("large.fastq.gz", 5000L), FileType.FASTQ), is(equalTo(ProcessingRouter.Route.CLUSTER)));
+    }
+
+    @Test
+    public void whenTheFileTypeHasItsOwnLimit_ThenTheLimitOfTheFileTypeIsUsed() {
+        assertThat(processingRouter.route(file("medium.bam", 500L), FileType.BAM), is(equalTo(ProcessingRouter.Route.CLUSTER)));
+    }
+
+    @Test
+    public void whenTheLocalQueueIsTooDeep_ThenSmallFilesAreSentToTheCluster() {
+        given(localJobRunner.getQueueDepth(LocalJobType.CONTENT_VALIDATION)).willReturn(MAX_LOCAL_QUEUE_DEPTH);
+
+        assertThat(processingRouter.route(file("small.fastq.gz", 500L), FileType.FASTQ), is(equalTo(ProcessingRouter.Route.CLUSTER)));
+    }
+
+    @Test
+    public void whenTheFileHasThePrefixForLocalProcessing_ThenItIsAlwaysProcessedLocally() {
+        assertThat(processingRouter.route(file(LOCAL_PREFIX + "_large.bam", 5000L), FileType.BAM), is(equalTo(ProcessingRouter.Route.LOCAL)));
+    }
+
+    private static File file(String filename, long totalSize) {
+        File file = new File();
+        file.setFilename(filename);
+        file.setTargetPath("/target/" + filename);
+        file.setTotalSize(totalSize);
+        return file;
+    }
+}
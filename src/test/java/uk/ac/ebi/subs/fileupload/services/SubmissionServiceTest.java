@@ -141,4 +141,53 @@ public class SubmissionServiceTest {
 
         assertThat(submissionService.isModifiable(draftSubmissionUuid, TEST_JWT_TOKEN), is(true));
     }
+
+    @Test
+    public void whenSubmissionStatusIsRequestedTwiceWithTheSameTokenThenTheSubsApiIsCalledOnlyOnce() throws Exception {
+        String draftSubmissionUuid = "77778888-aaaa-bbbb-cccc-123456789012";
+
+        File submissionJson = new File(getClass().getClassLoader()
+                .getResource("submissionservice/draftSubmissionStatusByValidSubmissionId.json").getFile());
+        String content = new String(Files.readAllBytes(submissionJson.toPath()));
+
+        this.server.expect(
+                requestTo(String.format(submissionStatusURI, serviceHost, draftSubmissionUuid)))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(content, MediaType.APPLICATION_JSON)
+                );
+
+        assertThat(submissionService.getSubmissionStatus(draftSubmissionUuid, TEST_JWT_TOKEN), is(equalTo("Draft")));
+        assertThat(submissionService.getSubmissionStatus(draftSubmissionUuid, TEST_JWT_TOKEN), is(equalTo("Draft")));
+
+        this.server.verify();
+    }
+
+    @Test
+    public void whenCachedSubmissionStatusIsEvictedThenTheSubsApiIsCalledAgain() throws Exception {
+        String submissionUuid = "99990000-aaaa-bbbb-cccc-123456789012";
+
+        File draftSubmissionJson = new File(getClass().getClassLoader()
+                .getResource("submissionservice/draftSubmissionStatusByValidSubmissionId.json").getFile());
+        File submittedSubmissionJson = new File(getClass().getClassLoader()
+                .getResource("submissionservice/submittedSubmissionStatusByValidSubmissionId.json").getFile());
+
+        this.server.expect(
+                requestTo(String.format(submissionStatusURI, serviceHost, submissionUuid)))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(new String(Files.readAllBytes(draftSubmissionJson.toPath())), MediaType.APPLICATION_JSON)
+                );
+        this.server.expect(
+                requestTo(String.format(submissionStatusURI, serviceHost, submissionUuid)))
+                .andExpect(method(HttpMethod.GET))
+                .andRespond(withSuccess(new String(Files.readAllBytes(submittedSubmissionJson.toPath())), MediaType.APPLICATION_JSON)
+                );
+
+        assertThat(submissionService.isModifiable(submissionUuid, TEST_JWT_TOKEN), is(true));
+
+        submissionService.evictSubmissionStatus(submissionUuid);
+
+        assertThat(submissionService.isModifiable(submissionUuid, TEST_JWT_TOKEN), is(false));
+
+        this.server.verify();
+    }
 }
@@ -0,0 +1,242 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.subs.data.fileupload.FileStatus;
+import uk.ac.ebi.subs.fileupload.config.ExecutorConfiguration;
+import uk.ac.ebi.subs.fileupload.eventhandlers.FileHelper;
+import uk.ac.ebi.subs.fileupload.model.PendingChecksum;
+import uk.ac.ebi.subs.fileupload.model.PendingFinish;
+import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusApiClient;
+import uk.ac.ebi.subs.fileupload.services.globus.GlobusService;
+import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
+import uk.ac.ebi.subs.repository.model.fileupload.File;
+import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class UploadFinishingServiceTest {
+
+    private static final String JWT_TOKEN = "some.jwt.token";
+    private static final String SUBMISSION_ID = "submission_1234";
+    private static final String FILENAME = "test_file.fastq.gz";
+    private static final String TUS_ID = "abcdefgh12345678";
+
+    private static final Path TARGET_FOLDER_BASE = Paths.get("src/test/resources", "ready_to_agent");
+    private static final Path TARGET_FILE = TARGET_FOLDER_BASE.resolve(Paths.get("s", "u", SUBMISSION_ID, FILENAME));
+    private static final Path TEST_FILE_TO_UPLOAD = Paths.get("src/test/resources", TUS_ID + ".bin");
+
+    private static final byte[] TEST_FILE_CONTENT = "This is a TEST file.".getBytes(StandardCharsets.UTF_8);
+    private static final long TOTAL_SIZE = TEST_FILE_CONTENT.length;
+
+    @MockBean
+    private RabbitMessagingTemplate rabbitMessagingTemplate;
+
+    @MockBean(name = ExecutorConfiguration.POST_FINISH_EXECUTOR)
+    private Executor postFinishExecutor;
+
+    @MockBean
+    private GlobusApiClient globusApiClient;
+
+    @MockBean
+    private GlobusService globusService;
+
+    @SpyBean
+    private UploadFinishingService uploadFinishingService;
+
+    @SpyBean
+    private EventHandlerService eventHandlerService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    private TUSFileInfo tusFileInfo;
+
+    @Before
+    public void setup() throws IOException {
+        fileRepository.deleteAll();
+
+        tusFileInfo = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_ID, FILENAME);
+        tusFileInfo.setSize(TOTAL_SIZE);
+        tusFileInfo.setOffsetValue(TOTAL_SIZE);
+        tusFileInfo.setTusId(TUS_ID);
+
+        File file = FileHelper.convertTUSFileInfoToFile(tusFileInfo);
+        file.setStatus(FileStatus.UPLOADING);
+        fileRepository.save(file);
+
+        Files.write(TEST_FILE_TO_UPLOAD, TEST_FILE_CONTENT);
+
+        uploadFinishingService.recordUploadFinish(tusFileInfo);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mongoOperations.dropCollection(PendingFinish.class);
+        mongoOperations.dropCollection(PendingChecksum.class);
+        Files.deleteIfExists(TEST_FILE_TO_UPLOAD);
+        if (Files.exists(TARGET_FOLDER_BASE)) {
+            try (Stream<Path> paths = Files.walk(TARGET_FOLDER_BASE)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void whenARecordedUploadIsFinished_ThenTheFileIsMovedAndReadyForChecksum() {
+        uploadFinishingService.finish(TUS_ID);
+
+        File finishedFile = fileRepository.findByGeneratedTusId(TUS_ID);
+
+        assertThat(finishedFile.getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+        assertThat(finishedFile.getUploadPath(), is(equalTo(TARGET_FILE.toString())));
+        assertThat(finishedFile.getTargetPath(), is(equalTo(TARGET_FILE.toString())));
+        assertThat(finishedFile.getValidationResult(), is(notNullValue()));
+
+        assertTrue(Files.exists(TARGET_FILE));
+        assertTrue(Files.notExists(TEST_FILE_TO_UPLOAD));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class), is(nullValue()));
+    }
+
+    @Test
+    public void whenMovingTheFileFails_ThenTheFileStaysUploadedAndTheFinishIsRetriedLater() throws IOException {
+        doThrow(IOException.class)
+                .when(uploadFinishingService).moveFile(any(String.class), any(String.class), any(String.class), any(RunningChecksum.class));
+
+        uploadFinishingService.finish(TUS_ID);
+
+        File uploadedFile = fileRepository.findByGeneratedTusId(TUS_ID);
+        PendingFinish pendingFinish = mongoOperations.findById(TUS_ID, PendingFinish.class);
+
+        assertThat(uploadedFile.getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(uploadedFile.getUploadPath(), is(equalTo(TEST_FILE_TO_UPLOAD.toString())));
+        assertThat(uploadedFile.getTargetPath(), is(equalTo(TARGET_FILE.toString())));
+
+        assertThat(pendingFinish.getStage(), is(equalTo(PendingFinish.Stage.RECORDED)));
+        assertThat(pendingFinish.getAttempts(), is(equalTo(1)));
+        assertTrue(pendingFinish.getNextAttemptDate().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    public void whenAFailedFinishIsRetried_ThenTheFileIsReadyForChecksum() throws IOException {
+        doThrow(IOException.class)
+                .when(uploadFinishingService).moveFile(any(String.class), any(String.class), any(String.class), any(RunningChecksum.class));
+
+        uploadFinishingService.finish(TUS_ID);
+
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.UPLOADED)));
+
+        reset(uploadFinishingService);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class), is(nullValue()));
+    }
+
+    @Test
+    public void whenTheFileHasAlreadyBeenMovedBeforeARestart_ThenItIsNotMovedAgain() throws IOException {
+        Files.createDirectories(TARGET_FILE.getParent());
+        Files.move(TEST_FILE_TO_UPLOAD, TARGET_FILE);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        verify(uploadFinishingService, never()).moveFile(any(String.class), any(String.class), any(String.class), any(RunningChecksum.class));
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+    }
+
+    @Test
+    public void whenTheTargetFileIsIncompleteAndTheUploadIsGone_ThenTheFinishIsRetriedLater() throws IOException {
+        Files.createDirectories(TARGET_FILE.getParent());
+        Files.write(TARGET_FILE, "This is".getBytes(StandardCharsets.UTF_8));
+        Files.delete(TEST_FILE_TO_UPLOAD);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        PendingFinish pendingFinish = mongoOperations.findById(TUS_ID, PendingFinish.class);
+
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(pendingFinish.getStage(), is(equalTo(PendingFinish.Stage.RECORDED)));
+        assertThat(pendingFinish.getAttempts(), is(equalTo(1)));
+    }
+
+    @Test
+    public void whenADispatchedFinishIsRetried_ThenTheFileIsNotSentForProcessingAgain() {
+        uploadFinishingService.finish(TUS_ID);
+
+        PendingFinish pendingFinish = new PendingFinish(TUS_ID, Collections.emptyList());
+        pendingFinish.setStage(PendingFinish.Stage.DISPATCHED);
+        mongoOperations.save(pendingFinish);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        verify(eventHandlerService, times(1)).executeFileProcessing(any(File.class));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class), is(nullValue()));
+    }
+
+    @Test
+    public void whenThePendingFinishIsLeasedByAnotherInstance_ThenItIsNotFinishedByThisOne() throws IOException {
+        mongoOperations.updateFirst(Query.query(Criteria.where("_id").is(TUS_ID)),
+                new Update().set("owner", "another-instance").set("leaseExpiryDate", LocalDateTime.now().plusHours(1)),
+                PendingFinish.class);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        verify(uploadFinishingService, never()).moveFile(any(String.class), any(String.class), any(String.class), any(RunningChecksum.class));
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.UPLOADED)));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class).getOwner(), is(equalTo("another-instance")));
+    }
+
+    @Test
+    public void whenTheLeaseOfAnotherInstanceHasExpired_ThenThisOneFinishesTheUpload() {
+        mongoOperations.updateFirst(Query.query(Criteria.where("_id").is(TUS_ID)),
+                new Update().set("owner", "another-instance").set("leaseExpiryDate", LocalDateTime.now().minusMinutes(1)),
+                PendingFinish.class);
+
+        uploadFinishingService.finish(TUS_ID);
+
+        assertThat(fileRepository.findByGeneratedTusId(TUS_ID).getStatus(), is(equalTo(FileStatus.READY_FOR_CHECKSUM)));
+        assertThat(mongoOperations.findById(TUS_ID, PendingFinish.class), is(nullValue()));
+    }
+}
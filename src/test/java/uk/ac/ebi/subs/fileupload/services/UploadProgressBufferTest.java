@@ -0,0 +1,127 @@
+package uk.ac.ebi.subs.fileupload.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit4.SpringRunner;
+import uk.ac.ebi.subs.fileupload.errors.ErrorMessages;
+import uk.ac.ebi.subs.fileupload.errors.ErrorResponse;
+import uk.ac.ebi.subs.fileupload.model.UploadProgress;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(SpringRunner.class)
+public class UploadProgressBufferTest {
+
+    private static final String TUS_ID = "abcdefgh12345678";
+    private static final String OTHER_TUS_ID = "12345678abcdefgh";
+    private static final LocalDateTime FIRST_EVENT_DATE = LocalDateTime.of(2019, 3, 1, 10, 0, 0);
+
+    private static final int FLUSH_THRESHOLD = 2;
+
+    @MockBean
+    private FileUpdateService fileUpdateService;
+
+    private UploadProgressBuffer uploadProgressBuffer;
+
+    @Before
+    public void setup() {
+        given(fileUpdateService.updateUploadProgress(anyString(), anyLong(), any(LocalDateTime.class)))
+                .willReturn(new ResponseEntity<>(HttpStatus.OK));
+
+        uploadProgressBuffer = new UploadProgressBuffer(fileUpdateService, FLUSH_THRESHOLD, 100, 600);
+    }
+
+    @Test
+    public void whenSeveralProgressEventsOfAnUploadArrive_ThenOnlyTheFirstOneIsWrittenStraightAway() {
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 300L, FIRST_EVENT_DATE.plusSeconds(2));
+        uploadProgressBuffer.record(TUS_ID, 200L, FIRST_EVENT_DATE.plusSeconds(1));
+
+        verify(fileUpdateService).updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE);
+        verify(fileUpdateService, never()).updateUploadProgresses(anyMapOf(String.class, UploadProgress.class));
+    }
+
+    @Test
+    public void whenTheBufferIsFlushed_ThenTheCoalescedProgressIsWrittenInOneBatch() {
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 300L, FIRST_EVENT_DATE.plusSeconds(2));
+        uploadProgressBuffer.record(TUS_ID, 200L, FIRST_EVENT_DATE.plusSeconds(1));
+
+        uploadProgressBuffer.flush();
+        uploadProgressBuffer.flush();
+
+        verify(fileUpdateService).updateUploadProgresses(
+                Collections.singletonMap(TUS_ID, new UploadProgress(300L, FIRST_EVENT_DATE.plusSeconds(1))));
+    }
+
+    @Test
+    public void whenTheFlushThresholdIsReached_ThenThePendingProgressesAreWrittenWithoutWaiting() {
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(OTHER_TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 200L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(OTHER_TUS_ID, 300L, FIRST_EVENT_DATE);
+
+        Map<String, UploadProgress> expectedProgresses = new HashMap<>();
+        expectedProgresses.put(TUS_ID, new UploadProgress(200L, FIRST_EVENT_DATE));
+        expectedProgresses.put(OTHER_TUS_ID, new UploadProgress(300L, FIRST_EVENT_DATE));
+        verify(fileUpdateService).updateUploadProgresses(expectedProgresses);
+    }
+
+    @Test
+    public void whenAnUploadIsFlushed_ThenItsPendingProgressIsWrittenAndItsNextEventGoesStraightToTheDatabase() {
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 200L, FIRST_EVENT_DATE);
+
+        uploadProgressBuffer.flush(TUS_ID);
+        uploadProgressBuffer.record(TUS_ID, 300L, FIRST_EVENT_DATE);
+
+        verify(fileUpdateService).updateUploadProgress(TUS_ID, 200L, FIRST_EVENT_DATE);
+        verify(fileUpdateService).updateUploadProgress(TUS_ID, 300L, FIRST_EVENT_DATE);
+    }
+
+    @Test
+    public void whenTheFirstProgressEventOfAnUnknownUploadArrives_ThenNotFoundIsReturnedAndTheUploadIsNotBuffered() {
+        given(fileUpdateService.updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE))
+                .willReturn(ErrorResponse.assemble(HttpStatus.NOT_FOUND, String.format(ErrorMessages.FILE_DOCUMENT_NOT_FOUND, TUS_ID)));
+
+        ResponseEntity<Object> response = uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+
+        assertThat(response.getStatusCode(), is(equalTo(HttpStatus.NOT_FOUND)));
+        verify(fileUpdateService, times(2)).updateUploadProgress(TUS_ID, 100L, FIRST_EVENT_DATE);
+    }
+
+    @Test
+    public void whenWritingTheBatchFails_ThenThePendingProgressesAreWrittenByTheNextFlush() {
+        uploadProgressBuffer.record(TUS_ID, 100L, FIRST_EVENT_DATE);
+        uploadProgressBuffer.record(TUS_ID, 200L, FIRST_EVENT_DATE);
+        doThrow(new IllegalStateException("database is down")).doNothing()
+                .when(fileUpdateService).updateUploadProgresses(anyMapOf(String.class, UploadProgress.class));
+
+        uploadProgressBuffer.flush();
+        uploadProgressBuffer.flush();
+
+        verify(fileUpdateService, times(2)).updateUploadProgresses(
+                Collections.singletonMap(TUS_ID, new UploadProgress(200L, FIRST_EVENT_DATE)));
+    }
+}
@@ -3,12 +3,13 @@ package uk.ac.ebi.subs.fileupload.services;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.springframework.amqp.rabbit.core.RabbitMessagingTemplate;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 import uk.ac.ebi.subs.fileupload.model.TUSFileInfo;
+import uk.ac.ebi.subs.fileupload.services.outbox.MessageOutbox;
+import uk.ac.ebi.subs.fileupload.security.TokenService;
 import uk.ac.ebi.subs.fileupload.util.TusFileInfoHelper;
 import uk.ac.ebi.subs.repository.repos.fileupload.FileRepository;
 import uk.ac.ebi.subs.validator.repository.ValidationResultRepository;
@@ -29,11 +30,15 @@ public class ValidationServiceTest {
     @MockBean
     private SubmissionService submissionService;
     @MockBean
-    private RabbitMessagingTemplate rabbitMessagingTemplate;
+    private MessageOutbox messageOutbox;
     @MockBean
     private ValidationResultRepository validationResultRepository;
     @MockBean
     private FileRepository fileRepository;
+    @MockBean
+    private FileUpdateService fileUpdateService;
+    @MockBean
+    private TokenService tokenService;
 
 
     private ValidationService validationService;
@@ -42,8 +47,8 @@ public class ValidationServiceTest {
     public void setup() {
         tusFileInfo = TusFileInfoHelper.generateTUSFileInfo(JWT_TOKEN, SUBMISSION_ID, FILE_NAME);
 
-        validationService = new ValidationService(submissionService, rabbitMessagingTemplate,
-                validationResultRepository, fileRepository);
+        validationService = new ValidationService(submissionService, messageOutbox,
+                validationResultRepository, fileRepository, fileUpdateService, tokenService);
     }
 
     @Test
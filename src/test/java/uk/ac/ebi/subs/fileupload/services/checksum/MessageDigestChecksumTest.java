@@ -0,0 +1,36 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MessageDigestChecksumTest {
+
+    private static final int CONTENT_LENGTH = 10_000;
+
+    @Test
+    public void whenTheChecksumIsCalculatedInChunks_ThenItEqualsTheRunningChecksumOfTheContent() {
+        Random random = new Random(42);
+        byte[] content = new byte[CONTENT_LENGTH];
+        random.nextBytes(content);
+
+        MessageDigestChecksum checksum = new MessageDigestChecksum();
+        RunningChecksum runningChecksum = new RunningChecksum();
+        int position = 0;
+        while (position < content.length) {
+            int length = Math.min(content.length - position, random.nextInt(300));
+            checksum.update(ByteBuffer.wrap(content, position, length));
+            runningChecksum.update(ByteBuffer.wrap(content, position, length));
+            position += length;
+
+            assertThat(checksum.getChecksums(), is(equalTo(runningChecksum.getChecksums())));
+        }
+
+        assertThat(checksum.getOffset(), is(equalTo((long) CONTENT_LENGTH)));
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.ebi.subs.fileupload.services.checksum;
+
+import org.junit.Test;
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.util.Utils;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RunningChecksumTest {
+
+    private static final int CONTENT_LENGTH = 10_000;
+
+    @Test
+    public void whenTheChecksumIsAdvancedInChunks_ThenItEqualsTheChecksumOfTheWholeContent() throws NoSuchAlgorithmException {
+        Random random = new Random(42);
+        byte[] content = new byte[CONTENT_LENGTH];
+        random.nextBytes(content);
+
+        RunningChecksum runningChecksum = new RunningChecksum();
+        int position = 0;
+        while (position < content.length) {
+            int length = Math.min(content.length - position, random.nextInt(300));
+            runningChecksum.update(ByteBuffer.wrap(content, position, length));
+            position += length;
+        }
+
+        assertThat(runningChecksum.getOffset(), is(equalTo((long) CONTENT_LENGTH)));
+        assertThat(runningChecksum.getChecksums(), is(equalTo(expectedChecksums(content))));
+    }
+
+    @Test
+    public void whenTheStateIsRestoredBetweenChunks_ThenTheChecksumIsContinued() throws NoSuchAlgorithmException {
+        Random random = new Random(7);
+        byte[] content = new byte[CONTENT_LENGTH];
+        random.nextBytes(content);
+
+        RunningChecksum runningChecksum = new RunningChecksum();
+        int position = 0;
+        while (position < content.length) {
+            int length = Math.min(content.length - position, random.nextInt(300));
+            ByteBuffer chunk = ByteBuffer.allocateDirect(length);
+            chunk.put(content, position, length).flip();
+
+            runningChecksum.update(chunk);
+            runningChecksum = RunningChecksum.fromBytes(runningChecksum.toBytes());
+            position += length;
+        }
+
+        assertThat(runningChecksum.getChecksums(), is(equalTo(expectedChecksums(content))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenTheStateIsDamaged_ThenItIsRejected() {
+        RunningChecksum runningChecksum = new RunningChecksum();
+        runningChecksum.update(ByteBuffer.wrap(new byte[100]));
+
+        byte[] state = runningChecksum.toBytes();
+        state[12] ^= 1;
+
+        RunningChecksum.fromBytes(state);
+    }
+
+    private static FileChecksums expectedChecksums(byte[] content) throws NoSuchAlgorithmException {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(content);
+
+        return new FileChecksums(
+                Utils.toHex(MessageDigest.getInstance("MD5").digest(content)),
+                Utils.toHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                String.format("%08x", crc32c.getValue()));
+    }
+}
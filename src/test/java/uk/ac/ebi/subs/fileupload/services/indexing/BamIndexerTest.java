@@ -0,0 +1,170 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingPipeline;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class BamIndexerTest {
+
+    // the M, I and D operations of a CIGAR
+    private static final int MATCH = 0;
+    private static final int INSERTION = 1;
+    private static final int DELETION = 2;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileProcessingPipeline fileProcessingPipeline;
+
+    @Before
+    public void setup() {
+        fileProcessingPipeline = new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), 64, 2);
+    }
+
+    @Test
+    public void whenTheRegionFitsIntoTheSmallestBin_ThenItsBinIsOnTheLastLevel() {
+        assertThat(BinningIndex.regionToBin(100, 150), is(equalTo(4681)));
+        assertThat(BinningIndex.regionToBin(16383, 16385), is(equalTo(585)));
+        assertThat(BinningIndex.regionToBin(0, 1 << 29), is(equalTo(0)));
+    }
+
+    @Test
+    public void whenABamFileIsSorted_ThenItsIndexIsWrittenBesideIt() throws IOException {
+        ByteArrayOutputStream bam = bamHeader();
+        int firstRecordOffset = bam.size();
+        writeRecord(bam, 0, 100, 0, cigar(30, MATCH), cigar(5, INSERTION), cigar(20, DELETION));
+        writeRecord(bam, 0, 120, 0, cigar(50, MATCH));
+        writeRecord(bam, 1, 7, 4);
+        writeRecord(bam, -1, -1, 4);
+        Path file = writeBgzf("test_file.bam", bam.toByteArray());
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Collections.singletonList(new BamIndexer(file, ForkJoinPool.commonPool())));
+
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("test_file.bam.bai");
+        assertThat(result.getFields().get(FileIndexer.INDEX_PATH), is(equalTo(indexPath.toString())));
+        assertThat(result.getFields().get(FileIndexer.INDEX_FORMAT), is(equalTo(BamIndexer.FORMAT)));
+
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath)).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(index.getInt(), is(equalTo(0x01494142)));
+        assertThat(index.getInt(), is(equalTo(2)));
+
+        // both records of the first reference are in the same bin, so they share one chunk
+        assertThat(index.getInt(), is(equalTo(2)));
+        assertThat(index.getInt(), is(equalTo(4681)));
+        assertThat(index.getInt(), is(equalTo(1)));
+        assertThat(index.getLong(), is(equalTo((long) firstRecordOffset)));
+        index.getLong();
+        assertThat(index.getInt(), is(equalTo(37450)));
+        assertThat(index.getInt(), is(equalTo(2)));
+        index.getLong();
+        index.getLong();
+        assertThat(index.getLong(), is(equalTo(2L)));
+        assertThat(index.getLong(), is(equalTo(0L)));
+        assertThat(index.getInt(), is(equalTo(1)));
+        assertThat(index.getLong(), is(equalTo((long) firstRecordOffset)));
+
+        // the unmapped record placed on the second reference
+        assertThat(index.getInt(), is(equalTo(2)));
+        index.position(index.position() + 4 + 4 + 16 + 4 + 4 + 16);
+        assertThat(index.getLong(), is(equalTo(0L)));
+        assertThat(index.getLong(), is(equalTo(1L)));
+        assertThat(index.getInt(), is(equalTo(1)));
+        index.getLong();
+
+        assertThat(index.getLong(), is(equalTo(1L)));
+        assertFalse(index.hasRemaining());
+    }
+
+    @Test
+    public void whenABamFileIsNotSorted_ThenNoIndexIsLeftBehind() throws IOException {
+        ByteArrayOutputStream bam = bamHeader();
+        writeRecord(bam, 0, 200, 0, cigar(50, MATCH));
+        writeRecord(bam, 0, 100, 0, cigar(50, MATCH));
+        Path file = writeBgzf("test_file.bam", bam.toByteArray());
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Collections.singletonList(new BamIndexer(file, ForkJoinPool.commonPool())));
+
+        assertThat(result.hasFailed(FileIndexer.NAME), is(true));
+        assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("test_file.bam.bai")));
+        assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("test_file.bam.bai.part")));
+    }
+
+    private Path writeBgzf(String filename, byte[] content) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(filename);
+        try (BgzfOutputStream bgzfStream = new BgzfOutputStream(Files.newOutputStream(file))) {
+            bgzfStream.write(content);
+        }
+        return file;
+    }
+
+    private static ByteArrayOutputStream bamHeader() throws IOException {
+        ByteArrayOutputStream bam = new ByteArrayOutputStream();
+        bam.write(new byte[]{'B', 'A', 'M', 1});
+        byte[] text = "@HD\tVN:1.6\tSO:coordinate\n".getBytes(StandardCharsets.US_ASCII);
+        writeInt(bam, text.length);
+        bam.write(text);
+        writeInt(bam, 2);
+        for (String name : new String[]{"chr1", "chr2"}) {
+            writeInt(bam, name.length() + 1);
+            bam.write(name.getBytes(StandardCharsets.US_ASCII));
+            bam.write(0);
+            writeInt(bam, 1000000);
+        }
+        return bam;
+    }
+
+    private static void writeRecord(ByteArrayOutputStream bam, int referenceId, int position, int flag, int... cigar) {
+        byte[] readName = "read\0".getBytes(StandardCharsets.US_ASCII);
+        writeInt(bam, 32 + readName.length + cigar.length * 4);
+        writeInt(bam, referenceId);
+        writeInt(bam, position);
+        bam.write(readName.length);
+        bam.write(60);
+        writeShort(bam, 0);
+        writeShort(bam, cigar.length);
+        writeShort(bam, flag);
+        writeInt(bam, 0);
+        writeInt(bam, -1);
+        writeInt(bam, -1);
+        writeInt(bam, 0);
+        bam.write(readName, 0, readName.length);
+        for (int operation : cigar) {
+            writeInt(bam, operation);
+        }
+    }
+
+    private static int cigar(int length, int operation) {
+        return length << 4 | operation;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value);
+        writeShort(out, value >>> 16);
+    }
+}
@@ -0,0 +1,126 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingPipeline;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CramIndexerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void whenACramFileIsProcessed_ThenEverySliceIsIndexed() throws IOException {
+        ByteArrayOutputStream cram = new ByteArrayOutputStream();
+        cram.write(new byte[]{'C', 'R', 'A', 'M', 3, 0});
+        cram.write(new byte[20]);
+
+        // the container of the SAM header
+        writeContainer(cram, new byte[]{0, 0, 0}, 0, 1, new int[0], new byte[10]);
+        int dataContainerOffset = cram.size();
+        byte[] firstSlice = slice(0, 100, 50, 7);
+        byte[] secondSlice = slice(0, 150, 400, 3);
+        byte[] slices = new byte[firstSlice.length + secondSlice.length];
+        System.arraycopy(firstSlice, 0, slices, 0, firstSlice.length);
+        System.arraycopy(secondSlice, 0, slices, firstSlice.length, secondSlice.length);
+        // the span of the container is 500, it takes two bytes
+        int dataContainerHeaderSize = writeContainer(cram, new byte[]{0, 100, (byte) 0x81, (byte) 0xf4}, 20, 2,
+                new int[]{0, firstSlice.length}, slices);
+        // the end of file container, its reference is -1
+        writeContainer(cram, new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0, 0},
+                0, 1, new int[0], new byte[15]);
+        Path file = temporaryFolder.getRoot().toPath().resolve("test_file.cram");
+        Files.write(file, cram.toByteArray());
+
+        FileProcessingResult result = new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), 16, 2)
+                .process(file, Collections.singletonList(new CramIndexer(file)));
+
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("test_file.cram.crai");
+        assertThat(result.getFields().get(FileIndexer.INDEX_FORMAT), is(equalTo(CramIndexer.FORMAT)));
+        String sliceOffsets = dataContainerOffset + "\t" + dataContainerHeaderSize;
+        assertThat(gunzip(indexPath), is(equalTo(
+                "0\t100\t50\t" + sliceOffsets + "\t" + firstSlice.length + "\n" +
+                "0\t150\t400\t" + dataContainerOffset + "\t" + (dataContainerHeaderSize + firstSlice.length)
+                        + "\t" + secondSlice.length + "\n")));
+    }
+
+    /**
+     * Writes a CRAM 3 container with the given ITF8 encoded reference, start and span, and 256 bases.
+     *
+     * @return the size of the header of the container
+     */
+    private static int writeContainer(ByteArrayOutputStream cram, byte[] referenceStartAndSpan, int recordCount,
+                                      int blockCount, int[] landmarks, byte[] data) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(data.length);
+        header.write(data.length >>> 8);
+        header.write(0);
+        header.write(0);
+        header.write(referenceStartAndSpan);
+        header.write(recordCount);
+        header.write(0);
+        header.write(0x80 | 1);
+        header.write(0);
+        header.write(blockCount);
+        header.write(landmarks.length);
+        for (int landmark : landmarks) {
+            header.write(landmark);
+        }
+        header.write(new byte[4]);
+
+        cram.write(header.toByteArray());
+        cram.write(data);
+        return header.size();
+    }
+
+    /**
+     * @return a slice with a raw slice header block followed by the given number of filler bytes
+     */
+    private static byte[] slice(int referenceId, int start, int span, int fillerSize) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(referenceId);
+        writeItf8(content, start);
+        writeItf8(content, span);
+
+        ByteArrayOutputStream slice = new ByteArrayOutputStream();
+        slice.write(0);
+        slice.write(2);
+        slice.write(0);
+        slice.write(content.size());
+        slice.write(content.size());
+        slice.write(content.toByteArray(), 0, content.size());
+        slice.write(new byte[fillerSize], 0, fillerSize);
+        return slice.toByteArray();
+    }
+
+    private static void writeItf8(ByteArrayOutputStream out, int value) {
+        if (value < 0x80) {
+            out.write(value);
+        } else {
+            out.write(0x80 | value >>> 8);
+            out.write(value);
+        }
+    }
+
+    private static String gunzip(Path path) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII);
+        }
+    }
+}
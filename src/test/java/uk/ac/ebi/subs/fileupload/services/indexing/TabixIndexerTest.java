@@ -0,0 +1,115 @@
+package uk.ac.ebi.subs.fileupload.services.indexing;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingPipeline;
+import uk.ac.ebi.subs.fileupload.services.pipeline.FileProcessingResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+public class TabixIndexerTest {
+
+    private static final String VCF_HEADER =
+            "##fileformat=VCFv4.2\n" +
+            "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT\tsample1\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileProcessingPipeline fileProcessingPipeline;
+
+    @Before
+    public void setup() {
+        fileProcessingPipeline = new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), 64, 2);
+    }
+
+    @Test
+    public void whenAVcfFileIsSorted_ThenItsBgzfCompressedIndexIsWrittenBesideIt() throws IOException {
+        String records =
+                "chr1\t100\t.\tA\tG\t50\tPASS\tDP=10\tGT\t0/1\n" +
+                "chr1\t20000\t.\tN\t<DEL>\t50\tPASS\tSVTYPE=DEL;END=40000\tGT\t0/1\n" +
+                "chr2\t5\t.\tACGT\tA\t50\tPASS\t.\tGT\t1/1\n";
+        Path file = writeBgzf("test_file.vcf.gz", VCF_HEADER + records);
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Collections.singletonList(new TabixIndexer(file, ForkJoinPool.commonPool())));
+
+        Path indexPath = temporaryFolder.getRoot().toPath().resolve("test_file.vcf.gz.tbi");
+        assertThat(result.getFields().get(FileIndexer.INDEX_PATH), is(equalTo(indexPath.toString())));
+        assertThat(result.getFields().get(FileIndexer.INDEX_FORMAT), is(equalTo(TabixIndexer.FORMAT)));
+
+        ByteBuffer index = ByteBuffer.wrap(gunzip(indexPath)).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(index.getInt(), is(equalTo(0x01494254)));
+        assertThat(index.getInt(), is(equalTo(2)));
+        // VCF format, the sequence and begin columns, no end column, '#' meta character and no skipped lines
+        assertThat(index.getInt(), is(equalTo(2)));
+        assertThat(index.getInt(), is(equalTo(1)));
+        assertThat(index.getInt(), is(equalTo(2)));
+        assertThat(index.getInt(), is(equalTo(0)));
+        assertThat(index.getInt(), is(equalTo((int) '#')));
+        assertThat(index.getInt(), is(equalTo(0)));
+
+        byte[] names = new byte[index.getInt()];
+        index.get(names);
+        assertThat(new String(names, StandardCharsets.US_ASCII), is(equalTo("chr1\0chr2\0")));
+
+        // the bins are written in their order, the deletion spans the 16 kb windows 1 and 2 by its END
+        long firstRecordOffset = VCF_HEADER.length();
+        assertThat(index.getInt(), is(equalTo(3)));
+        assertThat(index.getInt(), is(equalTo(BinningIndex.regionToBin(19999, 40000))));
+        index.position(index.position() + 4 + 16);
+        assertThat(index.getInt(), is(equalTo(4681)));
+        assertThat(index.getInt(), is(equalTo(1)));
+        assertThat(index.getLong(), is(equalTo(firstRecordOffset)));
+        index.position(index.position() + 8);
+        assertThat(index.getInt(), is(equalTo(37450)));
+        index.position(index.position() + 4 + 32);
+        assertThat(index.getInt(), is(equalTo(3)));
+    }
+
+    @Test
+    public void whenTheRecordsOfAChromosomeAreNotContiguous_ThenTheFileIsNotIndexed() throws IOException {
+        String records =
+                "chr1\t100\t.\tA\tG\t50\tPASS\t.\n" +
+                "chr2\t100\t.\tA\tG\t50\tPASS\t.\n" +
+                "chr1\t200\t.\tA\tG\t50\tPASS\t.\n";
+        Path file = writeBgzf("test_file.vcf.gz", VCF_HEADER + records);
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Collections.singletonList(new TabixIndexer(file, ForkJoinPool.commonPool())));
+
+        assertThat(result.hasFailed(FileIndexer.NAME), is(true));
+        assertFalse(Files.exists(temporaryFolder.getRoot().toPath().resolve("test_file.vcf.gz.tbi")));
+    }
+
+    private Path writeBgzf(String filename, String content) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(filename);
+        try (BgzfOutputStream bgzfStream = new BgzfOutputStream(Files.newOutputStream(file))) {
+            bgzfStream.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return file;
+    }
+
+    private static byte[] gunzip(Path path) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+            return in.readAllBytes();
+        }
+    }
+}
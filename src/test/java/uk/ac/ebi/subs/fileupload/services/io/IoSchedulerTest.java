@@ -0,0 +1,141 @@
+package uk.ac.ebi.subs.fileupload.services.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IoSchedulerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void whenTheVolumeIsBusy_ThenTheWaitingOperationsStartByTheirPriorityClass() throws Exception {
+        IoScheduler ioScheduler = ioScheduler(new MockEnvironment().withProperty("file-upload.io.concurrency", "1"));
+        Path file = volumeFile();
+        List<IoClass> startedClasses = Collections.synchronizedList(new ArrayList<>());
+
+        List<Thread> threads = new ArrayList<>();
+        try (IoPermit ignored = ioScheduler.acquire(file, IoClass.BULK)) {
+            for (IoClass ioClass : Arrays.asList(IoClass.BULK, IoClass.PROCESSING, IoClass.INTERACTIVE)) {
+                Thread thread = new Thread(() -> {
+                    try (IoPermit permit = ioScheduler.acquire(file, ioClass)) {
+                        startedClasses.add(ioClass);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+                awaitQueued(ioScheduler, threads.size());
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(startedClasses, is(equalTo(Arrays.asList(IoClass.INTERACTIVE, IoClass.PROCESSING, IoClass.BULK))));
+        assertThat(ioScheduler.getStatistics(IoClass.BULK).getOperations(), is(equalTo(2L)));
+        assertThat(ioScheduler.getStatistics(IoClass.INTERACTIVE).getOperations(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void whenBackgroundOperationsFillTheVolume_ThenTheLastSlotIsKeptForAnInteractiveOne() throws Exception {
+        IoScheduler ioScheduler = ioScheduler(new MockEnvironment().withProperty("file-upload.io.concurrency", "2"));
+        Path file = volumeFile();
+
+        Thread bulkMove;
+        try (IoPermit processing = ioScheduler.acquire(file, IoClass.PROCESSING)) {
+            bulkMove = new Thread(() -> {
+                try (IoPermit permit = ioScheduler.acquire(file, IoClass.BULK)) {
+                    permit.throttle(0);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            bulkMove.start();
+            awaitQueued(ioScheduler, 1);
+
+            try (IoPermit interactive = ioScheduler.acquire(file, IoClass.INTERACTIVE)) {
+                assertThat(ioScheduler.getActiveOperations("default"), is(equalTo(2)));
+                assertThat(ioScheduler.getQueuedOperations("default"), is(equalTo(1)));
+            }
+        }
+        bulkMove.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(ioScheduler.getActiveOperations("default"), is(equalTo(0)));
+        assertThat(ioScheduler.getQueuedOperations("default"), is(equalTo(0)));
+    }
+
+    @Test
+    public void whenAFileIsOutsideOfTheVolumes_ThenItIsScheduledOnTheExternalQueue() throws IOException {
+        IoScheduler ioScheduler = ioScheduler(new MockEnvironment());
+
+        try (IoPermit permit = ioScheduler.acquire(Paths.get("/globus/share/test_file.cram"), IoClass.BULK)) {
+            assertThat(ioScheduler.getActiveOperations(IoScheduler.EXTERNAL_QUEUE), is(equalTo(1)));
+            assertThat(ioScheduler.getActiveOperations("default"), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void whenTheBandwidthOfTheVolumeIsCapped_ThenTheOperationsAreThrottled() throws IOException {
+        IoScheduler ioScheduler = ioScheduler(new MockEnvironment().withProperty("file-upload.io.bandwidth", "1000"));
+
+        long startTime = System.nanoTime();
+        try (IoPermit permit = ioScheduler.acquire(volumeFile(), IoClass.PROCESSING)) {
+            // the first second of bytes is available straight away, the rest has to wait
+            permit.throttle(1000);
+            permit.throttle(500);
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), is(greaterThanOrEqualTo(400L)));
+        assertThat(ioScheduler.getThrottledTime("default"), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void whenTheBandwidthOfTheVolumeIsCapped_ThenTheInteractiveOperationsAreNotThrottled() throws IOException {
+        IoScheduler ioScheduler = ioScheduler(new MockEnvironment().withProperty("file-upload.io.bandwidth", "1000"));
+
+        try (IoPermit processing = ioScheduler.acquire(volumeFile(), IoClass.PROCESSING);
+             IoPermit interactive = ioScheduler.acquire(volumeFile(), IoClass.INTERACTIVE)) {
+            processing.throttle(1000);
+            interactive.throttle(5000);
+        }
+
+        assertThat(ioScheduler.getThrottledTime("default"), is(equalTo(0L)));
+    }
+
+    private IoScheduler ioScheduler(MockEnvironment environment) {
+        StorageVolumes storageVolumes = new StorageVolumes(environment, temporaryFolder.getRoot().toString(),
+                new String[]{"default"});
+        return new IoScheduler(storageVolumes, environment);
+    }
+
+    private Path volumeFile() {
+        return temporaryFolder.getRoot().toPath().resolve("test_file.cram");
+    }
+
+    private static void awaitQueued(IoScheduler ioScheduler, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ioScheduler.getQueuedOperations("default") < queued && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package uk.ac.ebi.subs.fileupload.services.jobs;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.ebi.subs.fileupload.services.FileUpdateService;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class LocalJobRunnerTest {
+
+    private static final String TUS_ID = "abcdefgh12345678";
+    private static final long VERIFICATION_TIMEOUT = 10_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileUpdateService fileUpdateService;
+    private IoScheduler ioScheduler;
+    private LocalJobRunner localJobRunner;
+
+    @Before
+    public void setup() {
+        fileUpdateService = mock(FileUpdateService.class);
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file-upload.localJobs.contentValidation.concurrency", "1")
+                .withProperty("file-upload.localJobs.contentValidation.queueCapacity", "10")
+                .withProperty("file-upload.localJobs.contentValidation.timeout", "500")
+                .withProperty("file-upload.io.concurrency", "1");
+        StorageVolumes storageVolumes = new StorageVolumes(environment, temporaryFolder.getRoot().toString(),
+                new String[]{"default"});
+        ioScheduler = new IoScheduler(storageVolumes, environment);
+        localJobRunner = new LocalJobRunner(fileUpdateService, ioScheduler, environment);
+    }
+
+    @After
+    public void tearDown() {
+        localJobRunner.shutdown();
+    }
+
+    @Test
+    public void whenTheProcessExitsWithAnErrorCode_ThenTheJobIsRecordedAsFailed() {
+        localJobRunner.submit(job("sh", "-c", "echo 'invalid file' >&2; exit 3"));
+
+        verify(fileUpdateService, timeout(VERIFICATION_TIMEOUT)).recordLocalJobResult(
+                eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), eq(LocalJobState.FAILED), eq(3), anyLong());
+        assertThat(localJobRunner.getStatistics(LocalJobType.CONTENT_VALIDATION).getFailed(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void whenTheProcessSucceeds_ThenTheJobIsRecordedAsSucceeded() {
+        localJobRunner.submit(job("sh", "-c", "echo valid file"));
+
+        verify(fileUpdateService, timeout(VERIFICATION_TIMEOUT)).recordLocalJobResult(
+                eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), eq(LocalJobState.SUCCEEDED), eq(0), anyLong());
+    }
+
+    @Test
+    public void whenTheProcessRunsLongerThanTheTimeout_ThenItIsKilled() {
+        localJobRunner.submit(job("sleep", "30"));
+
+        verify(fileUpdateService, timeout(VERIFICATION_TIMEOUT)).recordLocalJobResult(
+                eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), eq(LocalJobState.TIMED_OUT), any(Integer.class), anyLong());
+    }
+
+    @Test
+    public void whenTheProcessTimesOut_ThenTheProcessesItHasStartedAreKilledToo() throws Exception {
+        Path pidFile = Files.createTempFile("local-job-", ".pid");
+        try {
+            localJobRunner.submit(job("sh", "-c", "sleep 30 & echo $! > " + pidFile + "; wait"));
+
+            verify(fileUpdateService, timeout(VERIFICATION_TIMEOUT)).recordLocalJobResult(
+                    eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), eq(LocalJobState.TIMED_OUT), any(Integer.class), anyLong());
+
+            long childPid = Long.parseLong(new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim());
+            Optional<ProcessHandle> child = ProcessHandle.of(childPid);
+            if (child.isPresent()) {
+                child.get().onExit().get(VERIFICATION_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            Files.deleteIfExists(pidFile);
+        }
+    }
+
+    @Test
+    public void whenTheVolumeOfTheFileIsBusy_ThenTheProcessWaitsForItsPermit() throws Exception {
+        try (IoPermit ignored = ioScheduler.acquire(volumeFile(), IoClass.INTERACTIVE)) {
+            localJobRunner.submit(job("sh", "-c", "echo valid file"));
+            Thread.sleep(300);
+
+            verify(fileUpdateService, never()).recordLocalJobResult(
+                    eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), any(LocalJobState.class), any(Integer.class), anyLong());
+        }
+
+        verify(fileUpdateService, timeout(VERIFICATION_TIMEOUT)).recordLocalJobResult(
+                eq(TUS_ID), eq(LocalJobType.CONTENT_VALIDATION), eq(LocalJobState.SUCCEEDED), eq(0), anyLong());
+    }
+
+    @Test
+    public void whenTheQueueIsFull_ThenTheJobIsRejectedAndRecordedAsSuch() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file-upload.localJobs.contentValidation.concurrency", "1")
+                .withProperty("file-upload.localJobs.contentValidation.queueCapacity", "0")
+                .withProperty("file-upload.localJobs.contentValidation.timeout", "500");
+        LocalJobRunner fullLocalJobRunner = new LocalJobRunner(fileUpdateService, ioScheduler, environment);
+        try {
+            assertTrue(fullLocalJobRunner.submit(job("sleep", "30")));
+            assertFalse(fullLocalJobRunner.submit(job("sleep", "30")));
+
+            verify(fileUpdateService).recordLocalJobResult(
+                    TUS_ID, LocalJobType.CONTENT_VALIDATION, LocalJobState.REJECTED, null, 0L);
+        } finally {
+            fullLocalJobRunner.shutdown();
+        }
+    }
+
+    private Path volumeFile() {
+        return temporaryFolder.getRoot().toPath().resolve("test_file.cram");
+    }
+
+    private LocalJob job(String... command) {
+        return new LocalJob(LocalJobType.CONTENT_VALIDATION, TUS_ID, volumeFile(), Arrays.asList(command));
+    }
+}
@@ -0,0 +1,87 @@
+package uk.ac.ebi.subs.fileupload.services.outbox;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OutboxJournalTest {
+
+    private static final String EXCHANGE = "usi-1:submission-exchange";
+    private static final String ROUTING_KEY = "file.checksum.generation";
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void whenMessagesAreAppended_ThenTheyAreReadInTheSameOrder() throws IOException {
+        OutboxJournal outboxJournal = new OutboxJournal(temporaryFolder.getRoot().toPath(), SEGMENT_SIZE);
+
+        outboxJournal.append(message("first"));
+        outboxJournal.append(message("second"));
+
+        List<OutboxJournal.Entry> entries = outboxJournal.readPending(10);
+
+        assertThat(entries.size(), is(equalTo(2)));
+        assertThat(body(entries.get(0)), is(equalTo("first")));
+        assertThat(body(entries.get(1)), is(equalTo("second")));
+        assertThat(entries.get(0).getMessage().getExchange(), is(equalTo(EXCHANGE)));
+        assertThat(entries.get(0).getMessage().getRoutingKey(), is(equalTo(ROUTING_KEY)));
+    }
+
+    @Test
+    public void whenMessagesAreAcknowledged_ThenOnlyTheRestIsReadAgainAfterReopeningTheJournal() throws IOException {
+        Path directory = temporaryFolder.getRoot().toPath();
+        OutboxJournal outboxJournal = new OutboxJournal(directory, SEGMENT_SIZE);
+
+        outboxJournal.append(message("first"));
+        outboxJournal.append(message("second"));
+        outboxJournal.append(message("third"));
+
+        outboxJournal.acknowledge(outboxJournal.readPending(2));
+        outboxJournal.close();
+
+        List<OutboxJournal.Entry> entries = new OutboxJournal(directory, SEGMENT_SIZE).readPending(10);
+
+        assertThat(entries.size(), is(equalTo(1)));
+        assertThat(body(entries.get(0)), is(equalTo("third")));
+    }
+
+    @Test
+    public void whenASegmentIsFull_ThenANewSegmentIsStartedAndTheAcknowledgedSegmentIsDeleted() throws IOException {
+        OutboxJournal outboxJournal = new OutboxJournal(temporaryFolder.getRoot().toPath(), SEGMENT_SIZE);
+
+        for (int i = 0; i < 20; i++) {
+            outboxJournal.append(message("message number " + i));
+        }
+
+        assertThat(outboxJournal.getSegmentCount(), is(greaterThan(1L)));
+
+        List<OutboxJournal.Entry> entries = outboxJournal.readPending(100);
+        assertThat(entries.size(), is(equalTo(20)));
+        assertThat(body(entries.get(19)), is(equalTo("message number 19")));
+
+        outboxJournal.acknowledge(entries);
+
+        assertThat(outboxJournal.getSegmentCount(), is(equalTo(1L)));
+        assertThat(outboxJournal.readPending(100).size(), is(equalTo(0)));
+    }
+
+    private OutboxMessage message(String body) {
+        return new OutboxMessage(EXCHANGE, ROUTING_KEY, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String body(OutboxJournal.Entry entry) {
+        return new String(entry.getMessage().getBody(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BgzfInputStreamTest {
+
+    // fewer than the blocks of the test data, so the reading ahead is bounded
+    private static final int MAX_BLOCKS_IN_FLIGHT = 3;
+
+    private static final byte[] EOF_BLOCK = bgzfBlock(new byte[0]);
+
+    @Test
+    public void whenTheFileIsBgzf_ThenItsBlocksAreReturnedInOrder() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            String block = "@read" + i + "\nACGTACGT\n+\nIIIIIIII\n";
+            content.append(block);
+            compressed.write(bgzfBlock(block.getBytes(StandardCharsets.UTF_8)));
+        }
+        compressed.write(EOF_BLOCK);
+
+        BgzfInputStream bgzfStream = bgzfStream(compressed.toByteArray());
+
+        assertThat(readAll(bgzfStream), is(equalTo(content.toString())));
+        assertTrue(bgzfStream.isBgzf());
+    }
+
+    @Test
+    public void whenAMemberIsNotABgzfBlock_ThenTheRestOfTheFileIsDecompressedSequentially() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(bgzfBlock("first\n".getBytes(StandardCharsets.UTF_8)));
+        compressed.write(gzip("second\n"));
+        compressed.write(gzip("third\n"));
+
+        BgzfInputStream bgzfStream = bgzfStream(compressed.toByteArray());
+
+        assertThat(readAll(bgzfStream), is(equalTo("first\nsecond\nthird\n")));
+        assertFalse(bgzfStream.isBgzf());
+    }
+
+    @Test(expected = ZipException.class)
+    public void whenABlockIsCorrupt_ThenReadingFails() throws IOException {
+        byte[] block = bgzfBlock("corrupt\n".getBytes(StandardCharsets.UTF_8));
+        // breaks the CRC in the trailer of the block
+        block[block.length - 8] ^= 0xff;
+
+        readAll(bgzfStream(block));
+    }
+
+    @Test(expected = EOFException.class)
+    public void whenTheFileIsTruncated_ThenReadingFails() throws IOException {
+        byte[] block = bgzfBlock("truncated\n".getBytes(StandardCharsets.UTF_8));
+
+        readAll(bgzfStream(Arrays.copyOf(block, block.length - 3)));
+    }
+
+    private static BgzfInputStream bgzfStream(byte[] compressed) {
+        return new BgzfInputStream(new ByteArrayInputStream(compressed), ForkJoinPool.commonPool(), MAX_BLOCKS_IN_FLIGHT);
+    }
+
+    private static String readAll(BgzfInputStream bgzfStream) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = bgzfStream.read(buffer)) >= 0) {
+            content.write(buffer, 0, read);
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(bytes)) {
+            gzipStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] bgzfBlock(byte[] content) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] deflated = new byte[content.length + 64];
+        int deflatedSize = deflater.deflate(deflated);
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        int blockSize = 18 + deflatedSize + 8;
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        block.write(new byte[]{31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+        writeLittleEndian(block, blockSize - 1, 2);
+        block.write(deflated, 0, deflatedSize);
+        writeLittleEndian(block, crc.getValue(), 4);
+        writeLittleEndian(block, content.length, 4);
+        return block.toByteArray();
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream out, long value, int size) {
+        for (int i = 0; i < size; i++) {
+            out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+}
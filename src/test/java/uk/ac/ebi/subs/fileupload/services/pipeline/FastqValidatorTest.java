@@ -0,0 +1,117 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FastqValidatorTest {
+
+    private static final String VALID_FASTQ =
+            "@read1\n" +
+            "ACGTN\n" +
+            "+\n" +
+            "!!II#\n" +
+            "@read2 second\r\n" +
+            "acg\r\n" +
+            "+read2\r\n" +
+            "III\r\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void whenTheRecordsAreSplitAcrossBuffers_ThenTheirStatisticsAreCounted() throws FileFormatException {
+        FastqScanner scanner = new FastqScanner();
+        byte[] bytes = VALID_FASTQ.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i += 3) {
+            scanner.scan(bytes, i, Math.min(3, bytes.length - i));
+        }
+        scanner.finish();
+
+        assertThat(scanner.getReadCount(), is(equalTo(2L)));
+        assertThat(scanner.getBaseCount(), is(equalTo(8L)));
+        // '!' is Phred 0, '#' is Phred 2 and 'I' is Phred 40
+        Long[] histogram = new Long[41];
+        Arrays.fill(histogram, 0L);
+        histogram[0] = 2L;
+        histogram[2] = 1L;
+        histogram[40] = 5L;
+        assertThat(scanner.getQualityHistogram(), is(equalTo(Arrays.asList(histogram))));
+    }
+
+    @Test
+    public void whenTheQualityIsShorterThanTheSequence_ThenTheRecordIsInvalid() {
+        assertInvalid("@read1\nACGT\n+\nIII\n",
+                "the length of the quality (3) does not match the length of the sequence (4)");
+    }
+
+    @Test
+    public void whenTheHeaderDoesNotStartWithAt_ThenTheRecordIsInvalid() {
+        assertInvalid("@read1\nACGT\n+\nIIII\nread2\nACGT\n+\nIIII\n",
+                "Invalid FASTQ record: 2, the header line does not start with '@'");
+    }
+
+    @Test
+    public void whenTheQualityHasACharacterOutOfRange_ThenTheRecordIsInvalid() {
+        assertInvalid("@read1\nACGT\n+\nII I\n", "the quality contains an invalid character: ' '");
+    }
+
+    @Test
+    public void whenTheFileEndsInTheMiddleOfARecord_ThenItIsInvalid() {
+        assertInvalid("@read1\nACGT\n+\n", "the file ends in the middle of the record");
+    }
+
+    @Test
+    public void whenACompressedFastqIsProcessed_ThenItsResultsAreStored() throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve("test_file.fastq.gz");
+        Files.write(file, gzip(VALID_FASTQ));
+        FileProcessingPipeline fileProcessingPipeline = new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), 16, 2);
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Collections.singletonList(new FastqValidator(ForkJoinPool.commonPool())));
+
+        Map<String, Object> fields = result.getFields();
+        assertThat(fields.get(GzipIntegrityValidator.VALID), is(equalTo(true)));
+        assertThat(fields.get(GzipIntegrityValidator.VALIDATOR), is(equalTo(FastqValidator.NAME)));
+        assertThat(fields.get(FastqValidator.READ_COUNT), is(equalTo(2L)));
+        assertThat(fields.get(FastqValidator.BASE_COUNT), is(equalTo(8L)));
+    }
+
+    private static void assertInvalid(String fastq, String expectedMessage) {
+        FastqScanner scanner = new FastqScanner();
+        byte[] bytes = fastq.getBytes(StandardCharsets.US_ASCII);
+        try {
+            scanner.scan(bytes, 0, bytes.length);
+            scanner.finish();
+        } catch (FileFormatException e) {
+            assertThat(e.getMessage(), containsString(expectedMessage));
+            return;
+        }
+        throw new AssertionError("The FASTQ should be invalid: " + fastq);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(bytes)) {
+            gzipStream.write(content.getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,174 @@
+package uk.ac.ebi.subs.fileupload.services.pipeline;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class FileProcessingPipelineTest {
+
+    private static final String CONTENT = "12345\n6789";
+    private static final String CONTENT_MD5 = "bce6fe8e97f8df651bced93def2513d6";
+
+    // smaller than the content, so the file is read in several chunks and the buffers are reused
+    private static final int BUFFER_SIZE = 4;
+    private static final int BUFFER_COUNT = 2;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileProcessingPipeline fileProcessingPipeline;
+
+    @Before
+    public void setup() {
+        fileProcessingPipeline = new FileProcessingPipeline(new SimpleAsyncTaskExecutor(), BUFFER_SIZE, BUFFER_COUNT);
+    }
+
+    @Test
+    public void whenAFileIsProcessed_ThenEveryConsumerGetsTheWholeFile() throws IOException {
+        Path file = writeFile("test_file.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+        ChecksumConsumer checksumConsumer = new ChecksumConsumer();
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Arrays.asList(checksumConsumer, new FileStatisticsCollector(), new SlowConsumer()));
+
+        assertThat(result.getErrors().isEmpty(), is(true));
+        assertThat(checksumConsumer.getChecksums().getMd5(), is(equalTo(CONTENT_MD5)));
+
+        Map<String, Object> fields = result.getFields();
+        assertThat(fields.get(ChecksumConsumer.MD5_CHECKSUM), is(equalTo(CONTENT_MD5)));
+        assertThat(fields.get(FileStatisticsCollector.SIZE), is(equalTo((long) CONTENT.length())));
+        assertThat(fields.get(FileStatisticsCollector.LINE_COUNT), is(equalTo(2L)));
+        assertThat(fields.get(SlowConsumer.CONTENT), is(equalTo(CONTENT)));
+    }
+
+    @Test
+    public void whenAConsumerFails_ThenOnlyItsResultsAreDiscarded() throws IOException {
+        Path file = writeFile("test_file.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Arrays.asList(new FailingConsumer(), new FileStatisticsCollector()));
+
+        assertThat(result.hasFailed(FailingConsumer.NAME), is(true));
+        assertThat(result.getFields(), not(hasKey(FailingConsumer.NAME)));
+        assertThat(result.getFields().get(FileStatisticsCollector.SIZE), is(equalTo((long) CONTENT.length())));
+    }
+
+    @Test
+    public void whenAGzipFileIsComplete_ThenItIsValid() throws IOException {
+        Path file = writeFile("test_file.fastq.gz", gzip(CONTENT));
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Arrays.asList(new GzipIntegrityValidator(ForkJoinPool.commonPool()), new ChecksumConsumer()));
+
+        assertThat(result.getFields().get(GzipIntegrityValidator.VALID), is(equalTo(true)));
+        assertThat(result.getFields().get(GzipIntegrityValidator.UNCOMPRESSED_SIZE), is(equalTo((long) CONTENT.length())));
+    }
+
+    @Test
+    public void whenAGzipFileIsTruncated_ThenItIsInvalid() throws IOException {
+        byte[] compressed = gzip(CONTENT);
+        Path file = writeFile("test_file.fastq.gz", Arrays.copyOf(compressed, compressed.length - 5));
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Arrays.asList(new GzipIntegrityValidator(ForkJoinPool.commonPool()), new ChecksumConsumer()));
+
+        assertThat(result.getFields().get(GzipIntegrityValidator.VALID), is(equalTo(false)));
+        assertThat(result.getFields(), hasKey(ChecksumConsumer.MD5_CHECKSUM));
+    }
+
+    @Test
+    public void whenTheChecksumIsSeeded_ThenTheOtherConsumersStillGetTheWholeFile() throws IOException {
+        Path file = writeFile("test_file.txt", CONTENT.getBytes(StandardCharsets.UTF_8));
+        RunningChecksum runningChecksum = new RunningChecksum();
+        runningChecksum.update(ByteBuffer.wrap(CONTENT.substring(0, 3).getBytes(StandardCharsets.UTF_8)));
+        ChecksumConsumer checksumConsumer = new ChecksumConsumer(runningChecksum);
+
+        FileProcessingResult result = fileProcessingPipeline.process(file,
+                Arrays.asList(checksumConsumer, new FileStatisticsCollector()));
+
+        FileChecksums fileChecksums = checksumConsumer.getChecksums();
+        assertThat(fileChecksums.getMd5(), is(equalTo(CONTENT_MD5)));
+        assertThat(result.getFields().get(FileStatisticsCollector.SIZE), is(equalTo((long) CONTENT.length())));
+    }
+
+    private Path writeFile(String filename, byte[] content) throws IOException {
+        Path file = temporaryFolder.getRoot().toPath().resolve(filename);
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(bytes)) {
+            gzipStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the file byte by byte and slowly, so the reader of the pipeline has to wait for the buffers it holds.
+     */
+    private static class SlowConsumer implements FileConsumer {
+
+        static final String CONTENT = "content";
+
+        @Override
+        public String getName() {
+            return "slow";
+        }
+
+        @Override
+        public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int read;
+            while ((read = chunks.read()) >= 0) {
+                bytes.write(read);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            results.put(CONTENT, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static class FailingConsumer implements FileConsumer {
+
+        static final String NAME = "failing";
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @Override
+        public void consume(ChunkStream chunks, Map<String, Object> results) throws IOException {
+            results.put(NAME, true);
+            chunks.nextChunk();
+            throw new IOException("test failure");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package uk.ac.ebi.subs.fileupload.services.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StorageVolumesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path defaultPath;
+    private Path secondPath;
+    private StorageVolumes storageVolumes;
+
+    @Before
+    public void setup() throws IOException {
+        defaultPath = temporaryFolder.newFolder("default").toPath();
+        secondPath = temporaryFolder.newFolder("second").toPath();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("file-upload.storage.volumes.second.path", secondPath.toString());
+
+        storageVolumes = new StorageVolumes(environment, defaultPath.toString(), new String[]{"default", "second"});
+    }
+
+    @Test
+    public void whenNoVolumeIsRecorded_ThenTheDefaultVolumeIsUsed() {
+        assertThat(storageVolumes.getVolume(null).getName(), is(equalTo("default")));
+        assertThat(storageVolumes.getVolume(null).getBasePath(), is(equalTo(defaultPath.toString())));
+        assertThat(storageVolumes.getVolume("second").getBasePath(), is(equalTo(secondPath.toString())));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenTheRecordedVolumeIsNotConfigured_ThenItIsAnError() {
+        storageVolumes.getVolume("removed");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenTheVolumeHasNoPath_ThenItIsAnError() {
+        new StorageVolumes(new MockEnvironment(), defaultPath.toString(), new String[]{"default", "second"});
+    }
+
+    @Test
+    public void whenAFileIsLocated_ThenItIsFoundOnTheVolumeThatHasIt() throws IOException {
+        Files.createFile(secondPath.resolve("abcdefgh12345678.bin"));
+
+        assertThat(storageVolumes.locate("abcdefgh12345678.bin"),
+                is(equalTo(secondPath.resolve("abcdefgh12345678.bin").toString())));
+        assertThat(storageVolumes.locate("missing.bin"), is(equalTo(defaultPath.resolve("missing.bin").toString())));
+    }
+
+    @Test
+    public void whenAPathIsOutsideOfTheVolumes_ThenItHasNoVolume() {
+        assertThat(storageVolumes.findVolumeOf(secondPath.resolve("ready_to_agent/ab/file.cram")).getName(),
+                is(equalTo("second")));
+        assertThat(storageVolumes.findVolumeOf(secondPath.resolve("../default/file.cram")).getName(),
+                is(equalTo("default")));
+        assertThat(storageVolumes.findVolumeOf(Paths.get("/etc/passwd")), is(nullValue()));
+    }
+}
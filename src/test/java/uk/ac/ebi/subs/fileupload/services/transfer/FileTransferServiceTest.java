@@ -0,0 +1,107 @@
+package uk.ac.ebi.subs.fileupload.services.transfer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.mock.env.MockEnvironment;
+import uk.ac.ebi.subs.fileupload.model.FileChecksums;
+import uk.ac.ebi.subs.fileupload.services.checksum.RunningChecksum;
+import uk.ac.ebi.subs.fileupload.services.io.IoClass;
+import uk.ac.ebi.subs.fileupload.services.io.IoPermit;
+import uk.ac.ebi.subs.fileupload.services.io.IoScheduler;
+import uk.ac.ebi.subs.fileupload.services.storage.StorageVolumes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FileTransferServiceTest {
+
+    private static final String CONTENT = "123456789";
+    private static final String CONTENT_MD5 = "25f9e794323b453885f5181f1b624d0b";
+    private static final String CONTENT_SHA256 = "15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225";
+    private static final String CONTENT_CRC32C = "e3069283";
+
+    // smaller than the content, so the file is copied in several chunks
+    private static final int CHUNK_SIZE = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileTransferService fileTransferService;
+    private Path sourceFile;
+    private Path targetFile;
+
+    @Before
+    public void setup() throws IOException {
+        MockEnvironment environment = new MockEnvironment();
+        StorageVolumes storageVolumes = new StorageVolumes(environment, temporaryFolder.getRoot().toString(),
+                new String[]{"default"});
+        fileTransferService = new FileTransferService(new IoScheduler(storageVolumes, environment), CHUNK_SIZE);
+
+        sourceFile = temporaryFolder.newFile().toPath();
+        Files.write(sourceFile, CONTENT.getBytes(StandardCharsets.UTF_8));
+        targetFile = temporaryFolder.getRoot().toPath().resolve("target").resolve("test_file.txt");
+    }
+
+    @Test
+    public void whenTheTargetIsOnTheSameFileSystem_ThenTheFileIsRenamed() throws IOException {
+        FileTransfer transfer = fileTransferService.move(sourceFile, targetFile, IoClass.INTERACTIVE);
+
+        assertFalse(transfer.isCopied());
+        assertTrue(transfer.isFinished());
+        assertThat(transfer.getChecksum(), is(nullValue()));
+        assertThat(transfer.getProgress(), is(equalTo(1.0)));
+
+        assertTrue(Files.notExists(sourceFile));
+        assertThat(new String(Files.readAllBytes(targetFile), StandardCharsets.UTF_8), is(equalTo(CONTENT)));
+        assertThat(fileTransferService.getRenamedFiles(), is(equalTo(1L)));
+        assertTrue(fileTransferService.getActiveTransfers().isEmpty());
+    }
+
+    @Test
+    public void whenTheFileIsCopied_ThenItsRunningChecksumIsCompletedInTheSamePass() throws IOException {
+        Files.createDirectories(targetFile.getParent());
+        FileTransfer transfer = new FileTransfer(1, sourceFile, targetFile, CONTENT.length());
+
+        // covers the first chunk and a part of the second one
+        RunningChecksum runningChecksum = new RunningChecksum();
+        runningChecksum.update(ByteBuffer.wrap(CONTENT.substring(0, 6).getBytes(StandardCharsets.UTF_8)));
+
+        fileTransferService.copy(transfer, IoPermit.unlimited(), runningChecksum);
+
+        assertTrue(transfer.isCopied());
+        assertThat(transfer.getTransferredBytes(), is(equalTo((long) CONTENT.length())));
+        assertThat(transfer.getChecksum().getOffset(), is(equalTo((long) CONTENT.length())));
+        assertThat(transfer.getChecksum().getChecksums(),
+                is(equalTo(new FileChecksums(CONTENT_MD5, CONTENT_SHA256, CONTENT_CRC32C))));
+
+        assertThat(new String(Files.readAllBytes(targetFile), StandardCharsets.UTF_8), is(equalTo(CONTENT)));
+        assertTrue(Files.notExists(targetFile.resolveSibling(targetFile.getFileName() + ".part")));
+        assertThat(fileTransferService.getCopiedBytes(), is(equalTo((long) CONTENT.length())));
+    }
+
+    @Test
+    public void whenAFileWithoutRunningChecksumIsCopied_ThenItIsHashedFromItsFirstByteInTheSamePass() throws IOException {
+        Files.createDirectories(targetFile.getParent());
+        FileTransfer transfer = new FileTransfer(1, sourceFile, targetFile, CONTENT.length());
+
+        fileTransferService.copy(transfer, IoPermit.unlimited(), null);
+
+        assertTrue(transfer.isCopied());
+        assertThat(transfer.getChecksum().getOffset(), is(equalTo((long) CONTENT.length())));
+        assertThat(transfer.getChecksum().getChecksums(),
+                is(equalTo(new FileChecksums(CONTENT_MD5, CONTENT_SHA256, CONTENT_CRC32C))));
+        assertThat(new String(Files.readAllBytes(targetFile), StandardCharsets.UTF_8), is(equalTo(CONTENT)));
+    }
+}
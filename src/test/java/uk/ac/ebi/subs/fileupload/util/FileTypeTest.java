@@ -29,4 +29,11 @@ public class FileTypeTest {
 
         assertThat(FileType.getFileTypeByExtension(supportedFile), is(equalTo(expectedFileType)));
     }
+
+    @Test
+    public void whenSeveralExtensionsMatch_ThenTheLongestOneWins() {
+        assertThat(FileType.getFileTypeByExtension("variants.vcf.gz"), is(equalTo("VCF")));
+        assertThat(FileType.getFileTypeByExtension("archive.gz"), is(equalTo(null)));
+        assertThat(FileType.getFileTypeByExtension("reads.fq.gz"), is(equalTo("FASTQ")));
+    }
 }